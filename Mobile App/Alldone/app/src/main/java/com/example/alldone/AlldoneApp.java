@@ -0,0 +1,16 @@
+package com.example.alldone;
+
+import android.app.Application;
+
+/**
+ * Sets up the client library before any screen starts, including screens that are restored after the process was
+ * killed.
+ */
+public class AlldoneApp extends Application {
+	@Override
+	public void onCreate() {
+		super.onCreate();
+		// Callbacks of calls update views, so they have to run on the main thread
+		Call.SetCallbackExecutor(MainThreadExecutor.Get());
+	}
+}
@@ -2,7 +2,6 @@ package com.example.alldone;
 
 import androidx.appcompat.app.AppCompatActivity;
 
-import android.os.AsyncTask;
 import android.content.Intent;
 import android.os.Bundle;
 import android.view.MenuItem;
@@ -29,6 +28,7 @@ import org.apache.http.message.BasicNameValuePair;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 import android.widget.ArrayAdapter;
 import android.widget.Spinner;
@@ -112,13 +112,11 @@ public class BewerkTaak extends AppCompatActivity implements NavigationView.OnNa
 
     public void InsertData(final String id, final String title, final String description, final String priority){
 
-        class SendPostReqAsyncTask extends AsyncTask<String, Void, String> {
-            // Using AsyncTask to execute heavier tasks in the background on a dedicated thread
-            // --> the app runs on a single thread, thus executing InsertData() which takes time to get a responsive could make the app non-responsive.
-
+        // Run on an I/O thread, because waiting for the server on the main thread makes the app non-responsive.
+        Call.Submit(new Callable<String>() {
             @Override
-            protected String doInBackground(String... params) {
-                // The code is being executed in the background (thus doInBackground())
+            public String call() {
+                // The code is being executed on an I/O thread (thus call())
 
                 String IdHolder = id;
                 String TitleHolder = title;
@@ -150,22 +148,17 @@ public class BewerkTaak extends AppCompatActivity implements NavigationView.OnNa
                 } // Error message if something went wrong
 
                 return "Taak bewerkt";
-
             }
-
+        }).Then(new Call.Callback<String>() {
             @Override
-            protected void onPostExecute(String result) {
+            public void OnResult(String result) {
                 Toast.makeText(BewerkTaak.this, "Taak bewerkt!", Toast.LENGTH_LONG).show();
                 Intent intent0 = new Intent(getApplicationContext(), Takenlijst.class);
                 intent0.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
                 intent0.addFlags(Intent.FLAG_ACTIVITY_CLEAR_TASK);
                 startActivity(intent0);
             }
-        }
-
-        SendPostReqAsyncTask sendPostReqAsyncTask = new SendPostReqAsyncTask();
-
-        sendPostReqAsyncTask.execute(id, title, description, priority);
+        });
     }
 
     @Override
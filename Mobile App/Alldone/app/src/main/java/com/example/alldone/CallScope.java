@@ -0,0 +1,47 @@
+package com.example.alldone;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * The calls that a screen started, which are cancelled together once the screen is destroyed. Their callbacks then no
+ * longer touch views that are gone, and the requests they wait for give their connections back right away.
+ * <p>
+ * Adding the last call of a chain is enough, because cancelling it cancels the calls it was mapped from.
+ */
+public class CallScope {
+	private final List<Call<?>> calls = new ArrayList<>();
+	private boolean cancelled;
+
+	/**
+	 * Ties a call to the scope. A call added after the scope was cancelled is cancelled right away.
+	 * @return The call.
+	 */
+	public <T> Call<T> Add(Call<T> call) {
+		synchronized (calls) {
+			if (!cancelled) {
+				// Forget the calls that are done, so a long-lived screen doesn't keep them all
+				Iterator<Call<?>> iterator = calls.iterator();
+				while (iterator.hasNext()) if (iterator.next().IsDone()) iterator.remove();
+				calls.add(call);
+				return call;
+			}
+		}
+		call.Cancel();
+		return call;
+	}
+
+	/**
+	 * Cancels every call of the scope, and every call added to it from now on.
+	 */
+	public void Cancel() {
+		List<Call<?>> pending;
+		synchronized (calls) {
+			cancelled = true;
+			pending = new ArrayList<>(calls);
+			calls.clear();
+		}
+		for (Call<?> call : pending) call.Cancel();
+	}
+}
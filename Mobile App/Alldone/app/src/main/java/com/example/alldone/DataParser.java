@@ -74,7 +74,7 @@ public class DataParser  extends AsyncTask<Void,Void,Integer>{
 
                 int id = jo.getInt("id");
                 String title = jo.getString("title");
-                String priority = jo.getString("priority");
+                int priority = jo.getInt("priority");
                 String description = jo.getString("description");
 
                 s = new Task();
@@ -0,0 +1,136 @@
+package com.example.alldone;
+
+import android.util.SparseArray;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+
+import java.util.List;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.AdapterListUpdateCallback;
+import androidx.recyclerview.widget.AsyncDifferConfig;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * A {@link RecyclerView} adapter for a list of models that recycles its rows.
+ * <p>
+ * Every new list is diffed against the shown one on the background threads of {@link AsyncDifferConfig}, which
+ * only diff lists, so an update never waits behind slow requests on the {@link IOExecutor}. Only the rows that were
+ * added, removed, moved or changed are rebound on the main thread. Models are compared with
+ * {@link Object#equals(Object)}.
+ */
+public abstract class DiffListAdapter<T> extends RecyclerView.Adapter<DiffListAdapter.Holder> {
+    /**
+     * Receives clicks on rows.
+     */
+    public interface OnItemClickListener<T> {
+        void onItemClick(T item, int position);
+    }
+
+    /**
+     * Holds a row and caches the views that were looked up in it, so binding a recycled row doesn't search the
+     * view hierarchy again.
+     */
+    public static class Holder extends RecyclerView.ViewHolder {
+        private final SparseArray<View> views = new SparseArray<>();
+
+        Holder(View itemView) {
+            super(itemView);
+        }
+
+        @SuppressWarnings("unchecked")
+        public <V extends View> V get(int id) {
+            View view = views.get(id);
+            if (view == null) {
+                view = itemView.findViewById(id);
+                views.put(id, view);
+            }
+            return (V) view;
+        }
+    }
+
+    private final int layout;
+    private final AsyncListDiffer<T> differ;
+    private OnItemClickListener<T> listener;
+
+    /**
+     * @param layout The layout resource of a row.
+     */
+    protected DiffListAdapter(int layout) {
+        this.layout = layout;
+        differ = new AsyncListDiffer<>(new AdapterListUpdateCallback(this),
+                new AsyncDifferConfig.Builder<>(new DiffUtil.ItemCallback<T>() {
+                    @Override
+                    public boolean areItemsTheSame(@NonNull T oldItem, @NonNull T newItem) {
+                        return isSameItem(oldItem, newItem);
+                    }
+
+                    @Override
+                    public boolean areContentsTheSame(@NonNull T oldItem, @NonNull T newItem) {
+                        return oldItem.equals(newItem);
+                    }
+                }).build());
+    }
+
+    /**
+     * @return True if both models describe the same item, even if its contents changed.
+     */
+    protected abstract boolean isSameItem(T oldItem, T newItem);
+
+    /**
+     * Shows a model in a (possibly recycled) row.
+     */
+    protected abstract void bind(Holder holder, T item);
+
+    /**
+     * Replaces the shown list. The list may not be modified afterwards; pass a new list for every update.
+     */
+    public void submitList(List<T> items) {
+        differ.submitList(items);
+    }
+
+    /**
+     * @return The list that is currently shown. A submitted list is only shown once its diff has been computed.
+     */
+    public List<T> getCurrentList() {
+        return differ.getCurrentList();
+    }
+
+    public T getItem(int position) {
+        return differ.getCurrentList().get(position);
+    }
+
+    public void setOnItemClickListener(OnItemClickListener<T> listener) {
+        this.listener = listener;
+    }
+
+    @NonNull
+    @Override
+    public Holder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View row = LayoutInflater.from(parent.getContext()).inflate(layout, parent, false);
+        final Holder holder = new Holder(row);
+        row.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                // The row may have moved since it was bound
+                int position = holder.getAdapterPosition();
+                if (listener != null && position != RecyclerView.NO_POSITION)
+                    listener.onItemClick(getItem(position), position);
+            }
+        });
+        return holder;
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull Holder holder, int position) {
+        bind(holder, getItem(position));
+    }
+
+    @Override
+    public int getItemCount() {
+        return differ.getCurrentList().size();
+    }
+}
@@ -0,0 +1,384 @@
+package com.example.alldone;
+
+import android.content.Context;
+
+import com.example.alldone.model.Enrollment;
+import com.example.alldone.model.Task;
+import com.example.alldone.net.ConnectionPool;
+import com.example.alldone.net.Exchange;
+import com.example.alldone.net.PooledTransport;
+import com.example.alldone.net.ResponseBody;
+import com.example.alldone.net.Transport;
+import com.example.alldone.store.LocalStore;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.Executor;
+
+/**
+ * Receives the changes to the groups of the current user as they happen, through a server-sent event stream.
+ * <p>
+ * The stream is only open while at least one listener is subscribed. Every event is applied to the
+ * {@link LocalStore} and the response cache before the listeners are called on the main thread, so screens can update
+ * their rows in place instead of fetching their lists again. A dropped stream is reopened after a jittered, growing
+ * delay, and the server replays the events that were missed in between.
+ */
+public class EventStream {
+	public static final String LINK = "events";
+
+	// The server sends a heartbeat every 15 seconds, so a stream that stays silent for longer than this is dead
+	private static final long READ_TIMEOUT = 45000;
+	private static final long DEFAULT_RETRY = 3000;
+	private static final long MAX_RETRY = 60000;
+
+	/**
+	 * Receives events on the main thread.
+	 */
+	public interface Listener {
+		void OnEvent(Event event);
+	}
+
+	/**
+	 * A change pushed by the server.
+	 */
+	public static class Event {
+		/** A task was created or deleted. */
+		public static final String TASK = "task";
+		/** The enrollments of a task changed. */
+		public static final String ENROLLMENT = "enrollment";
+		/** Events were missed and could not be replayed, so everything shown should be loaded again. */
+		public static final String RESET = "reset";
+
+		public final String Type;
+		public final int Group;
+		/** The id of the task that the event is about, or -1. */
+		public final int TaskId;
+		/** The created task, or null. */
+		public final Task Task;
+		public final boolean Deleted;
+		/** Every enrollment of the task after the change, or null. */
+		public final List<Enrollment> Enrollments;
+
+		Event(String type, int group, int taskId, Task task, boolean deleted, List<Enrollment> enrollments) {
+			this.Type = type;
+			this.Group = group;
+			this.TaskId = taskId;
+			this.Task = task;
+			this.Deleted = deleted;
+			this.Enrollments = enrollments;
+		}
+
+		/**
+		 * Decodes the data of an event.
+		 */
+		static Event Parse(String type, String data) throws IOException {
+			int group = -1, taskId = -1;
+			Task task = null;
+			boolean deleted = false;
+			List<Enrollment> enrollments = null;
+
+			JsonStreamReader reader = new JsonStreamReader(data);
+			reader.BeginObject();
+			while (reader.HasNext()) {
+				switch (reader.NextName()) {
+					case "group":
+						group = reader.NextInt();
+						break;
+					case "task":
+						// The created task itself, or the id of the task whose enrollments changed
+						if (reader.Peek() == ValueReader.Token.BEGIN_OBJECT) {
+							task = com.example.alldone.model.Task.read(reader);
+							taskId = task.getId();
+						} else taskId = reader.NextInt();
+						break;
+					case "deleted":
+						taskId = reader.NextInt();
+						deleted = true;
+						break;
+					case "results":
+						enrollments = new ArrayList<>();
+						reader.BeginArray();
+						while (reader.HasNext()) enrollments.add(Enrollment.read(reader));
+						reader.EndArray();
+						break;
+					default:
+						reader.SkipValue();
+						break;
+				}
+			}
+			reader.EndObject();
+			return new Event(type, group, taskId, task, deleted, enrollments);
+		}
+	}
+
+	private static EventStream instance;
+	// Closes streams that stopped receiving heartbeats
+	private static final Timer watchdog = new Timer("EventStream-watchdog", true);
+
+	// The stream holds on to its socket for as long as it is open, so it gets its own pool instead of taking one of
+	// the sockets meant for regular requests. Its sockets are never reused.
+	private final Transport transport = new PooledTransport(new ConnectionPool(1, 0, 0));
+	private final LocalStore store;
+	private final Executor callbacks;
+	private final Random random = new Random();
+	private final List<Listener> listeners = new ArrayList<>();
+
+	private Thread thread;
+	private Exchange exchange;
+	private boolean connected;
+	private volatile long lastReceived;
+	private String lastEventId;
+	private long retry = DEFAULT_RETRY;
+
+	/**
+	 * @param store The store to apply events to, or null.
+	 * @param callbacks The executor that calls the listeners.
+	 */
+	EventStream(LocalStore store, Executor callbacks) {
+		this.store = store;
+		this.callbacks = callbacks;
+	}
+
+	/**
+	 * @return The event stream of the application.
+	 */
+	public static synchronized EventStream Get(Context context) {
+		if (instance == null) instance = new EventStream(LocalStore.Get(context), MainThreadExecutor.Get());
+		return instance;
+	}
+
+	/**
+	 * Starts calling a listener for every event, and opens the stream if it isn't open yet.
+	 */
+	public synchronized void Subscribe(Listener listener) {
+		if (!listeners.contains(listener)) listeners.add(listener);
+		if (thread != null) return;
+
+		thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				Run(Thread.currentThread());
+			}
+		}, "EventStream");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Stops calling a listener. The stream is closed once no listeners are left.
+	 */
+	public synchronized void Unsubscribe(Listener listener) {
+		listeners.remove(listener);
+		if (!listeners.isEmpty() || thread == null) return;
+
+		thread.interrupt();
+		thread = null;
+		connected = false;
+		// Unblocks the read, which a thread interrupt doesn't do
+		if (exchange != null) exchange.Close();
+	}
+
+	/**
+	 * @return True if the stream is open, so changes will be pushed without asking for them.
+	 */
+	public synchronized boolean IsConnected() {
+		return connected;
+	}
+
+	private synchronized boolean IsCurrent(Thread current) {
+		return thread == current;
+	}
+
+	/**
+	 * Keeps the stream open until the thread is no longer the current one.
+	 */
+	private void Run(Thread current) {
+		int failures = 0;
+		while (IsCurrent(current)) {
+			int status;
+			try {
+				status = Read(current);
+				// The server closed a stream that worked, so reconnect right away
+				if (status == 200) failures = 0;
+			} catch (IOException e) {
+				status = -1;
+			}
+			synchronized (this) {
+				connected = false;
+				exchange = null;
+			}
+			if (!IsCurrent(current)) return;
+
+			// Client errors won't go away by trying again, e.g. a server without push support or an expired session.
+			// The stream is tried again on the next subscription.
+			if (status >= 400 && status < 500 && status != 408 && status != 429) {
+				synchronized (this) {
+					if (thread == current) thread = null;
+				}
+				return;
+			}
+
+			try {
+				Thread.sleep(GetDelay(failures++));
+			} catch (InterruptedException e) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * @return The time to wait before the next attempt, which doubles with every failure and is randomized so that
+	 * clients don't all reconnect at the same moment after an outage.
+	 */
+	private long GetDelay(int failures) {
+		long delay = Math.min(MAX_RETRY, retry << Math.min(failures, 16));
+		return delay / 2 + (long) (random.nextDouble() * (delay / 2));
+	}
+
+	/**
+	 * Opens the stream and reads events from it until it ends.
+	 * @return The status code of the response.
+	 */
+	private int Read(Thread current) throws IOException {
+		Map<String, String> headers = new HashMap<>();
+		// The Web API routes requests to its JSON servers by their content type
+		headers.put("Content-Type", "application/json");
+		headers.put("Accept", "text/event-stream");
+		headers.put("Cache-Control", "no-cache");
+		// Follows the session and endpoint of the default client
+		Client client = Connection.GetDefault();
+		if (client.GetSession() != null) headers.put("Cookie", "session=" + client.GetSession());
+		synchronized (this) {
+			if (lastEventId != null) headers.put("Last-Event-ID", lastEventId);
+		}
+
+		// The stream has no end to set a deadline for, the watchdog closes it once it goes quiet instead
+		final Exchange exchange = transport.Execute("GET", new URL(client.GetEndpoint() + LINK), headers, null, null);
+		TimerTask timeout = null;
+		try {
+			synchronized (this) {
+				if (thread != current) return -1;
+				this.exchange = exchange;
+			}
+			int status = exchange.GetStatusCode();
+			if (status != 200) return status;
+
+			lastReceived = System.nanoTime();
+			timeout = new TimerTask() {
+				@Override
+				public void run() {
+					if (System.nanoTime() - lastReceived > READ_TIMEOUT * 1000000) exchange.Close();
+				}
+			};
+			watchdog.schedule(timeout, READ_TIMEOUT / 3, READ_TIMEOUT / 3);
+			synchronized (this) {
+				connected = thread == current;
+			}
+
+			BufferedReader reader = new BufferedReader(new InputStreamReader(exchange.GetBody(), ResponseBody.UTF8));
+			String type = null;
+			StringBuilder data = new StringBuilder();
+			String line;
+			while ((line = reader.readLine()) != null) {
+				lastReceived = System.nanoTime();
+				// A blank line ends an event
+				if (line.isEmpty()) {
+					if (data.length() > 0) Dispatch(type == null ? "message" : type, data.toString());
+					type = null;
+					data.setLength(0);
+					continue;
+				}
+				// Lines starting with a colon are comments, such as heartbeats
+				if (line.startsWith(":")) continue;
+
+				int colon = line.indexOf(':');
+				String field = colon == -1 ? line : line.substring(0, colon);
+				String value = colon == -1 ? "" : line.substring(line.startsWith(" ", colon + 1) ? colon + 2 : colon + 1);
+				switch (field) {
+					case "event":
+						type = value;
+						break;
+					case "data":
+						if (data.length() > 0) data.append('\n');
+						data.append(value);
+						break;
+					case "id":
+						synchronized (this) {
+							lastEventId = value;
+						}
+						break;
+					case "retry":
+						try {
+							retry = Math.max(0, Long.parseLong(value));
+						} catch (NumberFormatException e) {
+							// Ignored, like the spec says
+						}
+						break;
+				}
+			}
+			return status;
+		} finally {
+			if (timeout != null) timeout.cancel();
+			exchange.Close();
+		}
+	}
+
+	/**
+	 * Applies an event to the stored data and hands it to the listeners.
+	 */
+	private void Dispatch(String type, String data) {
+		final Event event;
+		try {
+			event = Event.Parse(type, data);
+		} catch (IOException e) {
+			// Counted with the stream, which goes on with the next event
+			Connection.metrics.Get(LINK).CountError(e);
+			return;
+		}
+		Apply(event);
+
+		final List<Listener> current;
+		synchronized (this) {
+			current = new ArrayList<>(listeners);
+		}
+		callbacks.execute(new Runnable() {
+			@Override
+			public void run() {
+				for (Listener listener : current) {
+					// Skip listeners that unsubscribed in the meantime
+					synchronized (EventStream.this) {
+						if (!listeners.contains(listener)) continue;
+					}
+					listener.OnEvent(event);
+				}
+			}
+		});
+	}
+
+	private void Apply(Event event) {
+		switch (event.Type) {
+			case Event.TASK:
+				Connection.Invalidate("task");
+				if (store == null) break;
+				if (event.Task != null) store.PutTask(event.Task);
+				else if (event.Deleted) store.DeleteTask(event.TaskId);
+				break;
+			case Event.ENROLLMENT:
+				Connection.Invalidate("taskenroll");
+				if (store != null && event.Enrollments != null) store.PutEnrollments(event.TaskId, event.Enrollments);
+				break;
+			case Event.RESET:
+				Connection.GetDefault().GetCache().Clear();
+				break;
+		}
+	}
+}
@@ -3,34 +3,37 @@ package com.example.alldone;
 import android.content.Context;
 import android.content.DialogInterface;
 import android.content.Intent;
-import android.os.AsyncTask;
 import android.os.Bundle;
 import android.text.InputType;
-import android.view.LayoutInflater;
 import android.view.View;
-import android.view.ViewGroup;
-import android.widget.AdapterView;
-import android.widget.ArrayAdapter;
 import android.widget.EditText;
-import android.widget.ListView;
 import android.widget.TextView;
 import android.widget.Toast;
 
-import androidx.annotation.NonNull;
-import androidx.annotation.Nullable;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
+import com.example.alldone.model.Group;
+import com.example.alldone.store.LocalStore;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 
-import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.w3c.dom.Text;
 
+import java.util.List;
+import java.util.concurrent.Callable;
+
 public class GroupTasklists extends AppCompatActivity {
 
-    ListView listView;
+    RecyclerView listView;
+    MyAdapter adapter;
+    // True once the groups have been shown, either from the store or from the server
+    boolean groupsShown;
+    // The calls of this screen, cancelled once it is destroyed
+    final CallScope calls = new CallScope();
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -38,31 +41,9 @@ public class GroupTasklists extends AppCompatActivity {
         setContentView(R.layout.activity_grouptasklists);
 
         listView = findViewById(R.id.lv);
-
-        class RetrieveTasklists extends AsyncTask<String, Void, Response> {
-            @Override
-            protected Response doInBackground(String... url) {
-                return Connection.Send("group", "GET");
-            }
-
-            @Override
-            protected void onPostExecute(Response response) {
-                try {
-                    JSONArray responseJson = response.GetJSON().getJSONArray("results");
-
-                    final JSONObject[] elements = new JSONObject[responseJson.length()];
-                    for (int i = 0; i < responseJson.length(); i++) {
-                        elements[i] = responseJson.getJSONObject(i);
-                    }
-
-                    MyAdapter adapter = new MyAdapter(GroupTasklists.this, elements);
-                    listView.setAdapter(adapter);
-                } catch (JSONException e) {
-                    // Won't happen
-                    throw new RuntimeException(e);
-                }
-            }
-        }
+        listView.setLayoutManager(new LinearLayoutManager(this));
+        adapter = new MyAdapter();
+        listView.setAdapter(adapter);
 
         FloatingActionButton sharefab = findViewById(R.id.shareFab);
         sharefab.setOnClickListener(new View.OnClickListener() {
@@ -73,7 +54,7 @@ public class GroupTasklists extends AppCompatActivity {
                     @Override
                     public void onClick(DialogInterface dialog, int which) {
                         EditText text = (EditText) ((AlertDialog) dialog).findViewById((R.id.titleEditText));
-                        new JoinGroup_Task().execute(text.getText().toString());
+                        joinGroup(text.getText().toString());
                     }
                 });
                 msgbox.show();
@@ -81,84 +62,113 @@ public class GroupTasklists extends AppCompatActivity {
         });
 
         System.out.println("Getting tasklists from server");
-        new RetrieveTasklists().execute();
+        retrieveTasklists();
 
-        listView.setOnItemClickListener(new AdapterView.OnItemClickListener() {
+        adapter.setOnItemClickListener(new DiffListAdapter.OnItemClickListener<Group>() {
             @Override
-            public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
-                JSONObject group = ((MyAdapter)parent.getAdapter()).Groups[position];
-                try {
-                    Context context = GroupTasklists.this;
-                    Intent intent = new Intent(context , Takenlijst.class);
-                    intent.putExtra("id", group.getInt("Id"));
-                    context.startActivity(intent);
-                } catch (JSONException e) {
-                    // Won't happen
-                    throw new RuntimeException(e);
-                }
-
+            public void onItemClick(Group group, int position) {
+                Context context = GroupTasklists.this;
+                Intent intent = new Intent(context , Takenlijst.class);
+                intent.putExtra("id", group.getId());
+                context.startActivity(intent);
             }
         });
     }
 
-    class JoinGroup_Task extends AsyncTask<String, Void, Response> {
-        @Override
-        protected Response doInBackground(String... args) {
-            try {
-                JSONObject json = new JSONObject()
-                        .put("code", args[0]);
-                return Connection.Send("groupsharing", "POST", json.toString());
-            } catch (JSONException e) {
-                throw new RuntimeException(e);
-            }
-        }
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        calls.Cancel();
+    }
 
-        @Override
-        protected void onPostExecute(Response response) {
-            if (response.IsSuccessful()) {
-                Toast.makeText(getApplicationContext(), "Groep successvol toegetreden!", Toast.LENGTH_LONG).show();
-            } else if (response.StatusCode == 400) {
-                Toast.makeText(getApplicationContext(), "De ingevoerde code klopt niet.", Toast.LENGTH_LONG).show();
-            } else if (response.StatusCode == 409) {
-                Toast.makeText(getApplicationContext(), "Je zit al in die groep!", Toast.LENGTH_LONG).show();
-            } else if (response.StatusCode == 410) {
-                Toast.makeText(getApplicationContext(), "De ingevoerde code is verlopen.", Toast.LENGTH_LONG).show();
-            } else {
-                Toast.makeText(getApplicationContext(), "Iets ging verkeerd. Probeer het later nog een keer.", Toast.LENGTH_LONG).show();
+    /**
+     * Shows the stored groups right away and then revalidates them with the server.
+     */
+    private void retrieveTasklists() {
+        final LocalStore store = LocalStore.Get(getApplicationContext());
+        calls.Add(Call.Submit(new Callable<List<Group>>() {
+            @Override
+            public List<Group> call() {
+                return store.GetGroups();
+            }
+        }).Then(new Call.Callback<List<Group>>() {
+            @Override
+            public void OnResult(List<Group> cached) {
+                if (cached != null) showGroups(cached);
+            }
+        }).Map(new Call.Transform<List<Group>, List<Group>>() {
+            @Override
+            public List<Group> Apply(List<Group> cached) {
+                List<Group> groups = Connection.Send("group", "GET").GetGroups();
+                if (groups == null) return null;
+                // Only update the list if something changed since it was shown
+                if (!store.PutGroups(groups) && cached != null) return null;
+                return groups;
             }
+        }).Then(new Call.Callback<List<Group>>() {
+            @Override
+            public void OnResult(List<Group> groups) {
+                if (groups != null) {
+                    showGroups(groups);
+                } else if (!groupsShown) {
+                    // Nothing could be shown at all
+                    Toast.makeText(getApplicationContext(), "Iets ging verkeerd. Probeer het later nog een keer.", Toast.LENGTH_LONG).show();
+                }
+            }
+        }));
+    }
+
+    private void showGroups(List<Group> groups) {
+        groupsShown = true;
+        adapter.submitList(groups);
+    }
+
+    private void joinGroup(String code) {
+        JSONObject json;
+        try {
+            json = new JSONObject()
+                    .put("code", code);
+        } catch (JSONException e) {
+            throw new RuntimeException(e);
         }
+        calls.Add(Connection.SendAsync("groupsharing", "POST", json.toString()).Then(new Call.Callback<Response>() {
+            @Override
+            public void OnResult(Response response) {
+                if (response.IsSuccessful()) {
+                    Toast.makeText(getApplicationContext(), "Groep successvol toegetreden!", Toast.LENGTH_LONG).show();
+                    retrieveTasklists();
+                } else if (response.StatusCode == 400) {
+                    Toast.makeText(getApplicationContext(), "De ingevoerde code klopt niet.", Toast.LENGTH_LONG).show();
+                } else if (response.StatusCode == 409) {
+                    Toast.makeText(getApplicationContext(), "Je zit al in die groep!", Toast.LENGTH_LONG).show();
+                } else if (response.StatusCode == 410) {
+                    Toast.makeText(getApplicationContext(), "De ingevoerde code is verlopen.", Toast.LENGTH_LONG).show();
+                } else {
+                    Toast.makeText(getApplicationContext(), "Iets ging verkeerd. Probeer het later nog een keer.", Toast.LENGTH_LONG).show();
+                }
+            }
+        }));
     }
 
-    class MyAdapter extends ArrayAdapter<JSONObject> {
+    static class MyAdapter extends DiffListAdapter<Group> {
 
-        Context context;
-        JSONObject[] Groups;
+        MyAdapter() {
+            super(R.layout.layout_grouptasklists);
+        }
 
-        MyAdapter (Context c, JSONObject... groups) {
-            super(c, R.layout.layout_grouptasklists, groups);
-            this.context = c;
-            this.Groups = groups;
+        @Override
+        protected boolean isSameItem(Group oldItem, Group newItem) {
+            return oldItem.getId() == newItem.getId();
         }
 
-        @NonNull
         @Override
-        public View getView(int position, @Nullable View convertView, @NonNull ViewGroup parent) {
-            LayoutInflater layoutInflater = (LayoutInflater)getApplicationContext().getSystemService(Context.LAYOUT_INFLATER_SERVICE);
-            View row = layoutInflater.inflate(R.layout.layout_grouptasklists, parent, false);
-            TextView myTitle = row.findViewById(R.id.usernameText);
-            TextView mySubtitle = row.findViewById(R.id.textView2);
-
-            JSONObject group = this.Groups[position];
-            try {
-                myTitle.setText(group.getString("Name"));
-                String description = group.optString("Description");
-                mySubtitle.setText(description == null ? "" : description);
-            } catch (JSONException e) {
-                // Won't happen
-                throw new RuntimeException(e);
-            }
+        protected void bind(Holder holder, Group group) {
+            TextView myTitle = holder.get(R.id.usernameText);
+            TextView mySubtitle = holder.get(R.id.textView2);
 
-            return row;
+            myTitle.setText(group.getName());
+            String description = group.getDescription();
+            mySubtitle.setText(description == null ? "" : description);
         }
     }
 
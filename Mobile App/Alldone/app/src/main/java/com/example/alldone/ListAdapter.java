@@ -50,7 +50,7 @@ public class ListAdapter extends BaseAdapter {
         TextView priorTxt =  convertView.findViewById(R.id.priorTxt);
 
         titleTxt.setText(tasks.get(position).getTitle());
-        priorTxt.setText(tasks.get(position).getPriority());
+        priorTxt.setText(String.valueOf(tasks.get(position).getPriority()));
 
         convertView.setOnClickListener(new View.OnClickListener() {
             @Override
@@ -60,7 +60,7 @@ public class ListAdapter extends BaseAdapter {
                 intent.putExtra("title", tasks.get(position).getTitle());
                 intent.putExtra("priority", tasks.get(position).getPriority());
                 intent.putExtra("description", tasks.get(position).getDescription());
-                intent.putExtra("id", tasks.get(position).getId_string());
+                intent.putExtra("id", tasks.get(position).getId());
 
 
                 //Bundle bundle = new Bundle();
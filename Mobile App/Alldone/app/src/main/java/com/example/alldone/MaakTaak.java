@@ -2,7 +2,6 @@ package com.example.alldone;
 
 import androidx.appcompat.app.AppCompatActivity;
 
-import android.os.AsyncTask;
 import android.content.Intent;
 import android.os.Bundle;
 import android.view.MenuItem;
@@ -25,8 +24,8 @@ import org.apache.http.client.entity.UrlEncodedFormEntity;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.impl.client.DefaultHttpClient;
 import org.apache.http.message.BasicNameValuePair;
-import org.json.JSONException;
-import org.json.JSONObject;
+import com.example.alldone.model.Task;
+import com.example.alldone.store.Mutation;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -106,47 +105,29 @@ public class MaakTaak extends AppCompatActivity implements NavigationView.OnNavi
     }
 
     public void InsertData(final String title, final String description, final int priority){
+        if(id == -1){
+            Toast.makeText(MaakTaak.this, "Er is iets mis gegaan.", Toast.LENGTH_LONG).show();
+            return;
+        }
 
-        class SendPostReqAsyncTask extends AsyncTask<Void, Void, Response> {
-        // Using AsyncTask to execute heavier tasks in the background on a dedicated thread
-        // --> the app runs on a single thread, thus executing InsertData() which takes time to get a responsive could make the app non-responsive.
-
-            @Override
-            protected Response doInBackground(Void... params) {
-                // The code is being executed in the background (thus doInBackground())
-                GetData();
-                try {
-                    JSONObject json = new JSONObject()
-                            .put("group", id)
-                            .put("title", titleString)
-                            .put("description", descString)
-                            .put("priority", priorityString);
-                    return Connection.Send("task", "POST", json.toString());
-                } catch (JSONException e) {
-                    // Won't happen
-                    throw new RuntimeException(e);
-                }
-            }
+        Task task = new Task();
+        task.setGroup(id);
+        task.setTitle(title);
+        task.setDescription(description);
+        task.setPriority(priority);
 
+        // The task is stored right away and sent in the background, so it can be created while offline
+        Outbox.Get(getApplicationContext()).CreateTask(task, new Call.Callback<Mutation>() {
             @Override
-            protected void onPostExecute(Response result) {
-                if(id == -1){
-                    Toast.makeText(MaakTaak.this, "Er is iets mis gegaan.", Toast.LENGTH_LONG).show();
-                }
-                else {
-                    Toast.makeText(MaakTaak.this, "Taak aangemaakt!", Toast.LENGTH_LONG).show();
-                    Intent intent0 = new Intent(getApplicationContext(), Takenlijst.class);
-                    intent0.putExtra("id", id);
-                    intent0.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
-                    intent0.addFlags(Intent.FLAG_ACTIVITY_CLEAR_TASK);
-                    startActivity(intent0);
-                }
+            public void OnResult(Mutation mutation) {
+                Toast.makeText(MaakTaak.this, "Taak aangemaakt!", Toast.LENGTH_LONG).show();
+                Intent intent0 = new Intent(getApplicationContext(), Takenlijst.class);
+                intent0.putExtra("id", id);
+                intent0.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+                intent0.addFlags(Intent.FLAG_ACTIVITY_CLEAR_TASK);
+                startActivity(intent0);
             }
-        }
-
-        SendPostReqAsyncTask sendPostReqAsyncTask = new SendPostReqAsyncTask();
-
-        sendPostReqAsyncTask.execute();
+        });
     }
 
     @Override
@@ -8,6 +8,8 @@ import android.widget.Button;
 import android.widget.EditText;
 import android.widget.Toast;
 
+import com.example.alldone.store.LocalStore;
+
 import org.json.JSONException;
 import org.json.JSONObject;
 
@@ -22,10 +24,12 @@ import java.io.InputStreamReader;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.concurrent.Callable;
 
 import androidx.appcompat.app.AppCompatActivity;
 
 public class MainActivity extends AppCompatActivity {
+    private static final String TAG = "MainActivity";
     String msg = "";
     private JSONObject json;
 
@@ -67,13 +71,23 @@ public class MainActivity extends AppCompatActivity {
                 jObj.toString();
 
                 final JSONObject finalJObj = jObj;
-                Thread e = new Thread(new Runnable() {
+                Call.Submit(new Callable<Response>() {
                     @Override
-                    public void run() {
+                    public Response call() {
                         Response response = Connection.Send("login", "POST", finalJObj.toString());
-                        Connection.session = response.GetJSON().optString("sessionId");
+                        // Also drops the cached responses, which may belong to the previous session
+                        Connection.GetDefault().SetSession(response.GetString("sessionId"), null);
 
-                        response.PrettyPrint();
+                        Log.d(TAG, response.ToPrettyString());
+                        if (response.IsSuccessful()) {
+                            // Drop whatever another user left in the local store
+                            LocalStore.Get(getApplicationContext()).SetOwner(finalJObj.optString("username"));
+                        }
+                        return response;
+                    }
+                }).Then(new Call.Callback<Response>() {
+                    @Override
+                    public void OnResult(Response response) {
                         if(response.IsSuccessful()) {
                             msg = "Je bent ingelogd";
                             Intent intent0 = new Intent(getApplicationContext(), GroupTasklists.class);
@@ -82,16 +96,10 @@ public class MainActivity extends AppCompatActivity {
                         else {
                             msg = "Er is iets fout gegaan";
                         }
-                        MainActivity.this.runOnUiThread(new Runnable() {
-                            @Override
-                            public void run() {
-                                Toast.makeText(getApplicationContext(), msg,Toast.LENGTH_SHORT).show();
-                            }
-                        });
+                        Toast.makeText(getApplicationContext(), msg,Toast.LENGTH_SHORT).show();
                         //NetworkingShit(finalJObj);
                     }
                 });
-                e.start();
             }
         });
     }
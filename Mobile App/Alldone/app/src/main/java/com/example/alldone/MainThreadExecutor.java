@@ -0,0 +1,27 @@
+package com.example.alldone;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Runs tasks on the main thread, in the order in which they were posted.
+ */
+public final class MainThreadExecutor implements Executor {
+	private static MainThreadExecutor instance;
+
+	private final Handler handler = new Handler(Looper.getMainLooper());
+
+	private MainThreadExecutor() { }
+
+	public static synchronized MainThreadExecutor Get() {
+		if (instance == null) instance = new MainThreadExecutor();
+		return instance;
+	}
+
+	@Override
+	public void execute(Runnable task) {
+		handler.post(task);
+	}
+}
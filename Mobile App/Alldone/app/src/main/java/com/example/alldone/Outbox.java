@@ -0,0 +1,434 @@
+package com.example.alldone;
+
+import android.content.Context;
+
+import com.example.alldone.model.Enrollment;
+import com.example.alldone.model.Task;
+import com.example.alldone.store.LocalStore;
+import com.example.alldone.store.Mutation;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends the changes that the user makes in the background, so screens don't have to wait for the network.
+ * <p>
+ * Every change is applied to the {@link LocalStore} right away and written to its outbox, which survives restarts of
+ * the application. The outbox is sent in order on a single thread, and a change that can't be sent is retried after a
+ * jittered, growing delay without letting later changes overtake it. Every change carries an idempotency key, so the
+ * server answers a retry of a change that did arrive with its first response instead of applying it twice.
+ * <p>
+ * Changes that weren't sent yet are coalesced: deleting a task that was created offline drops both, deleting a task
+ * drops the enrollments in it that are still waiting, and repeated enrollments are only sent once. A change that the
+ * server rejects is undone locally and reported to the listeners.
+ */
+public class Outbox {
+	private static final long MIN_RETRY = 2000;
+	private static final long MAX_RETRY = 5 * 60 * 1000;
+
+	/**
+	 * Receives the results of sent changes on the main thread.
+	 */
+	public interface Listener {
+		/**
+		 * Called when the server applied a change, or already had it.
+		 * @param taskId The id of the task on the server, which differs from {@link Mutation#Task} for created tasks.
+		 */
+		void OnSent(Mutation mutation, int taskId);
+
+		/**
+		 * Called when the server refused a change. The change was undone locally.
+		 * @param statusCode The status code of the refusal.
+		 */
+		void OnRejected(Mutation mutation, int statusCode);
+	}
+
+	/**
+	 * What to do with a change after the server answered it.
+	 */
+	enum Outcome {
+		/** The change was applied, or the server already had it. */
+		SENT,
+		/** The change may succeed later, so it is kept and sent again. */
+		RETRY,
+		/** The change won't ever be accepted, so it is dropped and undone. */
+		REJECTED
+	}
+
+	private static Outbox instance;
+
+	private final LocalStore store;
+	private final Executor callbacks;
+	private final Random random = new Random();
+	private final List<Listener> listeners = new ArrayList<>();
+	// Applies and sends the changes one at a time, in order
+	private final ScheduledExecutorService thread = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "Outbox");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	// Only used on the outbox thread
+	private int failures;
+	private boolean retryScheduled;
+
+	Outbox(LocalStore store, Executor callbacks) {
+		this.store = store;
+		this.callbacks = callbacks;
+	}
+
+	/**
+	 * @return The outbox of the application. Changes left over from a previous run start sending right away.
+	 */
+	public static synchronized Outbox Get(Context context) {
+		if (instance == null) {
+			instance = new Outbox(LocalStore.Get(context), MainThreadExecutor.Get());
+			instance.Flush();
+		}
+		return instance;
+	}
+
+	public synchronized void Subscribe(Listener listener) {
+		if (!listeners.contains(listener)) listeners.add(listener);
+	}
+
+	public synchronized void Unsubscribe(Listener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Creates a task. It is stored right away under a temporary negative id, which later changes may refer to.
+	 * @param task The group, title, description and priority of the task.
+	 * @param stored Receives the change on the main thread once the task is stored, or null.
+	 */
+	public void CreateTask(final Task task, Call.Callback<Mutation> stored) {
+		final JSONObject json;
+		try {
+			json = new JSONObject()
+					.put("group", task.getGroup())
+					.put("title", task.getTitle())
+					.put("description", task.getDescription())
+					.put("priority", task.getPriority());
+		} catch (JSONException e) {
+			// Won't happen
+			throw new RuntimeException(e);
+		}
+		Enqueue(new Change() {
+			@Override
+			public Mutation Apply() {
+				task.setId(store.NextTemporaryTaskId());
+				task.setCreated(System.currentTimeMillis() / 1000);
+				store.PutTask(task);
+				return new Mutation(-1, NewKey(), Mutation.CREATE_TASK, task.getId(), task.getGroup(), json.toString(), 0);
+			}
+		}, stored);
+	}
+
+	/**
+	 * Deletes a task. It is removed from the store right away.
+	 */
+	public void DeleteTask(final int task, Call.Callback<Mutation> stored) {
+		Enqueue(new Change() {
+			@Override
+			public Mutation Apply() {
+				Task deleted = store.GetTask(task);
+				store.DeleteTask(task);
+				return new Mutation(-1, NewKey(), Mutation.DELETE_TASK, task, deleted == null ? -1 : deleted.getGroup(), null, 0);
+			}
+		}, stored);
+	}
+
+	/**
+	 * Enrolls the user in a task. The enrollment is stored right away.
+	 */
+	public void Enroll(final int task, Call.Callback<Mutation> stored) {
+		Enqueue(new Change() {
+			@Override
+			public Mutation Apply() {
+				String owner = store.GetOwner();
+				if (owner != null && FindEnrollment(task, owner) == null) {
+					Enrollment enrollment = new Enrollment();
+					enrollment.setUsername(owner);
+					enrollment.setStart(System.currentTimeMillis() / 1000);
+					enrollment.setEnd(0);
+					store.PutEnrollment(task, enrollment);
+				}
+				return new Mutation(-1, NewKey(), Mutation.ENROLL, task, -1, null, 0);
+			}
+		}, stored);
+	}
+
+	/**
+	 * Marks the user's enrollment in a task as finished. The end is stored right away.
+	 */
+	public void Finish(final int task, Call.Callback<Mutation> stored) {
+		Enqueue(new Change() {
+			@Override
+			public Mutation Apply() {
+				String owner = store.GetOwner();
+				Enrollment enrollment = owner == null ? null : FindEnrollment(task, owner);
+				if (enrollment != null && !enrollment.hasEnded()) {
+					enrollment.setEnd(System.currentTimeMillis() / 1000);
+					store.PutEnrollment(task, enrollment);
+				}
+				return new Mutation(-1, NewKey(), Mutation.FINISH, task, -1, null, 0);
+			}
+		}, stored);
+	}
+
+	/**
+	 * Starts sending the outbox, unless it is waiting to retry.
+	 */
+	public void Flush() {
+		thread.execute(new Runnable() {
+			@Override
+			public void run() {
+				if (!retryScheduled) Send();
+			}
+		});
+	}
+
+	/**
+	 * Applies a change to the store and adds it to the outbox.
+	 */
+	private interface Change {
+		Mutation Apply();
+	}
+
+	private void Enqueue(final Change change, final Call.Callback<Mutation> stored) {
+		thread.execute(new Runnable() {
+			@Override
+			public void run() {
+				final Mutation mutation = change.Apply();
+				List<Mutation> dropped = new ArrayList<>();
+				boolean keep = Coalesce(store.GetMutations(), mutation, dropped);
+				store.PutMutations(dropped, keep ? mutation : null);
+
+				if (stored != null) callbacks.execute(new Runnable() {
+					@Override
+					public void run() {
+						stored.OnResult(mutation);
+					}
+				});
+				if (!retryScheduled) Send();
+			}
+		});
+	}
+
+	/**
+	 * Decides how a new change combines with the changes that weren't sent yet. Changes that may already have reached
+	 * the server are never dropped.
+	 * @param pending The changes in the outbox, in order.
+	 * @param added The new change.
+	 * @param dropped Receives the pending changes that the new change makes unnecessary.
+	 * @return False if the new change doesn't have to be sent at all.
+	 */
+	static boolean Coalesce(List<Mutation> pending, Mutation added, List<Mutation> dropped) {
+		List<Mutation> same = new ArrayList<>();
+		for (Mutation mutation : pending) {
+			if (mutation.Task == added.Task) same.add(mutation);
+		}
+
+		switch (added.Type) {
+			case Mutation.DELETE_TASK:
+				for (Mutation mutation : same) {
+					// The task never reached the server, so neither it nor anything done to it has to be sent
+					if (mutation.Type.equals(Mutation.CREATE_TASK) && !mutation.IsAttempted()) {
+						for (Mutation other : same) {
+							if (!other.IsAttempted()) dropped.add(other);
+						}
+						return false;
+					}
+				}
+				for (Mutation mutation : same) {
+					if ((mutation.Type.equals(Mutation.ENROLL) || mutation.Type.equals(Mutation.FINISH)) && !mutation.IsAttempted())
+						dropped.add(mutation);
+				}
+				return true;
+			case Mutation.ENROLL:
+			case Mutation.FINISH:
+				for (Mutation mutation : same) {
+					// The same change is already waiting, or the task is about to be deleted anyway
+					if (mutation.Type.equals(added.Type) || mutation.Type.equals(Mutation.DELETE_TASK)) return false;
+				}
+				return true;
+			default:
+				return true;
+		}
+	}
+
+	/**
+	 * Decides what to do with a change after the server answered it.
+	 */
+	static Outcome Classify(Mutation mutation, Response response) {
+		int status = response.StatusCode;
+		if (response.IsSuccessful()) return Outcome.SENT;
+		// No answer, or a failure that may go away
+		if (status == -1 || response.IsServerError() || status == 408 || status == 429) return Outcome.RETRY;
+
+		switch (mutation.Type) {
+			case Mutation.CREATE_TASK:
+				// The first attempt with the same key is still being processed
+				if (status == 409) return Outcome.RETRY;
+				break;
+			case Mutation.DELETE_TASK:
+				// The task is already gone, e.g. because an earlier attempt did arrive
+				if (status == 400) return Outcome.SENT;
+				break;
+			case Mutation.ENROLL:
+			case Mutation.FINISH:
+				// Already enrolled or finished, e.g. because an earlier attempt did arrive
+				if (status == 409) return Outcome.SENT;
+				break;
+		}
+		return Outcome.REJECTED;
+	}
+
+	/**
+	 * Sends the outbox in order until it is empty or a change has to be retried. Runs on the outbox thread.
+	 */
+	private void Send() {
+		List<Mutation> pending = store.GetMutations();
+		while (!pending.isEmpty()) {
+			Mutation mutation = pending.get(0);
+			store.CountAttempt(mutation);
+			Response response = Execute(mutation);
+
+			Outcome outcome = Classify(mutation, response);
+			if (outcome == Outcome.RETRY) {
+				retryScheduled = true;
+				thread.schedule(new Runnable() {
+					@Override
+					public void run() {
+						retryScheduled = false;
+						Send();
+					}
+				}, GetDelay(failures++), TimeUnit.MILLISECONDS);
+				return;
+			}
+			failures = 0;
+
+			if (outcome == Outcome.SENT) OnSent(mutation, response);
+			else OnRejected(mutation, response.StatusCode);
+			pending = store.GetMutations();
+		}
+	}
+
+	/**
+	 * @return The time to wait before the next attempt, which doubles with every failure and is randomized so that
+	 * clients don't all retry at the same moment after an outage.
+	 */
+	private long GetDelay(int failures) {
+		long delay = Math.min(MAX_RETRY, MIN_RETRY << Math.min(failures, 16));
+		return delay / 2 + (long) (random.nextDouble() * (delay / 2));
+	}
+
+	private Response Execute(Mutation mutation) {
+		// Changes to a task that could not be created are dropped along with it, so this won't happen
+		if (mutation.Task < 0 && !mutation.Type.equals(Mutation.CREATE_TASK)) return new Response(null, 400, "Bad Request");
+
+		String body;
+		try {
+			body = mutation.Data != null ? mutation.Data : new JSONObject().put("task", mutation.Task).toString();
+		} catch (JSONException e) {
+			// Won't happen
+			throw new RuntimeException(e);
+		}
+		switch (mutation.Type) {
+			case Mutation.CREATE_TASK: return Connection.Send("task", "POST", body, mutation.Key);
+			case Mutation.DELETE_TASK: return Connection.Send("task", "DELETE", body, mutation.Key);
+			case Mutation.ENROLL: return Connection.Send("taskenroll", "POST", body, mutation.Key);
+			case Mutation.FINISH: return Connection.Send("taskenroll", "PATCH", body, mutation.Key);
+			default: throw new IllegalArgumentException("Unknown mutation type " + mutation.Type);
+		}
+	}
+
+	private void OnSent(final Mutation mutation, Response response) {
+		int taskId = mutation.Task;
+		if (mutation.Type.equals(Mutation.CREATE_TASK)) {
+			String id = response.GetString("id");
+			if (id != null) {
+				taskId = Integer.parseInt(id);
+				// Also moves the changes that are waiting for the task over to its real id
+				store.ReplaceTaskId(mutation.Task, taskId);
+			}
+		}
+		store.PutMutations(Collections.singletonList(mutation), null);
+
+		final int sentId = taskId;
+		for (final Listener listener : GetListeners()) {
+			callbacks.execute(new Runnable() {
+				@Override
+				public void run() {
+					listener.OnSent(mutation, sentId);
+				}
+			});
+		}
+	}
+
+	private void OnRejected(final Mutation mutation, final int statusCode) {
+		List<Mutation> dropped = new ArrayList<>();
+		dropped.add(mutation);
+		switch (mutation.Type) {
+			case Mutation.CREATE_TASK:
+				// Nothing that was done to the task can be sent without it
+				for (Mutation other : store.GetMutations()) {
+					if (other.Task == mutation.Task) dropped.add(other);
+				}
+				store.DeleteTask(mutation.Task);
+				break;
+			case Mutation.DELETE_TASK:
+				// Load the tasks of the group in full again, which brings the task back
+				if (mutation.Group >= 0) store.PutTaskCursor(mutation.Group, -1);
+				Connection.Invalidate("task");
+				break;
+			case Mutation.ENROLL:
+			case Mutation.FINISH:
+				// Load the actual enrollments before they are shown again
+				store.ForgetEnrollments(mutation.Task);
+				Connection.Invalidate("taskenroll");
+				break;
+		}
+		store.PutMutations(dropped, null);
+
+		for (final Listener listener : GetListeners()) {
+			callbacks.execute(new Runnable() {
+				@Override
+				public void run() {
+					listener.OnRejected(mutation, statusCode);
+				}
+			});
+		}
+	}
+
+	private synchronized List<Listener> GetListeners() {
+		return new ArrayList<>(listeners);
+	}
+
+	private Enrollment FindEnrollment(int task, String username) {
+		List<Enrollment> enrollments = store.GetEnrollments(task);
+		if (enrollments == null) return null;
+		for (Enrollment enrollment : enrollments) {
+			if (enrollment.getUsername().equals(username)) return enrollment;
+		}
+		return null;
+	}
+
+	private static String NewKey() {
+		return UUID.randomUUID().toString();
+	}
+}
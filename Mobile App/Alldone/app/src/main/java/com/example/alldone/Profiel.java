@@ -3,6 +3,7 @@ package com.example.alldone;
 import android.content.Intent;
 import android.os.Bundle;
 import android.view.MenuItem;
+import android.view.View;
 import android.widget.ImageView;
 import android.widget.TextView;
 import android.widget.Toast;
@@ -68,6 +69,14 @@ public class Profiel extends AppCompatActivity implements NavigationView.OnNavig
 
         ImageView img= (ImageView) findViewById(R.id.profilePic);
         img.setImageResource(R.drawable.no_user);
+        // Hidden entry to the network numbers, for bug reports
+        img.setOnLongClickListener(new View.OnLongClickListener() {
+            @Override
+            public boolean onLongClick(View v) {
+                startActivity(new Intent(getApplicationContext(), Statistieken.class));
+                return true;
+            }
+        });
 
         nameText.setText(name);
         jobText.setText(job);
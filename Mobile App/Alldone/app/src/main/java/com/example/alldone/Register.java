@@ -5,6 +5,7 @@ import androidx.appcompat.app.AppCompatActivity;
 import android.app.ProgressDialog;
 import android.content.Intent;
 import android.os.Bundle;
+import android.util.Log;
 import android.view.View;
 import android.widget.Button;
 import android.widget.EditText;
@@ -25,6 +26,7 @@ import java.net.URL;
 import android.widget.EditText;
 
 public class Register extends AppCompatActivity implements View.OnClickListener {
+    private static final String TAG = "Register";
 
     String msg = "";
 
@@ -63,12 +65,10 @@ public class Register extends AppCompatActivity implements View.OnClickListener
 
                     jObj.toString();
                     final JSONObject finalJObj = jObj;
-                    Thread e = new Thread(new Runnable() {
+                    Connection.SendAsync("register", "POST", finalJObj.toString()).Then(new Call.Callback<Response>() {
                         @Override
-                        public void run() {
-                        Response response = Connection.Send("register", "POST", finalJObj.toString());
-
-                            response.PrettyPrint();
+                        public void OnResult(Response response) {
+                            Log.d(TAG, response.ToPrettyString());
 
                             switch(response.StatusCode){
                                 case 201:
@@ -84,16 +84,10 @@ public class Register extends AppCompatActivity implements View.OnClickListener
                                     break;
                             }
 
-                            Register.this.runOnUiThread(new Runnable() {
-                                @Override
-                                public void run() {
-                                    Toast.makeText(getApplicationContext(), msg,Toast.LENGTH_SHORT).show();
-                                }
-                            });
+                            Toast.makeText(getApplicationContext(), msg,Toast.LENGTH_SHORT).show();
                             //NetworkThread(finalJObj);
                         }
                     });
-                    e.start();
                 } else {
                     Toast.makeText(getApplicationContext(), "De ingevoerde wachtwoorden zijn niet hetzelfde.",Toast.LENGTH_SHORT).show();
                 }
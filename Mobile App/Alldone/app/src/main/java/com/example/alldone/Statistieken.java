@@ -0,0 +1,113 @@
+package com.example.alldone;
+
+import android.content.Context;
+import android.os.Bundle;
+import android.util.Log;
+import android.view.View;
+import android.widget.Button;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.appcompat.app.AppCompatActivity;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.concurrent.Callable;
+
+/**
+ * A debug screen with the latencies, sizes and status codes of the requests to every endpoint. The numbers can be
+ * saved to a file, so they can be attached to a report.
+ */
+public class Statistieken extends AppCompatActivity {
+    private static final String TAG = "Statistieken";
+    private static final String DUMP_FILE = "metrics.txt";
+
+    private TextView metricsText;
+    // The calls of this screen, cancelled once it is destroyed
+    private final CallScope calls = new CallScope();
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_statistieken);
+
+        metricsText = findViewById(R.id.metrics);
+
+        Button refreshBtn = findViewById(R.id.refreshBtn);
+        refreshBtn.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                showMetrics();
+            }
+        });
+        Button saveBtn = findViewById(R.id.saveBtn);
+        saveBtn.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                saveMetrics();
+            }
+        });
+        Button resetBtn = findViewById(R.id.resetBtn);
+        resetBtn.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                Connection.metrics.Reset();
+                showMetrics();
+            }
+        });
+
+        showMetrics();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        calls.Cancel();
+    }
+
+    private void showMetrics() {
+        StringWriter writer = new StringWriter();
+        Connection.metrics.Dump(writer);
+        metricsText.setText(writer.toString());
+    }
+
+    /**
+     * Writes the numbers to a file on an I/O thread, and tells where it is.
+     */
+    private void saveMetrics() {
+        final File file = getDumpFile(getApplicationContext());
+        calls.Add(Call.Submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                try {
+                    Connection.metrics.Dump(file);
+                    return true;
+                } catch (IOException e) {
+                    // The toast tells the user, and the failure shows up as a row of its own on this screen
+                    Log.w(TAG, "Could not save the metrics to " + file, e);
+                    Connection.metrics.Get(DUMP_FILE).CountError(e);
+                    return false;
+                }
+            }
+        }).Then(new Call.Callback<Boolean>() {
+            @Override
+            public void OnResult(Boolean saved) {
+                if (saved) {
+                    Toast.makeText(getApplicationContext(), "Opgeslagen in " + file.getPath(), Toast.LENGTH_LONG).show();
+                } else {
+                    Toast.makeText(getApplicationContext(), "Iets ging verkeerd. Probeer het later nog een keer.", Toast.LENGTH_LONG).show();
+                }
+            }
+        }));
+    }
+
+    /**
+     * @return The file that the numbers are saved to. It is in the external files of the app when there are any, so
+     * it can be copied off the device without root.
+     */
+    static File getDumpFile(Context context) {
+        File dir = context.getExternalFilesDir(null);
+        return new File(dir == null ? context.getFilesDir() : dir, DUMP_FILE);
+    }
+}
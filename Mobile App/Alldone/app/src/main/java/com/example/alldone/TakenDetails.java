@@ -2,7 +2,6 @@ package com.example.alldone;
 
 import android.content.Context;
 import android.content.Intent;
-import android.os.AsyncTask;
 import android.os.Bundle;
 import android.view.MenuItem;
 import android.widget.Button;
@@ -28,12 +27,17 @@ import org.apache.http.client.entity.UrlEncodedFormEntity;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.impl.client.DefaultHttpClient;
 import org.apache.http.message.BasicNameValuePair;
-import org.json.JSONArray;
+
+import com.example.alldone.model.Enrollment;
+import com.example.alldone.store.LocalStore;
+import com.example.alldone.store.Mutation;
+
 import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 public class TakenDetails extends AppCompatActivity implements NavigationView.OnNavigationItemSelectedListener {
     private DrawerLayout mDrawerLayout;
@@ -51,11 +55,15 @@ public class TakenDetails extends AppCompatActivity implements NavigationView.On
     private ViewPager viewpager;
 
     private UsersTab userFragment;
+    private boolean statusShown;
+    // Set while this screen deletes the task itself, so the pushed deletion isn't reported twice
+    private boolean deleting;
+    // The calls of this screen, cancelled once it is destroyed
+    private final CallScope calls = new CallScope();
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
-        GetStatus_Task.view = TakenDetails.this;
 
         setContentView(R.layout.activity_taken_details2);
 
@@ -110,7 +118,7 @@ public class TakenDetails extends AppCompatActivity implements NavigationView.On
         deleteBtn.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
-                new DeleteTask().execute();
+                deleteTask();
             }
         });
         editBtn.setOnClickListener(new View.OnClickListener() {
@@ -127,84 +135,190 @@ public class TakenDetails extends AppCompatActivity implements NavigationView.On
         });
     }
 
-    class DeleteTask extends AsyncTask<Void, Void, Response> {
+    @Override
+    protected void onStart() {
+        super.onStart();
+        EventStream.Get(getApplicationContext()).Subscribe(events);
+        Outbox.Get(getApplicationContext()).Subscribe(changes);
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        EventStream.Get(getApplicationContext()).Unsubscribe(events);
+        Outbox.Get(getApplicationContext()).Unsubscribe(changes);
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        calls.Cancel();
+    }
+
+    /**
+     * Updates the status as soon as anyone enrolls in or finishes the task, and leaves once it is deleted.
+     */
+    private final EventStream.Listener events = new EventStream.Listener() {
         @Override
-        protected Response doInBackground(Void... voids) {
-            try {
-                JSONObject json = new JSONObject()
-                        .put("task", id);
-                return Connection.Send("task", "DELETE", json.toString());
-            } catch (JSONException e) {
-                // Won't happen
-                throw new RuntimeException(e);
+        public void OnEvent(EventStream.Event event) {
+            switch (event.Type) {
+                case EventStream.Event.TASK:
+                    if (event.TaskId != id || !event.Deleted || deleting) return;
+                    Toast.makeText(getApplicationContext(), "Deze taak is verwijderd.", Toast.LENGTH_LONG).show();
+                    finish();
+                    break;
+                case EventStream.Event.ENROLLMENT:
+                    if (event.TaskId == id && event.Enrollments != null) showStatus(event.Enrollments);
+                    break;
+                case EventStream.Event.RESET:
+                    retrieveStatus();
+                    break;
             }
         }
+    };
 
+    /**
+     * Shows the actual status once an enrollment or end that was made on this screen is sent or refused.
+     */
+    private final Outbox.Listener changes = new Outbox.Listener() {
         @Override
-        protected void onPostExecute(Response response) {
-            if (response.IsSuccessful() || response.StatusCode == 400) {
+        public void OnSent(Mutation mutation, int taskId) {
+            // A task created offline got its real id
+            if (mutation.Task == id) id = taskId;
+            boolean enrollment = mutation.Type.equals(Mutation.ENROLL) || mutation.Type.equals(Mutation.FINISH);
+            // The new status is pushed over the event stream while it is open
+            if (taskId == id && enrollment && !EventStream.Get(getApplicationContext()).IsConnected()) retrieveStatus();
+        }
+
+        @Override
+        public void OnRejected(Mutation mutation, int statusCode) {
+            if (mutation.Task != id) return;
+            Toast.makeText(getApplicationContext(), getRejectionText(mutation, statusCode), Toast.LENGTH_LONG).show();
+            if (mutation.Type.equals(Mutation.CREATE_TASK)) finish();
+            else retrieveStatus();
+        }
+    };
+
+    private void deleteTask() {
+        deleting = true;
+        // The task is removed right away and the deletion is sent in the background, so it works while offline
+        Outbox.Get(getApplicationContext()).DeleteTask(id, new Call.Callback<Mutation>() {
+            @Override
+            public void OnResult(Mutation mutation) {
                 Toast.makeText(getApplicationContext(), "Taak verwijderd!", Toast.LENGTH_LONG).show();
                 Intent intent = new Intent(getApplicationContext(), Takenlijst.class);
                 intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
                 intent.addFlags(Intent.FLAG_ACTIVITY_CLEAR_TASK);
                 startActivity(intent);
-            } else {
-                if (response.StatusCode == 401) {
-                    Toast.makeText(getApplicationContext(), "Je bent niet bevoegd om deze taak te verwijderen.", Toast.LENGTH_LONG).show();
-                } else {
-                    Toast.makeText(getApplicationContext(), "Iets ging verkeerd. Probeer het later nog een keer.", Toast.LENGTH_LONG).show();
-                }
             }
+        });
+    }
+
+    /**
+     * @return The message to show when the server refused a change that was already shown as done.
+     */
+    static String getRejectionText(Mutation mutation, int statusCode) {
+        switch (mutation.Type) {
+            case Mutation.CREATE_TASK:
+                return "De taak kon niet worden aangemaakt.";
+            case Mutation.DELETE_TASK:
+                if (statusCode == 401) return "Je bent niet bevoegd om deze taak te verwijderen.";
+                break;
+            case Mutation.FINISH:
+                if (statusCode == 400) return "Je bent nog niet ingeschreven voor deze taak!";
+                break;
         }
+        return "Iets ging verkeerd. Probeer het later nog een keer.";
     }
 
-    public static class GetStatus_Task extends AsyncTask<Void, Void, Response> {
-        public static TakenDetails view;
-        public UsersTab userFragment;
+    /**
+     * Shows the stored enrollments of the task, e.g. right after they were changed on this screen.
+     */
+    public void showStoredStatus() {
+        final int task = id;
+        final LocalStore store = LocalStore.Get(getApplicationContext());
+        calls.Add(Call.Submit(new Callable<List<Enrollment>>() {
+            @Override
+            public List<Enrollment> call() {
+                return store.GetEnrollments(task);
+            }
+        }).Then(new Call.Callback<List<Enrollment>>() {
+            @Override
+            public void OnResult(List<Enrollment> enrollments) {
+                if (enrollments != null) showStatus(enrollments);
+            }
+        }));
+    }
 
-        @Override
-        protected Response doInBackground(Void... voids) {
-            try {
+    /**
+     * Shows the stored enrollments of the task right away and then revalidates them with the server.
+     */
+    public void retrieveStatus() {
+        final int task = id;
+        final LocalStore store = LocalStore.Get(getApplicationContext());
+        calls.Add(Call.Submit(new Callable<List<Enrollment>>() {
+            @Override
+            public List<Enrollment> call() {
+                return store.GetEnrollments(task);
+            }
+        }).Then(new Call.Callback<List<Enrollment>>() {
+            @Override
+            public void OnResult(List<Enrollment> cached) {
+                if (cached != null) showStatus(cached);
+            }
+        }).Map(new Call.Transform<List<Enrollment>, List<Enrollment>>() {
+            @Override
+            public List<Enrollment> Apply(List<Enrollment> cached) throws JSONException {
+                // A task that was created offline is unknown to the server until it is sent
+                if (task < 0) return cached == null ? new ArrayList<Enrollment>() : null;
                 JSONObject json = new JSONObject()
-                        .put("task", view.id);
-                return Connection.Send("taskenroll", "GET", json.toString());
-            } catch (JSONException e) {
-                // WONT HAPPEN GODDAMN
-                throw new RuntimeException(e);
+                        .put("task", task);
+                List<Enrollment> enrollments = getEnrollments(Connection.Send("taskenroll", "GET", json.toString()));
+                if (enrollments == null) return null;
+                // Only update the status if something changed since it was shown
+                if (!store.PutEnrollments(task, enrollments) && cached != null) return null;
+                return enrollments;
             }
-        }
-
-        @Override
-        protected void onPostExecute(Response response) {
-            if (response.IsSuccessful()) {
-                TextView status = view.findViewById(R.id.users);
-
-                if (response.StatusCode == 200) {
-                    try {
-                        JSONArray responseJson = response.GetJSON().getJSONArray("results");
-
-                        boolean areAllDone = true;
-                        final JSONObject[] elements = new JSONObject[responseJson.length()];
-                        for (int i = 0; i < responseJson.length(); i++) {
-                            elements[i] = responseJson.getJSONObject(i);
-                            if (!elements[i].has("End"))
-                                areAllDone = false;
-                        }
-
-                        userFragment.UpdateList(elements);
-
-                        if (areAllDone) status.setText("Done");
-                        else status.setText("In progress");
-                    } catch (JSONException e) {
-                        throw new RuntimeException(e);
-                    }
-                } else {
-                    status.setText("To-do");
+        }).Then(new Call.Callback<List<Enrollment>>() {
+            @Override
+            public void OnResult(List<Enrollment> enrollments) {
+                if (enrollments != null) {
+                    showStatus(enrollments);
+                } else if (!statusShown) {
+                    // Nothing could be shown at all
+                    Toast.makeText(getApplicationContext(), "Iets ging verkeerd. Probeer het later nog een keer.", Toast.LENGTH_LONG).show();
                 }
-            } else {
-                Toast.makeText(view.getApplicationContext(), "Iets ging verkeerd. Probeer het later nog een keer.", Toast.LENGTH_LONG).show();
             }
+        }));
+    }
+
+    private void showStatus(List<Enrollment> enrollments) {
+        statusShown = true;
+        TextView status = findViewById(R.id.users);
+        userFragment.UpdateList(enrollments);
+        status.setText(getStatusText(enrollments));
+    }
+
+    /**
+     * @return The enrollments in a response of the taskenroll endpoint, or null if the request failed.
+     */
+    static List<Enrollment> getEnrollments(Response response) {
+        // 204 means that nobody is enrolled yet
+        if (response.StatusCode == 204) return new ArrayList<>();
+        return response.IsSuccessful() ? response.GetEnrollments() : null;
+    }
+
+    /**
+     * @return The status of a task with the given enrollments.
+     */
+    static String getStatusText(List<Enrollment> enrollments) {
+        if (enrollments.isEmpty()) return "To-do";
+
+        for (Enrollment enrollment : enrollments) {
+            if (!enrollment.hasEnded())
+                return "In progress";
         }
+        return "Done";
     }
 
     @Override
@@ -259,9 +373,7 @@ public class TakenDetails extends AppCompatActivity implements NavigationView.On
         userFragment = new UsersTab();
         viewPagerAdapter.addFragment(userFragment, "Ingeschreven");
 
-        GetStatus_Task task = new GetStatus_Task();
-        task.userFragment = userFragment;
-        task.execute();
+        retrieveStatus();
 
 //        viewPagerAdapter.addFragment(new CommentsTab(), "Opmerkingen");
         viewpager.setAdapter(viewPagerAdapter);
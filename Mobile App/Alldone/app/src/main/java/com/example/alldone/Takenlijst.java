@@ -2,19 +2,12 @@ package com.example.alldone;
 
 import android.content.Context;
 import android.content.Intent;
-import android.os.AsyncTask;
 import android.os.Bundle;
 
 import androidx.annotation.NonNull;
-import androidx.annotation.Nullable;
 
-import android.view.LayoutInflater;
 import android.view.MenuItem;
 import android.view.View;
-import android.view.ViewGroup;
-import android.widget.AdapterView;
-import android.widget.ArrayAdapter;
-import android.widget.ListView;
 import android.widget.TextView;
 import android.widget.Toast;
 
@@ -22,21 +15,48 @@ import androidx.appcompat.app.ActionBarDrawerToggle;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.drawerlayout.widget.DrawerLayout;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
+import com.example.alldone.model.Enrollment;
+import com.example.alldone.model.Task;
+import com.example.alldone.store.LocalStore;
+import com.example.alldone.store.Mutation;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 import com.google.android.material.navigation.NavigationView;
 
-import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
 public class Takenlijst extends AppCompatActivity implements NavigationView.OnNavigationItemSelectedListener {
     private DrawerLayout mDrawerLayout;
     private ActionBarDrawerToggle mToggle;
 
+    // The amount of tasks left below the last visible one at which the next page starts loading
+    private static final int PREFETCH_DISTANCE = 10;
+
     public static int id;
 
-    ListView listView;
+    RecyclerView listView;
+    LinearLayoutManager layoutManager;
+    MyAdapter adapter;
+    TaskPager pager;
+    // The calls of this screen, cancelled once it is destroyed
+    final CallScope calls = new CallScope();
+    // Every loaded task. The adapter is handed a copy whenever a page is added.
+    final List<Task> tasks = new ArrayList<>();
+    // The tasks that were created on this device and aren't sent yet, shown above the loaded ones
+    final List<Task> pending = new ArrayList<>();
+    boolean tasksShown;
+    // The status text of each shown task, by task id
+    final Map<Integer, String> statuses = new HashMap<>();
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -53,6 +73,10 @@ public class Takenlijst extends AppCompatActivity implements NavigationView.OnNa
         id = intent.getIntExtra("id", id);
 
         listView = findViewById(R.id.lv);
+        layoutManager = new LinearLayoutManager(this);
+        listView.setLayoutManager(layoutManager);
+        adapter = new MyAdapter();
+        listView.setAdapter(adapter);
 
         FloatingActionButton fab = findViewById(R.id.fab);
         fab.setOnClickListener(new View.OnClickListener() {
@@ -67,123 +91,316 @@ public class Takenlijst extends AppCompatActivity implements NavigationView.OnNa
         fab.setOnLongClickListener(new View.OnLongClickListener() {
             @Override
             public boolean onLongClick(View v) {
-                new GetShareCode_Task().execute();
+                getShareCode();
                 return true;
             }
         });
 
-        class RetrieveTasks extends AsyncTask<String, Void, Response> {
+        System.out.println("Getting tasklists from server");
+        retrieveTasks();
+
+        // Also called after every layout, so pages that don't fill the screen are followed up as well
+        listView.addOnScrollListener(new RecyclerView.OnScrollListener() {
             @Override
-            protected Response doInBackground(String... url) {
-                try {
-                    JSONObject json = new JSONObject()
-                            .put("group", id);
-                    return Connection.Send("task", "GET", json.toString());
-                } catch (JSONException e) {
-                    throw new RuntimeException(e);
-                }
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                loadMoreIfNeeded();
             }
+        });
 
+        adapter.setOnItemClickListener(new DiffListAdapter.OnItemClickListener<Task>() {
             @Override
-            protected void onPostExecute(Response response) {
-                try {
-                    JSONArray responseJson = response.GetJSON().getJSONArray("results");
-
-                    final JSONObject[] elements = new JSONObject[responseJson.length()];
-                    for (int i = 0; i < responseJson.length(); i++) {
-                        elements[i] = responseJson.getJSONObject(i);
-                    }
-
-                    MyAdapter adapter = new MyAdapter(Takenlijst.this, elements);
-                    listView.setAdapter(adapter);
-                } catch (JSONException e) {
-                    // Won't happen
-                    throw new RuntimeException(e);
-                }
+            public void onItemClick(Task task, int position) {
+                Context context = Takenlijst.this;
+
+                Intent intent = new Intent(context , TakenDetails.class);
+                intent.putExtra("id", task.getId());
+                intent.putExtra("title", task.getTitle());
+                intent.putExtra("description", task.getDescription());
+                intent.putExtra("priority", task.getPriority());
+                context.startActivity(intent);
             }
-        }
+        });
+    }
 
-        System.out.println("Getting tasklists from server");
-        new RetrieveTasks().execute();
+    /**
+     * Starts loading the tasks of the group one page at a time. The first page is shown from the store right away
+     * and revalidated with the server; later pages are loaded as the list is scrolled near its end.
+     */
+    private void retrieveTasks() {
+        retrievePendingTasks();
+        if (pager != null) pager.Cancel();
+        pager = new TaskPager(id, LocalStore.Get(getApplicationContext()), new TaskPager.Listener() {
+            @Override
+            public void OnPage(int after, List<Task> tasks) {
+                showTasks(after, tasks);
+                retrieveStatuses(tasks);
+            }
 
-        listView.setOnItemClickListener(new AdapterView.OnItemClickListener() {
             @Override
-            public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
-                Context context = Takenlijst.this;
-                JSONObject task = ((MyAdapter)parent.getAdapter()).Tasks[position];
-
-                try {
-                    Intent intent = new Intent(context , TakenDetails.class);
-                    intent.putExtra("id", task.getInt("Id"));
-                    intent.putExtra("title", task.getString("Title"));
-                    intent.putExtra("description", task.optString("Description"));
-                    intent.putExtra("priority", task.getInt("Priority"));
-                    context.startActivity(intent);
-                } catch (JSONException e) {
-                    // WON'T HAPPEN
-                    throw new RuntimeException(e);
-                }
+            public void OnError(int after) {
+                // Only complain if nothing could be shown at all
+                if (!tasksShown)
+                    Toast.makeText(getApplicationContext(), "Iets ging verkeerd. Probeer het later nog een keer.", Toast.LENGTH_LONG).show();
             }
         });
+        pager.LoadNext();
     }
 
-    class GetShareCode_Task extends AsyncTask<Void, Void, Response> {
+    /**
+     * Shows the tasks of the group that are still waiting in the outbox.
+     */
+    private void retrievePendingTasks() {
+        final int group = id;
+        final LocalStore store = LocalStore.Get(getApplicationContext());
+        calls.Add(Call.Submit(new Callable<List<Task>>() {
+            @Override
+            public List<Task> call() {
+                return store.GetPendingTasks(group);
+            }
+        }).Then(new Call.Callback<List<Task>>() {
+            @Override
+            public void OnResult(List<Task> result) {
+                pending.clear();
+                pending.addAll(result);
+                showList();
+            }
+        }));
+    }
+
+    /**
+     * Loads the next page once the last shown task is close to the end of the list.
+     */
+    private void loadMoreIfNeeded() {
+        if (!tasksShown || !pager.HasMore() || pager.IsLoading()) return;
+        int lastVisible = layoutManager.findLastVisibleItemPosition();
+        if (lastVisible >= pending.size() + tasks.size() - PREFETCH_DISTANCE) pager.LoadNext();
+    }
+
+    @Override
+    protected void onStart() {
+        super.onStart();
+        EventStream.Get(getApplicationContext()).Subscribe(events);
+        Outbox.Get(getApplicationContext()).Subscribe(changes);
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        EventStream.Get(getApplicationContext()).Unsubscribe(events);
+        Outbox.Get(getApplicationContext()).Unsubscribe(changes);
+    }
+
+    /**
+     * Applies the changes that the server pushes to the shown list, instead of loading it again.
+     */
+    private final EventStream.Listener events = new EventStream.Listener() {
         @Override
-        protected Response doInBackground(Void... voids) {
-            try {
-                JSONObject json = new JSONObject()
-                        .put("group", id);
-                return Connection.Send("groupsharing", "GET", json.toString());
-            } catch (JSONException e) {
-                throw new RuntimeException(e);
+        public void OnEvent(EventStream.Event event) {
+            switch (event.Type) {
+                case EventStream.Event.TASK:
+                    if (event.Group != id || !tasksShown) return;
+                    if (event.Deleted) removeTask(event.TaskId);
+                    // New tasks have the highest id, so they belong after the last page. Until that page is
+                    // loaded they will show up with it.
+                    else if (event.Task != null && !pager.HasMore()) addTask(event.Task);
+                    break;
+                case EventStream.Event.ENROLLMENT:
+                    if (event.Group != id || event.Enrollments == null) return;
+                    Map<Integer, String> status = new HashMap<>();
+                    status.put(event.TaskId, TakenDetails.getStatusText(event.Enrollments));
+                    showStatuses(status);
+                    break;
+                case EventStream.Event.RESET:
+                    retrieveTasks();
+                    break;
             }
         }
+    };
 
+    /**
+     * Moves tasks that were created offline into the list once they are sent, and undoes changes that were refused.
+     */
+    private final Outbox.Listener changes = new Outbox.Listener() {
         @Override
-        protected void onPostExecute(Response response) {
-            if (response.IsSuccessful()) {
-                JSONObject responseJson = response.GetJSON();
-                showMessageBox(responseJson.optString("code"));
-                setClipboard(responseJson.optString("code"));
-                Toast.makeText(getApplicationContext(), "De code is gekopieerd naar het klembord!", Toast.LENGTH_LONG).show();
-            } else if (response.StatusCode == 403) {
-                Toast.makeText(getApplicationContext(), "Je bent niet gemachtigd om dit te doen.", Toast.LENGTH_LONG).show();
-            } else {
-                Toast.makeText(getApplicationContext(), "Iets ging verkeerd. Probeer het later nog een keer.", Toast.LENGTH_LONG).show();
+        public void OnSent(Mutation mutation, int taskId) {
+            if (!mutation.Type.equals(Mutation.CREATE_TASK)) return;
+            for (int i = 0; i < pending.size(); i++) {
+                Task task = pending.get(i);
+                if (task.getId() != mutation.Task) continue;
+                pending.remove(i);
+                task.setId(taskId);
+                // Like pushed tasks, it shows up with the last page if that isn't loaded yet
+                if (!pager.HasMore()) addTask(task);
+                else showList();
+                return;
+            }
+        }
+
+        @Override
+        public void OnRejected(Mutation mutation, int statusCode) {
+            if (mutation.Group != id && mutation.Group != -1) return;
+            Toast.makeText(getApplicationContext(), TakenDetails.getRejectionText(mutation, statusCode), Toast.LENGTH_LONG).show();
+            if (mutation.Type.equals(Mutation.CREATE_TASK)) removeTask(mutation.Task);
+            // The deleted task is restored by loading the tasks again
+            else if (mutation.Type.equals(Mutation.DELETE_TASK)) retrieveTasks();
+        }
+    };
+
+    private void addTask(Task task) {
+        for (Task shown : tasks) {
+            if (shown.getId() == task.getId()) return;
+        }
+        tasks.add(task);
+        showList();
+    }
+
+    private void removeTask(int task) {
+        for (List<Task> list : Arrays.asList(pending, tasks)) {
+            for (int i = 0; i < list.size(); i++) {
+                if (list.get(i).getId() != task) continue;
+                list.remove(i);
+                statuses.remove(task);
+                showList();
+                return;
             }
         }
     }
 
-    class MyAdapter extends ArrayAdapter<JSONObject> {
+    /**
+     * Hands the adapter a copy of the pending tasks followed by the loaded ones.
+     */
+    private void showList() {
+        List<Task> shown = new ArrayList<>(pending);
+        shown.addAll(tasks);
+        adapter.submitList(shown);
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (pager != null) pager.Cancel();
+        calls.Cancel();
+    }
 
-        Context context;
-        JSONObject Tasks[];
+    /**
+     * Shows the stored status of a page of tasks right away and then revalidates all of them with a single batch.
+     */
+    private void retrieveStatuses(List<Task> page) {
+        final List<Integer> tasks = new ArrayList<>();
+        for (Task task : page) tasks.add(task.getId());
+        if (tasks.isEmpty()) return;
 
-        MyAdapter (Context c, JSONObject... tasks) {
-            super(c, R.layout.layout_takenlijst2, R.id.usernameText, tasks);
-            this.context = c;
-            this.Tasks = tasks;
+        final LocalStore store = LocalStore.Get(getApplicationContext());
+        calls.Add(Call.Submit(new Callable<Map<Integer, String>>() {
+            @Override
+            public Map<Integer, String> call() {
+                Map<Integer, String> cached = new HashMap<>();
+                for (int task : tasks) {
+                    List<Enrollment> enrollments = store.GetEnrollments(task);
+                    if (enrollments != null) cached.put(task, TakenDetails.getStatusText(enrollments));
+                }
+                return cached;
+            }
+        }).Then(new Call.Callback<Map<Integer, String>>() {
+            @Override
+            public void OnResult(Map<Integer, String> cached) {
+                showStatuses(cached);
+            }
+        }).Map(new Call.Transform<Map<Integer, String>, Map<Integer, String>>() {
+            @Override
+            public Map<Integer, String> Apply(Map<Integer, String> cached) throws JSONException {
+                Batch batch = new Batch();
+                for (int task : tasks) {
+                    JSONObject json = new JSONObject()
+                            .put("task", task);
+                    batch.Add("taskenroll", "GET", json.toString());
+                }
+                List<Response> responses = batch.Send();
+
+                Map<Integer, String> result = new HashMap<>();
+                for (int i = 0; i < tasks.size(); i++) {
+                    List<Enrollment> enrollments = TakenDetails.getEnrollments(responses.get(i));
+                    if (enrollments == null) continue;
+                    store.PutEnrollments(tasks.get(i), enrollments);
+                    result.put(tasks.get(i), TakenDetails.getStatusText(enrollments));
+                }
+                // Only update the list if something changed since it was shown
+                return result.equals(cached) ? null : result;
+            }
+        }).Then(new Call.Callback<Map<Integer, String>>() {
+            @Override
+            public void OnResult(Map<Integer, String> result) {
+                if (result != null) showStatuses(result);
+            }
+        }));
+    }
+
+    private void showStatuses(Map<Integer, String> result) {
+        statuses.putAll(result);
+        // Only rebind the rows whose status is new. Rows that aren't shown yet get it when they are bound.
+        List<Task> shown = adapter.getCurrentList();
+        for (int i = 0; i < shown.size(); i++) {
+            if (result.containsKey(shown.get(i).getId())) adapter.notifyItemChanged(i);
+        }
+    }
+
+    /**
+     * Shows a page of tasks. The first page replaces everything that was shown, later pages are appended.
+     */
+    private void showTasks(int after, List<Task> page) {
+        tasksShown = true;
+        if (after == 0) tasks.clear();
+        tasks.addAll(page);
+        showList();
+    }
+
+    private void getShareCode() {
+        JSONObject json;
+        try {
+            json = new JSONObject()
+                    .put("group", id);
+        } catch (JSONException e) {
+            throw new RuntimeException(e);
+        }
+        calls.Add(Connection.SendAsync("groupsharing", "GET", json.toString()).Then(new Call.Callback<Response>() {
+            @Override
+            public void OnResult(Response response) {
+                if (response.IsSuccessful()) {
+                    JSONObject responseJson = response.GetJSON();
+                    showMessageBox(responseJson.optString("code"));
+                    setClipboard(responseJson.optString("code"));
+                    Toast.makeText(getApplicationContext(), "De code is gekopieerd naar het klembord!", Toast.LENGTH_LONG).show();
+                } else if (response.StatusCode == 403) {
+                    Toast.makeText(getApplicationContext(), "Je bent niet gemachtigd om dit te doen.", Toast.LENGTH_LONG).show();
+                } else {
+                    Toast.makeText(getApplicationContext(), "Iets ging verkeerd. Probeer het later nog een keer.", Toast.LENGTH_LONG).show();
+                }
+            }
+        }));
+    }
+
+    class MyAdapter extends DiffListAdapter<Task> {
+
+        MyAdapter() {
+            super(R.layout.layout_takenlijst2);
+        }
+
+        @Override
+        protected boolean isSameItem(Task oldItem, Task newItem) {
+            return oldItem.getId() == newItem.getId();
         }
 
-        @NonNull
         @Override
-        public View getView(int position, @Nullable View convertView, @NonNull ViewGroup parent) {
-            LayoutInflater layoutInflater = (LayoutInflater)getApplicationContext().getSystemService(Context.LAYOUT_INFLATER_SERVICE);
-            View row = layoutInflater.inflate(R.layout.layout_takenlijst2, parent, false);
-            TextView myTitle = row.findViewById(R.id.usernameText);
-            TextView mySubtitle = row.findViewById(R.id.textView2);
-
-            JSONObject task = this.Tasks[position];
-            try {
-                myTitle.setText(task.getString("Title"));
-                String description = task.optString("Description");
-                mySubtitle.setText(description == null ? "" : description);
-            } catch (JSONException e) {
-                // Won't happen
-                throw new RuntimeException(e);
-            }
-
-            return row;
+        protected void bind(Holder holder, Task task) {
+            TextView myTitle = holder.get(R.id.usernameText);
+            TextView mySubtitle = holder.get(R.id.textView2);
+            TextView myStatus = holder.get(R.id.taskStatus);
+
+            myTitle.setText(task.getTitle());
+            String description = task.getDescription();
+            mySubtitle.setText(description == null ? "" : description);
+            String status = statuses.get(task.getId());
+            myStatus.setText(status == null ? "" : status);
         }
     }
 
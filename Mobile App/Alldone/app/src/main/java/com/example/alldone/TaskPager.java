@@ -0,0 +1,193 @@
+package com.example.alldone;
+
+import com.example.alldone.model.Task;
+import com.example.alldone.model.TaskChanges;
+import com.example.alldone.store.LocalStore;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.security.InvalidParameterException;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Loads the tasks of a group one page at a time, ordered by id.
+ * <p>
+ * Every page continues after the id of the last task of the previous page instead of at an offset, so tasks that are
+ * added or removed while scrolling don't make pages overlap or skip tasks. Only the pages that were loaded are kept in
+ * memory. The pager is used from the main thread.
+ * <p>
+ * Once every page of a group has been stored, the store keeps the change cursor of the first one. From then on the
+ * pager only downloads the tasks that were created, changed or deleted since that cursor, merges them into the store
+ * and reads every page from there.
+ */
+public class TaskPager {
+	public static final int DEFAULT_PAGE_SIZE = 50;
+
+	/**
+	 * Receives the loaded pages on the main thread.
+	 */
+	public interface Listener {
+		/**
+		 * @param after The id after which the page starts, so 0 for the first page. A first page may be delivered
+		 *              twice: once from the store and once more when the server's version differs.
+		 */
+		void OnPage(int after, List<Task> tasks);
+
+		/**
+		 * Called when a page could neither be downloaded nor read from the store.
+		 */
+		void OnError(int after);
+	}
+
+	private static class Page {
+		final List<Task> Tasks;
+		// False if the page is the one that was already shown from the store
+		final boolean Changed;
+
+		Page(List<Task> tasks, boolean changed) {
+			this.Tasks = tasks;
+			this.Changed = changed;
+		}
+	}
+
+	private final int group;
+	private final int pageSize;
+	private final LocalStore store;
+	private final Listener listener;
+
+	// The id of the last loaded task
+	private int cursor;
+	private boolean end;
+	private Call<Page> loading;
+	// The change cursor of the first downloaded page. It is stored once the last page is stored as well.
+	private volatile long changeCursor = -1;
+	// True once the stored tasks were brought up to date, so the pages are read from the store
+	private volatile boolean synced;
+
+	public TaskPager(int group, LocalStore store, Listener listener) {
+		this(group, DEFAULT_PAGE_SIZE, store, listener);
+	}
+	public TaskPager(int group, int pageSize, LocalStore store, Listener listener) {
+		if (pageSize < 1) throw new InvalidParameterException("pageSize must be at least 1.");
+		this.group = group;
+		this.pageSize = pageSize;
+		this.store = store;
+		this.listener = listener;
+	}
+
+	public boolean IsLoading() {
+		return loading != null;
+	}
+
+	/**
+	 * @return False once a page with fewer tasks than the page size was loaded.
+	 */
+	public boolean HasMore() {
+		return !end;
+	}
+
+	/**
+	 * Starts loading the next page, unless a page is already loading or the last page was loaded.
+	 * The first page is shown from the store before it is downloaded; later pages only fall back to the store if
+	 * they can't be downloaded.
+	 * @return True if a page started loading.
+	 */
+	public boolean LoadNext() {
+		if (loading != null || end) return false;
+
+		final int after = cursor;
+		loading = Call.Submit(new Callable<List<Task>>() {
+			@Override
+			public List<Task> call() {
+				return store.GetTasks(group, after, pageSize);
+			}
+		}).Then(new Call.Callback<List<Task>>() {
+			@Override
+			public void OnResult(List<Task> cached) {
+				if (after == 0 && cached != null) listener.OnPage(after, cached);
+			}
+		}).Map(new Call.Transform<List<Task>, Page>() {
+			@Override
+			public Page Apply(List<Task> cached) throws JSONException {
+				if (after == 0 && Sync()) {
+					// The first page was already shown from the store
+					List<Task> tasks = store.GetTasks(group, 0, pageSize);
+					return new Page(tasks, cached == null || !cached.equals(tasks));
+				}
+				if (synced) return cached == null ? null : new Page(cached, true);
+
+				TaskChanges page = Download(after);
+				if (page == null) return cached == null ? null : new Page(cached, after != 0);
+
+				List<Task> tasks = page.getTasks();
+				boolean last = tasks.size() < pageSize;
+				if (after == 0) changeCursor = page.getCursor();
+				boolean changed = store.PutTasks(group, after, tasks, last);
+				// Every task that existed at the first page is stored now, so later loads only need the changes
+				if (last && changeCursor >= 0) store.PutTaskCursor(group, changeCursor);
+				// The first page was already shown from the store
+				return new Page(tasks, after != 0 || cached == null || changed);
+			}
+		});
+		loading.Then(new Call.Callback<Page>() {
+			@Override
+			public void OnResult(Page page) {
+				loading = null;
+				if (page == null) {
+					listener.OnError(after);
+					return;
+				}
+				if (!page.Tasks.isEmpty()) cursor = page.Tasks.get(page.Tasks.size() - 1).getId();
+				end = page.Tasks.size() < pageSize;
+				if (page.Changed) listener.OnPage(after, page.Tasks);
+			}
+		});
+		return true;
+	}
+
+	/**
+	 * Stops loading the current page. Its results are dropped and the next call to {@link #LoadNext()} loads it again.
+	 */
+	public void Cancel() {
+		if (loading == null) return;
+		loading.Cancel();
+		loading = null;
+	}
+
+	/**
+	 * Brings the stored tasks up to date by downloading only the changes since their cursor.
+	 * @return True if the stored tasks are complete and up to date.
+	 */
+	private boolean Sync() throws JSONException {
+		long since = store.GetTaskCursor(group);
+		if (since < 0) return false;
+
+		JSONObject json = new JSONObject()
+				.put("group", group)
+				.put("since", since);
+		Response response = Connection.Send("task", "GET", json.toString());
+		// The server no longer knows the cursor, so the tasks have to be loaded in full again
+		if (response.StatusCode == 410) store.PutTaskCursor(group, -1);
+		TaskChanges changes = response.IsSuccessful() ? response.GetTaskChanges() : null;
+		if (changes == null || changes.getCursor() < 0) return false;
+
+		store.PutTaskChanges(group, changes.getTasks(), changes.getDeleted(), changes.getCursor());
+		synced = true;
+		return true;
+	}
+
+	/**
+	 * Downloads a page of tasks.
+	 * @return The tasks and the change cursor, or null if the request failed.
+	 */
+	private TaskChanges Download(int after) throws JSONException {
+		JSONObject json = new JSONObject()
+				.put("group", group)
+				.put("after", after)
+				.put("limit", pageSize);
+		Response response = Connection.Send("task", "GET", json.toString());
+		return response.IsSuccessful() ? response.GetTaskChanges() : null;
+	}
+}
@@ -0,0 +1,607 @@
+package com.example.alldone.store;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+import com.example.alldone.model.Enrollment;
+import com.example.alldone.model.Group;
+import com.example.alldone.model.Task;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Persistent on-device copy of the groups, tasks and enrollments that were last received from the server.
+ * <p>
+ * Screens render from the store right away and revalidate it in the background. Every list is stored per scope
+ * (all groups, the tasks of one group, the enrollments of one task) and a scope that was never synced reads as null,
+ * so an empty list can be told apart from a missing one.
+ * <p>
+ * The store also holds the outbox: the changes made on the device that weren't sent to the server yet. Unlike the
+ * rest of the store they can't be fetched again, so they survive upgrades of the schema.
+ */
+public class LocalStore extends SQLiteOpenHelper {
+    private static final String NAME = "alldone.db";
+    private static final int VERSION = 2;
+
+    private static LocalStore instance;
+
+    private static final Table<Group> GROUPS = new Table<Group>("task_groups", "id", "id",
+            "id", "creator", "created", "name", "description") {
+        @Override
+        ContentValues ToValues(Group group) {
+            ContentValues values = new ContentValues();
+            values.put("id", group.getId());
+            values.put("creator", group.getCreator());
+            values.put("created", group.getCreated());
+            values.put("name", group.getName());
+            values.put("description", group.getDescription());
+            return values;
+        }
+
+        @Override
+        Group Read(Cursor cursor) {
+            Group group = new Group();
+            group.setId(cursor.getInt(0));
+            group.setCreator(cursor.getInt(1));
+            group.setCreated(cursor.getLong(2));
+            group.setName(cursor.getString(3));
+            group.setDescription(cursor.getString(4));
+            return group;
+        }
+
+        @Override
+        String GetKey(Group group) {
+            return String.valueOf(group.getId());
+        }
+    };
+
+    private static final Table<Task> TASKS = new Table<Task>("tasks", "id", "id",
+            "id", "group_id", "creator", "created", "title", "description", "priority") {
+        @Override
+        ContentValues ToValues(Task task) {
+            ContentValues values = new ContentValues();
+            values.put("id", task.getId());
+            values.put("group_id", task.getGroup());
+            values.put("creator", task.getCreator());
+            values.put("created", task.getCreated());
+            values.put("title", task.getTitle());
+            values.put("description", task.getDescription());
+            values.put("priority", task.getPriority());
+            return values;
+        }
+
+        @Override
+        Task Read(Cursor cursor) {
+            Task task = new Task();
+            task.setId(cursor.getInt(0));
+            task.setGroup(cursor.getInt(1));
+            task.setCreator(cursor.getInt(2));
+            task.setCreated(cursor.getLong(3));
+            task.setTitle(cursor.getString(4));
+            task.setDescription(cursor.getString(5));
+            task.setPriority(cursor.getInt(6));
+            return task;
+        }
+
+        @Override
+        String GetKey(Task task) {
+            return String.valueOf(task.getId());
+        }
+    };
+
+    private static final Table<Enrollment> ENROLLMENTS = new Table<Enrollment>("enrollments", "username", "start_time",
+            "username", "start_time", "end_time") {
+        @Override
+        ContentValues ToValues(Enrollment enrollment) {
+            ContentValues values = new ContentValues();
+            values.put("username", enrollment.getUsername());
+            values.put("start_time", enrollment.getStart());
+            values.put("end_time", enrollment.getEnd());
+            return values;
+        }
+
+        @Override
+        Enrollment Read(Cursor cursor) {
+            Enrollment enrollment = new Enrollment();
+            enrollment.setUsername(cursor.getString(0));
+            enrollment.setStart(cursor.getLong(1));
+            enrollment.setEnd(cursor.getLong(2));
+            return enrollment;
+        }
+
+        @Override
+        String GetKey(Enrollment enrollment) {
+            return enrollment.getUsername();
+        }
+    };
+
+    private LocalStore(Context context) {
+        super(context, NAME, null, VERSION);
+    }
+
+    /**
+     * @return The store of the application.
+     */
+    public static synchronized LocalStore Get(Context context) {
+        if (instance == null) instance = new LocalStore(context.getApplicationContext());
+        return instance;
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE task_groups (id INTEGER PRIMARY KEY, creator INTEGER NOT NULL, created INTEGER NOT NULL, name TEXT, description TEXT)");
+        db.execSQL("CREATE TABLE tasks (id INTEGER PRIMARY KEY, group_id INTEGER NOT NULL, creator INTEGER NOT NULL, created INTEGER NOT NULL, title TEXT, description TEXT, priority INTEGER NOT NULL)");
+        db.execSQL("CREATE INDEX tasks_group_id ON tasks (group_id)");
+        // The primary key doubles as the index by task id
+        db.execSQL("CREATE TABLE enrollments (task_id INTEGER NOT NULL, username TEXT NOT NULL, start_time INTEGER NOT NULL, end_time INTEGER NOT NULL, PRIMARY KEY (task_id, username))");
+        // The scopes that have been synced at least once, e.g. "tasks:12"
+        db.execSQL("CREATE TABLE synced (scope TEXT PRIMARY KEY, time INTEGER NOT NULL)");
+        db.execSQL("CREATE TABLE meta (key TEXT PRIMARY KEY, value TEXT)");
+        // Kept by upgrades, so it may already exist
+        db.execSQL("CREATE TABLE IF NOT EXISTS outbox (id INTEGER PRIMARY KEY AUTOINCREMENT, key TEXT NOT NULL UNIQUE, type TEXT NOT NULL, task INTEGER NOT NULL, group_id INTEGER NOT NULL, data TEXT, attempts INTEGER NOT NULL)");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // Everything but the outbox can be fetched again, so simply start over
+        for (String table : new String[] { "task_groups", "tasks", "enrollments", "synced", "meta" })
+            db.execSQL("DROP TABLE IF EXISTS " + table);
+        onCreate(db);
+    }
+
+    /**
+     * Binds the store to a user. Everything that was stored for a different user is removed.
+     */
+    public synchronized void SetOwner(String username) {
+        SQLiteDatabase db = getWritableDatabase();
+        Cursor cursor = db.query("meta", new String[] { "value" }, "key = 'owner'", null, null, null, null);
+        String owner = null;
+        try {
+            if (cursor.moveToFirst()) owner = cursor.getString(0);
+        } finally {
+            cursor.close();
+        }
+        if (username.equals(owner)) return;
+
+        db.beginTransaction();
+        try {
+            Clear(db);
+            ContentValues values = new ContentValues();
+            values.put("key", "owner");
+            values.put("value", username);
+            db.insertWithOnConflict("meta", null, values, SQLiteDatabase.CONFLICT_REPLACE);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * @return The user that the store is bound to, or null.
+     */
+    public synchronized String GetOwner() {
+        Cursor cursor = getReadableDatabase().query("meta", new String[] { "value" }, "key = 'owner'", null, null, null, null);
+        try {
+            return cursor.moveToFirst() ? cursor.getString(0) : null;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Removes all stored data, including the changes that weren't sent yet.
+     */
+    public synchronized void Clear() {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            Clear(db);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * @return The stored groups, or null if they have never been synced.
+     */
+    public synchronized List<Group> GetGroups() {
+        return Select(GROUPS, "groups", null);
+    }
+
+    /**
+     * Replaces the stored groups, only writing the rows that changed.
+     * @return True if any row was added, changed or removed.
+     */
+    public synchronized boolean PutGroups(List<Group> groups) {
+        return Replace(GROUPS, "groups", null, groups, null);
+    }
+
+    /**
+     * @return The stored tasks of a group, or null if they have never been synced.
+     */
+    public synchronized List<Task> GetTasks(int group) {
+        return Select(TASKS, "tasks:" + group, "group_id = " + group);
+    }
+
+    /**
+     * @return At most limit stored tasks of a group with an id greater than after, ordered by id, or null if the
+     * tasks of the group have never been synced.
+     */
+    public synchronized List<Task> GetTasks(int group, int after, int limit) {
+        return Select(TASKS, "tasks:" + group, "group_id = " + group + " AND id > " + after, String.valueOf(limit));
+    }
+
+    /**
+     * @return The tasks of a group that were created on the device and aren't sent yet, newest first.
+     */
+    public synchronized List<Task> GetPendingTasks(int group) {
+        return new ArrayList<>(Read(getReadableDatabase(), TASKS, "group_id = " + group + " AND id < 0", null).values());
+    }
+
+    /**
+     * @return A stored task, or null.
+     */
+    public synchronized Task GetTask(int task) {
+        Map<String, Task> rows = Read(getReadableDatabase(), TASKS, "id = " + task, null);
+        return rows.isEmpty() ? null : rows.values().iterator().next();
+    }
+
+    /**
+     * @return The id for the next task that is created on the device, which is negative so that it never clashes with
+     * the ids the server assigns, and which isn't used by any stored task or change.
+     */
+    public synchronized int NextTemporaryTaskId() {
+        Cursor cursor = getReadableDatabase().rawQuery("SELECT MIN((SELECT IFNULL(MIN(id), 0) FROM tasks), (SELECT IFNULL(MIN(task), 0) FROM outbox), 0)", null);
+        try {
+            return cursor.moveToFirst() ? cursor.getInt(0) - 1 : -1;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Replaces the stored tasks of a group, only writing the rows that changed.
+     * @return True if any row was added, changed or removed.
+     */
+    public synchronized boolean PutTasks(int group, List<Task> tasks) {
+        return PutTasks(group, 0, tasks, true);
+    }
+
+    /**
+     * Replaces one page of the stored tasks of a group, only writing the rows that changed.
+     * @param after The id after which the page starts.
+     * @param tasks The tasks of the page, ordered by id.
+     * @param last True if no tasks follow the page, so every stored task after it was removed on the server.
+     * @return True if any row was added, changed or removed.
+     */
+    public synchronized boolean PutTasks(int group, int after, List<Task> tasks, boolean last) {
+        String selection = "group_id = " + group + " AND id > " + after;
+        // The page only covers the ids up to its last task, unless nothing follows it
+        if (!last && !tasks.isEmpty()) selection += " AND id <= " + tasks.get(tasks.size() - 1).getId();
+        return Replace(TASKS, "tasks:" + group, selection, tasks, null);
+    }
+
+    /**
+     * @return The change cursor up to which the stored tasks of a group are complete, or -1 if there is none.
+     */
+    public synchronized long GetTaskCursor(int group) {
+        Cursor cursor = getReadableDatabase().query("meta", new String[] { "value" }, "key = ?", new String[] { "cursor:tasks:" + group }, null, null, null);
+        try {
+            return cursor.moveToFirst() ? Long.parseLong(cursor.getString(0)) : -1;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Remembers up to which change the stored tasks of a group are complete. Must only be called once every task of
+     * the group that existed at that change has been stored.
+     * @param cursor The cursor, or -1 to forget it so the tasks are loaded in full again.
+     */
+    public synchronized void PutTaskCursor(int group, long cursor) {
+        PutTaskCursor(getWritableDatabase(), group, cursor);
+    }
+
+    /**
+     * Merges the tasks that changed on the server since the cursor of a group into the stored tasks, and moves the
+     * cursor forward. Unchanged rows are not written.
+     * @param tasks The created and changed tasks.
+     * @param deleted The ids of the deleted tasks. Their enrollments are removed as well.
+     * @return True if any row was added, changed or removed.
+     */
+    public synchronized boolean PutTaskChanges(int group, List<Task> tasks, List<Integer> deleted, long cursor) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            boolean changed = false;
+            if (!tasks.isEmpty()) {
+                StringBuilder ids = new StringBuilder();
+                for (Task task : tasks) ids.append(ids.length() == 0 ? "" : ",").append(task.getId());
+                Map<String, Task> stored = Read(db, TASKS, "group_id = " + group + " AND id IN (" + ids + ")", null);
+                for (Task task : tasks) {
+                    if (task.equals(stored.get(TASKS.GetKey(task)))) continue;
+                    db.insertWithOnConflict(TASKS.name, null, TASKS.ToValues(task), SQLiteDatabase.CONFLICT_REPLACE);
+                    changed = true;
+                }
+            }
+            for (int task : deleted) {
+                String[] args = { String.valueOf(task) };
+                if (db.delete(TASKS.name, "id = ?", args) > 0) changed = true;
+                db.delete(ENROLLMENTS.name, "task_id = ?", args);
+                db.delete("synced", "scope = ?", new String[] { "enrollments:" + task });
+            }
+            PutTaskCursor(db, group, cursor);
+            db.setTransactionSuccessful();
+            return changed;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Stores a single new or changed task, e.g. one that was pushed by the server, without touching the other tasks.
+     */
+    public synchronized void PutTask(Task task) {
+        getWritableDatabase().insertWithOnConflict(TASKS.name, null, TASKS.ToValues(task), SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    /**
+     * Removes a single task and its enrollments, e.g. after the server pushed that it was deleted.
+     */
+    public synchronized void DeleteTask(int task) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            String[] args = { String.valueOf(task) };
+            db.delete(TASKS.name, "id = ?", args);
+            db.delete(ENROLLMENTS.name, "task_id = ?", args);
+            db.delete("synced", "scope = ?", new String[] { "enrollments:" + task });
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Gives a task that was created on the device the id that the server assigned to it, in the stored task, its
+     * enrollments and the changes to it that weren't sent yet.
+     */
+    public synchronized void ReplaceTaskId(int temporary, int id) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            String[] args = { String.valueOf(temporary) };
+            // The server may already have pushed the task under its real id
+            if (GetTask(id) == null) {
+                ContentValues task = new ContentValues();
+                task.put("id", id);
+                db.update(TASKS.name, task, "id = ?", args);
+            } else db.delete(TASKS.name, "id = ?", args);
+
+            ContentValues enrollments = new ContentValues();
+            enrollments.put("task_id", id);
+            db.updateWithOnConflict(ENROLLMENTS.name, enrollments, "task_id = ?", args, SQLiteDatabase.CONFLICT_IGNORE);
+            db.delete(ENROLLMENTS.name, "task_id = ?", args);
+            db.delete("synced", "scope = ?", new String[] { "enrollments:" + temporary });
+
+            ContentValues outbox = new ContentValues();
+            outbox.put("task", id);
+            db.update("outbox", outbox, "task = ?", args);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * @return The stored enrollments of a task, or null if they have never been synced.
+     */
+    public synchronized List<Enrollment> GetEnrollments(int task) {
+        return Select(ENROLLMENTS, "enrollments:" + task, "task_id = " + task);
+    }
+
+    /**
+     * Replaces the stored enrollments of a task, only writing the rows that changed.
+     * @return True if any row was added, changed or removed.
+     */
+    public synchronized boolean PutEnrollments(int task, List<Enrollment> enrollments) {
+        ContentValues scope = new ContentValues();
+        scope.put("task_id", task);
+        return Replace(ENROLLMENTS, "enrollments:" + task, "task_id = " + task, enrollments, scope);
+    }
+
+    /**
+     * Stores a single new or changed enrollment without touching the other enrollments of the task.
+     */
+    public synchronized void PutEnrollment(int task, Enrollment enrollment) {
+        ContentValues values = ENROLLMENTS.ToValues(enrollment);
+        values.put("task_id", task);
+        getWritableDatabase().insertWithOnConflict(ENROLLMENTS.name, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    /**
+     * Marks the enrollments of a task as never synced, so they are loaded from the server before they are shown again.
+     */
+    public synchronized void ForgetEnrollments(int task) {
+        getWritableDatabase().delete("synced", "scope = ?", new String[] { "enrollments:" + task });
+    }
+
+    /**
+     * @return The changes that weren't sent yet, in the order in which they were made.
+     */
+    public synchronized List<Mutation> GetMutations() {
+        List<Mutation> mutations = new ArrayList<>();
+        Cursor cursor = getReadableDatabase().query("outbox", new String[] { "id", "key", "type", "task", "group_id", "data", "attempts" },
+                null, null, null, null, "id");
+        try {
+            while (cursor.moveToNext()) {
+                mutations.add(new Mutation(cursor.getLong(0), cursor.getString(1), cursor.getString(2), cursor.getInt(3),
+                        cursor.getInt(4), cursor.isNull(5) ? null : cursor.getString(5), cursor.getInt(6)));
+            }
+        } finally {
+            cursor.close();
+        }
+        return mutations;
+    }
+
+    /**
+     * Removes changes from the outbox and appends a new one, in a single transaction.
+     * @param removed The changes to remove.
+     * @param added The change to append, or null.
+     * @return The appended change with its position in the outbox, or null.
+     */
+    public synchronized Mutation PutMutations(Collection<Mutation> removed, Mutation added) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (Mutation mutation : removed)
+                db.delete("outbox", "key = ?", new String[] { mutation.Key });
+
+            Mutation stored = null;
+            if (added != null) {
+                ContentValues values = new ContentValues();
+                values.put("key", added.Key);
+                values.put("type", added.Type);
+                values.put("task", added.Task);
+                values.put("group_id", added.Group);
+                values.put("data", added.Data);
+                values.put("attempts", added.Attempts);
+                long id = db.insertOrThrow("outbox", null, values);
+                stored = new Mutation(id, added.Key, added.Type, added.Task, added.Group, added.Data, added.Attempts);
+            }
+            db.setTransactionSuccessful();
+            return stored;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Counts an attempt to send a change. Done before the change is sent, so a change that may have reached the server
+     * is never dropped by coalescing, even if the application is killed before the answer arrives.
+     */
+    public synchronized void CountAttempt(Mutation mutation) {
+        getWritableDatabase().execSQL("UPDATE outbox SET attempts = attempts + 1 WHERE key = ?", new Object[] { mutation.Key });
+    }
+
+    private static void PutTaskCursor(SQLiteDatabase db, int group, long cursor) {
+        String key = "cursor:tasks:" + group;
+        if (cursor < 0) {
+            db.delete("meta", "key = ?", new String[] { key });
+            return;
+        }
+        ContentValues values = new ContentValues();
+        values.put("key", key);
+        values.put("value", String.valueOf(cursor));
+        db.insertWithOnConflict("meta", null, values, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    private <T> List<T> Select(Table<T> table, String scope, String selection) {
+        return Select(table, scope, selection, null);
+    }
+    private <T> List<T> Select(Table<T> table, String scope, String selection, String limit) {
+        SQLiteDatabase db = getReadableDatabase();
+        if (!IsSynced(db, scope)) return null;
+        return new ArrayList<>(Read(db, table, selection, limit).values());
+    }
+
+    /**
+     * Makes the rows of a scope match a new list of objects.
+     * @param selection The SQL condition that selects the rows of the scope, or null for the whole table.
+     * @param scopeValues Extra column values that every row of the scope has, or null.
+     */
+    private <T> boolean Replace(Table<T> table, String scope, String selection, List<T> objects, ContentValues scopeValues) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            Map<String, T> stored = Read(db, table, selection, null);
+            boolean changed = false;
+
+            for (T object : objects) {
+                // Skip rows that are already up to date
+                if (object.equals(stored.remove(table.GetKey(object)))) continue;
+
+                ContentValues values = table.ToValues(object);
+                if (scopeValues != null) values.putAll(scopeValues);
+                db.insertWithOnConflict(table.name, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+                changed = true;
+            }
+
+            // Whatever is left no longer exists on the server
+            String deleteSelection = (selection == null ? "" : selection + " AND ") + table.key + " = ?";
+            for (String key : stored.keySet()) {
+                db.delete(table.name, deleteSelection, new String[] { key });
+                changed = true;
+            }
+
+            ContentValues synced = new ContentValues();
+            synced.put("scope", scope);
+            synced.put("time", System.currentTimeMillis());
+            db.insertWithOnConflict("synced", null, synced, SQLiteDatabase.CONFLICT_REPLACE);
+
+            db.setTransactionSuccessful();
+            return changed;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private static <T> Map<String, T> Read(SQLiteDatabase db, Table<T> table, String selection, String limit) {
+        Map<String, T> rows = new LinkedHashMap<>();
+        Cursor cursor = db.query(table.name, table.columns, selection, null, null, null, table.order, limit);
+        try {
+            while (cursor.moveToNext()) {
+                T object = table.Read(cursor);
+                rows.put(table.GetKey(object), object);
+            }
+        } finally {
+            cursor.close();
+        }
+        return rows;
+    }
+
+    private static boolean IsSynced(SQLiteDatabase db, String scope) {
+        Cursor cursor = db.query("synced", new String[] { "scope" }, "scope = ?", new String[] { scope }, null, null, null);
+        try {
+            return cursor.moveToFirst();
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static void Clear(SQLiteDatabase db) {
+        for (String table : new String[] { "task_groups", "tasks", "enrollments", "synced", "meta", "outbox" })
+            db.delete(table, null, null);
+    }
+
+    /**
+     * Maps one model class onto a table.
+     */
+    private static abstract class Table<T> {
+        final String name;
+        // The column that identifies a row within its scope
+        final String key;
+        // The order in which rows are read
+        final String order;
+        final String[] columns;
+
+        Table(String name, String key, String order, String... columns) {
+            this.name = name;
+            this.key = key;
+            this.order = order;
+            this.columns = columns;
+        }
+
+        abstract ContentValues ToValues(T object);
+        abstract T Read(Cursor cursor);
+        abstract String GetKey(T object);
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.alldone.store;
+
+/**
+ * A change made on the device that still has to be sent to the server, as stored in the outbox.
+ * <p>
+ * The request body is built when the change is sent rather than when it is made, so changes to a task that was
+ * created offline can refer to it by its temporary id until the server assigns the real one.
+ */
+public class Mutation {
+    /** Creates the task in {@link #Data}. */
+    public static final String CREATE_TASK = "create_task";
+    /** Deletes a task. */
+    public static final String DELETE_TASK = "delete_task";
+    /** Enrolls the user in a task. */
+    public static final String ENROLL = "enroll";
+    /** Marks the user's enrollment in a task as finished. */
+    public static final String FINISH = "finish";
+
+    /** The position in the outbox, or -1 if the mutation isn't stored yet. */
+    public final long Id;
+    /** Identifies the change to the server, so that retries of it are only applied once. */
+    public final String Key;
+    public final String Type;
+    /** The id of the task, which is negative for tasks that were created offline and aren't sent yet. */
+    public final int Task;
+    /** The group of the task, or -1 if it is unknown. */
+    public final int Group;
+    /** The JSON request body of a created task, or null. */
+    public final String Data;
+    /** The amount of times the mutation was sent without getting an answer. */
+    public final int Attempts;
+
+    public Mutation(long id, String key, String type, int task, int group, String data, int attempts) {
+        this.Id = id;
+        this.Key = key;
+        this.Type = type;
+        this.Task = task;
+        this.Group = group;
+        this.Data = data;
+        this.Attempts = attempts;
+    }
+
+    /**
+     * @return True if the mutation may already have reached the server, so it can't be dropped without sending it.
+     */
+    public boolean IsAttempted() {
+        return Attempts > 0;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Mutation)) return false;
+        return Key.equals(((Mutation) o).Key);
+    }
+
+    @Override
+    public int hashCode() {
+        return Key.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return Type + " " + Task + " (" + Key + ")";
+    }
+}
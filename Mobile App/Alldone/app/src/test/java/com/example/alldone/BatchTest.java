@@ -0,0 +1,96 @@
+package com.example.alldone;
+
+import com.example.alldone.standin.DataSet;
+import com.example.alldone.standin.StandInApi;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class BatchTest {
+    private StandInApi server;
+    private Client previous;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new StandInApi(DataSet.SMALL);
+        server.SetRecording(true);
+        // Answers with the task id, or 204 for task 2 which nobody enrolled in
+        server.Handle("taskenroll", new StandInApi.Handler() {
+            @Override
+            public Response Handle(String method, String body) throws Exception {
+                int task = new JSONObject(body).getInt("task");
+                if (task == 2) return new Response(null, 204, "No Content");
+                return new Response("{\"results\":[{\"Username\":\"user" + task + "\",\"Start\":1,\"End\":0}]}", 200, "OK");
+            }
+        });
+        previous = Connection.SetDefault(new Client(server.GetUrl()));
+        Connection.GetDefault().GetCache().Clear();
+    }
+
+    @After
+    public void tearDown() {
+        Connection.SetDefault(previous);
+        Connection.GetDefault().GetCache().Clear();
+        server.close();
+    }
+
+    private static Batch createBatch() {
+        Batch batch = new Batch();
+        for (int task = 1; task <= 3; task++)
+            batch.Add("taskenroll", "GET", "{\"task\":" + task + "}");
+        return batch;
+    }
+
+    private static void assertResponses(List<Response> responses) {
+        assertEquals(3, responses.size());
+        assertEquals(200, responses.get(0).StatusCode);
+        assertEquals("user1", responses.get(0).GetEnrollments().get(0).getUsername());
+        assertEquals(204, responses.get(1).StatusCode);
+        assertEquals(200, responses.get(2).StatusCode);
+        assertEquals("user3", responses.get(2).GetEnrollments().get(0).getUsername());
+    }
+
+    @Test
+    public void send_usesSingleExchange() {
+        assertResponses(createBatch().Send());
+        assertEquals(Arrays.asList("batch"), server.GetRequests());
+    }
+
+    @Test
+    public void send_skipsFreshCachedRequests() {
+        createBatch().Send();
+        assertResponses(createBatch().Send());
+        assertEquals(Arrays.asList("batch"), server.GetRequests());
+    }
+
+    @Test
+    public void send_fallsBackWithoutBatchEndpoint() {
+        server.SetBatchEnabled(false);
+        assertResponses(createBatch().Send());
+        assertFalse(Connection.GetDefault().IsBatchSupported());
+        // Other clients, e.g. those of other servers, keep batching
+        assertTrue(new Client(server.GetUrl()).IsBatchSupported());
+        assertEquals(Arrays.asList("batch", "taskenroll", "taskenroll", "taskenroll"), server.GetRequests());
+
+        // Later batches don't try the batch endpoint again
+        Connection.GetDefault().GetCache().Clear();
+        assertResponses(createBatch().Send());
+        assertEquals(7, server.GetRequests().size());
+    }
+
+    @Test
+    public void send_failsEveryRequestWithoutServer() {
+        server.close();
+        List<Response> responses = createBatch().Send();
+        assertEquals(3, responses.size());
+        for (Response response : responses) assertEquals(-1, response.StatusCode);
+        assertTrue(Connection.GetDefault().IsBatchSupported());
+    }
+}
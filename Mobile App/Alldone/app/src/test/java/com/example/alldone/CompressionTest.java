@@ -0,0 +1,167 @@
+package com.example.alldone;
+
+import com.example.alldone.net.BufferPool;
+import com.example.alldone.net.Compression;
+import com.example.alldone.net.ResponseBody;
+import com.example.alldone.standin.DataSet;
+import com.example.alldone.standin.StandInApi;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+
+public class CompressionTest {
+    private StandInApi server;
+    private Client previous;
+    // The bodies received by the echo endpoint
+    private final StringBuilder received = new StringBuilder();
+
+    @Before
+    public void setUp() throws Exception {
+        server = new StandInApi(DataSet.SMALL);
+        server.SetRecording(true);
+        // Sends the request body back
+        server.Handle("echo", new StandInApi.Handler() {
+            @Override
+            public Response Handle(String method, String body) {
+                synchronized (received) {
+                    received.append(body).append('\n');
+                }
+                return new Response(body, 200, "OK");
+            }
+        });
+        previous = Connection.SetDefault(new Client(server.GetUrl()));
+    }
+
+    @After
+    public void tearDown() {
+        Connection.SetDefault(previous);
+        server.close();
+    }
+
+    /**
+     * @return A JSON body of roughly the given size that compresses well, like a list of tasks.
+     */
+    private static String createBody(int size) {
+        StringBuilder sb = new StringBuilder("{\"results\":[");
+        for (int i = 0; sb.length() < size; i++) {
+            if (i > 0) sb.append(',');
+            sb.append("{\"Id\":").append(i).append(",\"Title\":\"Task ").append(i).append("\",\"Description\":\"Nothing special\"}");
+        }
+        return sb.append("]}").toString();
+    }
+
+    @Test
+    public void send_decodesCompressedResponse() {
+        String body = createBody(10000);
+        Response response = Connection.Send("echo", "POST", body);
+        assertEquals(200, response.StatusCode);
+        assertEquals(body, response.Data);
+        assertEquals(Arrays.asList("gzip"), server.GetResponseEncodings());
+    }
+
+    @Test
+    public void send_compressesOnceServerAcceptsIt() {
+        String body = createBody(10000);
+        // Nothing is known about the server yet
+        assertEquals(body, Connection.Send("echo", "POST", body).Data);
+        assertEquals(body, Connection.Send("echo", "POST", body).Data);
+        assertEquals(Arrays.asList("identity", "gzip"), server.GetRequestEncodings());
+        assertEquals(body + '\n' + body + '\n', received.toString());
+    }
+
+    @Test
+    public void send_leavesSmallBodiesUncompressed() {
+        String body = createBody(10);
+        Connection.Send("echo", "POST", body);
+        Connection.Send("echo", "POST", body);
+        assertEquals(Arrays.asList("identity", "identity"), server.GetRequestEncodings());
+        assertEquals(Arrays.asList("identity", "identity"), server.GetResponseEncodings());
+    }
+
+    @Test
+    public void send_resendsRejectedBodyUncompressed() {
+        String body = createBody(10000);
+        Connection.Send("echo", "POST", body);
+        // The server stops accepting compressed bodies after it announced that it would
+        server.SetCompressionEnabled(false);
+        Response response = Connection.Send("echo", "POST", body);
+        assertEquals(200, response.StatusCode);
+        assertEquals(body, response.Data);
+        Connection.Send("echo", "POST", body);
+        assertEquals(Arrays.asList("identity", "gzip", "identity", "identity"), server.GetRequestEncodings());
+    }
+
+    @Test
+    public void decode_ignoresZeroPadding() throws Exception {
+        byte[] data = createBody(5000).getBytes(ResponseBody.UTF8);
+
+        ByteArrayOutputStream gzip = new ByteArrayOutputStream();
+        GZIPOutputStream gzipOut = new GZIPOutputStream(gzip);
+        gzipOut.write(data);
+        gzipOut.close();
+        assertArrayEquals(data, decode("gzip", gzip.toByteArray()));
+
+        ByteArrayOutputStream zlib = new ByteArrayOutputStream();
+        DeflaterOutputStream zlibOut = new DeflaterOutputStream(zlib);
+        zlibOut.write(data);
+        zlibOut.close();
+        assertArrayEquals(data, decode("deflate", zlib.toByteArray()));
+
+        ByteArrayOutputStream raw = new ByteArrayOutputStream();
+        DeflaterOutputStream rawOut = new DeflaterOutputStream(raw, new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+        rawOut.write(data);
+        rawOut.close();
+        assertArrayEquals(data, decode("deflate", raw.toByteArray()));
+    }
+
+    @Test
+    public void decode_stopsAtTheMaximumSize() throws Exception {
+        // Compresses to a few kilobytes
+        byte[] zeros = new byte[64 * 1024];
+        ByteArrayOutputStream gzip = new ByteArrayOutputStream();
+        GZIPOutputStream gzipOut = new GZIPOutputStream(gzip);
+        for (int i = 0; i <= Compression.MAX_DECODED_SIZE / zeros.length; i++) gzipOut.write(zeros);
+        gzipOut.close();
+        assertTrue(gzip.size() < 64 * 1024);
+
+        try {
+            decode("gzip", gzip.toByteArray());
+            fail();
+        } catch (IOException e) {
+            // Expected
+        }
+
+        ResponseBody body = ResponseBody.Read(new ByteArrayInputStream(gzip.toByteArray()), gzip.size(), new BufferPool());
+        try {
+            body.Decode("gzip", zeros.length - 1);
+            fail();
+        } catch (IOException e) {
+            // Expected
+        } finally {
+            body.Release();
+        }
+    }
+
+    /**
+     * Decodes data as if it was decrypted from an AES envelope with zero padding.
+     */
+    private static byte[] decode(String encoding, byte[] encoded) throws Exception {
+        byte[] padded = Arrays.copyOf(encoded, (encoded.length / 16 + 1) * 16);
+        ResponseBody body = ResponseBody.Read(new ByteArrayInputStream(padded), padded.length, new BufferPool());
+        body.Decode(encoding);
+        byte[] decoded = Arrays.copyOf(body.GetBuffer(), body.GetLength());
+        body.Release();
+        return decoded;
+    }
+}
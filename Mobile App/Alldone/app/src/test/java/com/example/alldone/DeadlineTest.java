@@ -0,0 +1,161 @@
+package com.example.alldone;
+
+import com.example.alldone.net.Deadline;
+import com.example.alldone.net.Resilience;
+import com.example.alldone.standin.DataSet;
+import com.example.alldone.standin.StandInApi;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class DeadlineTest {
+    private StandInApi server;
+    private Client previous;
+    private final AtomicInteger calls = new AtomicInteger();
+
+    @Before
+    public void setUp() throws Exception {
+        server = new StandInApi(DataSet.SMALL);
+        previous = Connection.SetDefault(new Client(server.GetUrl()));
+    }
+
+    @After
+    public void tearDown() {
+        Connection.resilience.ResetBreakers();
+        Connection.SetDefault(previous);
+        server.close();
+    }
+
+    /**
+     * Answers after a delay, and counts down a latch once the request arrived.
+     */
+    private void answerSlowly(String link, final long delay, final CountDownLatch arrived) {
+        server.Handle(link, new StandInApi.Handler() {
+            @Override
+            public Response Handle(String method, String body) throws InterruptedException {
+                calls.incrementAndGet();
+                if (arrived != null) arrived.countDown();
+                Thread.sleep(delay);
+                return new Response("{}", 200, "OK");
+            }
+        });
+    }
+
+    @Test
+    public void deadline_childEndsWithParent() {
+        Deadline parent = Deadline.Never();
+        Deadline child = Deadline.After(60000, parent);
+        final AtomicBoolean aborted = new AtomicBoolean();
+        child.OnDone(new Runnable() {
+            @Override
+            public void run() {
+                aborted.set(true);
+            }
+        });
+
+        assertTrue(child.GetRemaining() <= 60000);
+        parent.Cancel();
+        assertTrue(child.IsCancelled());
+        assertTrue(aborted.get());
+        assertEquals(0, child.GetRemaining());
+    }
+
+    @Test
+    public void send_givesUpOnceTheBudgetIsUsedUp() {
+        Connection.resilience.SetPolicy("slow", new Resilience.Policy(3, 10, 20, 0));
+        Connection.resilience.SetTimeout("slow", 200);
+        answerSlowly("slow", 3000, null);
+
+        long start = System.nanoTime();
+        Response response = Connection.Send("slow", "GET");
+        long elapsed = (System.nanoTime() - start) / 1000000;
+
+        assertEquals(-1, response.StatusCode);
+        assertTrue("Took " + elapsed + " ms", elapsed < 1500);
+        // There is no time left for a retry
+        assertEquals(1, calls.get());
+        Resilience.Policy policy = Connection.resilience.GetPolicy("slow");
+        assertEquals(1, policy.GetExhaustedCount());
+    }
+
+    @Test
+    public void cancel_releasesConnectionsRightAway() throws Exception {
+        Connection.resilience.SetPolicy("slow", Resilience.Policy.NONE);
+        CountDownLatch arrived = new CountDownLatch(4);
+        answerSlowly("slow", 5000, arrived);
+        answerSlowly("fast", 0, null);
+
+        // Take every connection the pool allows for the host
+        List<Call<Response>> pending = new ArrayList<>();
+        for (int i = 0; i < 4; i++) pending.add(Connection.SendAsync("slow", "GET", "{\"call\":" + i + "}"));
+        assertTrue(arrived.await(2, TimeUnit.SECONDS));
+        for (Call<Response> call : pending) call.Cancel();
+
+        long start = System.nanoTime();
+        Response response = Connection.Send("fast", "GET");
+        long elapsed = (System.nanoTime() - start) / 1000000;
+
+        assertEquals(200, response.StatusCode);
+        assertTrue("Took " + elapsed + " ms", elapsed < 1500);
+        for (Call<Response> call : pending) assertTrue(call.IsCancelled());
+    }
+
+    @Test
+    public void cancel_leavesASharedReadToTheCallersThatJoinedIt() throws Exception {
+        Connection.resilience.SetPolicy("shared", Resilience.Policy.NONE);
+        CountDownLatch arrived = new CountDownLatch(1);
+        answerSlowly("shared", 500, arrived);
+
+        Call<Response> first = Connection.SendAsync("shared", "GET");
+        assertTrue(arrived.await(2, TimeUnit.SECONDS));
+        Call<Response> second = Connection.SendAsync("shared", "GET");
+        SingleFlight<Response> flights = Connection.GetDefault().GetFlights();
+        while (flights.GetSavedCount() == 0) Thread.sleep(5);
+
+        // The screen that sent the read first goes away
+        first.Cancel();
+        assertEquals(200, second.Get().StatusCode);
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void cancel_cancelsTheWholeChain() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        Call<String> first = Call.Submit(new Callable<String>() {
+            @Override
+            public String call() throws InterruptedException {
+                started.countDown();
+                Thread.sleep(5000);
+                return "first";
+            }
+        });
+        Call<String> second = first.Map(new Call.Transform<String, String>() {
+            @Override
+            public String Apply(String value) {
+                return value + " second";
+            }
+        });
+        assertTrue(started.await(2, TimeUnit.SECONDS));
+
+        second.Cancel();
+        assertTrue(first.IsCancelled());
+        try {
+            first.Get();
+            fail();
+        } catch (CancellationException e) {
+            // Expected
+        }
+    }
+}
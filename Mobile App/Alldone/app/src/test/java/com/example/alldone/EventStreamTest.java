@@ -0,0 +1,152 @@
+package com.example.alldone;
+
+import com.example.alldone.standin.DataSet;
+import com.example.alldone.standin.StandInApi;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class EventStreamTest {
+    private static final String TASK = "{\"group\":7,\"task\":{\"Id\":12,\"Group\":7,\"Creator\":1,\"Created\":1571400000,\"Title\":\"Afwassen\",\"Priority\":2}}";
+    private static final String ENROLLMENT = "{\"group\":7,\"task\":12,\"results\":[{\"Username\":\"user\",\"Start\":1571400000,\"End\":0}]}";
+
+    private StandInApi server;
+    private Client previous;
+    private EventStream stream;
+    private final BlockingQueue<EventStream.Event> received = new LinkedBlockingQueue<>();
+    private final EventStream.Listener listener = new EventStream.Listener() {
+        @Override
+        public void OnEvent(EventStream.Event event) {
+            received.add(event);
+        }
+    };
+
+    @Before
+    public void setUp() throws Exception {
+        server = new StandInApi(DataSet.SMALL);
+        server.SetRecording(true);
+        previous = Connection.SetDefault(new Client(server.GetUrl()));
+        Connection.GetDefault().GetCache().Clear();
+        // Calls the listeners on the stream thread instead of the main thread
+        stream = new EventStream(null, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        stream.Unsubscribe(listener);
+        Connection.SetDefault(previous);
+        Connection.GetDefault().GetCache().Clear();
+        server.close();
+    }
+
+    private void awaitStreams(int count) throws InterruptedException {
+        for (int i = 0; i < 200 && server.GetStreamCount() != count; i++) Thread.sleep(10);
+        assertEquals(count, server.GetStreamCount());
+    }
+
+    private EventStream.Event next() throws InterruptedException {
+        EventStream.Event event = received.poll(5, TimeUnit.SECONDS);
+        assertNotNull("No event received", event);
+        return event;
+    }
+
+    @Test
+    public void subscribe_receivesEvents() throws Exception {
+        stream.Subscribe(listener);
+        awaitStreams(1);
+        for (int i = 0; i < 200 && !stream.IsConnected(); i++) Thread.sleep(10);
+        assertTrue(stream.IsConnected());
+
+        server.Publish("task", TASK);
+        EventStream.Event created = next();
+        assertEquals(EventStream.Event.TASK, created.Type);
+        assertEquals(7, created.Group);
+        assertEquals(12, created.TaskId);
+        assertEquals("Afwassen", created.Task.getTitle());
+        assertFalse(created.Deleted);
+
+        server.Publish("enrollment", ENROLLMENT);
+        EventStream.Event enrollment = next();
+        assertEquals(EventStream.Event.ENROLLMENT, enrollment.Type);
+        assertEquals(12, enrollment.TaskId);
+        assertEquals("user", enrollment.Enrollments.get(0).getUsername());
+
+        server.Publish("task", "{\"group\":7,\"deleted\":12}");
+        EventStream.Event deleted = next();
+        assertEquals(12, deleted.TaskId);
+        assertTrue(deleted.Deleted);
+        assertNull(deleted.Task);
+    }
+
+    @Test
+    public void subscribe_replaysMissedEventsAfterReconnect() throws Exception {
+        stream.Subscribe(listener);
+        awaitStreams(1);
+        server.Publish("task", TASK);
+        next();
+
+        server.DropStreams();
+        // Published while the client is disconnected
+        server.Publish("task", "{\"group\":7,\"deleted\":12}");
+        EventStream.Event missed = next();
+        assertTrue(missed.Deleted);
+        assertEquals(Arrays.asList(null, "1"), server.GetLastEventIds());
+    }
+
+    @Test
+    public void event_invalidatesCachedResponses() throws Exception {
+        final AtomicInteger calls = new AtomicInteger();
+        server.Handle("taskenroll", new StandInApi.Handler() {
+            @Override
+            public Response Handle(String method, String body) {
+                calls.incrementAndGet();
+                return new Response("{\"results\":[]}", 200, "OK");
+            }
+        });
+        Connection.Send("taskenroll", "GET", "{\"task\":12}");
+        Connection.Send("taskenroll", "GET", "{\"task\":12}");
+        assertEquals(1, calls.get());
+
+        stream.Subscribe(listener);
+        awaitStreams(1);
+        server.Publish("enrollment", ENROLLMENT);
+        next();
+        Connection.Send("taskenroll", "GET", "{\"task\":12}");
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void subscribe_stopsWithoutEventsEndpoint() throws Exception {
+        server.SetEventsEnabled(false);
+        stream.Subscribe(listener);
+        Thread.sleep(300);
+        assertFalse(stream.IsConnected());
+        assertEquals(Arrays.asList("events"), server.GetRequests());
+    }
+
+    @Test
+    public void unsubscribe_closesStream() throws Exception {
+        stream.Subscribe(listener);
+        awaitStreams(1);
+        stream.Unsubscribe(listener);
+        assertFalse(stream.IsConnected());
+
+        server.Publish("task", TASK);
+        assertNull(received.poll(300, TimeUnit.MILLISECONDS));
+    }
+}
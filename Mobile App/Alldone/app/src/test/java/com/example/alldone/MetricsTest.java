@@ -0,0 +1,97 @@
+package com.example.alldone;
+
+import com.example.alldone.net.Histogram;
+import com.example.alldone.net.Metrics;
+import com.example.alldone.standin.DataSet;
+import com.example.alldone.standin.StandInApi;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.StringWriter;
+
+import static org.junit.Assert.*;
+
+public class MetricsTest {
+    private StandInApi server;
+    private Client previous;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new StandInApi(DataSet.SMALL);
+        previous = Connection.SetDefault(new Client(server.GetUrl()));
+        Connection.metrics.Reset();
+    }
+
+    @After
+    public void tearDown() {
+        Connection.SetDefault(previous);
+        server.close();
+    }
+
+    @Test
+    public void histogram_percentilesStayWithinBucketError() {
+        Histogram histogram = new Histogram();
+        for (int i = 1; i <= 1000; i++) histogram.Record(i * 1000);
+
+        assertEquals(1000, histogram.GetCount());
+        assertEquals(1000000, histogram.GetMax());
+        assertEquals(500500, histogram.GetMean());
+        long p50 = histogram.GetPercentile(50);
+        long p99 = histogram.GetPercentile(99);
+        assertTrue("p50 " + p50, p50 >= 500000 && p50 <= 500000 * 1.125);
+        assertTrue("p99 " + p99, p99 >= 990000 && p99 <= 1000000);
+        assertEquals(1000000, histogram.GetPercentile(100));
+    }
+
+    @Test
+    public void histogram_countsSmallValuesExactly() {
+        Histogram histogram = new Histogram();
+        histogram.Record(3);
+        histogram.Record(3);
+        histogram.Record(7);
+
+        assertEquals(3, histogram.GetPercentile(50));
+        assertEquals(7, histogram.GetPercentile(99));
+        histogram.Reset();
+        assertEquals(0, histogram.GetCount());
+        assertEquals(0, histogram.GetPercentile(50));
+    }
+
+    @Test
+    public void send_recordsPhasesSizesAndStatusPerEndpoint() {
+        server.Handle("group", new StandInApi.Handler() {
+            @Override
+            public Response Handle(String method, String body) {
+                return new Response("{\"results\":[{\"id\":1,\"name\":\"Keuken\"}]}", 200, "OK");
+            }
+        });
+        server.Handle("groupsharing", new StandInApi.Handler() {
+            @Override
+            public Response Handle(String method, String body) {
+                return new Response(null, 400, "Bad Request");
+            }
+        });
+
+        Response response = Connection.Send("group", "GET", "{\"all\":true}");
+        assertNotNull(response.GetGroups());
+        Connection.Send("groupsharing", "POST", "{\"code\":\"abc\"}");
+
+        Metrics.Endpoint group = Connection.metrics.Get("group");
+        assertEquals(Long.valueOf(1), group.GetStatusCounts().get(200));
+        assertEquals(1, group.Connect.GetCount());
+        assertEquals(1, group.FirstByte.GetCount());
+        assertEquals(1, group.Download.GetCount());
+        assertEquals(1, group.Parse.GetCount());
+        assertEquals(1, group.Total.GetCount());
+        assertTrue(group.RequestSize.GetMax() > 0);
+        assertTrue(group.ResponseSize.GetMax() > 0);
+        assertEquals(Long.valueOf(1), Connection.metrics.Get("groupsharing").GetStatusCounts().get(400));
+
+        StringWriter dump = new StringWriter();
+        Connection.metrics.Dump(dump);
+        assertTrue(dump.toString(), dump.toString().contains("\ngroup\n  status    200=1\n"));
+        assertTrue(dump.toString(), dump.toString().contains("\ngroupsharing\n  status    400=1\n"));
+    }
+}
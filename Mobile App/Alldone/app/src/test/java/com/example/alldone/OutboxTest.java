@@ -0,0 +1,109 @@
+package com.example.alldone;
+
+import com.example.alldone.standin.DataSet;
+import com.example.alldone.standin.StandInApi;
+import com.example.alldone.store.Mutation;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class OutboxTest {
+    private StandInApi server;
+    private Client previous;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new StandInApi(DataSet.SMALL);
+        server.SetRecording(true);
+        previous = Connection.SetDefault(new Client(server.GetUrl()));
+    }
+
+    @After
+    public void tearDown() {
+        Connection.SetDefault(previous);
+        server.close();
+    }
+
+    private static Mutation mutation(String key, String type, int task, int attempts) {
+        return new Mutation(-1, key, type, task, 7, null, attempts);
+    }
+
+    @Test
+    public void coalesce_deleteDropsUnsentCreateAndEverythingAfterIt() {
+        List<Mutation> pending = Arrays.asList(
+                mutation("a", Mutation.CREATE_TASK, -1, 0),
+                mutation("b", Mutation.ENROLL, -1, 0),
+                mutation("c", Mutation.ENROLL, 12, 0));
+        List<Mutation> dropped = new ArrayList<>();
+        assertFalse(Outbox.Coalesce(pending, mutation("d", Mutation.DELETE_TASK, -1, 0), dropped));
+        assertEquals(pending.subList(0, 2), dropped);
+    }
+
+    @Test
+    public void coalesce_deleteKeepsCreateThatMayHaveArrived() {
+        List<Mutation> pending = Arrays.asList(
+                mutation("a", Mutation.CREATE_TASK, -1, 1),
+                mutation("b", Mutation.ENROLL, -1, 0));
+        List<Mutation> dropped = new ArrayList<>();
+        assertTrue(Outbox.Coalesce(pending, mutation("c", Mutation.DELETE_TASK, -1, 0), dropped));
+        // Only the enrollment in the deleted task is unnecessary
+        assertEquals(pending.subList(1, 2), dropped);
+    }
+
+    @Test
+    public void coalesce_sendsRepeatedEnrollmentOnce() {
+        List<Mutation> pending = Collections.singletonList(mutation("a", Mutation.ENROLL, 12, 0));
+        List<Mutation> dropped = new ArrayList<>();
+        assertFalse(Outbox.Coalesce(pending, mutation("b", Mutation.ENROLL, 12, 0), dropped));
+        assertTrue(Outbox.Coalesce(pending, mutation("c", Mutation.FINISH, 12, 0), dropped));
+        assertTrue(Outbox.Coalesce(pending, mutation("d", Mutation.ENROLL, 13, 0), dropped));
+        assertTrue(dropped.isEmpty());
+    }
+
+    @Test
+    public void classify_treatsConflictsOfRetriesAsSent() {
+        Mutation enroll = mutation("a", Mutation.ENROLL, 12, 1);
+        Mutation delete = mutation("b", Mutation.DELETE_TASK, 12, 1);
+        Mutation create = mutation("c", Mutation.CREATE_TASK, -1, 1);
+
+        assertEquals(Outbox.Outcome.SENT, Outbox.Classify(enroll, new Response("{}", 409, "Conflict")));
+        assertEquals(Outbox.Outcome.SENT, Outbox.Classify(delete, new Response(null, 400, "Bad Request")));
+        // A create doesn't conflict with anything but its own first attempt, which is still running
+        assertEquals(Outbox.Outcome.RETRY, Outbox.Classify(create, new Response(null, 409, "Conflict")));
+
+        assertEquals(Outbox.Outcome.RETRY, Outbox.Classify(enroll, new Response()));
+        assertEquals(Outbox.Outcome.RETRY, Outbox.Classify(enroll, new Response(null, 503, "Service Unavailable")));
+        assertEquals(Outbox.Outcome.REJECTED, Outbox.Classify(delete, new Response(null, 401, "Unauthorized")));
+        assertEquals(Outbox.Outcome.REJECTED, Outbox.Classify(create, new Response(null, 400, "Bad Request")));
+    }
+
+    @Test
+    public void send_retryWithSameKeyIsOnlyAppliedOnce() {
+        final AtomicInteger created = new AtomicInteger();
+        server.Handle("task", new StandInApi.Handler() {
+            @Override
+            public Response Handle(String method, String body) {
+                return new Response("{\"id\":" + (100 + created.incrementAndGet()) + "}", 201, "Created");
+            }
+        });
+
+        Response first = Connection.Send("task", "POST", "{\"group\":7,\"title\":\"Afwassen\"}", "key-1");
+        Response retry = Connection.Send("task", "POST", "{\"group\":7,\"title\":\"Afwassen\"}", "key-1");
+        Response other = Connection.Send("task", "POST", "{\"group\":7,\"title\":\"Afwassen\"}", "key-2");
+
+        assertEquals(2, created.get());
+        assertEquals("101", first.GetString("id"));
+        assertEquals("101", retry.GetString("id"));
+        assertEquals("102", other.GetString("id"));
+        assertEquals(Arrays.asList("key-1", "key-1", "key-2"), server.GetIdempotencyKeys());
+    }
+}
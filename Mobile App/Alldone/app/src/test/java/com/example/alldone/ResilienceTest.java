@@ -0,0 +1,233 @@
+package com.example.alldone;
+
+import com.example.alldone.net.CircuitBreaker;
+import com.example.alldone.net.ConnectionPool;
+import com.example.alldone.net.Exchange;
+import com.example.alldone.net.PooledTransport;
+import com.example.alldone.net.Resilience;
+import com.example.alldone.standin.DataSet;
+import com.example.alldone.standin.StandInApi;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ResilienceTest {
+    private StandInApi server;
+    private Client previous;
+    private final AtomicInteger calls = new AtomicInteger();
+
+    @Before
+    public void setUp() throws Exception {
+        server = new StandInApi(DataSet.SMALL);
+        previous = Connection.SetDefault(new Client(server.GetUrl()));
+    }
+
+    @After
+    public void tearDown() {
+        Connection.resilience.SetBreakerOptions(CircuitBreaker.DEFAULT_THRESHOLD, CircuitBreaker.DEFAULT_OPEN_TIME);
+        Connection.resilience.ResetBreakers();
+        Connection.SetDefault(previous);
+        server.close();
+    }
+
+    /**
+     * Answers with the given status codes in turn, and with 200 once they run out.
+     */
+    private void answer(String link, final int... statusCodes) {
+        server.Handle(link, new StandInApi.Handler() {
+            @Override
+            public Response Handle(String method, String body) {
+                int call = calls.getAndIncrement();
+                int status = call < statusCodes.length ? statusCodes[call] : 200;
+                return new Response(status == 200 ? "{\"call\":" + call + "}" : null, status, "");
+            }
+        });
+    }
+
+    @Test
+    public void send_retriesIdempotentRequestsAfterTransientFailures() {
+        Connection.resilience.SetPolicy("flaky", new Resilience.Policy(3, 10, 20, 0));
+        answer("flaky", 503, 502);
+
+        Response response = Connection.Send("flaky", "GET");
+        assertEquals(200, response.StatusCode);
+        assertEquals(3, calls.get());
+        Resilience.Policy policy = Connection.resilience.GetPolicy("flaky");
+        assertEquals(2, policy.GetRetryCount());
+        assertEquals(0, policy.GetExhaustedCount());
+    }
+
+    @Test
+    public void send_givesUpAfterMaxAttempts() {
+        Connection.resilience.SetPolicy("down", new Resilience.Policy(2, 10, 20, 0));
+        answer("down", 503, 503, 503);
+
+        assertEquals(503, Connection.Send("down", "DELETE", "{\"task\":12}").StatusCode);
+        assertEquals(2, calls.get());
+        Resilience.Policy policy = Connection.resilience.GetPolicy("down");
+        assertEquals(1, policy.GetExhaustedCount());
+    }
+
+    @Test
+    public void policies_countPerEndpoint() {
+        // Both endpoints use the default policy
+        answer("counted", 503);
+        assertEquals(200, Connection.Send("counted", "GET").StatusCode);
+
+        assertEquals(1, Connection.resilience.GetPolicy("counted").GetRetryCount());
+        assertEquals(0, Connection.resilience.GetPolicy("uncounted").GetRetryCount());
+        assertEquals(0, Resilience.DEFAULT_POLICY.GetRetryCount());
+    }
+
+    @Test
+    public void send_onlyRetriesPostsWithIdempotencyKey() {
+        Connection.resilience.SetPolicy("change", new Resilience.Policy(3, 10, 20, 0));
+        answer("change", 503, 503);
+
+        assertEquals(503, Connection.Send("change", "POST", "{}").StatusCode);
+        assertEquals(1, calls.get());
+        assertEquals(200, Connection.Send("change", "POST", "{}", "key-1").StatusCode);
+        assertEquals(3, calls.get());
+    }
+
+    @Test
+    public void send_neverRetriesClientErrors() {
+        Connection.resilience.SetPolicy("missing", new Resilience.Policy(3, 10, 20, 0));
+        answer("missing", 404, 404);
+
+        assertEquals(404, Connection.Send("missing", "GET").StatusCode);
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void breaker_failsFastWhileOpenAndClosesAfterProbe() throws Exception {
+        Connection.resilience.SetBreakerOptions(2, 200);
+        Connection.resilience.SetPolicy("broken", Resilience.Policy.NONE);
+        answer("broken", 500, 500);
+
+        assertEquals(500, Connection.Send("broken", "GET").StatusCode);
+        assertEquals(500, Connection.Send("broken", "GET").StatusCode);
+        // Open: the server isn't contacted
+        assertEquals(-1, Connection.Send("broken", "GET").StatusCode);
+        assertEquals(2, calls.get());
+
+        Thread.sleep(250);
+        // The probe succeeds and closes the breaker again
+        assertEquals(200, Connection.Send("broken", "GET").StatusCode);
+        assertEquals(200, Connection.Send("broken", "GET").StatusCode);
+        assertEquals(4, calls.get());
+
+        // Earlier tests may have left breakers of their own servers behind
+        CircuitBreaker breaker = Connection.resilience.GetBreaker(new URL(server.GetUrl() + "broken"));
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.GetState());
+        assertEquals(1, breaker.GetOpenedCount());
+        assertEquals(1, breaker.GetRejectedCount());
+    }
+
+    @Test
+    public void send_hedgesSlowReads() {
+        Connection.resilience.SetPolicy("slow", new Resilience.Policy(1, 0, 0, 50));
+        server.Handle("slow", new StandInApi.Handler() {
+            @Override
+            public Response Handle(String method, String body) throws Exception {
+                // Only the first request is slow
+                if (calls.getAndIncrement() == 0) Thread.sleep(1000);
+                return new Response("{\"hedged\":true}", 200, "OK");
+            }
+        });
+
+        long start = System.nanoTime();
+        Response response = Connection.Send("slow", "GET");
+        long elapsed = (System.nanoTime() - start) / 1000000;
+
+        assertEquals(200, response.StatusCode);
+        assertTrue("Took " + elapsed + " ms", elapsed < 900);
+        Resilience.Policy policy = Connection.resilience.GetPolicy("slow");
+        assertEquals(1, policy.GetHedgeCount());
+        assertEquals(1, policy.GetHedgeWinCount());
+    }
+
+    /**
+     * Starts a server that answers the first request on every connection, and reads the next one but closes the
+     * connection without answering it, like a server that went down while handling it.
+     */
+    private ServerSocket dropSecondRequests() throws IOException {
+        final ServerSocket listener = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        Socket socket = listener.accept();
+                        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.ISO_8859_1));
+                        OutputStream out = socket.getOutputStream();
+                        for (int request = 0; ; request++) {
+                            int length = 0;
+                            String line = in.readLine();
+                            if (line == null) break;
+                            while ((line = in.readLine()) != null && !line.isEmpty())
+                                if (line.toLowerCase().startsWith("content-length:")) length = Integer.parseInt(line.substring(15).trim());
+                            for (int i = 0; i < length; i++) in.read();
+                            calls.incrementAndGet();
+                            if (request > 0) break;
+                            out.write("HTTP/1.1 200 OK\r\nContent-Length: 0\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1));
+                            out.flush();
+                        }
+                        socket.close();
+                    }
+                } catch (IOException e) {
+                    // Closed by the test
+                }
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        return listener;
+    }
+
+    @Test
+    public void transport_onlyResendsRequestsThatMayBeSentTwiceOnReusedSockets() throws Exception {
+        ServerSocket listener = dropSecondRequests();
+        PooledTransport transport = new PooledTransport(new ConnectionPool(1, 1, 60000));
+        URL url = new URL("http://127.0.0.1:" + listener.getLocalPort() + "/change");
+        try {
+            Exchange warm = transport.Execute("GET", url, Collections.<String, String>emptyMap(), null, null);
+            assertEquals(200, warm.GetStatusCode());
+            warm.Close();
+
+            // The server got the change, so sending it again would apply it twice
+            try {
+                transport.Execute("POST", url, Collections.<String, String>emptyMap(), "{}".getBytes(StandardCharsets.UTF_8), null);
+                fail();
+            } catch (IOException e) {
+                // Expected
+            }
+            assertEquals(2, calls.get());
+
+            // Reads are sent again on a new connection
+            transport.Execute("GET", url, Collections.<String, String>emptyMap(), null, null).Close();
+            Exchange read = transport.Execute("GET", url, Collections.<String, String>emptyMap(), null, null);
+            assertEquals(200, read.GetStatusCode());
+            read.Close();
+            assertEquals(5, calls.get());
+        } finally {
+            transport.GetPool().Shutdown();
+            listener.close();
+        }
+    }
+}
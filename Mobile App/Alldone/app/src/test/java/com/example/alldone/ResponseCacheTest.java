@@ -0,0 +1,102 @@
+package com.example.alldone;
+
+import com.example.alldone.standin.DataSet;
+import com.example.alldone.standin.StandInApi;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ResponseCacheTest {
+    private static final String KEY = ResponseCache.GetKey("taskenroll", "GET", "{\"task\":12}");
+
+    private ResponseCache cache;
+
+    @Before
+    public void setUp() {
+        cache = new ResponseCache(Client.DEFAULT_CACHE_SIZE);
+        cache.SetTTL("taskenroll", 10000);
+        cache.SetTTL("group", 30000);
+    }
+
+    @Test
+    public void put_skipsReadsThatAnInvalidationOvertook() {
+        long generation = cache.GetGeneration();
+        // An enroll ends while the read is still on its way
+        cache.Invalidate("taskenroll");
+        cache.Put(KEY, "taskenroll", new Response("{\"results\":[]}", 200, "OK"), "\"a\"", null, generation);
+        assertNull(cache.Get(KEY));
+
+        cache.Put(KEY, "taskenroll", new Response("{\"results\":[]}", 200, "OK"), "\"b\"", null, cache.GetGeneration());
+        assertEquals("\"b\"", cache.Get(KEY).ETag);
+    }
+
+    @Test
+    public void put_keepsReadsOfOtherEndpoints() {
+        long generation = cache.GetGeneration();
+        cache.Invalidate("group");
+        cache.Put(KEY, "taskenroll", new Response("{\"results\":[]}", 200, "OK"), null, null, generation);
+        assertNotNull(cache.Get(KEY));
+    }
+
+    @Test
+    public void refresh_skipsRevalidationsThatAnInvalidationOvertook() throws Exception {
+        cache.SetTTL("taskenroll", 0);
+        cache.Put(KEY, "taskenroll", new Response("{\"results\":[]}", 200, "OK"), "\"a\"", null, cache.GetGeneration());
+        ResponseCache.Entry entry = cache.Get(KEY);
+        cache.SetTTL("taskenroll", 10000);
+
+        long generation = cache.GetGeneration();
+        cache.Invalidate("taskenroll");
+        cache.Refresh(entry, generation);
+        assertFalse(entry.IsFresh());
+    }
+
+    @Test
+    public void put_skipsReadsFromBeforeAClear() {
+        long generation = cache.GetGeneration();
+        cache.Clear();
+        cache.Put(KEY, "taskenroll", new Response("{\"results\":[]}", 200, "OK"), null, null, generation);
+        assertNull(cache.Get(KEY));
+    }
+
+    @Test
+    public void setSession_keepsReadsOfThePreviousSessionOutOfTheCache() throws Exception {
+        StandInApi server = new StandInApi(DataSet.SMALL);
+        server.SetRecording(true);
+        final CountDownLatch started = new CountDownLatch(1);
+        server.Handle("group", new StandInApi.Handler() {
+            @Override
+            public Response Handle(String method, String body) throws Exception {
+                started.countDown();
+                Thread.sleep(300);
+                return new Response("{\"results\":[]}", 200, "OK");
+            }
+        });
+        final Client client = new Client(server.GetUrl());
+        client.SetSession("first", null);
+        try {
+            Thread read = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    client.Send("group", "GET");
+                }
+            });
+            read.start();
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            client.SetSession("second", null);
+            read.join();
+
+            // The response of the first session may not be served to the second one
+            client.Send("group", "GET");
+            assertEquals(2, server.GetRequests().size());
+            assertEquals(0, client.GetCache().GetHitCount());
+        } finally {
+            server.close();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.alldone;
+
+import com.example.alldone.model.Enrollment;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.text.DateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+public class TimeFormatterTest {
+    private Locale locale;
+    private TimeZone zone;
+
+    @Before
+    public void setUp() {
+        locale = Locale.getDefault();
+        zone = TimeZone.getDefault();
+    }
+
+    @After
+    public void tearDown() {
+        Locale.setDefault(locale);
+        TimeZone.setDefault(zone);
+    }
+
+    private static String expected(long unixSeconds) {
+        DateFormat format = DateFormat.getDateTimeInstance();
+        format.setTimeZone(TimeZone.getDefault());
+        return format.format(new Date(unixSeconds * 1000L));
+    }
+
+    @Test
+    public void formatUnixSeconds_matchesDateFormat() {
+        Locale.setDefault(Locale.US);
+        TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+        assertEquals(expected(1571400000L), TimeFormatter.FormatUnixSeconds(1571400000L));
+        assertEquals(expected(0), TimeFormatter.FormatUnixSeconds(0));
+    }
+
+    @Test
+    public void formatUnixSeconds_followsDefaultChanges() {
+        Locale.setDefault(Locale.US);
+        TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+        String utc = TimeFormatter.FormatUnixSeconds(1571400000L);
+
+        TimeZone.setDefault(TimeZone.getTimeZone("Asia/Tokyo"));
+        String tokyo = TimeFormatter.FormatUnixSeconds(1571400000L);
+        assertEquals(expected(1571400000L), tokyo);
+        assertNotEquals(utc, tokyo);
+
+        Locale.setDefault(Locale.GERMANY);
+        assertEquals(expected(1571400000L), TimeFormatter.FormatUnixSeconds(1571400000L));
+    }
+
+    @Test
+    public void enrollment_formatsTimesWhenDecoded() throws Exception {
+        Locale.setDefault(Locale.US);
+        TimeZone.setDefault(TimeZone.getTimeZone("UTC"));
+        Enrollment enrollment = Enrollment.read(new JsonStreamReader("{\"Username\":\"a\",\"Start\":1571400000,\"End\":0}"));
+        assertEquals(expected(1571400000L), enrollment.getStartText());
+        assertEquals("", enrollment.getEndText());
+
+        enrollment.setEnd(1571403600L);
+        assertEquals(expected(1571403600L), enrollment.getEndText());
+    }
+}
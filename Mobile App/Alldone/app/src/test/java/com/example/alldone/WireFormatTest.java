@@ -0,0 +1,196 @@
+package com.example.alldone;
+
+import com.example.alldone.model.Task;
+import com.example.alldone.model.TaskChanges;
+import com.example.alldone.standin.CborWriter;
+import com.example.alldone.standin.DataSet;
+import com.example.alldone.standin.StandInApi;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class WireFormatTest {
+    static final String TASKS = "{\"count\":2,\"results\":["
+            + "{\"Id\":1,\"Group\":3,\"Creator\":-7,\"Created\":1571400000,\"Title\":\"Afwassen \\\"vandaag\\\"\","
+            + "\"Description\":null,\"Priority\":2,\"Extra\":{\"Tags\":[\"a\",true,1.5]}},"
+            + "{\"Id\":2,\"Group\":3,\"Creator\":4,\"Created\":4294967296,\"Title\":\"Caf\u00e9 \u263a\","
+            + "\"Description\":\"\",\"Priority\":0}]}";
+
+    private StandInApi server;
+    private Client previous;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new StandInApi(DataSet.SMALL);
+        server.SetRecording(true);
+        server.Handle("task", new StandInApi.Handler() {
+            @Override
+            public Response Handle(String method, String body) {
+                return new Response(TASKS, 200, "OK");
+            }
+        });
+        previous = Connection.SetDefault(new Client(server.GetUrl()));
+        Connection.GetDefault().GetCache().Clear();
+    }
+
+    @After
+    public void tearDown() {
+        Connection.SetDefault(previous);
+        Connection.GetDefault().GetCache().Clear();
+        Connection.GetDefault().SetAcceptCbor(true);
+        server.close();
+    }
+
+    @Test
+    public void cborReader_decodesSameTasksAsJson() throws Exception {
+        List<Task> json = new Response(TASKS, 200, "OK").GetTasks();
+        List<Task> cbor = Response.FromCbor(CborWriter.FromJson(TASKS), 200, "OK").GetTasks();
+        assertEquals(2, json.size());
+        assertEquals(json, cbor);
+        assertEquals(-7, cbor.get(0).getCreator());
+        assertNull(cbor.get(0).getDescription());
+        assertEquals(4294967296L, cbor.get(1).getCreated());
+    }
+
+    /**
+     * @return A task list like the task endpoint sends, with a fixed seed so every run checks the same data.
+     */
+    private static String createTasks(int count) throws Exception {
+        Random random = new Random(count);
+        String[] words = { "boodschappen", "afwas", "stofzuigen", "was", "ramen", "planten", "vuilnis", "koken" };
+        JSONArray results = new JSONArray();
+        for (int i = 0; i < count; i++) {
+            StringBuilder description = new StringBuilder();
+            int length = random.nextInt(30);
+            for (int j = 0; j < length; j++) description.append(j == 0 ? "" : " ").append(words[random.nextInt(words.length)]);
+            results.put(new JSONObject()
+                    .put("Id", 1000 + i)
+                    .put("Group", 42)
+                    .put("Creator", 1 + random.nextInt(20))
+                    .put("Created", 1571400000L + random.nextInt(30000000))
+                    .put("Title", words[random.nextInt(words.length)] + " " + i)
+                    .put("Description", description.toString())
+                    .put("Priority", random.nextInt(4)));
+        }
+        return new JSONObject().put("results", results).toString();
+    }
+
+    @Test
+    public void cbor_isSmallerThanJsonForTaskLists() throws Exception {
+        for (int size : new int[] { 50, 500 }) {
+            String json = createTasks(size);
+            byte[] cbor = CborWriter.FromJson(json);
+            assertTrue(cbor.length < json.getBytes("UTF-8").length);
+
+            List<Task> expected = new Response(json, 200, "OK").GetTasks();
+            assertEquals(size, expected.size());
+            assertEquals(expected, Response.FromCbor(cbor, 200, "OK").GetTasks());
+        }
+    }
+
+    @Test
+    public void taskChanges_decodesDeletionsAndCursorInBothFormats() throws Exception {
+        String delta = "{\"results\":[{\"Id\":5,\"Group\":3,\"Creator\":4,\"Created\":1571400000,\"Title\":\"Nieuw\",\"Priority\":1}],"
+                + "\"deleted\":[2,3],\"cursor\":4294967296}";
+        TaskChanges json = new Response(delta, 200, "OK").GetTaskChanges();
+        TaskChanges cbor = Response.FromCbor(CborWriter.FromJson(delta), 200, "OK").GetTaskChanges();
+        for (TaskChanges changes : Arrays.asList(json, cbor)) {
+            assertEquals(1, changes.getTasks().size());
+            assertEquals("Nieuw", changes.getTasks().get(0).getTitle());
+            assertEquals(Arrays.asList(2, 3), changes.getDeleted());
+            assertEquals(4294967296L, changes.getCursor());
+        }
+
+        // Pages of servers without change tracking have no cursor
+        TaskChanges page = new Response(TASKS, 200, "OK").GetTaskChanges();
+        assertEquals(new Response(TASKS, 200, "OK").GetTasks(), page.getTasks());
+        assertTrue(page.getDeleted().isEmpty());
+        assertEquals(-1, page.getCursor());
+    }
+
+    @Test
+    public void cborReader_ignoresZeroPadding() throws Exception {
+        byte[] cbor = CborWriter.FromJson(TASKS);
+        // Tasks end with a priority of 0, which is encoded as a zero byte itself
+        assertEquals(0, cbor[cbor.length - 1]);
+        byte[] padded = Arrays.copyOf(cbor, (cbor.length / 16 + 1) * 16);
+        assertEquals(new Response(TASKS, 200, "OK").GetTasks(), Response.FromCbor(padded, 200, "OK").GetTasks());
+    }
+
+    @Test
+    public void cborReader_readsIndefiniteLengthsTagsAndHalfFloats() throws IOException {
+        byte[] cbor = {
+                (byte) 0xbf,                                    // map of unknown length
+                0x61, 'a', (byte) 0x9f, 0x01, 0x20, (byte) 0xff, // "a": [1, -1]
+                0x61, 'b', (byte) 0xc1, 0x1a, 0x5d, (byte) 0xa9, (byte) 0xa9, 0x40, // "b": epoch tag 1571400000
+                0x61, 'c', 0x7f, 0x62, 'h', 'a', 0x61, 'l', (byte) 0xff, // "c": "ha" "l"
+                0x61, 'd', (byte) 0xf9, 0x3c, 0x00,             // "d": half float 1.0
+                0x61, 'e', (byte) 0xf6,                         // "e": null
+                (byte) 0xff
+        };
+        CborStreamReader reader = new CborStreamReader(cbor);
+        reader.BeginObject();
+        assertEquals("a", reader.NextName());
+        reader.BeginArray();
+        assertEquals(1, reader.NextInt());
+        assertEquals(-1, reader.NextInt());
+        assertFalse(reader.HasNext());
+        reader.EndArray();
+        assertEquals("b", reader.NextName());
+        assertEquals(1571400000L, reader.NextLong());
+        assertEquals("c", reader.NextName());
+        assertEquals("hal", reader.NextString());
+        assertEquals("d", reader.NextName());
+        assertEquals(1, reader.NextInt());
+        assertEquals("e", reader.NextName());
+        reader.SkipValue();
+        assertFalse(reader.HasNext());
+        reader.EndObject();
+        assertEquals(ValueReader.Token.END_DOCUMENT, reader.Peek());
+    }
+
+    @Test(expected = IOException.class)
+    public void cborReader_rejectsTruncatedData() throws Exception {
+        byte[] cbor = CborWriter.FromJson(TASKS);
+        CborStreamReader reader = new CborStreamReader(cbor, 0, cbor.length - 4);
+        reader.SkipValue();
+    }
+
+    @Test
+    public void send_negotiatesCbor() throws Exception {
+        server.SetCborEnabled(true);
+        Response response = Connection.Send("task", "GET", "{\"group\":3}");
+        assertTrue(response.IsBinary());
+        assertNull(response.Data);
+        assertEquals(new Response(TASKS, 200, "OK").GetTasks(), response.GetTasks());
+        // Callers that read the body as JSON keep working
+        assertEquals(2, response.GetJSON().getInt("count"));
+        assertEquals("2", response.GetString("count"));
+        assertEquals(Arrays.asList(CborStreamReader.MIME_TYPE), server.GetResponseTypes());
+    }
+
+    @Test
+    public void send_fallsBackToJson() {
+        // The stand-in, like an older Web API, only knows JSON
+        Response response = Connection.Send("task", "GET", "{\"group\":3}");
+        assertFalse(response.IsBinary());
+        assertEquals(TASKS, response.Data);
+        assertEquals(2, response.GetTasks().size());
+
+        server.SetCborEnabled(true);
+        Connection.GetDefault().SetAcceptCbor(false);
+        Connection.GetDefault().GetCache().Clear();
+        assertFalse(Connection.Send("task", "GET", "{\"group\":3}").IsBinary());
+        assertEquals(Arrays.asList("application/json", "application/json"), server.GetResponseTypes());
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.alldone.benchmark;
+
+import com.example.alldone.AES;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encrypts and decrypts bodies of the sizes that requests and responses have, from a single enrollment to a long
+ * task list.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CipherBenchmark {
+    @Param({ "64", "1024", "16384", "262144" })
+    public int size;
+
+    private byte[] plain;
+    private byte[] encrypted;
+    private byte[] output;
+    private AES encoder;
+    private AES decoder;
+
+    @Setup
+    public void setUp() {
+        plain = Payloads.bytes(size);
+        encoder = new AES(Payloads.bytes(32));
+        encrypted = encoder.Encode(plain);
+        decoder = new AES(encoder.GetKey(), encoder.GetIV());
+        output = new byte[encrypted.length];
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return encoder.Encode(plain);
+    }
+
+    @Benchmark
+    public byte[] decode() {
+        return decoder.Decode(encrypted);
+    }
+
+    /**
+     * Decodes into a buffer that is reused, the way response bodies are decrypted.
+     */
+    @Benchmark
+    public int decodeIntoBuffer() {
+        return decoder.Decode(encrypted, 0, encrypted.length, output, 0);
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.alldone.benchmark;
+
+import com.example.alldone.Response;
+import com.example.alldone.model.Task;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Turns a task list into the title and priority that every row of a list shows, the way the adapters do it: once
+ * by looking the fields up in JSON objects, and once from the decoded tasks.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ExtractionBenchmark {
+    @Param({ "10", "100", "1000", "10000" })
+    public int tasks;
+
+    private String body;
+
+    @Setup
+    public void setUp() {
+        body = Payloads.tasks(tasks);
+    }
+
+    @Benchmark
+    public List<String> fromJson() throws JSONException {
+        JSONArray results = new Response(body, 200, "OK").GetJSON().getJSONArray("results");
+        List<String> rows = new ArrayList<>(results.length());
+        for (int i = 0; i < results.length(); i++) {
+            JSONObject task = results.getJSONObject(i);
+            rows.add(task.getString("Title") + " " + task.getInt("Priority"));
+        }
+        return rows;
+    }
+
+    @Benchmark
+    public List<String> fromTasks() {
+        List<Task> tasks = new Response(body, 200, "OK").GetTasks();
+        List<String> rows = new ArrayList<>(tasks.size());
+        for (Task task : tasks) rows.add(task.getTitle() + " " + task.getPriority());
+        return rows;
+    }
+}
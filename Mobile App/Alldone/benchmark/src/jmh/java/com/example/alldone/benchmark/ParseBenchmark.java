@@ -0,0 +1,55 @@
+package com.example.alldone.benchmark;
+
+import com.example.alldone.Response;
+import com.example.alldone.model.Task;
+import com.example.alldone.standin.CborWriter;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses task lists of the task endpoint, sent as JSON and as CBOR. Every invocation parses a new {@link Response},
+ * because responses only parse their body once.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ParseBenchmark {
+    @Param({ "10", "100", "1000", "10000" })
+    public int tasks;
+
+    private String body;
+    private byte[] cbor;
+
+    @Setup
+    public void setUp() throws JSONException {
+        body = Payloads.tasks(tasks);
+        cbor = CborWriter.FromJson(body);
+    }
+
+    @Benchmark
+    public JSONObject getJson() {
+        return new Response(body, 200, "OK").GetJSON();
+    }
+
+    @Benchmark
+    public List<Task> getTasks() {
+        return new Response(body, 200, "OK").GetTasks();
+    }
+
+    @Benchmark
+    public List<Task> getTasksFromCbor() {
+        return Response.FromCbor(cbor, 200, "OK").GetTasks();
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.alldone.benchmark;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Random;
+
+/**
+ * Builds the bodies that the benchmarks work on. Every size uses a fixed seed, so every run measures the same data.
+ */
+final class Payloads {
+    private static final String[] WORDS = { "boodschappen", "afwas", "stofzuigen", "was", "ramen", "planten", "vuilnis", "koken" };
+
+    private Payloads() { }
+
+    /**
+     * @return A task list like the task endpoint sends.
+     */
+    static String tasks(int count) {
+        Random random = new Random(count);
+        JSONArray results = new JSONArray();
+        try {
+            for (int i = 0; i < count; i++) {
+                StringBuilder description = new StringBuilder();
+                int length = random.nextInt(30);
+                for (int j = 0; j < length; j++) description.append(j == 0 ? "" : " ").append(WORDS[random.nextInt(WORDS.length)]);
+                results.put(new JSONObject()
+                        .put("Id", 1000 + i)
+                        .put("Group", 42)
+                        .put("Creator", 1 + random.nextInt(20))
+                        .put("Created", 1571400000L + random.nextInt(30000000))
+                        .put("Title", WORDS[random.nextInt(WORDS.length)] + " " + i)
+                        .put("Description", description.toString())
+                        .put("Priority", random.nextInt(4)));
+            }
+            return new JSONObject().put("results", results).toString();
+        } catch (JSONException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @return Random bytes, e.g. to encrypt.
+     */
+    static byte[] bytes(int length) {
+        byte[] data = new byte[length];
+        new Random(length).nextBytes(data);
+        return data;
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.alldone.benchmark;
+
+import com.example.alldone.CipherEngine;
+import com.example.alldone.Client;
+import com.example.alldone.Response;
+import com.example.alldone.net.Base64;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends reads through {@link Client#Send(String, String)} to a server in the same process, so the numbers show
+ * the cost of the client: pooling, reading the body, decrypting and decoding it. The endpoint isn't cached.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TransportBenchmark {
+    private static final String LINK = "benchmark";
+
+    @Param({ "10", "1000" })
+    public int tasks;
+
+    @Param({ "false", "true" })
+    public boolean encrypted;
+
+    private HttpServer server;
+    private ExecutorService executor;
+    private Client client;
+
+    @Setup
+    public void setUp() throws IOException, GeneralSecurityException {
+        byte[] plain = Payloads.tasks(tasks).getBytes(StandardCharsets.UTF_8);
+        final byte[] key = Payloads.bytes(32);
+        final byte[] iv = new byte[CipherEngine.BLOCK_SIZE];
+        final byte[] body = encrypted ? CipherEngine.Get().Encrypt(key, plain, 0, plain.length, iv) : plain;
+
+        executor = Executors.newFixedThreadPool(4);
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/" + LINK, new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                InputStream in = exchange.getRequestBody();
+                while (in.read() != -1) { }
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                if (encrypted) exchange.getResponseHeaders().set("Content-IV", Base64.Encode(iv));
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        server.setExecutor(executor);
+        server.start();
+
+        client = new Client("http://127.0.0.1:" + server.getAddress().getPort() + "/");
+        if (encrypted) client.SetSession("benchmark", key);
+    }
+
+    @TearDown
+    public void tearDown() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public Response send() {
+        Response response = client.Send(LINK, "GET");
+        if (response.StatusCode != 200) throw new IllegalStateException("The server answered " + response);
+        return response;
+    }
+}
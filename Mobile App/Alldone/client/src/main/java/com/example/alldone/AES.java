@@ -0,0 +1,120 @@
+package com.example.alldone;
+
+import java.security.GeneralSecurityException;
+import java.security.InvalidParameterException;
+
+import com.example.alldone.net.Base64;
+
+import javax.crypto.KeyGenerator;
+
+/**
+ * Convenience wrapper around the {@link CipherEngine} of the calling thread for a single key and IV.
+ */
+public class AES {
+    private byte[] key;
+    private byte[] iv;
+    // The IV generated by the last call to Encode
+    private byte[] generatedIV;
+
+    public AES() { }
+    public AES(byte[] key) {
+        this();
+        SetKey(key);
+    }
+    public AES(byte[] key, byte[] iv) {
+        this(key);
+        SetIV(iv);
+    }
+    public AES(byte[] key, String base64IV) {
+        this(key);
+        SetIV(base64IV);
+    }
+    public AES(String base64Key) {
+        this();
+        SetKey(base64Key);
+    }
+    public AES(String base64Key, byte[] iv) {
+        this(base64Key);
+        SetIV(iv);
+    }
+    public AES(String base64Key, String base64IV) {
+        this(base64Key);
+        SetIV(base64IV);
+    }
+
+    public byte[] GetKey() {
+        if (key == null) {
+            try {
+                SetKey(KeyGenerator.getInstance("AES").generateKey().getEncoded());
+            } catch (GeneralSecurityException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        return key;
+    }
+    public String GetBase64Key() {
+        byte[] key = GetKey();
+        return key == null ? null : Base64.Encode(key);
+    }
+    public void SetKey(byte[] key) {
+        if (key.length != 32) throw new InvalidParameterException("Key must contain 32 elements.");
+        this.key = key;
+    }
+    public void SetKey(String base64Key) {
+        SetKey(Base64.Decode(base64Key));
+    }
+
+    public byte[] GetIV() {
+        if (iv == null) return generatedIV;
+        return iv;
+    }
+    public String GetBase64IV() {
+        byte[] iv = GetIV();
+        return iv == null ? null : Base64.Encode(iv);
+    }
+    public void SetIV(byte[] iv) {
+        if (iv.length != 16) throw new InvalidParameterException("IV must contain 16 elements.");
+        this.iv = iv;
+    }
+    public void SetIV(String base64IV) {
+        SetIV(Base64.Decode(base64IV));
+    }
+
+    public byte[] Encode(byte[] data) {
+        // Prevent encrypting if an IV was already set
+        if (iv != null)
+            throw new InvalidParameterException("Encrypt mode is only available without a predefined IV.");
+
+        try {
+            // Encode the data with zero padding and a new IV
+            generatedIV = new byte[CipherEngine.BLOCK_SIZE];
+            return CipherEngine.Get().Encrypt(GetKey(), data, 0, data.length, generatedIV);
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException(e);
+        }
+    }
+    public String EncodeToBase64(byte[] data) {
+        return Base64.Encode(Encode(data));
+    }
+
+    public byte[] Decode(byte[] data) {
+        byte[] output = new byte[data.length];
+        Decode(data, 0, data.length, output, 0);
+        return output;
+    }
+    /**
+     * Decodes a region of an array in a single pass. The output may be the same array as the input.
+     * @return The amount of bytes written to the output.
+     */
+    public int Decode(byte[] data, int offset, int length, byte[] output, int outputOffset) {
+        if (iv == null) throw new InvalidParameterException("Decode mode is only available with a predefined IV.");
+        try {
+            return CipherEngine.Get().Decrypt(key, iv, data, offset, length, output, outputOffset);
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException(e);
+        }
+    }
+    public byte[] DecodeFromBase64(String base64Data) {
+        return Decode(Base64.Decode(base64Data));
+    }
+}
\ No newline at end of file
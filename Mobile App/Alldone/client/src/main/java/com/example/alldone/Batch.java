@@ -0,0 +1,189 @@
+package com.example.alldone;
+
+import com.example.alldone.net.Metrics;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Packs several requests into a single exchange with the batch endpoint and splits the reply back into one
+ * {@link Response} per request.
+ * <p>
+ * The envelope sent to the server looks like
+ * <pre>{"requests": [{"id": 0, "link": "taskenroll", "method": "GET", "body": "{\"task\":1}"}, ...]}</pre>
+ * and the server answers with
+ * <pre>{"responses": [{"id": 0, "status": 200, "description": "OK", "body": {...}}, ...]}</pre>
+ * Fresh cached responses are used without sending their request. If the server does not know the batch endpoint,
+ * the requests are sent one by one instead, for this and later batches of the client. A batch is sent with the
+ * {@link Client} that it was created for.
+ */
+public class Batch {
+	public static final String LINK = "batch";
+
+	private static class Part {
+		final String Link;
+		final String Method;
+		final String Data;
+
+		Part(String link, String method, String data) {
+			this.Link = link;
+			this.Method = method.toUpperCase();
+			this.Data = data;
+		}
+
+		boolean IsRead() {
+			return Method.equals("GET") || Method.equals("HEAD");
+		}
+
+		String GetKey() {
+			return ResponseCache.GetKey(Link, Method, Data);
+		}
+	}
+
+	private final Client client;
+	private final List<Part> parts = new ArrayList<>();
+
+	/**
+	 * Creates a batch for the default client of {@link Connection}.
+	 */
+	public Batch() {
+		this(Connection.GetDefault());
+	}
+	public Batch(Client client) {
+		this.client = client;
+	}
+
+	/**
+	 * Adds a request to the batch.
+	 * @return The index of the request's response in the list returned by {@link #Send()}.
+	 */
+	public int Add(String link, String method) {
+		return Add(link, method, null);
+	}
+	public int Add(String link, String method, String data) {
+		parts.add(new Part(link, method, data));
+		return parts.size() - 1;
+	}
+
+	public int Size() {
+		return parts.size();
+	}
+
+	/**
+	 * Sends the batch on the {@link IOExecutor}.
+	 */
+	public Call<List<Response>> SendAsync() {
+		return Call.Submit(new Callable<List<Response>>() {
+			@Override
+			public List<Response> call() {
+				return Send();
+			}
+		});
+	}
+
+	/**
+	 * Sends every request of the batch and waits for the responses. May not be used on the main thread.
+	 * @return The responses in the order in which the requests were added. A request that got no response has a
+	 * {@link Response} with status code -1.
+	 */
+	public List<Response> Send() {
+		Response[] responses = new Response[parts.size()];
+
+		// Answer what we can from the cache, so only the other requests go over the network
+		ResponseCache cache = client.GetCache();
+		List<Integer> remaining = new ArrayList<>();
+		for (int i = 0; i < parts.size(); i++) {
+			Part part = parts.get(i);
+			ResponseCache.Entry entry = part.Method.equals("GET") && cache.IsCached(part.Link)
+					? cache.Get(part.GetKey()) : null;
+			if (entry != null && entry.IsFresh()) {
+				cache.CountHit();
+				responses[i] = entry.Response;
+			} else remaining.add(i);
+		}
+
+		if (remaining.size() == 1 || (!remaining.isEmpty() && !client.IsBatchSupported())) SendEach(remaining, responses);
+		else if (!remaining.isEmpty()) SendBatch(remaining, responses);
+
+		for (int i = 0; i < responses.length; i++)
+			if (responses[i] == null) responses[i] = new Response();
+		return Arrays.asList(responses);
+	}
+
+	private void SendBatch(List<Integer> indices, Response[] responses) {
+		boolean onlyReads = true;
+		String envelope;
+		try {
+			JSONArray requests = new JSONArray();
+			for (int i : indices) {
+				Part part = parts.get(i);
+				onlyReads &= part.IsRead();
+				JSONObject request = new JSONObject()
+						.put("id", i)
+						.put("link", part.Link)
+						.put("method", part.Method);
+				if (part.Data != null) request.put("body", part.Data);
+				requests.put(request);
+			}
+			envelope = new JSONObject().put("requests", requests).toString();
+		} catch (JSONException e) {
+			throw new RuntimeException(e);
+		}
+
+		// A batch of reads is itself a read, so it doesn't invalidate anything
+		long generation = client.GetCache().GetGeneration();
+		Response reply = client.Send(LINK, onlyReads ? "GET" : "POST", envelope);
+		if (reply.StatusCode == 404 || reply.StatusCode == 405 || reply.StatusCode == 501) {
+			// Later batches of the client don't try again
+			client.SetBatchSupported(false);
+			SendEach(indices, responses);
+			return;
+		}
+
+		JSONObject json = reply.IsSuccessful() ? reply.GetJSON() : null;
+		JSONArray results = json == null ? null : json.optJSONArray("responses");
+		if (results == null) {
+			// The whole batch failed, so every request failed the same way
+			for (int i : indices) responses[i] = new Response(null, reply.StatusCode, reply.StatusDescription);
+			return;
+		}
+
+		for (int j = 0; j < results.length(); j++) {
+			JSONObject result = results.optJSONObject(j);
+			if (result == null) continue;
+			int i = result.optInt("id", -1);
+			if (!indices.contains(i)) continue;
+
+			Part part = parts.get(i);
+			Object body = result.opt("body");
+			String data = body == null || body == JSONObject.NULL ? null : body.toString();
+			Response response = new Response(data, result.optInt("status", -1), result.optString("description", ""));
+			responses[i] = response;
+			// The batch endpoint counts the network time, the endpoint of the part its outcome and parsing
+			Metrics.Endpoint endpoint = client.GetMetrics().Get(part.Link);
+			endpoint.CountStatus(response.StatusCode);
+			response.SetMetrics(endpoint);
+
+			if (!part.IsRead()) client.Invalidate(part.Link);
+			else if (part.Method.equals("GET") && (response.StatusCode == 200 || response.StatusCode == 204)) {
+				client.GetCache().CountMiss();
+				client.GetCache().Put(part.GetKey(), part.Link, response, result.optString("etag", null), null,
+						generation);
+			}
+		}
+		if (!onlyReads) client.GetFlights().Forget();
+	}
+
+	private void SendEach(List<Integer> indices, Response[] responses) {
+		for (int i : indices) {
+			Part part = parts.get(i);
+			responses[i] = client.Send(part.Link, part.Method, part.Data);
+		}
+	}
+}
@@ -0,0 +1,215 @@
+package com.example.alldone;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+import com.example.alldone.net.Deadline;
+
+/**
+ * The result of work that runs on the {@link IOExecutor}.
+ * <p>
+ * Callbacks registered with {@link #Then(Callback)} run on the callback executor, which is the main thread in the app,
+ * while transformations registered with {@link #Map(Transform)} run on the I/O threads. Neither is run for a cancelled
+ * call.
+ * <p>
+ * Every call has a {@link Deadline}, which the requests it sends inherit. A call and the calls mapped from it share the
+ * same deadline, so cancelling any of them cancels the whole chain and abandons the requests it is waiting for.
+ */
+public class Call<T> {
+	/**
+	 * Receives the result of a call on the callback executor.
+	 */
+	public interface Callback<T> {
+		void OnResult(T result);
+	}
+
+	/**
+	 * Turns the result of a call into another value on an I/O thread.
+	 */
+	public interface Transform<T, R> {
+		R Apply(T value) throws Exception;
+	}
+
+	// Runs the callbacks, or null to run them on the thread that finishes the call
+	private static volatile Executor callbacks;
+
+	private final FutureTask<T> task;
+	private final Deadline deadline;
+	// Cancels the task when another call of the chain is cancelled
+	private final Runnable cancel = new Runnable() {
+		@Override
+		public void run() {
+			if (deadline.IsCancelled()) task.cancel(true);
+		}
+	};
+	// Run on the thread that finishes the call
+	private final List<Runnable> listeners = new ArrayList<>();
+	private boolean finished;
+
+	private Call(final Callable<T> callable, final Deadline deadline) {
+		this.deadline = deadline;
+		task = new FutureTask<T>(new Callable<T>() {
+			@Override
+			public T call() throws Exception {
+				Deadline previous = Deadline.SetCurrent(deadline);
+				try {
+					return callable.call();
+				} finally {
+					Deadline.SetCurrent(previous);
+				}
+			}
+		}) {
+			@Override
+			protected void done() {
+				Finish();
+			}
+		};
+		deadline.OnDone(cancel);
+	}
+
+	/**
+	 * Starts running work on the {@link IOExecutor}.
+	 */
+	public static <T> Call<T> Submit(Callable<T> callable) {
+		return Submit(callable, Deadline.Never());
+	}
+
+	/**
+	 * Starts running work on the {@link IOExecutor} that has to be done before a deadline.
+	 */
+	public static <T> Call<T> Submit(Callable<T> callable, Deadline deadline) {
+		Call<T> call = new Call<>(callable, deadline);
+		IOExecutor.Get().execute(call.task);
+		return call;
+	}
+
+	/**
+	 * Sets where the callbacks of every call run, such as the main thread of the app. Without one they run on the I/O
+	 * thread that finishes the call.
+	 */
+	public static void SetCallbackExecutor(Executor executor) {
+		callbacks = executor;
+	}
+
+	/**
+	 * Registers a callback that receives the result on the callback executor. If the work threw an exception, it is
+	 * rethrown there instead.
+	 */
+	public Call<T> Then(final Callback<T> callback) {
+		OnFinish(new Runnable() {
+			@Override
+			public void run() {
+				if (IsCancelled()) return;
+				Runnable deliver = new Runnable() {
+					@Override
+					public void run() {
+						// The call may have been cancelled while this was queued
+						if (IsCancelled()) return;
+						callback.OnResult(GetResult());
+					}
+				};
+				Executor executor = callbacks;
+				if (executor == null) deliver.run();
+				else executor.execute(deliver);
+			}
+		});
+		return this;
+	}
+
+	/**
+	 * @return A call that transforms the result of this call on an I/O thread once it is available.
+	 */
+	public <R> Call<R> Map(final Transform<T, R> transform) {
+		final Call<R> next = new Call<>(new Callable<R>() {
+			@Override
+			public R call() throws Exception {
+				return transform.Apply(GetResult());
+			}
+		}, deadline);
+		OnFinish(new Runnable() {
+			@Override
+			public void run() {
+				if (IsCancelled()) next.Cancel();
+				else IOExecutor.Get().execute(next.task);
+			}
+		});
+		return next;
+	}
+
+	/**
+	 * Waits for the result. May not be used on the main thread.
+	 * @throws CancellationException If the call was cancelled.
+	 */
+	public T Get() throws InterruptedException {
+		try {
+			return task.get();
+		} catch (ExecutionException e) {
+			throw Unwrap(e);
+		}
+	}
+
+	/**
+	 * Cancels the call and the calls it was mapped from or to. Their callbacks will not run, even if the work already
+	 * finished, and the requests they are waiting for are abandoned.
+	 */
+	public void Cancel() {
+		deadline.Cancel();
+		task.cancel(true);
+	}
+
+	public boolean IsCancelled() {
+		return task.isCancelled() || deadline.IsCancelled();
+	}
+
+	public Deadline GetDeadline() {
+		return deadline;
+	}
+
+	public boolean IsDone() {
+		return task.isDone();
+	}
+
+	private T GetResult() {
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			// Only called once the task is done, so this won't happen
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw Unwrap(e);
+		}
+	}
+
+	private static RuntimeException Unwrap(ExecutionException e) {
+		Throwable cause = e.getCause();
+		if (cause instanceof RuntimeException) return (RuntimeException) cause;
+		if (cause instanceof Error) throw (Error) cause;
+		return new RuntimeException(cause);
+	}
+
+	private void OnFinish(Runnable listener) {
+		synchronized (listeners) {
+			if (!finished) {
+				listeners.add(listener);
+				return;
+			}
+		}
+		listener.run();
+	}
+
+	private void Finish() {
+		List<Runnable> pending;
+		deadline.Remove(cancel);
+		synchronized (listeners) {
+			finished = true;
+			pending = new ArrayList<>(listeners);
+			listeners.clear();
+		}
+		for (Runnable listener : pending) listener.run();
+	}
+}
@@ -0,0 +1,393 @@
+package com.example.alldone;
+
+import com.example.alldone.net.ResponseBody;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A forward-only CBOR (RFC 7049) reader that decodes values straight from a byte array without building a tree.
+ * <p>
+ * Every string and container is prefixed with its length, so strings are decoded without scanning for quotes or escapes
+ * and numbers are read as binary instead of parsed from text. Reading stops after the top level value, so trailing zero
+ * bytes left behind by the zero padding of the AES envelope are ignored. Byte strings are not supported.
+ */
+public class CborStreamReader implements ValueReader {
+    public static final String MIME_TYPE = "application/cbor";
+
+    // Major types of the initial byte of every item
+    private static final int UNSIGNED_INTEGER = 0;
+    private static final int NEGATIVE_INTEGER = 1;
+    private static final int TEXT_STRING = 3;
+    private static final int ARRAY = 4;
+    private static final int MAP = 5;
+    private static final int TAG = 6;
+    private static final int SIMPLE = 7;
+
+    private static final int BREAK = 0xff;
+    // The argument of containers and strings of unknown length, which end with a break
+    private static final long INDEFINITE = -1;
+
+    // Parser states of every nesting level
+    private static final int EMPTY_DOCUMENT = 0;
+    private static final int NONEMPTY_DOCUMENT = 1;
+    private static final int IN_ARRAY = 2;
+    private static final int MAP_NAME = 3;
+    private static final int MAP_VALUE = 4;
+
+    private final byte[] data;
+    private final int end;
+    private int pos;
+
+    private int[] stack = new int[16];
+    // The amount of elements left in every container, or INDEFINITE
+    private long[] remaining = new long[16];
+    private int depth;
+
+    private Token peeked;
+
+    public CborStreamReader(byte[] data) {
+        this(data, 0, data.length);
+    }
+    public CborStreamReader(byte[] data, int offset, int length) {
+        this.data = data;
+        this.pos = offset;
+        this.end = offset + length;
+        stack[depth++] = EMPTY_DOCUMENT;
+    }
+
+    @Override
+    public Token Peek() throws IOException {
+        if (peeked == null) peeked = DoPeek();
+        return peeked;
+    }
+
+    @Override
+    public boolean HasNext() throws IOException {
+        Token token = Peek();
+        return token != Token.END_OBJECT && token != Token.END_ARRAY && token != Token.END_DOCUMENT;
+    }
+
+    @Override
+    public void BeginObject() throws IOException {
+        Expect(Token.BEGIN_OBJECT);
+        Push(MAP_NAME, ReadLength());
+    }
+
+    @Override
+    public void EndObject() throws IOException {
+        Expect(Token.END_OBJECT);
+        Pop();
+    }
+
+    @Override
+    public void BeginArray() throws IOException {
+        Expect(Token.BEGIN_ARRAY);
+        Push(IN_ARRAY, ReadLength());
+    }
+
+    @Override
+    public void EndArray() throws IOException {
+        Expect(Token.END_ARRAY);
+        Pop();
+    }
+
+    @Override
+    public String NextName() throws IOException {
+        Expect(Token.NAME);
+        String name = ReadText();
+        stack[depth - 1] = MAP_VALUE;
+        return name;
+    }
+
+    @Override
+    public String NextString() throws IOException {
+        Token token = Peek();
+        peeked = null;
+        String value;
+        switch (token) {
+            case STRING:
+                value = ReadText();
+                break;
+            case NUMBER:
+                value = IsFloat() ? String.valueOf(ReadFloat()) : String.valueOf(ReadInteger());
+                break;
+            case NULL:
+                pos++;
+                value = null;
+                break;
+            default: throw Error("Expected a string but was " + token);
+        }
+        Consumed();
+        return value;
+    }
+
+    @Override
+    public long NextLong() throws IOException {
+        Token token = Peek();
+        if (token == Token.STRING) {
+            String literal = NextString();
+            try {
+                return Long.parseLong(literal);
+            } catch (NumberFormatException e) {
+                throw Error("Expected a number but was " + literal);
+            }
+        }
+        if (token != Token.NUMBER) throw Error("Expected a number but was " + token);
+        peeked = null;
+        long value;
+        if (IsFloat()) {
+            double number = ReadFloat();
+            // Accept floats as long as they are whole
+            if (number != (long) number) throw Error("Expected a whole number but was " + number);
+            value = (long) number;
+        } else value = ReadInteger();
+        Consumed();
+        return value;
+    }
+
+    @Override
+    public int NextInt() throws IOException {
+        long value = NextLong();
+        if (value != (int) value) throw Error("Number out of int range: " + value);
+        return (int) value;
+    }
+
+    @Override
+    public boolean NextBoolean() throws IOException {
+        Expect(Token.BOOLEAN);
+        boolean value = (data[pos++] & 0x1f) == 21;
+        Consumed();
+        return value;
+    }
+
+    @Override
+    public void NextNull() throws IOException {
+        Expect(Token.NULL);
+        pos++;
+        Consumed();
+    }
+
+    @Override
+    public void SkipValue() throws IOException {
+        switch (Peek()) {
+            case BEGIN_OBJECT:
+                BeginObject();
+                while (HasNext()) {
+                    NextName();
+                    SkipValue();
+                }
+                EndObject();
+                break;
+            case BEGIN_ARRAY:
+                BeginArray();
+                while (HasNext()) SkipValue();
+                EndArray();
+                break;
+            case NAME:
+                NextName();
+                SkipValue();
+                break;
+            case STRING:
+            case NUMBER:
+            case NULL:
+                NextString();
+                break;
+            case BOOLEAN:
+                NextBoolean();
+                break;
+            default:
+                throw Error("Expected a value but was " + Peek());
+        }
+    }
+
+    private Token DoPeek() throws IOException {
+        int top = stack[depth - 1];
+        switch (top) {
+            case EMPTY_DOCUMENT:
+                stack[depth - 1] = NONEMPTY_DOCUMENT;
+                break;
+            case NONEMPTY_DOCUMENT:
+                return Token.END_DOCUMENT;
+            case IN_ARRAY:
+                if (AtContainerEnd()) return Token.END_ARRAY;
+                break;
+            case MAP_NAME:
+                if (AtContainerEnd()) return Token.END_OBJECT;
+                SkipTags();
+                if (PeekByte() >>> 5 != TEXT_STRING) throw Error("Expected a name");
+                return Token.NAME;
+        }
+
+        SkipTags();
+        int initial = PeekByte();
+        switch (initial >>> 5) {
+            case UNSIGNED_INTEGER:
+            case NEGATIVE_INTEGER: return Token.NUMBER;
+            case TEXT_STRING: return Token.STRING;
+            case ARRAY: return Token.BEGIN_ARRAY;
+            case MAP: return Token.BEGIN_OBJECT;
+            case SIMPLE:
+                switch (initial & 0x1f) {
+                    case 20:
+                    case 21: return Token.BOOLEAN;
+                    case 22:
+                    case 23: return Token.NULL;
+                    case 25:
+                    case 26:
+                    case 27: return Token.NUMBER;
+                    default: throw Error("Unsupported item 0x" + Integer.toHexString(initial));
+                }
+            default: throw Error("Unsupported item 0x" + Integer.toHexString(initial));
+        }
+    }
+
+    /**
+     * @return True if the current container has no elements left. The break of an indefinite container is consumed.
+     */
+    private boolean AtContainerEnd() throws IOException {
+        long count = remaining[depth - 1];
+        if (count != INDEFINITE) return count == 0;
+        if (PeekByte() != BREAK) return false;
+        pos++;
+        return true;
+    }
+
+    /**
+     * Skips the tags in front of the next item. Tags only add meaning that this reader does not need.
+     */
+    private void SkipTags() throws IOException {
+        while (PeekByte() >>> 5 == TAG) ReadArgument();
+    }
+
+    /**
+     * Marks the value that was just read as consumed by its container.
+     */
+    private void Consumed() {
+        switch (stack[depth - 1]) {
+            case IN_ARRAY:
+                if (remaining[depth - 1] != INDEFINITE) remaining[depth - 1]--;
+                break;
+            case MAP_VALUE:
+                if (remaining[depth - 1] != INDEFINITE) remaining[depth - 1]--;
+                stack[depth - 1] = MAP_NAME;
+                break;
+        }
+    }
+
+    private void Expect(Token expected) throws IOException {
+        Token token = Peek();
+        if (token != expected) throw Error("Expected " + expected + " but was " + token);
+        peeked = null;
+    }
+
+    private void Push(int state, long count) {
+        if (depth == stack.length) {
+            stack = Arrays.copyOf(stack, depth * 2);
+            remaining = Arrays.copyOf(remaining, depth * 2);
+        }
+        stack[depth] = state;
+        remaining[depth++] = count;
+    }
+
+    private void Pop() {
+        depth--;
+        Consumed();
+    }
+
+    private int PeekByte() throws IOException {
+        if (pos >= end) throw new EOFException("Unexpected end of CBOR at position " + pos);
+        return data[pos] & 0xff;
+    }
+
+    /**
+     * Reads the initial byte of an item and the argument that follows it.
+     * @return The argument, which is the value of an integer or the length of a string or container, or
+     * {@link #INDEFINITE}.
+     */
+    private long ReadArgument() throws IOException {
+        int info = PeekByte() & 0x1f;
+        pos++;
+        if (info < 24) return info;
+        if (info == 31) return INDEFINITE;
+        if (info > 27) throw Error("Invalid additional information " + info);
+        int length = 1 << (info - 24);
+        if (end - pos < length) throw new EOFException("Unexpected end of CBOR at position " + pos);
+        long value = 0;
+        for (int i = 0; i < length; i++) value = value << 8 | (data[pos++] & 0xff);
+        return value;
+    }
+
+    /**
+     * Reads the argument of a string or container.
+     */
+    private long ReadLength() throws IOException {
+        long length = ReadArgument();
+        // Lengths above Long.MAX_VALUE wrap around to negative values
+        if (length < INDEFINITE) throw Error("Length out of range");
+        return length;
+    }
+
+    private long ReadInteger() throws IOException {
+        boolean negative = PeekByte() >>> 5 == NEGATIVE_INTEGER;
+        long argument = ReadArgument();
+        // Arguments above Long.MAX_VALUE wrap around to negative values
+        if (argument < 0) throw Error("Number out of long range");
+        return negative ? -1 - argument : argument;
+    }
+
+    private boolean IsFloat() throws IOException {
+        return PeekByte() >>> 5 == SIMPLE;
+    }
+
+    private double ReadFloat() throws IOException {
+        int info = PeekByte() & 0x1f;
+        long bits = ReadArgument();
+        switch (info) {
+            case 25: return HalfToDouble((int) bits);
+            case 26: return Float.intBitsToFloat((int) bits);
+            default: return Double.longBitsToDouble(bits);
+        }
+    }
+
+    private static double HalfToDouble(int half) {
+        int exponent = (half >> 10) & 0x1f;
+        int mantissa = half & 0x3ff;
+        double value;
+        if (exponent == 0) value = mantissa * Math.pow(2, -24);
+        else if (exponent != 31) value = (mantissa + 1024) * Math.pow(2, exponent - 25);
+        else value = mantissa == 0 ? Double.POSITIVE_INFINITY : Double.NaN;
+        return (half & 0x8000) != 0 ? -value : value;
+    }
+
+    /**
+     * Reads a text string. The position must be at its initial byte.
+     */
+    private String ReadText() throws IOException {
+        long length = ReadLength();
+        if (length != INDEFINITE) {
+            if (length > end - pos) throw new EOFException("Unexpected end of CBOR at position " + pos);
+            String text = new String(data, pos, (int) length, ResponseBody.UTF8);
+            pos += (int) length;
+            return text;
+        }
+
+        // Strings of unknown length are split into chunks of known length
+        ByteArrayOutputStream chunks = new ByteArrayOutputStream();
+        while (PeekByte() != BREAK) {
+            if (PeekByte() >>> 5 != TEXT_STRING) throw Error("Expected a text chunk");
+            long chunk = ReadArgument();
+            if (chunk == INDEFINITE || chunk > end - pos) throw Error("Invalid text chunk");
+            chunks.write(data, pos, (int) chunk);
+            pos += (int) chunk;
+        }
+        pos++;
+        return new String(chunks.toByteArray(), ResponseBody.UTF8);
+    }
+
+    private IOException Error(String message) {
+        return new IOException(message + " at position " + pos);
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.alldone;
+
+import java.security.GeneralSecurityException;
+import java.security.InvalidParameterException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * A per-thread AES/CBC engine that keeps its {@link Cipher} and key objects between messages.
+ * <p>
+ * Messages use the same zero padded format as the Web API: the plaintext is padded with zeroes up to the next
+ * multiple of the block size and the random IV is sent alongside the encrypted data.
+ */
+public class CipherEngine {
+    public static final int BLOCK_SIZE = 16;
+
+    private static final ThreadLocal<CipherEngine> engines = new ThreadLocal<CipherEngine>() {
+        @Override
+        protected CipherEngine initialValue() {
+            return new CipherEngine();
+        }
+    };
+
+    private final Cipher cipher;
+    private final SecureRandom random = new SecureRandom();
+
+    // The key that keySpec was last built from
+    private byte[] cachedKey;
+    private SecretKeySpec keySpec;
+
+    private CipherEngine() {
+        try {
+            cipher = Cipher.getInstance("AES/CBC/NoPadding");
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @return The engine of the calling thread.
+     */
+    public static CipherEngine Get() {
+        return engines.get();
+    }
+
+    /**
+     * @return The length of the encrypted form of a message with the specified length.
+     */
+    public static int GetEncodedLength(int length) {
+        return (length + BLOCK_SIZE - 1) / BLOCK_SIZE * BLOCK_SIZE;
+    }
+
+    /**
+     * Encrypts a region of an array with a new random IV.
+     * @param key The 32 byte key to encrypt with.
+     * @param iv An array of {@link #BLOCK_SIZE} bytes that receives the generated IV.
+     * @return A new array containing the zero padded and encrypted data.
+     */
+    public byte[] Encrypt(byte[] key, byte[] data, int offset, int length, byte[] iv) throws GeneralSecurityException {
+        if (iv.length != BLOCK_SIZE) throw new InvalidParameterException("IV must contain 16 elements.");
+        random.nextBytes(iv);
+
+        // Copy the data into an output array that already includes the zero padding and encrypt it in place
+        byte[] output = new byte[GetEncodedLength(length)];
+        System.arraycopy(data, offset, output, 0, length);
+        cipher.init(Cipher.ENCRYPT_MODE, GetKeySpec(key), new IvParameterSpec(iv));
+        cipher.doFinal(output, 0, output.length, output, 0);
+        return output;
+    }
+
+    /**
+     * Decrypts a region of an array in a single pass. The output may be the same array as the input.
+     * @param key The 32 byte key to decrypt with.
+     * @param iv The IV the data was encrypted with.
+     * @return The amount of bytes written to the output, including the zero padding.
+     */
+    public int Decrypt(byte[] key, byte[] iv, byte[] data, int offset, int length, byte[] output, int outputOffset) throws GeneralSecurityException {
+        if (iv.length != BLOCK_SIZE) throw new InvalidParameterException("IV must contain 16 elements.");
+        cipher.init(Cipher.DECRYPT_MODE, GetKeySpec(key), new IvParameterSpec(iv));
+        return cipher.doFinal(data, offset, length, output, outputOffset);
+    }
+
+    private SecretKeySpec GetKeySpec(byte[] key) {
+        // Only rebuild the key object when a different key is used
+        if (!Arrays.equals(key, cachedKey)) {
+            if (key.length != 32) throw new InvalidParameterException("Key must contain 32 elements.");
+            keySpec = new SecretKeySpec(key, "AES");
+            cachedKey = key.clone();
+        }
+        return keySpec;
+    }
+}
@@ -0,0 +1,506 @@
+package com.example.alldone;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.security.GeneralSecurityException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.example.alldone.net.Base64;
+import com.example.alldone.net.BufferPool;
+import com.example.alldone.net.CircuitBreaker;
+import com.example.alldone.net.Compression;
+import com.example.alldone.net.Deadline;
+import com.example.alldone.net.Exchange;
+import com.example.alldone.net.Metrics;
+import com.example.alldone.net.Resilience;
+import com.example.alldone.net.ResponseBody;
+import com.example.alldone.net.Transport;
+
+/**
+ * Sends requests to the Web API at one endpoint, as one session at a time. A client may be shared by any amount of
+ * threads, and any amount of clients may run in the same process, each as a different user.
+ * <p>
+ * What belongs to the session is kept per client: its id and AES key, the cache of read responses and the reads in
+ * flight. The transport, the compression negotiated with every host, the resilience policies and circuit breakers
+ * and the metrics are about the hosts rather than the session, so clients share the ones of {@link Connection}
+ * unless they are given their own.
+ */
+public class Client {
+	private static final String ACCEPT_CBOR = CborStreamReader.MIME_TYPE + ", application/json;q=0.9";
+	public static final long DEFAULT_CACHE_SIZE = 1024 * 1024;
+
+	// Runs both attempts of hedged reads of every client
+	private static final ExecutorService hedges = Executors.newCachedThreadPool(new ThreadFactory() {
+		@Override
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "Connection-hedge");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	/**
+	 * A session id and its key, which are replaced together so a request never encrypts with the key of another
+	 * session.
+	 */
+	private static final class Credentials {
+		final String Session;
+		final byte[] Key;
+
+		Credentials(String session, byte[] key) {
+			Session = session;
+			Key = key;
+		}
+	}
+	private static final Credentials NO_CREDENTIALS = new Credentials(null, null);
+
+	private final String endpoint;
+	private final Transport transport;
+	private final Compression compression;
+	private final Resilience resilience;
+	private final Metrics metrics;
+	private final ResponseCache cache = new ResponseCache(DEFAULT_CACHE_SIZE);
+	// Coalesces identical read requests that are sent at the same time
+	private final SingleFlight<Response> flights = new SingleFlight<>();
+	private volatile Credentials credentials = NO_CREDENTIALS;
+	private volatile boolean acceptCbor = true;
+	// Cleared once the server turned out not to support batches, so later batches don't try again
+	private volatile boolean batchSupported = true;
+
+	/**
+	 * Creates a client without session that shares the transport, compression, resilience and metrics of
+	 * {@link Connection}.
+	 * @param endpoint The url of the Web API, ending with a slash.
+	 */
+	public Client(String endpoint) {
+		this(endpoint, Connection.transport, Connection.compression, Connection.resilience, Connection.metrics);
+	}
+
+	/**
+	 * Creates a client without session.
+	 * @param endpoint The url of the Web API, ending with a slash.
+	 */
+	public Client(String endpoint, Transport transport, Compression compression, Resilience resilience, Metrics metrics) {
+		this.endpoint = endpoint;
+		this.transport = transport;
+		this.compression = compression;
+		this.resilience = resilience;
+		this.metrics = metrics;
+		cache.SetTTL("group", 30000);
+		cache.SetTTL("task", 15000);
+		cache.SetTTL("taskenroll", 10000);
+	}
+
+	/**
+	 * @return A client without session for the same endpoint, which shares everything but the session, the cache
+	 * and the reads in flight with this one. Useful for work under a different session.
+	 */
+	public Client NewSession() {
+		return new Client(endpoint, transport, compression, resilience, metrics);
+	}
+
+	public String GetEndpoint() { return endpoint; }
+	public Transport GetTransport() { return transport; }
+	public Compression GetCompression() { return compression; }
+	public Resilience GetResilience() { return resilience; }
+	public Metrics GetMetrics() { return metrics; }
+
+	/**
+	 * @return The cache for the responses of read requests. Only endpoints with a time to live are cached.
+	 */
+	public ResponseCache GetCache() { return cache; }
+	/**
+	 * @return The reads in flight, which identical reads that are sent at the same time share.
+	 */
+	public SingleFlight<Response> GetFlights() { return flights; }
+
+	/** @return The id of the session, or null if there is none. */
+	public String GetSession() { return credentials.Session; }
+	/** @return The AES key of the session, or null if requests aren't encrypted. */
+	public byte[] GetKey() { return credentials.Key; }
+
+	/**
+	 * Sends the following requests as another session. Cached responses belong to the previous session, so they are
+	 * dropped.
+	 * @param session The id of the session, or null to send requests without session.
+	 * @param key The AES key of the session, or null to send requests unencrypted.
+	 */
+	public void SetSession(String session, byte[] key) {
+		// Replaced before the cache is cleared, so a request either sends the new credentials or caches nothing
+		credentials = session == null && key == null ? NO_CREDENTIALS : new Credentials(session, key);
+		cache.Clear();
+		flights.Forget();
+	}
+
+	/**
+	 * Sets whether the server may answer with CBOR instead of JSON, which is smaller and faster to decode.
+	 * Servers that don't support CBOR keep sending JSON.
+	 */
+	public void SetAcceptCbor(boolean acceptCbor) { this.acceptCbor = acceptCbor; }
+	public boolean GetAcceptCbor() { return acceptCbor; }
+
+	/**
+	 * @return True unless the server answered an earlier {@link Batch} with a status that means it has no batch
+	 * endpoint.
+	 */
+	public boolean IsBatchSupported() { return batchSupported; }
+	/**
+	 * Sets whether batches use the batch endpoint. Set it back to true to make the next batch try it again.
+	 */
+	public void SetBatchSupported(boolean batchSupported) { this.batchSupported = batchSupported; }
+
+	/**
+	 * Sends a request on the {@link IOExecutor}.
+	 */
+	public Call<Response> SendAsync(String link, String method) {
+		return SendAsync(link, method, null);
+	}
+	public Call<Response> SendAsync(final String link, final String method, final String data) {
+		return Call.Submit(new Callable<Response>() {
+			@Override
+			public Response call() {
+				return Send(link, method, data);
+			}
+		});
+	}
+
+	public Response Send(String link, String method) {
+		return Send(link, method, (byte[])null);
+	}
+	public Response Send(String link, String method, String data) {
+		return Send(link, method, data == null ? null : data.getBytes(ResponseBody.UTF8));
+	}
+	public Response Send(final String link, String method, final byte[] data) {
+		return Send(link, method, data, null);
+	}
+	/**
+	 * Sends a request that may be retried.
+	 * @param idempotencyKey A key that is unique to the change that the request makes, which the server uses to answer
+	 * retries of the same change with its first response instead of applying it twice, or null.
+	 */
+	public Response Send(String link, String method, String data, String idempotencyKey) {
+		return Send(link, method, data == null ? null : data.getBytes(ResponseBody.UTF8), idempotencyKey);
+	}
+	public Response Send(final String link, String method, final byte[] data, String idempotencyKey) {
+		final String upperMethod = method.toUpperCase();
+
+		if (!upperMethod.equals("GET") && !upperMethod.equals("HEAD")) {
+			Response response = Execute(link, upperMethod, data, null, null, idempotencyKey);
+			// Anything but a read may change what the cached and running reads return
+			Invalidate(link);
+			flights.Forget();
+			return response;
+		}
+
+		// Identical reads that are already in flight share a single network call
+		final String key = ResponseCache.GetKey(link, upperMethod, data == null ? null : new String(data, ResponseBody.UTF8));
+		// Only reads of the same session share a call, since the response belongs to the session
+		String flight = credentials.Session + '\n' + key;
+		try {
+			// The read runs for everyone who joined it, within the time budget of the endpoint
+			return flights.Do(flight, new Callable<Response>() {
+				@Override
+				public Response call() {
+					return Read(link, upperMethod, data, key);
+				}
+			}, resilience.GetTimeout(link), Deadline.Current());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return new Response();
+		} catch (TimeoutException e) {
+			// This caller gave up, while the read goes on for the others
+			return new Response();
+		}
+	}
+
+	/**
+	 * Sends a read request, or answers it from the cache.
+	 */
+	private Response Read(String link, String method, byte[] data, String key) {
+		if (method.equals("HEAD") || !cache.IsCached(link))
+			return Execute(link, method, data, null, null, null);
+
+		ResponseCache.Entry entry = cache.Get(key);
+		if (entry != null && entry.IsFresh()) {
+			cache.CountHit();
+			return entry.Response;
+		}
+		// Stale entries without a validator have to be downloaded again anyway
+		if (entry != null && !entry.HasValidator()) entry = null;
+		return Execute(link, method, data, key, entry, null);
+	}
+
+	/**
+	 * Removes the cached responses that a mutating call to an endpoint may have changed.
+	 */
+	public void Invalidate(String link) {
+		cache.Invalidate(link);
+		// Joining a group through a share code changes the group list
+		if (link.equals("groupsharing")) cache.Invalidate("group");
+	}
+
+	private static boolean IsCbor(String contentType) {
+		return contentType != null && contentType.split(";")[0].trim().equalsIgnoreCase(CborStreamReader.MIME_TYPE);
+	}
+
+	/**
+	 * Sends a request to the server, applying the policy and time budget of the endpoint and the circuit breaker of the
+	 * host. The budget is cut short by the deadline of the {@link Call} that sends the request, and the request is
+	 * abandoned as soon as that call is cancelled. Reads get the deadline of the {@link SingleFlight} call that every
+	 * caller of the read shares instead.
+	 * @param cacheKey The key to cache the response under, or null if the response should not be cached.
+	 * @param entry A stale cache entry to revalidate, or null.
+	 * @param idempotencyKey The idempotency key of a change, or null.
+	 */
+	private Response Execute(String link, String method, byte[] data, String cacheKey, ResponseCache.Entry entry,
+			String idempotencyKey) {
+		Deadline deadline = Deadline.After(resilience.GetTimeout(link), Deadline.Current());
+		try {
+			CircuitBreaker breaker;
+			try {
+				breaker = resilience.GetBreaker(new URL(endpoint));
+			} catch (MalformedURLException e) {
+				// Fails again while sending, with the usual empty response
+				return ExecuteOnce(link, method, data, cacheKey, entry, idempotencyKey, deadline);
+			}
+			Resilience.Policy policy = resilience.GetPolicy(link);
+			boolean read = method.equals("GET") || method.equals("HEAD");
+
+			for (int retry = 0; ; retry++) {
+				// Fail right away while the host keeps failing, instead of adding to its load
+				if (!breaker.Allow()) return new Response(null, -1, "Circuit open");
+				// Probes of a recovering host are never hedged
+				Response response = read && policy.HedgeDelay > 0 && breaker.GetState() == CircuitBreaker.State.CLOSED
+						? ExecuteHedged(link, method, data, cacheKey, entry, policy, deadline)
+						: ExecuteOnce(link, method, data, cacheKey, entry, idempotencyKey, deadline);
+				// A request that nobody waits for anymore says nothing about the host
+				if (deadline.IsCancelled()) {
+					breaker.OnAbandoned();
+					return response;
+				}
+				if (Resilience.IsHostFailure(response.StatusCode)) breaker.OnFailure();
+				else breaker.OnSuccess();
+
+				if (!Resilience.IsRetryable(method, idempotencyKey != null, response.StatusCode)) return response;
+				long delay = resilience.GetDelay(policy, retry);
+				if (retry + 1 >= policy.MaxAttempts || delay >= deadline.GetRemaining()) {
+					policy.CountExhausted();
+					return response;
+				}
+				try {
+					Thread.sleep(delay);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return response;
+				}
+				policy.CountRetry();
+			}
+		} finally {
+			deadline.Finish();
+		}
+	}
+
+	/**
+	 * Sends a read, and sends it a second time if the first one takes longer than the hedge delay of the policy. The
+	 * slower attempt is left to finish, so its connection goes back to the pool.
+	 * @return The first successful response, or the last failed one.
+	 */
+	private Response ExecuteHedged(final String link, final String method, final byte[] data, final String cacheKey,
+			final ResponseCache.Entry entry, Resilience.Policy policy, final Deadline deadline) {
+		Callable<Response> attempt = new Callable<Response>() {
+			@Override
+			public Response call() {
+				return ExecuteOnce(link, method, data, cacheKey, entry, null, deadline);
+			}
+		};
+		CompletionService<Response> completion = new ExecutorCompletionService<>(hedges);
+		Future<Response> first = completion.submit(attempt);
+		Future<Response> second = null;
+		try {
+			Future<Response> done = completion.poll(policy.HedgeDelay, TimeUnit.MILLISECONDS);
+			if (done == null) {
+				policy.CountHedge();
+				second = completion.submit(attempt);
+				done = completion.take();
+			}
+			Response response = done.get();
+			// An attempt without an answer doesn't decide anything while the other one may still get one
+			if (second != null && response.StatusCode == -1) {
+				done = completion.take();
+				response = done.get();
+			}
+			if (done == second) policy.CountHedgeWin();
+			return response;
+		} catch (InterruptedException e) {
+			first.cancel(true);
+			if (second != null) second.cancel(true);
+			Thread.currentThread().interrupt();
+			return new Response();
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+			throw new RuntimeException(cause);
+		}
+	}
+
+	/**
+	 * Sends a request to the server once.
+	 * @param cacheKey The key to cache the response under, or null if the response should not be cached.
+	 * @param entry A stale cache entry to revalidate, or null.
+	 * @param idempotencyKey The idempotency key of a change, or null.
+	 * @param deadline The deadline after which the request is abandoned.
+	 */
+	private Response ExecuteOnce(String link, String method, byte[] data, String cacheKey, ResponseCache.Entry entry,
+			String idempotencyKey, Deadline deadline) {
+		Exchange exchange = null;
+		ResponseBody body = null;
+		// A response to a read that an invalidation or another session overtook isn't cached. Taken before the
+		// credentials, which SetSession replaces before it clears the cache.
+		long generation = cache.GetGeneration();
+		// Encrypt and decrypt with the same key, even if the session changes in between
+		Credentials credentials = this.credentials;
+		// The requested method, before reads with a body are switched to POST
+		String requestMethod = method;
+		Metrics.Endpoint endpoint = metrics.Get(link);
+		long start = System.nanoTime();
+		int statusCode = -1;
+		try {
+			URL url = null;
+			// Switch GET method to POST if the data isn't null
+			if ((method.equals("GET") || method.equals("HEAD")) && data != null) {
+				url = new URL(this.endpoint + link + "?method=" + method);
+				method = "POST";
+			} else url = new URL(this.endpoint + link);
+
+			Map<String, String> headers = new LinkedHashMap<>();
+			headers.put("Content-Type", "application/json");
+			headers.put("Accept", acceptCbor ? ACCEPT_CBOR : "application/json");
+			headers.put("Accept-Encoding", Compression.ACCEPT_ENCODING);
+
+			// Compress before encrypting, because encrypted data doesn't compress
+			byte[] original = data;
+			boolean compressed = data != null && compression.ShouldCompress(url, data.length);
+			if (compressed) {
+				data = compression.Compress(data);
+				headers.put("Content-Encoding", Compression.REQUEST_ENCODING);
+			}
+
+			if (data != null && credentials.Session != null && credentials.Key != null)
+			{
+				// Encrypt with this thread's cipher engine, which keeps the key set up between requests
+				byte[] iv = new byte[CipherEngine.BLOCK_SIZE];
+				data = CipherEngine.Get().Encrypt(credentials.Key, data, 0, data.length, iv);
+
+				// Set headers indicating encryption
+				headers.put("Content-Type", "application/octet-stream");
+				headers.put("Content-IV", Base64.Encode(iv));
+			}
+			// Add session cookie if it isn't null
+			if (credentials.Session != null) headers.put("Cookie", "session=" + credentials.Session);
+			if (idempotencyKey != null) headers.put("Idempotency-Key", idempotencyKey);
+			// Ask the server to only send the body if it changed
+			if (entry != null) {
+				if (entry.ETag != null) headers.put("If-None-Match", entry.ETag);
+				if (entry.LastModified != null) headers.put("If-Modified-Since", entry.LastModified);
+			}
+
+			// Only methods other than GET and HEAD carry a body
+			byte[] requestBody = null;
+			if (!(method.equals("GET") || method.equals("HEAD"))) requestBody = data == null ? new byte[0] : data;
+			long sent = System.nanoTime();
+			exchange = transport.Execute(method, url, headers, requestBody, deadline);
+			endpoint.Connect.Record(exchange.GetConnectTime() / 1000);
+			endpoint.FirstByte.Record((System.nanoTime() - sent - exchange.GetConnectTime()) / 1000);
+			endpoint.RequestSize.Record(requestBody == null ? 0 : requestBody.length);
+			statusCode = exchange.GetStatusCode();
+			compression.OnResponse(url, exchange.GetHeader("Accept-Encoding"));
+
+			if (compressed && exchange.GetStatusCode() == 415) {
+				// The server can't decompress the body after all, so send it as it is
+				compression.OnRejected(url);
+				exchange.Close();
+				exchange = null;
+				return ExecuteOnce(link, requestMethod, original, cacheKey, entry, idempotencyKey, deadline);
+			}
+
+			// read data
+			String readData = null;
+			byte[] cbor = null;
+			if (!method.equals("HEAD")) {
+				// Read the whole body in bulk into a pooled buffer
+				long download = System.nanoTime();
+				body = ResponseBody.Read(exchange.GetBody(), exchange.GetContentLength(), BufferPool.DEFAULT);
+				endpoint.Download.Record((System.nanoTime() - download) / 1000);
+				endpoint.ResponseSize.Record(body.GetLength());
+				// Don't spend time on decrypting and decoding a response that nobody waits for anymore
+				deadline.Check();
+				boolean encoded = Compression.IsEncoded(exchange.GetHeader("Content-Encoding"));
+				boolean encrypted = exchange.GetHeader("Content-IV") != null;
+				// Encrypted bodies carry the type of the plain data in a separate header
+				boolean binary = IsCbor(exchange.GetHeader(encrypted ? "Content-Format" : "Content-Type"));
+				if (credentials.Session != null && credentials.Key != null && encrypted) {
+					// If the request was encrypted and the response is also encrypted, decode the response in place
+					byte[] iv = Base64.Decode(exchange.GetHeader("Content-IV"));
+					long decrypt = System.nanoTime();
+					body.SetLength(CipherEngine.Get().Decrypt(credentials.Key, iv, body.GetBuffer(), 0, body.GetLength(), body.GetBuffer(), 0));
+					endpoint.Decrypt.Record((System.nanoTime() - decrypt) / 1000);
+					// Compressed data and CBOR may end with zero bytes, but their decoders stop before the padding anyway
+					if (!encoded && !binary) body.StripZeroPadding();
+				}
+				// The body was compressed before it was encrypted
+				if (encoded) {
+					deadline.Check();
+					body.Decode(exchange.GetHeader("Content-Encoding"));
+				}
+				if (binary) cbor = body.ToByteArray();
+				else readData = body.DecodeUTF8();
+			}
+
+			if (cacheKey != null) {
+				if (entry != null && statusCode == 304) {
+					cache.Refresh(entry, generation);
+					cache.CountRevalidation();
+					return entry.Response;
+				}
+				cache.CountMiss();
+			}
+
+			Response response = cbor != null
+					? Response.FromCbor(cbor, statusCode, exchange.GetStatusDescription())
+					: new Response(readData, statusCode, exchange.GetStatusDescription());
+			// The body is parsed on first use, which is timed as well
+			response.SetMetrics(endpoint);
+			if (cacheKey != null && (statusCode == 200 || statusCode == 204))
+				cache.Put(cacheKey, link, response, exchange.GetHeader("ETag"), exchange.GetHeader("Last-Modified"),
+						generation);
+			return response;
+		} catch(IOException e) {
+			endpoint.CountError(e);
+			statusCode = -1;
+			return new Response();
+		} catch(GeneralSecurityException e) {
+			// The response could not be decrypted
+			endpoint.CountError(e);
+			statusCode = -1;
+			return new Response();
+		} finally {
+			endpoint.CountStatus(statusCode);
+			endpoint.Total.Record((System.nanoTime() - start) / 1000);
+			// Hand the buffer and connection back so they can be reused
+			if (body != null) body.Release();
+			if (exchange != null) exchange.Close();
+		}
+	}
+}
@@ -0,0 +1,111 @@
+package com.example.alldone;
+
+import com.example.alldone.net.Compression;
+import com.example.alldone.net.Metrics;
+import com.example.alldone.net.PooledTransport;
+import com.example.alldone.net.Resilience;
+import com.example.alldone.net.Transport;
+
+/**
+ * Sends requests through a default {@link Client}, which the app uses as the session that logged in. Other sessions
+ * get a client of their own, for example from {@link Client#NewSession()}.
+ * <p>
+ * The transport, compression, resilience and metrics here belong to the whole process and are shared by every client
+ * that isn't given its own.
+ */
+public class Connection {
+	//public static final String DOMAIN = "http://145.137.121.146/";
+	//public static final String DOMAIN = "http://145.137.121.58/";
+	//public static final String DOMAIN = "http://145.137.55.46/";
+	public static final String DOMAIN = "http://77.172.16.237/";
+//	public static final String DOMAIN = "http://145.137.121.123/";
+//	public static final String DOMAIN = "http://192.168.178.18/";
+
+	/**
+	 * The transport used to send all requests. Defaults to a pooled keep-alive transport.
+	 */
+	public static final Transport transport = new PooledTransport();
+
+	/**
+	 * Negotiates the compression of request and response bodies with every host.
+	 */
+	public static final Compression compression = new Compression();
+
+	/**
+	 * The retry and hedging policies and time budgets of the endpoints and the circuit breakers of the hosts.
+	 */
+	public static final Resilience resilience = new Resilience();
+	static {
+		// The lists that screens open with are worth a second request when the first one is slow
+		resilience.SetPolicy("group", Resilience.DEFAULT_POLICY.WithHedgeDelay(1000));
+		resilience.SetPolicy("task", Resilience.DEFAULT_POLICY.WithHedgeDelay(1000));
+		resilience.SetTimeout("group", 10000);
+		resilience.SetTimeout("task", 10000);
+		resilience.SetTimeout("taskenroll", 10000);
+		// A batch carries the work of many requests
+		resilience.SetTimeout("batch", 30000);
+	}
+
+	/**
+	 * The latencies, sizes and status codes of the requests to every endpoint.
+	 */
+	public static final Metrics metrics = new Metrics();
+
+	// Created after the shared parts above, which it uses
+	private static volatile Client client = new Client(DOMAIN);
+
+	/**
+	 * @return The client that the static methods send requests with.
+	 */
+	public static Client GetDefault() {
+		return client;
+	}
+
+	/**
+	 * Makes the static methods send requests with another client, for example one for another endpoint.
+	 * @return The previous default client.
+	 */
+	public static Client SetDefault(Client client) {
+		Client previous = Connection.client;
+		Connection.client = client;
+		return previous;
+	}
+
+	/**
+	 * Sends a request on the {@link IOExecutor}.
+	 */
+	public static Call<Response> SendAsync(String link, String method) {
+		return client.SendAsync(link, method);
+	}
+	public static Call<Response> SendAsync(String link, String method, String data) {
+		return client.SendAsync(link, method, data);
+	}
+
+	public static Response Send(String link, String method) {
+		return client.Send(link, method);
+	}
+	public static Response Send(String link, String method, String data) {
+		return client.Send(link, method, data);
+	}
+	public static Response Send(String link, String method, byte[] data) {
+		return client.Send(link, method, data);
+	}
+	/**
+	 * Sends a request that may be retried.
+	 * @param idempotencyKey A key that is unique to the change that the request makes, which the server uses to answer
+	 * retries of the same change with its first response instead of applying it twice, or null.
+	 */
+	public static Response Send(String link, String method, String data, String idempotencyKey) {
+		return client.Send(link, method, data, idempotencyKey);
+	}
+	public static Response Send(String link, String method, byte[] data, String idempotencyKey) {
+		return client.Send(link, method, data, idempotencyKey);
+	}
+
+	/**
+	 * Removes the cached responses of the default client that a mutating call to an endpoint may have changed.
+	 */
+	static void Invalidate(String link) {
+		client.Invalidate(link);
+	}
+}
@@ -0,0 +1,60 @@
+package com.example.alldone;
+
+import java.security.InvalidParameterException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The bounded pool of threads that runs all background work started through {@link Call}.
+ * <p>
+ * Unlike the serial executor of AsyncTask, independent calls run in parallel up to the size of the pool. Idle threads
+ * are stopped after a while and started again on demand.
+ */
+public final class IOExecutor {
+	// Matches the amount of connections the transport keeps per host
+	private static final int DEFAULT_THREADS = 4;
+	private static final long KEEP_ALIVE = 30;
+
+	private static final ThreadPoolExecutor pool = new ThreadPoolExecutor(DEFAULT_THREADS, DEFAULT_THREADS,
+			KEEP_ALIVE, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+				private final AtomicInteger count = new AtomicInteger();
+
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "IOExecutor-" + count.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+	static {
+		pool.allowCoreThreadTimeOut(true);
+	}
+
+	private IOExecutor() { }
+
+	public static ThreadPoolExecutor Get() {
+		return pool;
+	}
+
+	/**
+	 * Changes the maximum amount of calls that run at the same time.
+	 */
+	public static synchronized void SetThreads(int threads) {
+		if (threads < 1) throw new InvalidParameterException("threads must be at least 1.");
+		// The core size may never exceed the maximum size, so change them in the right order
+		if (threads > pool.getMaximumPoolSize()) {
+			pool.setMaximumPoolSize(threads);
+			pool.setCorePoolSize(threads);
+		} else {
+			pool.setCorePoolSize(threads);
+			pool.setMaximumPoolSize(threads);
+		}
+	}
+
+	public static int GetThreads() {
+		return pool.getMaximumPoolSize();
+	}
+}
@@ -0,0 +1,327 @@
+package com.example.alldone;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A forward-only JSON reader that decodes values straight from a string without building a tree.
+ * <p>
+ * Trailing zero bytes left behind by the zero padding of the AES envelope are treated as whitespace.
+ */
+public class JsonStreamReader implements ValueReader {
+    // Parser states of every nesting level
+    private static final int EMPTY_DOCUMENT = 0;
+    private static final int NONEMPTY_DOCUMENT = 1;
+    private static final int EMPTY_OBJECT = 2;
+    private static final int NONEMPTY_OBJECT = 3;
+    private static final int DANGLING_NAME = 4;
+    private static final int EMPTY_ARRAY = 5;
+    private static final int NONEMPTY_ARRAY = 6;
+
+    private final String json;
+    private int pos;
+
+    private int[] stack = new int[16];
+    private int depth;
+
+    private Token peeked;
+
+    public JsonStreamReader(String json) {
+        this.json = json;
+        stack[depth++] = EMPTY_DOCUMENT;
+    }
+
+    /**
+     * @return The type of the next token without consuming it.
+     */
+    @Override
+    public Token Peek() throws IOException {
+        if (peeked == null) peeked = DoPeek();
+        return peeked;
+    }
+
+    /**
+     * @return True if the current object or array has another element.
+     */
+    @Override
+    public boolean HasNext() throws IOException {
+        Token token = Peek();
+        return token != Token.END_OBJECT && token != Token.END_ARRAY && token != Token.END_DOCUMENT;
+    }
+
+    @Override
+    public void BeginObject() throws IOException {
+        Expect(Token.BEGIN_OBJECT);
+        pos++;
+        Push(EMPTY_OBJECT);
+    }
+
+    @Override
+    public void EndObject() throws IOException {
+        Expect(Token.END_OBJECT);
+        depth--;
+    }
+
+    @Override
+    public void BeginArray() throws IOException {
+        Expect(Token.BEGIN_ARRAY);
+        pos++;
+        Push(EMPTY_ARRAY);
+    }
+
+    @Override
+    public void EndArray() throws IOException {
+        Expect(Token.END_ARRAY);
+        depth--;
+    }
+
+    @Override
+    public String NextName() throws IOException {
+        Expect(Token.NAME);
+        return ReadString();
+    }
+
+    /**
+     * @return The next string value, the literal text of a number, or null for a JSON null.
+     */
+    @Override
+    public String NextString() throws IOException {
+        Token token = Peek();
+        peeked = null;
+        switch (token) {
+            case STRING: return ReadString();
+            case NUMBER: return ReadLiteral();
+            case NULL:
+                ReadLiteral();
+                return null;
+            default: throw Error("Expected a string but was " + token);
+        }
+    }
+
+    /**
+     * @return The next number, or the next string parsed as a number.
+     */
+    @Override
+    public long NextLong() throws IOException {
+        Token token = Peek();
+        if (token != Token.NUMBER && token != Token.STRING) throw Error("Expected a number but was " + token);
+        String literal = NextString();
+        try {
+            return Long.parseLong(literal);
+        } catch (NumberFormatException e) {
+            try {
+                // Accept numbers written with a fraction or exponent as long as they are whole
+                double value = Double.parseDouble(literal);
+                if (value != (long) value) throw Error("Expected a whole number but was " + literal);
+                return (long) value;
+            } catch (NumberFormatException e2) {
+                throw Error("Expected a number but was " + literal);
+            }
+        }
+    }
+
+    @Override
+    public int NextInt() throws IOException {
+        long value = NextLong();
+        if (value != (int) value) throw Error("Number out of int range: " + value);
+        return (int) value;
+    }
+
+    @Override
+    public boolean NextBoolean() throws IOException {
+        Expect(Token.BOOLEAN);
+        String literal = ReadLiteral();
+        if (literal.equals("true")) return true;
+        if (literal.equals("false")) return false;
+        throw Error("Expected a boolean but was " + literal);
+    }
+
+    @Override
+    public void NextNull() throws IOException {
+        Expect(Token.NULL);
+        if (!ReadLiteral().equals("null")) throw Error("Expected null");
+    }
+
+    /**
+     * Skips the next value, including all of its nested values. If the next token is a name, its value is skipped too.
+     */
+    @Override
+    public void SkipValue() throws IOException {
+        switch (Peek()) {
+            case BEGIN_OBJECT:
+                BeginObject();
+                while (HasNext()) {
+                    NextName();
+                    SkipValue();
+                }
+                EndObject();
+                break;
+            case BEGIN_ARRAY:
+                BeginArray();
+                while (HasNext()) SkipValue();
+                EndArray();
+                break;
+            case NAME:
+                NextName();
+                SkipValue();
+                break;
+            case STRING:
+                NextString();
+                break;
+            case NUMBER:
+            case BOOLEAN:
+            case NULL:
+                peeked = null;
+                ReadLiteral();
+                break;
+            default:
+                throw Error("Expected a value but was " + Peek());
+        }
+    }
+
+    private Token DoPeek() throws IOException {
+        int top = stack[depth - 1];
+        char c;
+        switch (top) {
+            case EMPTY_ARRAY:
+                stack[depth - 1] = NONEMPTY_ARRAY;
+                if (PeekChar() == ']') {
+                    pos++;
+                    return Token.END_ARRAY;
+                }
+                break;
+            case NONEMPTY_ARRAY:
+                c = PeekChar();
+                if (c == ']') {
+                    pos++;
+                    return Token.END_ARRAY;
+                }
+                if (c != ',') throw Error("Expected ',' or ']'");
+                pos++;
+                break;
+            case EMPTY_OBJECT:
+            case NONEMPTY_OBJECT:
+                c = PeekChar();
+                if (c == '}') {
+                    pos++;
+                    return Token.END_OBJECT;
+                }
+                if (top == NONEMPTY_OBJECT) {
+                    if (c != ',') throw Error("Expected ',' or '}'");
+                    pos++;
+                    c = PeekChar();
+                }
+                if (c != '"') throw Error("Expected a name");
+                stack[depth - 1] = DANGLING_NAME;
+                return Token.NAME;
+            case DANGLING_NAME:
+                if (PeekChar() != ':') throw Error("Expected ':'");
+                pos++;
+                stack[depth - 1] = NONEMPTY_OBJECT;
+                break;
+            case EMPTY_DOCUMENT:
+                stack[depth - 1] = NONEMPTY_DOCUMENT;
+                break;
+            case NONEMPTY_DOCUMENT:
+                return Token.END_DOCUMENT;
+        }
+
+        switch (PeekChar()) {
+            case '{': return Token.BEGIN_OBJECT;
+            case '[': return Token.BEGIN_ARRAY;
+            case '"': return Token.STRING;
+            case 't':
+            case 'f': return Token.BOOLEAN;
+            case 'n': return Token.NULL;
+            default: return Token.NUMBER;
+        }
+    }
+
+    private void Expect(Token expected) throws IOException {
+        Token token = Peek();
+        if (token != expected) throw Error("Expected " + expected + " but was " + token);
+        peeked = null;
+    }
+
+    private void Push(int state) {
+        if (depth == stack.length) stack = Arrays.copyOf(stack, depth * 2);
+        stack[depth++] = state;
+    }
+
+    /**
+     * Skips whitespace and returns the next character without consuming it.
+     */
+    private char PeekChar() throws IOException {
+        while (pos < json.length()) {
+            char c = json.charAt(pos);
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\r' && c != '\0') return c;
+            pos++;
+        }
+        if (stack[depth - 1] == NONEMPTY_DOCUMENT) return '\0';
+        throw new EOFException("Unexpected end of JSON at position " + pos);
+    }
+
+    /**
+     * Reads a quoted string. The position must be at the opening quote.
+     */
+    private String ReadString() throws IOException {
+        int start = ++pos;
+        // Fast path for strings without escape sequences
+        while (pos < json.length()) {
+            char c = json.charAt(pos);
+            if (c == '"') return json.substring(start, pos++);
+            if (c == '\\') break;
+            pos++;
+        }
+
+        StringBuilder sb = new StringBuilder(json.substring(start, pos));
+        while (pos < json.length()) {
+            char c = json.charAt(pos++);
+            if (c == '"') return sb.toString();
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            if (pos >= json.length()) break;
+            char escaped = json.charAt(pos++);
+            switch (escaped) {
+                case 'b': sb.append('\b'); break;
+                case 'f': sb.append('\f'); break;
+                case 'n': sb.append('\n'); break;
+                case 'r': sb.append('\r'); break;
+                case 't': sb.append('\t'); break;
+                case 'u':
+                    if (pos + 4 > json.length()) throw Error("Invalid unicode escape");
+                    try {
+                        sb.append((char) Integer.parseInt(json.substring(pos, pos + 4), 16));
+                    } catch (NumberFormatException e) {
+                        throw Error("Invalid unicode escape");
+                    }
+                    pos += 4;
+                    break;
+                default: sb.append(escaped); break;
+            }
+        }
+        throw new EOFException("Unterminated string at position " + start);
+    }
+
+    /**
+     * Reads an unquoted literal such as a number, true, false or null.
+     */
+    private String ReadLiteral() throws IOException {
+        PeekChar();
+        int start = pos;
+        while (pos < json.length()) {
+            char c = json.charAt(pos);
+            if (c == ',' || c == '}' || c == ']' || c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\0') break;
+            pos++;
+        }
+        if (start == pos) throw Error("Expected a value");
+        return json.substring(start, pos);
+    }
+
+    private IOException Error(String message) {
+        return new IOException(message + " at position " + pos);
+    }
+}
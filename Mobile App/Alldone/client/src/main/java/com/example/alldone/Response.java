@@ -0,0 +1,267 @@
+package com.example.alldone;
+
+import com.example.alldone.model.Enrollment;
+import com.example.alldone.model.Group;
+import com.example.alldone.model.Task;
+import com.example.alldone.model.TaskChanges;
+import com.example.alldone.net.Metrics;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class Response {
+    /**
+     * Decodes a single element of a JSON or CBOR array into an object.
+     */
+    public interface Decoder<T> {
+        T Decode(ValueReader reader) throws IOException;
+    }
+
+    public static final Decoder<Task> TASKS = new Decoder<Task>() {
+        @Override
+        public Task Decode(ValueReader reader) throws IOException {
+            return Task.read(reader);
+        }
+    };
+    public static final Decoder<Group> GROUPS = new Decoder<Group>() {
+        @Override
+        public Group Decode(ValueReader reader) throws IOException {
+            return Group.read(reader);
+        }
+    };
+    public static final Decoder<Enrollment> ENROLLMENTS = new Decoder<Enrollment>() {
+        @Override
+        public Enrollment Decode(ValueReader reader) throws IOException {
+            return Enrollment.read(reader);
+        }
+    };
+
+    /**
+     * The body as text, or null if the response had no body or a binary body.
+     */
+    public final String Data;
+    public final int StatusCode;
+    public final String StatusDescription;
+    // The body encoded as CBOR, if the server sent it that way
+    private final byte[] cbor;
+
+    // Lazily parsed views of Data. Each one is built at most once.
+    private JSONObject json;
+    private boolean jsonParsed;
+    private final Map<Decoder<?>, List<?>> results = new HashMap<>();
+    private TaskChanges taskChanges;
+    private boolean taskChangesDecoded;
+    // The numbers of the endpoint that sent the response, which count the time spent parsing it
+    private Metrics.Endpoint metrics;
+
+    public Response() {
+        this(null, -1, "");
+    }
+    public Response(String data, int statusCode, String statusDescription) {
+        this(data, null, statusCode, statusDescription);
+    }
+    private Response(String data, byte[] cbor, int statusCode, String statusDescription) {
+        this.Data = data;
+        this.cbor = cbor;
+        this.StatusCode = statusCode;
+        this.StatusDescription = statusDescription;
+    }
+
+    /**
+     * Creates a response with a body that is encoded as CBOR instead of JSON. Its {@link #Data} is null, but it is
+     * decoded by {@link #GetResults(Decoder)} and {@link #GetJSON()} like a JSON body.
+     */
+    public static Response FromCbor(byte[] cbor, int statusCode, String statusDescription) {
+        return new Response(null, cbor, statusCode, statusDescription);
+    }
+
+    /**
+     * Makes the response count the time spent parsing it for an endpoint.
+     */
+    synchronized void SetMetrics(Metrics.Endpoint metrics) {
+        this.metrics = metrics;
+    }
+
+    private void RecordParse(long start) {
+        if (metrics != null) metrics.Parse.Record((System.nanoTime() - start) / 1000);
+    }
+
+    /**
+     * @return True if the body is encoded as CBOR.
+     */
+    public boolean IsBinary() {
+        return cbor != null;
+    }
+
+    /**
+     * @return The approximate amount of memory taken by the body.
+     */
+    public int GetSize() {
+        // Strings take roughly two bytes per character
+        return cbor != null ? cbor.length : Data == null ? 0 : 2 * Data.length();
+    }
+
+    /**
+     * @return A reader of the body, or null if the response has no body.
+     */
+    private ValueReader GetReader() {
+        if (cbor != null) return new CborStreamReader(cbor);
+        return Data == null ? null : new JsonStreamReader(Data);
+    }
+
+    public boolean IsInformational() { return StatusCode >= 100 && StatusCode < 200; }
+    public boolean IsSuccessful() { return StatusCode >= 200 && StatusCode < 300; }
+    public boolean IsRedirect() { return StatusCode >= 300 && StatusCode < 400; }
+    public boolean IsClientError() { return StatusCode >= 400 && StatusCode < 500; }
+    public boolean IsServerError() { return StatusCode >= 500 && StatusCode < 600; }
+
+    /**
+     * @return The body parsed as a JSON object, or null if it isn't one. The body is only parsed on the first call.
+     */
+    public synchronized JSONObject GetJSON() {
+        if (!jsonParsed) {
+            jsonParsed = true;
+            long start = System.nanoTime();
+            try {
+                json = cbor != null ? (JSONObject) ReadJSON(new CborStreamReader(cbor)) : new JSONObject(Data);
+            } catch (Exception e) {
+                json = null;
+            }
+            RecordParse(start);
+        }
+        return json;
+    }
+
+    /**
+     * @return The string value of a top level property, or null if the data has no such property.
+     */
+    public String GetString(String name) {
+        JSONObject json = GetJSON();
+        return json == null || json.isNull(name) ? null : json.optString(name, null);
+    }
+
+    /**
+     * Decodes every element of the "results" array straight from the body, without building JSON objects.
+     * The results are only decoded once per decoder.
+     * @return The decoded elements, or null if the data does not contain a valid results array.
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized <T> List<T> GetResults(Decoder<T> decoder) {
+        if (results.containsKey(decoder)) return (List<T>) results.get(decoder);
+
+        List<T> list = null;
+        long start = System.nanoTime();
+        ValueReader reader = GetReader();
+        if (reader != null) {
+            try {
+                reader.BeginObject();
+                while (reader.HasNext()) {
+                    if (!reader.NextName().equals("results")) {
+                        reader.SkipValue();
+                        continue;
+                    }
+                    list = new ArrayList<>();
+                    reader.BeginArray();
+                    while (reader.HasNext()) list.add(decoder.Decode(reader));
+                    reader.EndArray();
+                }
+                reader.EndObject();
+            } catch (IOException e) {
+                list = null;
+            }
+        }
+        RecordParse(start);
+        results.put(decoder, list);
+        return list;
+    }
+
+    public List<Task> GetTasks() {
+        return GetResults(TASKS);
+    }
+    /**
+     * Decodes a response of the task endpoint, including its change cursor, in a single pass. Only decoded once.
+     * @return The tasks and deletions, or null if the data is not a valid task response.
+     */
+    public synchronized TaskChanges GetTaskChanges() {
+        if (!taskChangesDecoded) {
+            taskChangesDecoded = true;
+            long start = System.nanoTime();
+            ValueReader reader = GetReader();
+            try {
+                taskChanges = reader == null ? null : TaskChanges.read(reader);
+            } catch (IOException e) {
+                taskChanges = null;
+            }
+            RecordParse(start);
+        }
+        return taskChanges;
+    }
+    public List<Group> GetGroups() {
+        return GetResults(GROUPS);
+    }
+    public List<Enrollment> GetEnrollments() {
+        return GetResults(ENROLLMENTS);
+    }
+
+    /**
+     * Reads a value into the matching org.json type.
+     */
+    private static Object ReadJSON(ValueReader reader) throws IOException, JSONException {
+        switch (reader.Peek()) {
+            case BEGIN_OBJECT:
+                JSONObject object = new JSONObject();
+                reader.BeginObject();
+                while (reader.HasNext()) {
+                    String name = reader.NextName();
+                    object.put(name, ReadJSON(reader));
+                }
+                reader.EndObject();
+                return object;
+            case BEGIN_ARRAY:
+                JSONArray array = new JSONArray();
+                reader.BeginArray();
+                while (reader.HasNext()) array.put(ReadJSON(reader));
+                reader.EndArray();
+                return array;
+            case BOOLEAN:
+                return reader.NextBoolean();
+            case NULL:
+                reader.NextNull();
+                return JSONObject.NULL;
+            case NUMBER:
+                String number = reader.NextString();
+                try {
+                    return Long.parseLong(number);
+                } catch (NumberFormatException e) {
+                    return Double.parseDouble(number);
+                }
+            default:
+                return reader.NextString();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d - '%s'", StatusCode, StatusDescription);
+    }
+
+    /**
+     * @return The status and the indented body, for logging.
+     */
+    public String ToPrettyString() {
+        try {
+            JSONObject json = GetJSON();
+            return toString() + "\nResponse: "
+                    + (json == null ? '"' + (Data == null ? "" : Data) + '"' : json.toString(4));
+        } catch (JSONException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.alldone;
+
+import java.security.InvalidParameterException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A size-bounded LRU cache of decoded responses, keyed by endpoint, method and request body.
+ * <p>
+ * Only endpoints with a registered time to live are cached. A fresh entry is returned without contacting the server;
+ * a stale entry is revalidated with its ETag or Last-Modified value so that an unchanged response costs a 304.
+ * <p>
+ * A request takes the {@link #GetGeneration() generation} of the cache before it is sent, and only caches its response
+ * if its endpoint wasn't invalidated in the meantime. Otherwise a read that overtook a change would cache what the
+ * endpoint returned before the change.
+ */
+public class ResponseCache {
+	private static final int ENTRY_OVERHEAD = 128;
+
+	/**
+	 * A cached response together with its validators.
+	 */
+	public static class Entry {
+		public final String Link;
+		public final Response Response;
+		public final String ETag;
+		public final String LastModified;
+		private final int size;
+		private volatile long expires;
+
+		Entry(String link, Response response, String eTag, String lastModified, long expires) {
+			this.Link = link;
+			this.Response = response;
+			this.ETag = eTag;
+			this.LastModified = lastModified;
+			this.expires = expires;
+			size = ENTRY_OVERHEAD + response.GetSize();
+		}
+
+		public boolean IsFresh() {
+			return System.currentTimeMillis() < expires;
+		}
+
+		/**
+		 * @return True if the entry can be revalidated instead of downloaded again.
+		 */
+		public boolean HasValidator() {
+			return ETag != null || LastModified != null;
+		}
+	}
+
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+	private final Map<String, Long> ttls = new HashMap<>();
+	// The generation in which every endpoint was last invalidated
+	private final Map<String, Long> invalidated = new HashMap<>();
+	private final long maxSize;
+	private long size;
+	private long generation;
+	// The generation in which the whole cache was last cleared
+	private long cleared;
+
+	private int hits, revalidations, misses;
+
+	/**
+	 * @param maxSize The approximate maximum amount of memory in bytes that the cached responses may take.
+	 */
+	public ResponseCache(long maxSize) {
+		if (maxSize <= 0) throw new InvalidParameterException("maxSize must be greater than 0.");
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * Enables caching for an endpoint.
+	 * @param link The endpoint, as passed to {@link Connection}.
+	 * @param ttl The time in milliseconds for which a response is used without revalidating it. May be 0 to always revalidate.
+	 */
+	public synchronized void SetTTL(String link, long ttl) {
+		if (ttl < 0) throw new InvalidParameterException("ttl may not be less than 0.");
+		ttls.put(link, ttl);
+	}
+
+	/**
+	 * @return True if responses of the endpoint are cached.
+	 */
+	public synchronized boolean IsCached(String link) {
+		return ttls.containsKey(link);
+	}
+
+	public static String GetKey(String link, String method, String data) {
+		return method + ' ' + link + (data == null ? "" : '\n' + data);
+	}
+
+	public synchronized Entry Get(String key) {
+		return entries.get(key);
+	}
+
+	/**
+	 * @return The generation to pass to {@link #Put} and {@link #Refresh} for a request that is about to be sent.
+	 */
+	public synchronized long GetGeneration() {
+		return generation;
+	}
+
+	/**
+	 * @return True if the endpoint was invalidated or the cache was cleared after the generation.
+	 */
+	private boolean IsInvalidated(String link, long generation) {
+		if (cleared > generation) return true;
+		Long last = invalidated.get(link);
+		return last != null && last > generation;
+	}
+
+	/**
+	 * Caches a response under a key, replacing any previous entry, and evicts the least recently used entries.
+	 * Responses of endpoints without a time to live, responses larger than the whole cache and responses to requests
+	 * that the endpoint was invalidated after are not stored.
+	 * @param generation The generation of the cache before the request was sent.
+	 */
+	public synchronized void Put(String key, String link, Response response, String eTag, String lastModified,
+			long generation) {
+		Long ttl = ttls.get(link);
+		if (ttl == null || IsInvalidated(link, generation)) return;
+
+		Entry entry = new Entry(link, response, eTag, lastModified, System.currentTimeMillis() + ttl);
+		Remove(key);
+		if (entry.size > maxSize) return;
+
+		entries.put(key, entry);
+		size += entry.size;
+		Iterator<Entry> iterator = entries.values().iterator();
+		while (size > maxSize && iterator.hasNext()) {
+			size -= iterator.next().size;
+			iterator.remove();
+		}
+	}
+
+	/**
+	 * Marks an entry as fresh again after the server confirmed that it did not change, unless its endpoint was
+	 * invalidated after the revalidation was sent.
+	 * @param generation The generation of the cache before the revalidation was sent.
+	 */
+	public synchronized void Refresh(Entry entry, long generation) {
+		if (IsInvalidated(entry.Link, generation)) return;
+		Long ttl = ttls.get(entry.Link);
+		entry.expires = System.currentTimeMillis() + (ttl == null ? 0 : ttl);
+	}
+
+	/**
+	 * Removes every entry of an endpoint.
+	 */
+	public synchronized void Invalidate(String link) {
+		invalidated.put(link, ++generation);
+		Iterator<Entry> iterator = entries.values().iterator();
+		while (iterator.hasNext()) {
+			Entry entry = iterator.next();
+			if (!entry.Link.equals(link)) continue;
+			size -= entry.size;
+			iterator.remove();
+		}
+	}
+
+	/**
+	 * Removes every entry, and keeps requests that were sent before from caching their responses.
+	 */
+	public synchronized void Clear() {
+		cleared = ++generation;
+		entries.clear();
+		size = 0;
+	}
+
+	private void Remove(String key) {
+		Entry old = entries.remove(key);
+		if (old != null) size -= old.size;
+	}
+
+	synchronized void CountHit() { hits++; }
+	synchronized void CountRevalidation() { revalidations++; }
+	synchronized void CountMiss() { misses++; }
+
+	/** @return The amount of responses served from the cache without contacting the server. */
+	public synchronized int GetHitCount() { return hits; }
+	/** @return The amount of responses served from the cache after a 304 from the server. */
+	public synchronized int GetRevalidationCount() { return revalidations; }
+	/** @return The amount of cacheable requests that needed a full response. */
+	public synchronized int GetMissCount() { return misses; }
+	/** @return The approximate amount of memory taken by the cached responses. */
+	public synchronized long GetSize() { return size; }
+}
@@ -0,0 +1,170 @@
+package com.example.alldone;
+
+import com.example.alldone.net.Deadline;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Coalesces concurrent calls with the same key into a single call whose result is handed to every caller.
+ * <p>
+ * Only calls that overlap in time are coalesced; once a call has finished, the next call with its key runs again.
+ */
+public class SingleFlight<T> {
+	private static class Call<T> {
+		// The call's own deadline, which outlives the caller that runs it as long as others wait for it
+		final Deadline deadline;
+		// Guarded by the call, like done. Counts the caller that runs it as well.
+		int waiting = 1;
+		boolean done;
+		T result;
+		RuntimeException error;
+
+		Call(Deadline deadline) {
+			this.deadline = deadline;
+		}
+	}
+
+	private final Map<String, Call<T>> calls = new HashMap<>();
+	private int saved;
+
+	/**
+	 * Runs a call, or waits for the identical call that is already running and returns its result.
+	 * <p>
+	 * The call runs under a deadline of its own, which is {@link Deadline#Current()} while it runs, instead of the
+	 * deadline of the caller that happens to run it. It is only cancelled once every caller stopped waiting for it,
+	 * so a caller that gives up doesn't take the result away from the callers that joined it. A caller that runs the
+	 * call keeps doing so until it ends.
+	 * @param key The key identifying identical calls.
+	 * @param function The call to run if no identical call is running. Checked exceptions are wrapped in a
+	 *                 {@link RuntimeException}, which is rethrown to every caller.
+	 * @param timeout The amount of milliseconds that the call may take.
+	 * @param deadline The deadline of the caller, or null. The caller stops waiting once it ends.
+	 * @throws InterruptedException If the thread was interrupted while waiting for another caller's call.
+	 * @throws TimeoutException If the deadline of the caller ended while waiting for another caller's call.
+	 */
+	public T Do(String key, Callable<T> function, long timeout, Deadline deadline)
+			throws InterruptedException, TimeoutException {
+		final Call<T> call;
+		boolean owner = false;
+		synchronized (calls) {
+			Call<T> running = calls.get(key);
+			if (running != null) {
+				saved++;
+				synchronized (running) {
+					running.waiting++;
+				}
+				call = running;
+			} else {
+				call = new Call<>(Deadline.After(timeout));
+				calls.put(key, call);
+				owner = true;
+			}
+		}
+
+		// Either run the call or wait for the caller that is running it
+		if (owner) {
+			Runnable leave = new Runnable() {
+				@Override
+				public void run() {
+					Leave(call);
+				}
+			};
+			if (deadline != null) deadline.OnDone(leave);
+			try {
+				Run(key, call, function);
+			} finally {
+				if (deadline != null) deadline.Remove(leave);
+			}
+		} else {
+			Await(call, deadline);
+		}
+
+		if (call.error != null) throw call.error;
+		return call.result;
+	}
+
+	/**
+	 * Waits until a call is done or the deadline of the caller ends.
+	 */
+	private void Await(final Call<T> call, Deadline deadline) throws InterruptedException, TimeoutException {
+		Runnable wake = new Runnable() {
+			@Override
+			public void run() {
+				synchronized (call) {
+					call.notifyAll();
+				}
+			}
+		};
+		if (deadline != null) deadline.OnDone(wake);
+		boolean done;
+		try {
+			synchronized (call) {
+				while (!call.done && (deadline == null || !deadline.IsDone())) call.wait();
+				done = call.done;
+			}
+		} catch (InterruptedException e) {
+			Leave(call);
+			throw e;
+		} finally {
+			if (deadline != null) deadline.Remove(wake);
+		}
+		if (!done) {
+			Leave(call);
+			throw new TimeoutException(deadline.IsCancelled() ? "Cancelled" : "Deadline expired");
+		}
+	}
+
+	/**
+	 * Stops waiting for a call, and cancels it if nobody waits for it anymore.
+	 */
+	private void Leave(Call<T> call) {
+		synchronized (call) {
+			if (--call.waiting > 0 || call.done) return;
+		}
+		call.deadline.Cancel();
+	}
+
+	/**
+	 * Makes later calls run again instead of joining the calls that are currently running, for example because
+	 * the data those calls read has just been changed. Callers that already joined still get the old result.
+	 */
+	public void Forget() {
+		synchronized (calls) {
+			calls.clear();
+		}
+	}
+
+	/**
+	 * @return The amount of calls that were not run because an identical call was already running.
+	 */
+	public int GetSavedCount() {
+		synchronized (calls) {
+			return saved;
+		}
+	}
+
+	private void Run(String key, Call<T> call, Callable<T> function) {
+		Deadline previous = Deadline.SetCurrent(call.deadline);
+		try {
+			call.result = function.call();
+		} catch (RuntimeException e) {
+			call.error = e;
+		} catch (Exception e) {
+			call.error = new RuntimeException(e);
+		} finally {
+			Deadline.SetCurrent(previous);
+			call.deadline.Finish();
+			synchronized (calls) {
+				if (calls.get(key) == call) calls.remove(key);
+			}
+			// Publishes the result to the waiting callers
+			synchronized (call) {
+				call.done = true;
+				call.notifyAll();
+			}
+		}
+	}
+}
@@ -0,0 +1,53 @@
+package com.example.alldone;
+
+import java.text.DateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Formats unix timestamps as a date and time in the default locale and time zone.
+ * <p>
+ * DateFormat isn't thread safe and is expensive to create, so every thread keeps its own instance and only replaces
+ * it once the default locale or time zone has changed.
+ */
+public final class TimeFormatter {
+    private static class Format {
+        final Locale locale;
+        final String zone;
+        final DateFormat format;
+        // Reused for every call on the owning thread
+        final Date date = new Date();
+
+        Format(Locale locale, TimeZone zone) {
+            this.locale = locale;
+            this.zone = zone.getID();
+            format = DateFormat.getDateTimeInstance(DateFormat.DEFAULT, DateFormat.DEFAULT, locale);
+            format.setTimeZone(zone);
+        }
+    }
+
+    private static final ThreadLocal<Format> formats = new ThreadLocal<>();
+
+    private TimeFormatter() { }
+
+    /**
+     * @param unixSeconds The amount of seconds since 1970-01-01 00:00 UTC.
+     */
+    public static String FormatUnixSeconds(long unixSeconds) {
+        Format format = GetFormat();
+        format.date.setTime(unixSeconds * 1000L);
+        return format.format.format(format.date);
+    }
+
+    private static Format GetFormat() {
+        Locale locale = Locale.getDefault();
+        TimeZone zone = TimeZone.getDefault();
+        Format format = formats.get();
+        if (format == null || !format.locale.equals(locale) || !format.zone.equals(zone.getID())) {
+            format = new Format(locale, zone);
+            formats.set(format);
+        }
+        return format;
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.alldone;
+
+import java.io.IOException;
+
+/**
+ * A forward-only reader of JSON-like values, so models can be decoded from any wire format with the same code.
+ *
+ * @see JsonStreamReader
+ * @see CborStreamReader
+ */
+public interface ValueReader {
+    enum Token {
+        BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, NAME, STRING, NUMBER, BOOLEAN, NULL, END_DOCUMENT
+    }
+
+    /**
+     * @return The type of the next token without consuming it.
+     */
+    Token Peek() throws IOException;
+
+    /**
+     * @return True if the current object or array has another element.
+     */
+    boolean HasNext() throws IOException;
+
+    void BeginObject() throws IOException;
+    void EndObject() throws IOException;
+    void BeginArray() throws IOException;
+    void EndArray() throws IOException;
+    String NextName() throws IOException;
+
+    /**
+     * @return The next string value, the text of a number, or null for a null value.
+     */
+    String NextString() throws IOException;
+
+    /**
+     * @return The next number, or the next string parsed as a number.
+     */
+    long NextLong() throws IOException;
+    int NextInt() throws IOException;
+    boolean NextBoolean() throws IOException;
+    void NextNull() throws IOException;
+
+    /**
+     * Skips the next value, including all of its nested values. If the next token is a name, its value is skipped too.
+     */
+    void SkipValue() throws IOException;
+}
@@ -0,0 +1,100 @@
+package com.example.alldone.model;
+
+import com.example.alldone.ValueReader;
+import com.example.alldone.TimeFormatter;
+
+import java.io.IOException;
+
+/**
+ * A user's enrollment in a task.
+ */
+public class Enrollment {
+    String username;
+    // Unix timestamps in seconds. end is 0 while the task is not finished.
+    long start, end;
+    // start and end formatted when they are set, so lists only have to bind them
+    String startText, endText = "";
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public long getStart() {
+        return start;
+    }
+
+    public void setStart(long start) {
+        this.start = start;
+        startText = TimeFormatter.FormatUnixSeconds(start);
+    }
+
+    public long getEnd() {
+        return end;
+    }
+
+    public void setEnd(long end) {
+        this.end = end;
+        endText = end == 0 ? "" : TimeFormatter.FormatUnixSeconds(end);
+    }
+
+    /**
+     * @return The start as a date and time in the locale and time zone that were the default when it was set.
+     */
+    public String getStartText() {
+        return startText;
+    }
+
+    /**
+     * @return The end as a date and time, or an empty string if the task is not finished.
+     */
+    public String getEndText() {
+        return endText;
+    }
+
+    public boolean hasEnded() {
+        return end != 0;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Enrollment)) return false;
+        Enrollment enrollment = (Enrollment) o;
+        return start == enrollment.start && end == enrollment.end && Task.equal(username, enrollment.username);
+    }
+
+    @Override
+    public int hashCode() {
+        return username == null ? 0 : username.hashCode();
+    }
+
+    /**
+     * Reads an enrollment object as sent by the taskenroll endpoint.
+     */
+    public static Enrollment read(ValueReader reader) throws IOException {
+        Enrollment enrollment = new Enrollment();
+        reader.BeginObject();
+        while (reader.HasNext()) {
+            switch (reader.NextName()) {
+                case "Username":
+                    enrollment.username = reader.NextString();
+                    break;
+                case "Start":
+                    enrollment.setStart(reader.NextLong());
+                    break;
+                case "End":
+                    enrollment.setEnd(reader.NextLong());
+                    break;
+                default:
+                    reader.SkipValue();
+                    break;
+            }
+        }
+        reader.EndObject();
+        return enrollment;
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.alldone.model;
+
+import com.example.alldone.ValueReader;
+
+import java.io.IOException;
+
+public class Group {
+    int id, creator;
+    // Unix timestamp in seconds
+    long created;
+    String name, description;
+
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    public int getCreator() {
+        return creator;
+    }
+
+    public void setCreator(int creator) {
+        this.creator = creator;
+    }
+
+    public long getCreated() {
+        return created;
+    }
+
+    public void setCreated(long created) {
+        this.created = created;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public void setDescription(String description) {
+        this.description = description;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Group)) return false;
+        Group group = (Group) o;
+        return id == group.id && creator == group.creator && created == group.created
+                && Task.equal(name, group.name) && Task.equal(description, group.description);
+    }
+
+    @Override
+    public int hashCode() {
+        return id;
+    }
+
+    /**
+     * Reads a group object as sent by the group endpoint.
+     */
+    public static Group read(ValueReader reader) throws IOException {
+        Group group = new Group();
+        reader.BeginObject();
+        while (reader.HasNext()) {
+            switch (reader.NextName()) {
+                case "Id":
+                    group.id = reader.NextInt();
+                    break;
+                case "Creator":
+                    group.creator = reader.NextInt();
+                    break;
+                case "Created":
+                    group.created = reader.NextLong();
+                    break;
+                case "Name":
+                    group.name = reader.NextString();
+                    break;
+                case "Description":
+                    group.description = reader.NextString();
+                    break;
+                default:
+                    reader.SkipValue();
+                    break;
+            }
+        }
+        reader.EndObject();
+        return group;
+    }
+}
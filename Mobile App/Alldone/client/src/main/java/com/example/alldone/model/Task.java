@@ -0,0 +1,129 @@
+package com.example.alldone.model;
+
+import com.example.alldone.ValueReader;
+
+import java.io.IOException;
+
+public class Task {
+    int id, group, creator;
+    int priority;
+    // Unix timestamp in seconds
+    long created;
+    String title, description;
+
+    public int getId() {
+        return id;
+    }
+
+    public String getId_string() {
+        return String.valueOf(getId());
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    public int getGroup() {
+        return group;
+    }
+
+    public void setGroup(int group) {
+        this.group = group;
+    }
+
+    public int getCreator() {
+        return creator;
+    }
+
+    public void setCreator(int creator) {
+        this.creator = creator;
+    }
+
+    public long getCreated() {
+        return created;
+    }
+
+    public void setCreated(long created) {
+        this.created = created;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    public void setPriority(int priority) {
+        this.priority = priority;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public void setDescription(String description) {
+        this.description = description;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof Task)) return false;
+        Task task = (Task) o;
+        return id == task.id && group == task.group && creator == task.creator && priority == task.priority
+                && created == task.created && equal(title, task.title) && equal(description, task.description);
+    }
+
+    @Override
+    public int hashCode() {
+        return id;
+    }
+
+    static boolean equal(Object a, Object b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    /**
+     * Reads a task object as sent by the task endpoint.
+     */
+    public static Task read(ValueReader reader) throws IOException {
+        Task task = new Task();
+        reader.BeginObject();
+        while (reader.HasNext()) {
+            switch (reader.NextName()) {
+                case "Id":
+                    task.id = reader.NextInt();
+                    break;
+                case "Group":
+                    task.group = reader.NextInt();
+                    break;
+                case "Creator":
+                    task.creator = reader.NextInt();
+                    break;
+                case "Created":
+                    task.created = reader.NextLong();
+                    break;
+                case "Title":
+                    task.title = reader.NextString();
+                    break;
+                case "Description":
+                    task.description = reader.NextString();
+                    break;
+                case "Priority":
+                    task.priority = reader.NextInt();
+                    break;
+                default:
+                    reader.SkipValue();
+                    break;
+            }
+        }
+        reader.EndObject();
+        return task;
+    }
+}
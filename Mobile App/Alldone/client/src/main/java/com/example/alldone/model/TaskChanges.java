@@ -0,0 +1,67 @@
+package com.example.alldone.model;
+
+import com.example.alldone.ValueReader;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A response of the task endpoint: a page of tasks, or the tasks that changed since a change cursor.
+ */
+public class TaskChanges {
+    final List<Task> tasks = new ArrayList<>();
+    final List<Integer> deleted = new ArrayList<>();
+    long cursor = -1;
+
+    /**
+     * @return The tasks of the page, or the created and changed tasks, ordered by id.
+     */
+    public List<Task> getTasks() {
+        return tasks;
+    }
+
+    /**
+     * @return The ids of the deleted tasks. Always empty for pages.
+     */
+    public List<Integer> getDeleted() {
+        return deleted;
+    }
+
+    /**
+     * @return The cursor to ask for the next changes with, or -1 if the server doesn't keep track of changes.
+     */
+    public long getCursor() {
+        return cursor;
+    }
+
+    /**
+     * Reads the top level object of a task endpoint response.
+     */
+    public static TaskChanges read(ValueReader reader) throws IOException {
+        TaskChanges changes = new TaskChanges();
+        reader.BeginObject();
+        while (reader.HasNext()) {
+            switch (reader.NextName()) {
+                case "results":
+                    reader.BeginArray();
+                    while (reader.HasNext()) changes.tasks.add(Task.read(reader));
+                    reader.EndArray();
+                    break;
+                case "deleted":
+                    reader.BeginArray();
+                    while (reader.HasNext()) changes.deleted.add(reader.NextInt());
+                    reader.EndArray();
+                    break;
+                case "cursor":
+                    changes.cursor = reader.NextLong();
+                    break;
+                default:
+                    reader.SkipValue();
+                    break;
+            }
+        }
+        reader.EndObject();
+        return changes;
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.alldone.net;
+
+/**
+ * Encodes and decodes the standard Base64 alphabet with padding, the way the Web API sends keys and IVs.
+ * <p>
+ * Android's own codec isn't available on a plain JVM and the JVM's isn't available on older Android versions, so the
+ * client brings its own.
+ */
+public final class Base64 {
+	private static final char[] ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+	private static final int[] VALUES = new int[128];
+	static {
+		for (int i = 0; i < VALUES.length; i++) VALUES[i] = -1;
+		for (int i = 0; i < ALPHABET.length; i++) VALUES[ALPHABET[i]] = i;
+	}
+
+	private Base64() { }
+
+	/**
+	 * @return The data as Base64 on a single line, padded with '=' to a multiple of four characters.
+	 */
+	public static String Encode(byte[] data) {
+		char[] out = new char[(data.length + 2) / 3 * 4];
+		int o = 0;
+		for (int i = 0; i < data.length; i += 3) {
+			int remaining = data.length - i;
+			int bits = (data[i] & 0xFF) << 16
+					| (remaining > 1 ? (data[i + 1] & 0xFF) << 8 : 0)
+					| (remaining > 2 ? data[i + 2] & 0xFF : 0);
+			out[o++] = ALPHABET[bits >>> 18 & 0x3F];
+			out[o++] = ALPHABET[bits >>> 12 & 0x3F];
+			out[o++] = remaining > 1 ? ALPHABET[bits >>> 6 & 0x3F] : '=';
+			out[o++] = remaining > 2 ? ALPHABET[bits & 0x3F] : '=';
+		}
+		return new String(out);
+	}
+
+	/**
+	 * Decodes Base64 with or without padding. Whitespace, such as the line breaks of wrapped Base64, is skipped.
+	 * @throws IllegalArgumentException If the text contains anything else that isn't Base64.
+	 */
+	public static byte[] Decode(String text) {
+		byte[] out = new byte[text.length() * 3 / 4];
+		int o = 0, bits = 0, count = 0;
+		boolean padded = false;
+		for (int i = 0; i < text.length(); i++) {
+			char c = text.charAt(i);
+			if (c == ' ' || c == '\n' || c == '\r' || c == '\t') continue;
+			if (c == '=') {
+				padded = true;
+				continue;
+			}
+			int value = c < VALUES.length ? VALUES[c] : -1;
+			if (value == -1 || padded) throw new IllegalArgumentException("Invalid Base64 at index " + i + ".");
+			bits = bits << 6 | value;
+			if (++count == 4) {
+				out[o++] = (byte) (bits >>> 16);
+				out[o++] = (byte) (bits >>> 8);
+				out[o++] = (byte) bits;
+				bits = 0;
+				count = 0;
+			}
+		}
+		// The last group holds one byte for two characters and two bytes for three
+		if (count == 1) throw new IllegalArgumentException("Invalid Base64 length.");
+		if (count == 2) out[o++] = (byte) (bits >>> 4);
+		else if (count == 3) {
+			out[o++] = (byte) (bits >>> 10);
+			out[o++] = (byte) (bits >>> 2);
+		}
+		if (o == out.length) return out;
+		byte[] trimmed = new byte[o];
+		System.arraycopy(out, 0, trimmed, 0, o);
+		return trimmed;
+	}
+}
@@ -0,0 +1,75 @@
+package com.example.alldone.net;
+
+import java.security.InvalidParameterException;
+import java.util.ArrayDeque;
+
+/**
+ * A thread-safe pool of byte arrays in power-of-two size classes.
+ * <p>
+ * Buffers larger than the biggest size class are allocated on demand and never pooled.
+ */
+public class BufferPool {
+	/** The pool shared by all requests sent through {@link com.example.alldone.Connection}. */
+	public static final BufferPool DEFAULT = new BufferPool();
+
+	private static final int MIN_SHIFT = 12; // 4 KiB
+	private static final int MAX_SHIFT = 20; // 1 MiB
+	private static final int DEFAULT_PER_CLASS = 4;
+
+	private final ArrayDeque<byte[]>[] classes;
+	private final int maxPerClass;
+
+	public BufferPool() {
+		this(DEFAULT_PER_CLASS);
+	}
+
+	/**
+	 * @param maxPerClass The maximum amount of idle buffers to keep for every size class.
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public BufferPool(int maxPerClass) {
+		if (maxPerClass < 0) throw new InvalidParameterException("maxPerClass may not be less than 0.");
+		this.maxPerClass = maxPerClass;
+		classes = new ArrayDeque[MAX_SHIFT - MIN_SHIFT + 1];
+		for (int i = 0; i < classes.length; i++) classes[i] = new ArrayDeque<>();
+	}
+
+	/**
+	 * Gets a buffer of at least the specified size. Its contents are undefined.
+	 * @param minSize The minimum length of the buffer.
+	 */
+	public byte[] Acquire(int minSize) {
+		int index = ClassIndex(minSize);
+		if (index == -1) return new byte[minSize];
+
+		synchronized (classes[index]) {
+			byte[] buffer = classes[index].pollFirst();
+			if (buffer != null) return buffer;
+		}
+		return new byte[1 << (index + MIN_SHIFT)];
+	}
+
+	/**
+	 * Returns a buffer to the pool. The buffer may not be used by the caller afterwards.
+	 */
+	public void Release(byte[] buffer) {
+		if (buffer == null) return;
+		int index = ClassIndex(buffer.length);
+		// Only buffers that exactly match a size class were handed out by this pool
+		if (index == -1 || buffer.length != 1 << (index + MIN_SHIFT)) return;
+
+		synchronized (classes[index]) {
+			if (classes[index].size() < maxPerClass) classes[index].addFirst(buffer);
+		}
+	}
+
+	/**
+	 * @return The index of the smallest size class that fits the size, or -1 if it is too large to be pooled.
+	 */
+	private static int ClassIndex(int size) {
+		if (size > 1 << MAX_SHIFT) return -1;
+		int shift = MIN_SHIFT;
+		while (1 << shift < size) shift++;
+		return shift - MIN_SHIFT;
+	}
+}
@@ -0,0 +1,90 @@
+package com.example.alldone.net;
+
+/**
+ * Stops sending requests to a host that keeps failing, so a struggling server gets time to recover instead of being
+ * hammered by retries.
+ * <p>
+ * The breaker opens after a number of failures in a row. While it is open every request fails right away. Once the
+ * open time has passed, a single request is let through as a probe: if it succeeds the breaker closes again, and if it
+ * fails the breaker stays open for another open time.
+ */
+public class CircuitBreaker {
+	public enum State { CLOSED, OPEN, HALF_OPEN }
+
+	public static final int DEFAULT_THRESHOLD = 5;
+	public static final long DEFAULT_OPEN_TIME = 30000;
+
+	private final int threshold;
+	private final long openTime;
+
+	private State state = State.CLOSED;
+	private int failures;
+	private long openedAt;
+	private long openedCount, rejectedCount;
+
+	public CircuitBreaker() {
+		this(DEFAULT_THRESHOLD, DEFAULT_OPEN_TIME);
+	}
+	/**
+	 * @param threshold The amount of failures in a row after which the breaker opens.
+	 * @param openTime The time in milliseconds that the breaker stays open before it lets a probe through.
+	 */
+	public CircuitBreaker(int threshold, long openTime) {
+		if (threshold < 1) throw new IllegalArgumentException("threshold must be at least 1.");
+		this.threshold = threshold;
+		this.openTime = openTime;
+	}
+
+	/**
+	 * @return True if a request may be sent. Every call that returns true must be followed by a call to
+	 * {@link #OnSuccess()}, {@link #OnFailure()} or {@link #OnAbandoned()}.
+	 */
+	public synchronized boolean Allow() {
+		switch (state) {
+			case CLOSED:
+				return true;
+			case OPEN:
+				if ((System.nanoTime() - openedAt) / 1000000 >= openTime) {
+					state = State.HALF_OPEN;
+					return true;
+				}
+				break;
+		}
+		// Only one probe at a time while half open
+		rejectedCount++;
+		return false;
+	}
+
+	public synchronized void OnSuccess() {
+		state = State.CLOSED;
+		failures = 0;
+	}
+
+	public synchronized void OnFailure() {
+		failures++;
+		if (state == State.HALF_OPEN || (state == State.CLOSED && failures >= threshold)) {
+			if (state == State.CLOSED) openedCount++;
+			state = State.OPEN;
+			openedAt = System.nanoTime();
+		}
+	}
+
+	/**
+	 * Reports a request that was cancelled before it got an answer, which says nothing about the host.
+	 */
+	public synchronized void OnAbandoned() {
+		// Let the next request probe in place of the abandoned one
+		if (state == State.HALF_OPEN) state = State.OPEN;
+	}
+
+	public synchronized State GetState() {
+		// Report a breaker whose open time has passed as ready for a probe
+		if (state == State.OPEN && (System.nanoTime() - openedAt) / 1000000 >= openTime) return State.HALF_OPEN;
+		return state;
+	}
+
+	/** @return The amount of times the breaker opened after being closed. */
+	public synchronized long GetOpenedCount() { return openedCount; }
+	/** @return The amount of requests that failed right away because the breaker was open. */
+	public synchronized long GetRejectedCount() { return rejectedCount; }
+}
@@ -0,0 +1,141 @@
+package com.example.alldone.net;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.net.URL;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Negotiates and applies the content encodings of request and response bodies.
+ * <p>
+ * Response bodies are always accepted as gzip or deflate. Request bodies are only compressed once a host announced
+ * that it can decompress them with an Accept-Encoding response header, and no longer once it rejected one with a 415.
+ * Both decoders stop at the end of the compressed stream, so trailing zero padding of the AES envelope is ignored.
+ * Decoded response bodies may be at most {@link #MAX_DECODED_SIZE} bytes.
+ */
+public class Compression {
+	/** The value of the Accept-Encoding header of every request. */
+	public static final String ACCEPT_ENCODING = "gzip, deflate";
+	/** The encoding of compressed request bodies. */
+	public static final String REQUEST_ENCODING = "gzip";
+	/** The minimum size of a request body before it is compressed. */
+	public static final int DEFAULT_THRESHOLD = 1024;
+	/**
+	 * The maximum size of a decoded response body, so a small compressed body can't fill the memory of the phone.
+	 * Far more than the largest list the app downloads.
+	 */
+	public static final int MAX_DECODED_SIZE = 16 * 1024 * 1024;
+
+	private final Set<String> hosts = new HashSet<>();
+	private int threshold = DEFAULT_THRESHOLD;
+	private long uncompressedBytes, compressedBytes;
+
+	public synchronized void SetThreshold(int threshold) {
+		this.threshold = threshold;
+	}
+
+	/**
+	 * @return True if a request body to the url should be compressed.
+	 */
+	public synchronized boolean ShouldCompress(URL url, int length) {
+		return length >= threshold && hosts.contains(GetHost(url));
+	}
+
+	/**
+	 * Remembers whether a host accepts compressed request bodies, based on the Accept-Encoding header of its response.
+	 * @param acceptEncoding The Accept-Encoding header of the response, or null if it had none.
+	 */
+	public synchronized void OnResponse(URL url, String acceptEncoding) {
+		if (acceptEncoding == null) return;
+		if (Accepts(acceptEncoding, REQUEST_ENCODING)) hosts.add(GetHost(url));
+		else hosts.remove(GetHost(url));
+	}
+
+	/**
+	 * Stops compressing request bodies to a host, because it rejected a compressed body.
+	 */
+	public synchronized void OnRejected(URL url) {
+		hosts.remove(GetHost(url));
+	}
+
+	/**
+	 * Compresses a request body with gzip.
+	 */
+	public byte[] Compress(byte[] data) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 32);
+		GZIPOutputStream gzip = new GZIPOutputStream(out);
+		gzip.write(data);
+		gzip.close();
+		byte[] compressed = out.toByteArray();
+		synchronized (this) {
+			uncompressedBytes += data.length;
+			compressedBytes += compressed.length;
+		}
+		return compressed;
+	}
+
+	/** @return The total size of the request bodies before they were compressed. */
+	public synchronized long GetUncompressedBytes() { return uncompressedBytes; }
+	/** @return The total size of the request bodies after they were compressed. */
+	public synchronized long GetCompressedBytes() { return compressedBytes; }
+
+	/**
+	 * @return True if a Content-Encoding header means that the body was actually encoded.
+	 */
+	public static boolean IsEncoded(String encoding) {
+		return encoding != null && !encoding.trim().equalsIgnoreCase("identity");
+	}
+
+	/**
+	 * Wraps a stream of encoded data in a stream that decodes it. The stream is not limited in size, so read at most
+	 * {@link #MAX_DECODED_SIZE} bytes from it, like {@link ResponseBody#Decode(String)} does.
+	 * @throws IOException If the encoding is not supported or the data does not start like it.
+	 */
+	public static InputStream Decode(String encoding, InputStream in) throws IOException {
+		String name = encoding.trim().toLowerCase(Locale.US);
+		switch (name) {
+			case "identity":
+				return in;
+			case "gzip":
+			case "x-gzip":
+				return new GZIPInputStream(in);
+			case "deflate":
+				// Deflate is meant to be zlib wrapped, but some servers send a raw deflate stream
+				PushbackInputStream pushback = new PushbackInputStream(in, 2);
+				byte[] head = new byte[2];
+				int read = pushback.read(head);
+				if (read > 0) pushback.unread(head, 0, read);
+				boolean zlib = read == 2 && (head[0] & 0x0f) == 8 && ((head[0] & 0xff) << 8 | (head[1] & 0xff)) % 31 == 0;
+				return new InflaterInputStream(pushback, new Inflater(!zlib));
+			default:
+				throw new IOException("Unsupported content encoding: " + encoding);
+		}
+	}
+
+	private static boolean Accepts(String acceptEncoding, String encoding) {
+		for (String part : acceptEncoding.split(",")) {
+			String[] parameters = part.split(";");
+			if (!parameters[0].trim().equalsIgnoreCase(encoding)) continue;
+			// An encoding with a weight of 0 is explicitly not accepted
+			for (int i = 1; i < parameters.length; i++) {
+				String parameter = parameters[i].trim().replace(" ", "");
+				if (parameter.startsWith("q=") && parameter.substring(2).matches("0(\\.0*)?")) return false;
+			}
+			return true;
+		}
+		return false;
+	}
+
+	private static String GetHost(URL url) {
+		int port = url.getPort() == -1 ? url.getDefaultPort() : url.getPort();
+		return url.getHost().toLowerCase(Locale.US) + ':' + port;
+	}
+}
@@ -0,0 +1,248 @@
+package com.example.alldone.net;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.security.InvalidParameterException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A bounded pool of persistent sockets, grouped by host and port.
+ * <p>
+ * At most {@link #GetMaxPerHost()} sockets may be in use per host at the same time; callers beyond that limit
+ * wait until one is released. Idle sockets are kept for {@link #GetKeepAlive()} milliseconds before they are
+ * closed by a background reaper. A pool without idle sockets or keep-alive never keeps sockets and has no reaper.
+ */
+public class ConnectionPool {
+	public static final int DEFAULT_MAX_PER_HOST = 4;
+	public static final int DEFAULT_MAX_IDLE = 8;
+	public static final long DEFAULT_KEEP_ALIVE = 60000;
+
+	private final int maxPerHost;
+	private final int maxIdle;
+	private final long keepAlive;
+
+	private final Map<String, Semaphore> permits = new HashMap<>();
+	// Idle sockets of all hosts, most recently used first
+	private final ArrayDeque<PooledSocket> idle = new ArrayDeque<>();
+	// Null if the pool never keeps idle sockets
+	private final Timer reaper;
+	private boolean closed;
+
+	private long openedCount;
+	private long reusedCount;
+
+	public ConnectionPool() {
+		this(DEFAULT_MAX_PER_HOST, DEFAULT_MAX_IDLE, DEFAULT_KEEP_ALIVE);
+	}
+
+	/**
+	 * @param maxPerHost The maximum amount of sockets that may be in use per host at the same time.
+	 * @param maxIdle The maximum amount of idle sockets to keep for all hosts combined.
+	 * @param keepAlive The amount of milliseconds an idle socket is kept before it is closed.
+	 */
+	public ConnectionPool(int maxPerHost, int maxIdle, long keepAlive) {
+		if (maxPerHost < 1) throw new InvalidParameterException("maxPerHost may not be less than 1.");
+		if (maxIdle < 0) throw new InvalidParameterException("maxIdle may not be less than 0.");
+		if (keepAlive < 0) throw new InvalidParameterException("keepAlive may not be less than 0.");
+		this.maxPerHost = maxPerHost;
+		this.maxIdle = maxIdle;
+		this.keepAlive = keepAlive;
+
+		if (!IsPooling()) {
+			reaper = null;
+			return;
+		}
+		// Periodically close sockets that have been idle for too long
+		reaper = new Timer("ConnectionPool-reaper", true);
+		long period = Math.max(1000, keepAlive / 2);
+		reaper.schedule(new TimerTask() {
+			@Override
+			public void run() {
+				Reap();
+			}
+		}, period, period);
+	}
+
+	/**
+	 * @return Whether released sockets are kept for reuse at all.
+	 */
+	private boolean IsPooling() {
+		return maxIdle > 0 && keepAlive > 0;
+	}
+
+	public int GetMaxPerHost() { return maxPerHost; }
+	public int GetMaxIdle() { return maxIdle; }
+	public long GetKeepAlive() { return keepAlive; }
+
+	/** @return The amount of sockets that are currently idle. */
+	public synchronized int GetIdleCount() { return idle.size(); }
+	/** @return The amount of sockets this pool has opened since it was created. */
+	public synchronized long GetOpenedCount() { return openedCount; }
+	/** @return The amount of times an idle socket was handed out instead of opening a new one. */
+	public synchronized long GetReusedCount() { return reusedCount; }
+
+	/**
+	 * Gets an idle socket for the host or opens a new one, waiting while the host is at its connection limit.
+	 * Every socket returned by this method must be handed back through {@link #Release(PooledSocket, boolean)}.
+	 * @param connectTimeout The connect timeout in milliseconds for new sockets, which also bounds the wait for a
+	 * free socket. 0 means no timeout.
+	 */
+	PooledSocket Acquire(String host, int port, int connectTimeout) throws IOException {
+		String route = host + ':' + port;
+		Semaphore permit = GetPermits(route);
+		try {
+			if (connectTimeout == 0) permit.acquire();
+			else if (!permit.tryAcquire(connectTimeout, TimeUnit.MILLISECONDS))
+				throw new SocketTimeoutException("Timed out waiting for a connection to " + route);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for a connection to " + route);
+		}
+
+		try {
+			// Prefer the most recently used idle socket for this host
+			PooledSocket socket;
+			while ((socket = TakeIdle(route)) != null) {
+				if (socket.IsHealthy()) {
+					synchronized (this) { reusedCount++; }
+					return socket;
+				}
+				socket.Close();
+			}
+
+			Socket raw = new Socket();
+			try {
+				raw.setTcpNoDelay(true);
+				raw.setKeepAlive(true);
+				raw.connect(new InetSocketAddress(host, port), connectTimeout);
+				socket = new PooledSocket(route, raw);
+			} catch (IOException e) {
+				raw.close();
+				throw e;
+			}
+			synchronized (this) { openedCount++; }
+			return socket;
+		} catch (IOException | RuntimeException e) {
+			permit.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * Hands a socket back to the pool.
+	 * @param socket A socket obtained from {@link #Acquire(String, int, int)}.
+	 * @param reusable Whether the socket is in a clean state and may be used for another request.
+	 */
+	void Release(PooledSocket socket, boolean reusable) {
+		Semaphore permit = GetPermits(socket.route);
+		socket.useCount++;
+		List<PooledSocket> evicted = new ArrayList<>();
+		if (reusable && !socket.socket.isClosed()) {
+			socket.idleSince = System.nanoTime();
+			synchronized (this) {
+				if (!closed && IsPooling()) {
+					idle.addFirst(socket);
+					socket = null;
+					// Drop the least recently used sockets when there are too many
+					while (idle.size() > maxIdle) evicted.add(idle.removeLast());
+				}
+			}
+		}
+		if (socket != null) evicted.add(socket);
+		for (PooledSocket s : evicted) s.Close();
+
+		// The socket no longer counts towards the host's limit, whether it was kept or not
+		permit.release();
+	}
+
+	/**
+	 * Closes all idle sockets that have exceeded the keep-alive duration.
+	 */
+	public void Reap() {
+		List<PooledSocket> expired = new ArrayList<>();
+		long now = System.nanoTime();
+		synchronized (this) {
+			Iterator<PooledSocket> iterator = idle.iterator();
+			while (iterator.hasNext()) {
+				PooledSocket socket = iterator.next();
+				if (now - socket.idleSince >= TimeUnit.MILLISECONDS.toNanos(keepAlive)) {
+					iterator.remove();
+					expired.add(socket);
+				}
+			}
+		}
+		for (PooledSocket socket : expired) socket.Close();
+	}
+
+	/**
+	 * Closes all idle sockets. Sockets that are in use are closed when they are released.
+	 */
+	public void EvictAll() {
+		List<PooledSocket> evicted;
+		synchronized (this) {
+			evicted = new ArrayList<>(idle);
+			idle.clear();
+		}
+		for (PooledSocket socket : evicted) socket.Close();
+	}
+
+	/**
+	 * Closes the idle sockets of a host, e.g. because one of them turned out to be closed by the server.
+	 */
+	void Evict(String route) {
+		List<PooledSocket> evicted = new ArrayList<>();
+		synchronized (this) {
+			Iterator<PooledSocket> iterator = idle.iterator();
+			while (iterator.hasNext()) {
+				PooledSocket socket = iterator.next();
+				if (!socket.route.equals(route)) continue;
+				iterator.remove();
+				evicted.add(socket);
+			}
+		}
+		for (PooledSocket socket : evicted) socket.Close();
+	}
+
+	/**
+	 * Closes all idle sockets and stops pooling released ones.
+	 */
+	public void Shutdown() {
+		synchronized (this) { closed = true; }
+		if (reaper != null) reaper.cancel();
+		EvictAll();
+	}
+
+	private synchronized PooledSocket TakeIdle(String route) {
+		long now = System.nanoTime();
+		Iterator<PooledSocket> iterator = idle.iterator();
+		while (iterator.hasNext()) {
+			PooledSocket socket = iterator.next();
+			if (!socket.route.equals(route)) continue;
+			iterator.remove();
+			if (now - socket.idleSince < TimeUnit.MILLISECONDS.toNanos(keepAlive)) return socket;
+			socket.Close();
+		}
+		return null;
+	}
+
+	private synchronized Semaphore GetPermits(String route) {
+		Semaphore permit = permits.get(route);
+		if (permit == null) {
+			permit = new Semaphore(maxPerHost, true);
+			permits.put(route, permit);
+		}
+		return permit;
+	}
+}
@@ -0,0 +1,208 @@
+package com.example.alldone.net;
+
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Timer;
+import java.util.TimerTask;
+
+/**
+ * The time that a piece of work may take, and a way to abandon it before that.
+ * <p>
+ * Work that blocks on something that doesn't react to thread interrupts, such as a socket read, registers a hook with
+ * {@link #OnDone(Runnable)} that unblocks it, e.g. by closing the socket. Hooks run once the deadline expires or is
+ * cancelled, whichever comes first. A child deadline ends no later than its parent and is cancelled along with it.
+ * <p>
+ * The deadline of the {@link com.example.alldone.Call} that is running on a thread is available through
+ * {@link #Current()}, so requests inherit the budget and the cancellation of the call that sends them.
+ */
+public final class Deadline {
+	private static final Timer timer = new Timer("Deadline", true);
+	private static final ThreadLocal<Deadline> current = new ThreadLocal<>();
+	private static final long NEVER = Long.MAX_VALUE;
+
+	// In System.nanoTime(), or NEVER
+	private final long expiresAt;
+	private final Deadline parent;
+	private final Runnable parentHook;
+	private final List<Runnable> hooks = new ArrayList<>();
+	private TimerTask expiry;
+	private boolean cancelled, expired;
+
+	private Deadline(long expiresAt, Deadline parent) {
+		this.expiresAt = expiresAt;
+		this.parent = parent;
+		if (parent == null) {
+			parentHook = null;
+			return;
+		}
+		parentHook = new Runnable() {
+			@Override
+			public void run() {
+				if (Deadline.this.parent.IsCancelled()) Cancel();
+				else Expire();
+			}
+		};
+		parent.OnDone(parentHook);
+	}
+
+	/**
+	 * @return A deadline without a time limit, which only ends when it is cancelled.
+	 */
+	public static Deadline Never() {
+		return new Deadline(NEVER, null);
+	}
+
+	/**
+	 * @return A deadline that expires after a number of milliseconds.
+	 */
+	public static Deadline After(long timeout) {
+		return new Deadline(Expiry(timeout), null);
+	}
+
+	/**
+	 * @return A deadline that expires after a number of milliseconds, or sooner if the parent ends first.
+	 * @param parent The deadline to end with, or null. The child must be finished with {@link #Finish()}.
+	 */
+	public static Deadline After(long timeout, Deadline parent) {
+		if (parent == null) return After(timeout);
+		return new Deadline(Math.min(Expiry(timeout), parent.expiresAt), parent);
+	}
+
+	private static long Expiry(long timeout) {
+		long now = System.nanoTime();
+		return timeout >= (NEVER - now) / 1000000 ? NEVER : now + timeout * 1000000;
+	}
+
+	/**
+	 * @return The deadline of the work running on this thread, or null.
+	 */
+	public static Deadline Current() {
+		return current.get();
+	}
+
+	/**
+	 * Sets the deadline of the work running on this thread.
+	 * @return The previous deadline of the thread, to restore afterwards.
+	 */
+	public static Deadline SetCurrent(Deadline deadline) {
+		Deadline previous = current.get();
+		if (deadline == null) current.remove();
+		else current.set(deadline);
+		return previous;
+	}
+
+	/**
+	 * @return The time left in milliseconds, 0 once the deadline ended, or {@link Long#MAX_VALUE} without a limit.
+	 */
+	public long GetRemaining() {
+		if (IsDone()) return 0;
+		if (expiresAt == NEVER) return Long.MAX_VALUE;
+		return Math.max(0, (expiresAt - System.nanoTime()) / 1000000);
+	}
+
+	/**
+	 * @return The time left as a socket timeout in milliseconds, which is at least 1, or 0 without a limit.
+	 */
+	public int GetTimeout() {
+		long remaining = GetRemaining();
+		if (remaining == Long.MAX_VALUE) return 0;
+		return (int) Math.max(1, Math.min(Integer.MAX_VALUE, remaining));
+	}
+
+	public synchronized boolean IsCancelled() {
+		return cancelled;
+	}
+
+	public synchronized boolean IsExpired() {
+		if (!expired && !cancelled && expiresAt != NEVER && System.nanoTime() - expiresAt >= 0) expired = true;
+		return expired;
+	}
+
+	/**
+	 * @return True once the deadline expired or was cancelled.
+	 */
+	public boolean IsDone() {
+		return IsCancelled() || IsExpired();
+	}
+
+	/**
+	 * @throws SocketTimeoutException If the deadline expired.
+	 * @throws InterruptedIOException If the deadline was cancelled.
+	 */
+	public void Check() throws InterruptedIOException {
+		if (IsCancelled()) throw new InterruptedIOException("Cancelled");
+		if (IsExpired()) throw new SocketTimeoutException("Deadline expired");
+	}
+
+	/**
+	 * Abandons the work. Runs the hooks right away.
+	 */
+	public void Cancel() {
+		synchronized (this) {
+			if (cancelled || expired) return;
+			cancelled = true;
+		}
+		RunHooks();
+	}
+
+	private void Expire() {
+		synchronized (this) {
+			if (cancelled || expired) return;
+			expired = true;
+		}
+		RunHooks();
+	}
+
+	/**
+	 * Registers a hook that runs once the deadline ends. It runs right away if the deadline already ended.
+	 */
+	public void OnDone(Runnable hook) {
+		synchronized (this) {
+			if (!cancelled && !IsExpired()) {
+				hooks.add(hook);
+				// Only deadlines that something waits on need a timer
+				if (expiry == null && expiresAt != NEVER) {
+					expiry = new TimerTask() {
+						@Override
+						public void run() {
+							Expire();
+						}
+					};
+					timer.schedule(expiry, Math.max(0, (expiresAt - System.nanoTime()) / 1000000));
+				}
+				return;
+			}
+		}
+		hook.run();
+	}
+
+	/**
+	 * Removes a hook, once the work it would unblock is done.
+	 */
+	public synchronized void Remove(Runnable hook) {
+		hooks.remove(hook);
+	}
+
+	/**
+	 * Releases a child deadline from its parent and stops its timer. Its hooks no longer run.
+	 */
+	public void Finish() {
+		synchronized (this) {
+			hooks.clear();
+			if (expiry != null) expiry.cancel();
+		}
+		if (parent != null) parent.Remove(parentHook);
+	}
+
+	private void RunHooks() {
+		List<Runnable> pending;
+		synchronized (this) {
+			pending = new ArrayList<>(hooks);
+			hooks.clear();
+			if (expiry != null) expiry.cancel();
+		}
+		for (Runnable hook : pending) hook.run();
+	}
+}
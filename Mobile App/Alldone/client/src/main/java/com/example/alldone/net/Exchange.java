@@ -0,0 +1,38 @@
+package com.example.alldone.net;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The response side of a request sent by a {@link Transport}.
+ */
+public interface Exchange {
+	int GetStatusCode();
+	String GetStatusDescription();
+
+	/**
+	 * @param name The case-insensitive name of the header.
+	 * @return The value of the header or null if the response did not contain it.
+	 */
+	String GetHeader(String name);
+
+	/**
+	 * @return The value of the Content-Length header, or -1 if it is unknown.
+	 */
+	long GetContentLength();
+
+	/**
+	 * @return The time in nanoseconds it took to get a connection for the request, including the wait for a free one.
+	 */
+	long GetConnectTime();
+
+	/**
+	 * @return A stream containing the response body. Closing it does not close the exchange.
+	 */
+	InputStream GetBody() throws IOException;
+
+	/**
+	 * Releases the exchange. The underlying connection is reused if the body was fully read.
+	 */
+	void Close();
+}
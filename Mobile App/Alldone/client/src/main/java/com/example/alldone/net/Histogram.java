@@ -0,0 +1,75 @@
+package com.example.alldone.net;
+
+import java.util.Arrays;
+
+/**
+ * Counts values in a fixed amount of memory, and answers percentiles of them.
+ * <p>
+ * Values are counted in buckets whose width grows with their value: every power of two is split into
+ * {@value #SUB_COUNT} buckets, so a percentile is never more than 12.5% above the value it stands for. Values below
+ * {@value #SUB_COUNT} are counted exactly, and values of 2^41 and more are counted as 2^41 - 1.
+ */
+public class Histogram {
+	private static final int SUB_BITS = 3;
+	private static final int SUB_COUNT = 1 << SUB_BITS;
+	private static final int MAX_EXPONENT = 40;
+	private static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+
+	private final long[] counts = new long[(MAX_EXPONENT - SUB_BITS + 2) * SUB_COUNT];
+	private long count, sum, max;
+
+	/**
+	 * Counts a value. Negative values are counted as 0.
+	 */
+	public synchronized void Record(long value) {
+		value = Math.max(0, Math.min(value, MAX_VALUE));
+		counts[IndexOf(value)]++;
+		count++;
+		sum += value;
+		max = Math.max(max, value);
+	}
+
+	public synchronized long GetCount() { return count; }
+	public synchronized long GetMax() { return max; }
+
+	public synchronized long GetMean() {
+		return count == 0 ? 0 : sum / count;
+	}
+
+	/**
+	 * @param percentile The percentile, from 0 to 100.
+	 * @return The highest value that counts as the same as the value below which the percentile of the values lie,
+	 * or 0 if nothing was counted.
+	 */
+	public synchronized long GetPercentile(double percentile) {
+		if (count == 0) return 0;
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+		long seen = 0;
+		for (int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+			if (seen >= rank) return Math.min(UpperBound(i), max);
+		}
+		return max;
+	}
+
+	public synchronized void Reset() {
+		Arrays.fill(counts, 0);
+		count = 0;
+		sum = 0;
+		max = 0;
+	}
+
+	private static int IndexOf(long value) {
+		if (value < SUB_COUNT) return (int) value;
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_COUNT - 1);
+		return (exponent - SUB_BITS + 1) * SUB_COUNT + sub;
+	}
+
+	private static long UpperBound(int index) {
+		if (index < SUB_COUNT) return index;
+		int exponent = index / SUB_COUNT + SUB_BITS - 1;
+		long width = 1L << (exponent - SUB_BITS);
+		return (1L << exponent) + (index % SUB_COUNT) * width + width - 1;
+	}
+}
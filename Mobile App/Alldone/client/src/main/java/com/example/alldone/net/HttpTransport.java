@@ -0,0 +1,135 @@
+package com.example.alldone.net;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Map;
+
+/**
+ * A {@link Transport} backed by the platform's {@link HttpURLConnection}.
+ * <p>
+ * Connections are never explicitly disconnected so the platform is free to keep them alive, but this
+ * transport has no control over how many are kept or for how long.
+ */
+public class HttpTransport implements Transport {
+	@Override
+	public Exchange Execute(String method, URL url, Map<String, String> headers, byte[] body, Deadline deadline) throws IOException {
+		if (deadline != null) deadline.Check();
+		final HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+		long connectTime;
+		Runnable abort = new Runnable() {
+			@Override
+			public void run() {
+				conn.disconnect();
+			}
+		};
+		try {
+			if (deadline != null) {
+				conn.setConnectTimeout(deadline.GetTimeout());
+				conn.setReadTimeout(deadline.GetTimeout());
+				deadline.OnDone(abort);
+			}
+			conn.setRequestMethod(method);
+			conn.setDoInput(!method.equals("HEAD"));
+			conn.setDoOutput(body != null);
+			for (Map.Entry<String, String> header : headers.entrySet())
+				conn.setRequestProperty(header.getKey(), header.getValue());
+			long start = System.nanoTime();
+			conn.connect();
+			connectTime = System.nanoTime() - start;
+
+			// write data
+			if (body != null) {
+				OutputStream out = conn.getOutputStream();
+				out.write(body);
+				out.close();
+			}
+			// Block until the status line has been received
+			conn.getResponseCode();
+		} catch (IOException e) {
+			if (deadline != null) deadline.Remove(abort);
+			conn.disconnect();
+			throw e;
+		}
+		return new UrlConnectionExchange(conn, deadline, abort, connectTime);
+	}
+
+	private static class UrlConnectionExchange implements Exchange {
+		private final HttpURLConnection conn;
+		private final Deadline deadline;
+		private final Runnable abort;
+		private final long connectTime;
+		private InputStream body;
+
+		UrlConnectionExchange(HttpURLConnection conn, Deadline deadline, Runnable abort, long connectTime) {
+			this.conn = conn;
+			this.deadline = deadline;
+			this.abort = abort;
+			this.connectTime = connectTime;
+		}
+
+		@Override
+		public long GetConnectTime() {
+			return connectTime;
+		}
+
+		@Override
+		public int GetStatusCode() {
+			try {
+				return conn.getResponseCode();
+			} catch (IOException e) {
+				return -1;
+			}
+		}
+
+		@Override
+		public String GetStatusDescription() {
+			try {
+				return conn.getResponseMessage();
+			} catch (IOException e) {
+				return "";
+			}
+		}
+
+		@Override
+		public String GetHeader(String name) {
+			return conn.getHeaderField(name);
+		}
+
+		@Override
+		public long GetContentLength() {
+			String length = conn.getHeaderField("Content-Length");
+			try {
+				return length == null ? -1 : Long.parseLong(length.trim());
+			} catch (NumberFormatException e) {
+				return -1;
+			}
+		}
+
+		@Override
+		public InputStream GetBody() throws IOException {
+			if (body == null) {
+				if (!conn.getDoInput()) body = new ByteArrayInputStream(new byte[0]);
+				// Error responses are only available through the error stream
+				else if (conn.getResponseCode() >= 400) body = conn.getErrorStream();
+				else body = conn.getInputStream();
+				if (body == null) body = new ByteArrayInputStream(new byte[0]);
+			}
+			return body;
+		}
+
+		@Override
+		public void Close() {
+			if (deadline != null) deadline.Remove(abort);
+			try {
+				// Closing the stream instead of disconnecting lets the platform reuse the socket
+				GetBody().close();
+			} catch (IOException e) {
+				conn.disconnect();
+			}
+		}
+	}
+}
@@ -0,0 +1,168 @@
+package com.example.alldone.net;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Where the time of the requests to every endpoint goes, and how big they are.
+ * <p>
+ * Every phase of a request is counted in a {@link Histogram} of its endpoint, so the numbers take the same memory
+ * however many requests are sent. {@link #Dump(Writer)} writes them as text that can be attached to a report.
+ */
+public class Metrics {
+	/**
+	 * The numbers of a single endpoint. Times are in microseconds and sizes in bytes as sent over the network.
+	 */
+	public static class Endpoint {
+		public final String Name;
+
+		/** The time it took to get a connection, including the wait for a free one. Reused connections take next to none. */
+		public final Histogram Connect = new Histogram();
+		/** The time from sending the request until the status line and headers of the response arrived. */
+		public final Histogram FirstByte = new Histogram();
+		/** The time it took to read the body. */
+		public final Histogram Download = new Histogram();
+		public final Histogram Decrypt = new Histogram();
+		/** The time it took to parse the body into JSON or decode its results. */
+		public final Histogram Parse = new Histogram();
+		/** The time the whole request took, from sending it until its response was decoded. */
+		public final Histogram Total = new Histogram();
+		public final Histogram RequestSize = new Histogram();
+		public final Histogram ResponseSize = new Histogram();
+
+		// By status code, where -1 means no answer
+		private final Map<Integer, Long> statusCodes = new TreeMap<>();
+		// By the simple name of the exception
+		private final Map<String, Long> errors = new TreeMap<>();
+
+		Endpoint(String name) {
+			this.Name = name;
+		}
+
+		public synchronized void CountStatus(int statusCode) {
+			Long count = statusCodes.get(statusCode);
+			statusCodes.put(statusCode, count == null ? 1 : count + 1);
+		}
+
+		/**
+		 * Counts a request that failed with an exception, by the type of the exception.
+		 */
+		public synchronized void CountError(Exception e) {
+			String name = e.getClass().getSimpleName();
+			Long count = errors.get(name);
+			errors.put(name, count == null ? 1 : count + 1);
+		}
+
+		public synchronized Map<Integer, Long> GetStatusCounts() {
+			return new TreeMap<>(statusCodes);
+		}
+
+		public synchronized Map<String, Long> GetErrorCounts() {
+			return new TreeMap<>(errors);
+		}
+
+		synchronized void Reset() {
+			for (Histogram histogram : new Histogram[] { Connect, FirstByte, Download, Decrypt, Parse, Total, RequestSize, ResponseSize })
+				histogram.Reset();
+			statusCodes.clear();
+			errors.clear();
+		}
+	}
+
+	private final Map<String, Endpoint> endpoints = new TreeMap<>();
+
+	/**
+	 * @return The numbers of an endpoint, which are created on first use.
+	 */
+	public synchronized Endpoint Get(String link) {
+		Endpoint endpoint = endpoints.get(link);
+		if (endpoint == null) {
+			endpoint = new Endpoint(link);
+			endpoints.put(link, endpoint);
+		}
+		return endpoint;
+	}
+
+	/**
+	 * @return Every endpoint that a request was sent to, by name.
+	 */
+	public synchronized List<Endpoint> GetEndpoints() {
+		return new ArrayList<>(endpoints.values());
+	}
+
+	/**
+	 * Forgets the numbers of every endpoint.
+	 */
+	public synchronized void Reset() {
+		for (Endpoint endpoint : endpoints.values()) endpoint.Reset();
+	}
+
+	/**
+	 * Writes the numbers of every endpoint as text, with the 50th, 95th and 99th percentile of every phase.
+	 */
+	public void Dump(Writer writer) {
+		PrintWriter out = new PrintWriter(writer);
+		out.println("Network metrics at " + new SimpleDateFormat("yyyy-MM-dd HH:mm:ss Z", Locale.US).format(new Date()));
+		for (Endpoint endpoint : GetEndpoints()) {
+			out.println();
+			out.println(endpoint.Name);
+			out.println("  status    " + Join(endpoint.GetStatusCounts()));
+			Map<String, Long> errors = endpoint.GetErrorCounts();
+			if (!errors.isEmpty()) out.println("  errors    " + Join(errors));
+			DumpTime(out, "connect", endpoint.Connect);
+			DumpTime(out, "1st byte", endpoint.FirstByte);
+			DumpTime(out, "download", endpoint.Download);
+			DumpTime(out, "decrypt", endpoint.Decrypt);
+			DumpTime(out, "parse", endpoint.Parse);
+			DumpTime(out, "total", endpoint.Total);
+			DumpSize(out, "request", endpoint.RequestSize);
+			DumpSize(out, "response", endpoint.ResponseSize);
+		}
+		out.flush();
+	}
+
+	/**
+	 * Writes the numbers to a file, replacing what it contained.
+	 */
+	public void Dump(File file) throws IOException {
+		Writer writer = new OutputStreamWriter(new FileOutputStream(file), ResponseBody.UTF8);
+		try {
+			Dump(writer);
+		} finally {
+			writer.close();
+		}
+	}
+
+	private static void DumpTime(PrintWriter out, String name, Histogram histogram) {
+		if (histogram.GetCount() == 0) return;
+		out.println(String.format(Locale.US, "  %-9s n=%d p50=%.1fms p95=%.1fms p99=%.1fms max=%.1fms", name, histogram.GetCount(),
+				histogram.GetPercentile(50) / 1000.0, histogram.GetPercentile(95) / 1000.0,
+				histogram.GetPercentile(99) / 1000.0, histogram.GetMax() / 1000.0));
+	}
+
+	private static void DumpSize(PrintWriter out, String name, Histogram histogram) {
+		if (histogram.GetCount() == 0) return;
+		out.println(String.format(Locale.US, "  %-9s n=%d p50=%dB p95=%dB p99=%dB max=%dB", name, histogram.GetCount(),
+				histogram.GetPercentile(50), histogram.GetPercentile(95), histogram.GetPercentile(99), histogram.GetMax()));
+	}
+
+	private static String Join(Map<?, Long> counts) {
+		StringBuilder sb = new StringBuilder();
+		for (Map.Entry<?, Long> count : counts.entrySet()) {
+			if (sb.length() > 0) sb.append(' ');
+			sb.append(count.getKey()).append('=').append(count.getValue());
+		}
+		return sb.toString();
+	}
+}
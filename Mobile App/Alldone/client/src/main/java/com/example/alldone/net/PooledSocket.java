@@ -0,0 +1,53 @@
+package com.example.alldone.net;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+
+/**
+ * A socket owned by a {@link ConnectionPool} together with its buffered streams.
+ */
+class PooledSocket {
+	final String route;
+	final Socket socket;
+	final InputStream in;
+	final OutputStream out;
+
+	/** The amount of requests that were sent over this socket. */
+	int useCount;
+	/** The {@link System#nanoTime()} at which the socket was last returned to the pool. */
+	long idleSince;
+
+	PooledSocket(String route, Socket socket) throws IOException {
+		this.route = route;
+		this.socket = socket;
+		this.in = new BufferedInputStream(socket.getInputStream(), 8192);
+		this.out = socket.getOutputStream();
+	}
+
+	/**
+	 * Checks without blocking whether this socket can still be used. Sockets that idled longer than the keep-alive of
+	 * the pool were dropped before this check already, so a server that closed this one anyway is only noticed when the
+	 * request fails, after which reused sockets are replaced for requests that may be sent again.
+	 * @return False if the socket is closed, or the server sent something while it was idle, like an error before it
+	 * closed it.
+	 */
+	boolean IsHealthy() {
+		if (socket.isClosed() || socket.isInputShutdown() || socket.isOutputShutdown()) return false;
+		try {
+			return in.available() == 0;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	void Close() {
+		try {
+			socket.close();
+		} catch (IOException e) {
+			// Nothing left to release
+		}
+	}
+}
@@ -0,0 +1,345 @@
+package com.example.alldone.net;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ProtocolException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A {@link Transport} that speaks HTTP/1.1 over sockets from a {@link ConnectionPool}, so consecutive requests
+ * to the same host reuse the same TCP connection.
+ * <p>
+ * Only plain http urls are handled by the pool; other protocols are passed on to a fallback transport.
+ */
+public class PooledTransport implements Transport {
+	private static final Charset ASCII = Charset.forName("ISO-8859-1");
+
+	private final ConnectionPool pool;
+	private final Transport fallback;
+
+	public PooledTransport() {
+		this(new ConnectionPool());
+	}
+	public PooledTransport(ConnectionPool pool) {
+		this(pool, new HttpTransport());
+	}
+	public PooledTransport(ConnectionPool pool, Transport fallback) {
+		this.pool = pool;
+		this.fallback = fallback;
+	}
+
+	public ConnectionPool GetPool() {
+		return pool;
+	}
+
+	@Override
+	public Exchange Execute(String method, URL url, Map<String, String> headers, byte[] body, Deadline deadline) throws IOException {
+		if (!url.getProtocol().equalsIgnoreCase("http"))
+			return fallback.Execute(method, url, headers, body, deadline);
+
+		int port = url.getPort() == -1 ? url.getDefaultPort() : url.getPort();
+		byte[] head = BuildHead(method, url, headers, body);
+		// A request that the server may have handled already may only be sent again if that changes nothing
+		boolean replayable = Resilience.IsRetryable(method, headers.containsKey("Idempotency-Key"), -1);
+
+		for (int attempt = 0; ; attempt++) {
+			if (deadline != null) deadline.Check();
+			int timeout = deadline == null ? 0 : deadline.GetTimeout();
+			long start = System.nanoTime();
+			PooledSocket socket = pool.Acquire(url.getHost(), port, timeout);
+			long connectTime = System.nanoTime() - start;
+			boolean reused = socket.useCount > 0;
+			Abort abort = new Abort(socket);
+			boolean responded = false;
+			try {
+				// Every read gets the whole remaining time, the abort ends the request once it is used up
+				socket.socket.setSoTimeout(timeout);
+				if (deadline != null) deadline.OnDone(abort);
+				socket.out.write(head);
+				if (body != null) socket.out.write(body);
+				socket.out.flush();
+				// Wait for the first byte of the response, after which the request is never sent again
+				socket.in.mark(1);
+				responded = socket.in.read() != -1;
+				socket.in.reset();
+				return ReadResponse(socket, method, deadline, abort, connectTime);
+			} catch (IOException e) {
+				if (deadline != null) deadline.Remove(abort);
+				pool.Release(socket, false);
+				// The server may have closed a pooled socket while it was idle, and then likely the other idle sockets
+				// of the host as well, for example because it restarted
+				if (reused && !responded) pool.Evict(socket.route);
+				// Retry once on a new socket then. A reset or timeout may also mean that the server got the request, so
+				// only requests that may be sent twice are.
+				if (!reused || attempt > 0 || responded || !replayable || (deadline != null && deadline.IsDone())) throw e;
+			}
+		}
+	}
+
+	/**
+	 * Closes the socket of a request whose deadline ended, unless its exchange was closed first.
+	 */
+	private static class Abort implements Runnable {
+		private final PooledSocket socket;
+		private boolean released;
+
+		Abort(PooledSocket socket) {
+			this.socket = socket;
+		}
+
+		@Override
+		public synchronized void run() {
+			if (!released) socket.Close();
+		}
+
+		/**
+		 * Keeps the socket open from now on, so that it can safely go back to the pool.
+		 */
+		synchronized void Release() {
+			released = true;
+		}
+	}
+
+	private static byte[] BuildHead(String method, URL url, Map<String, String> headers, byte[] body) {
+		String path = url.getFile();
+		if (path.isEmpty()) path = "/";
+
+		StringBuilder sb = new StringBuilder();
+		sb.append(method).append(' ').append(path).append(" HTTP/1.1\r\n");
+		sb.append("Host: ").append(url.getHost());
+		if (url.getPort() != -1 && url.getPort() != url.getDefaultPort()) sb.append(':').append(url.getPort());
+		sb.append("\r\n");
+		for (Map.Entry<String, String> header : headers.entrySet())
+			sb.append(header.getKey()).append(": ").append(header.getValue()).append("\r\n");
+		if (body != null) sb.append("Content-Length: ").append(body.length).append("\r\n");
+		sb.append("\r\n");
+		return sb.toString().getBytes(ASCII);
+	}
+
+	private SocketExchange ReadResponse(PooledSocket socket, String method, Deadline deadline, Abort abort, long connectTime) throws IOException {
+		String version;
+		int statusCode;
+		String statusDescription;
+		Map<String, String> headers;
+		do {
+			// Parse the status line, e.g. "HTTP/1.1 200 OK"
+			String statusLine = ReadLine(socket.in);
+			if (statusLine == null) throw new EOFException("Connection closed before a response was received.");
+			String[] parts = statusLine.split(" ", 3);
+			if (parts.length < 2 || !parts[0].startsWith("HTTP/"))
+				throw new ProtocolException("Invalid status line: " + statusLine);
+			version = parts[0];
+			try {
+				statusCode = Integer.parseInt(parts[1]);
+			} catch (NumberFormatException e) {
+				throw new ProtocolException("Invalid status line: " + statusLine);
+			}
+			statusDescription = parts.length > 2 ? parts[2] : "";
+
+			// Parse the headers until the empty line
+			headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+			for (String line; (line = ReadLine(socket.in)) != null && !line.isEmpty(); ) {
+				int colon = line.indexOf(':');
+				if (colon > 0) headers.put(line.substring(0, colon).trim(), line.substring(colon + 1).trim());
+			}
+			// Skip interim responses such as 100 Continue
+		} while (statusCode >= 100 && statusCode < 200 && statusCode != 101);
+
+		String connection = headers.get("Connection");
+		boolean keepAlive = version.equals("HTTP/1.0")
+				? "keep-alive".equalsIgnoreCase(connection)
+				: !"close".equalsIgnoreCase(connection);
+
+		// Determine how the body is framed
+		BodyStream body;
+		String length = headers.get("Content-Length");
+		if (method.equals("HEAD") || statusCode == 204 || statusCode == 304) {
+			body = new FixedLengthStream(socket.in, 0);
+		} else if ("chunked".equalsIgnoreCase(headers.get("Transfer-Encoding"))) {
+			body = new ChunkedStream(socket.in);
+		} else if (length != null) {
+			try {
+				body = new FixedLengthStream(socket.in, Long.parseLong(length));
+			} catch (NumberFormatException e) {
+				throw new ProtocolException("Invalid Content-Length: " + length);
+			}
+		} else {
+			// Without framing the body ends when the server closes the connection
+			body = new UntilCloseStream(socket.in);
+			keepAlive = false;
+		}
+
+		return new SocketExchange(socket, statusCode, statusDescription, headers, body, keepAlive, deadline, abort, connectTime);
+	}
+
+	/**
+	 * Reads a CRLF terminated line from the stream.
+	 * @return The line without the line terminator, or null if the stream ended before any byte was read.
+	 */
+	private static String ReadLine(InputStream in) throws IOException {
+		ByteArrayOutputStream line = new ByteArrayOutputStream(64);
+		int b;
+		while ((b = in.read()) != -1 && b != '\n') line.write(b);
+		if (b == -1 && line.size() == 0) return null;
+
+		String result = new String(line.toByteArray(), ASCII);
+		return result.endsWith("\r") ? result.substring(0, result.length() - 1) : result;
+	}
+
+	private class SocketExchange implements Exchange {
+		private final PooledSocket socket;
+		private final int statusCode;
+		private final String statusDescription;
+		private final Map<String, String> headers;
+		private final BodyStream body;
+		private final boolean keepAlive;
+		private final Deadline deadline;
+		private final Abort abort;
+		private final long connectTime;
+		private boolean closed;
+
+		SocketExchange(PooledSocket socket, int statusCode, String statusDescription, Map<String, String> headers, BodyStream body, boolean keepAlive,
+				Deadline deadline, Abort abort, long connectTime) {
+			this.socket = socket;
+			this.statusCode = statusCode;
+			this.statusDescription = statusDescription;
+			this.headers = headers;
+			this.body = body;
+			this.keepAlive = keepAlive;
+			this.deadline = deadline;
+			this.abort = abort;
+			this.connectTime = connectTime;
+		}
+
+		@Override
+		public int GetStatusCode() { return statusCode; }
+		@Override
+		public long GetConnectTime() { return connectTime; }
+		@Override
+		public String GetStatusDescription() { return statusDescription; }
+		@Override
+		public String GetHeader(String name) { return headers.get(name); }
+		@Override
+		public InputStream GetBody() { return body; }
+
+		@Override
+		public long GetContentLength() {
+			String length = headers.get("Content-Length");
+			try {
+				return length == null ? -1 : Long.parseLong(length);
+			} catch (NumberFormatException e) {
+				return -1;
+			}
+		}
+
+		@Override
+		public synchronized void Close() {
+			if (closed) return;
+			closed = true;
+			if (deadline != null) deadline.Remove(abort);
+			abort.Release();
+			// A socket can only carry the next request if this response was read up to its last byte
+			pool.Release(socket, keepAlive && body.complete);
+		}
+	}
+
+	/**
+	 * Base class for streams that read a response body without ever closing the socket.
+	 */
+	private static abstract class BodyStream extends InputStream {
+		protected final InputStream in;
+		private final byte[] single = new byte[1];
+		/** Whether the whole body has been read. */
+		boolean complete;
+
+		BodyStream(InputStream in) {
+			this.in = in;
+		}
+
+		@Override
+		public int read() throws IOException {
+			return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+		}
+
+		@Override
+		public void close() {
+			// The socket is released by the exchange
+		}
+	}
+
+	private static class FixedLengthStream extends BodyStream {
+		private long remaining;
+
+		FixedLengthStream(InputStream in, long length) {
+			super(in);
+			remaining = length;
+			complete = length == 0;
+		}
+
+		@Override
+		public int read(byte[] buffer, int offset, int length) throws IOException {
+			if (remaining == 0) return -1;
+			int read = in.read(buffer, offset, (int) Math.min(length, remaining));
+			if (read == -1) throw new EOFException("Connection closed before the body was complete.");
+			remaining -= read;
+			if (remaining == 0) complete = true;
+			return read;
+		}
+
+		@Override
+		public int available() throws IOException {
+			return (int) Math.min(in.available(), remaining);
+		}
+	}
+
+	private static class ChunkedStream extends BodyStream {
+		private long chunkRemaining;
+
+		ChunkedStream(InputStream in) {
+			super(in);
+		}
+
+		@Override
+		public int read(byte[] buffer, int offset, int length) throws IOException {
+			if (complete) return -1;
+			if (chunkRemaining == 0) {
+				// Read the next chunk header, skipping the CRLF that ends the previous chunk
+				String line = ReadLine(in);
+				if (line != null && line.isEmpty()) line = ReadLine(in);
+				if (line == null) throw new EOFException("Connection closed before the body was complete.");
+				int extension = line.indexOf(';');
+				try {
+					chunkRemaining = Long.parseLong((extension == -1 ? line : line.substring(0, extension)).trim(), 16);
+				} catch (NumberFormatException e) {
+					throw new ProtocolException("Invalid chunk size: " + line);
+				}
+				if (chunkRemaining == 0) {
+					// Skip trailers until the empty line
+					for (String trailer; (trailer = ReadLine(in)) != null && !trailer.isEmpty(); ) { }
+					complete = true;
+					return -1;
+				}
+			}
+			int read = in.read(buffer, offset, (int) Math.min(length, chunkRemaining));
+			if (read == -1) throw new EOFException("Connection closed before the body was complete.");
+			chunkRemaining -= read;
+			return read;
+		}
+	}
+
+	private static class UntilCloseStream extends BodyStream {
+		UntilCloseStream(InputStream in) {
+			super(in);
+		}
+
+		@Override
+		public int read(byte[] buffer, int offset, int length) throws IOException {
+			return in.read(buffer, offset, length);
+		}
+	}
+}
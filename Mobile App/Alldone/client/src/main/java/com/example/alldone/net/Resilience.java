@@ -0,0 +1,221 @@
+package com.example.alldone.net;
+
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * The retry and hedging policies and the time budgets of every endpoint, and the circuit breakers of every host.
+ * <p>
+ * Requests that may safely be sent twice are retried after a jittered, growing delay when they fail in a way that may
+ * go away: no answer at all, a timeout, rate limiting or an overloaded gateway. Those are GET, HEAD, PUT and DELETE
+ * requests, and any request with an idempotency key. Reads of endpoints with a hedge delay are sent a second time when
+ * the first one takes longer than that, and the first answer wins. Every host has a {@link CircuitBreaker} that makes
+ * requests fail right away while the host keeps failing.
+ * <p>
+ * Every request gets a time budget from its endpoint, which includes its retries and hedges. A request that runs out
+ * of it is abandoned and fails like a request without an answer.
+ */
+public class Resilience {
+	/**
+	 * How the requests to an endpoint are retried and hedged. Counts how often it did either, which is why every
+	 * endpoint of a {@link Resilience} uses a copy of its own.
+	 */
+	public static class Policy {
+		/** Sends every request once. */
+		public static final Policy NONE = new Policy(1, 0, 0, 0);
+
+		/** The maximum amount of times a request is sent, including the first time. */
+		public final int MaxAttempts;
+		/** The delay in milliseconds before the first retry, which doubles with every retry. */
+		public final long BaseDelay;
+		public final long MaxDelay;
+		/** The time in milliseconds after which a read is sent a second time, or 0 to never do so. */
+		public final long HedgeDelay;
+
+		private long retries, exhausted, hedges, hedgeWins;
+
+		public Policy(int maxAttempts, long baseDelay, long maxDelay, long hedgeDelay) {
+			if (maxAttempts < 1) throw new IllegalArgumentException("maxAttempts must be at least 1.");
+			this.MaxAttempts = maxAttempts;
+			this.BaseDelay = baseDelay;
+			this.MaxDelay = maxDelay;
+			this.HedgeDelay = hedgeDelay;
+		}
+
+		/**
+		 * @return A copy of the policy with counters of its own.
+		 */
+		public Policy Copy() {
+			return new Policy(MaxAttempts, BaseDelay, MaxDelay, HedgeDelay);
+		}
+
+		/**
+		 * @return A copy of the policy with a different hedge delay, and counters of its own.
+		 */
+		public Policy WithHedgeDelay(long hedgeDelay) {
+			return new Policy(MaxAttempts, BaseDelay, MaxDelay, hedgeDelay);
+		}
+
+		public synchronized void CountRetry() { retries++; }
+		public synchronized void CountExhausted() { exhausted++; }
+		public synchronized void CountHedge() { hedges++; }
+		public synchronized void CountHedgeWin() { hedgeWins++; }
+
+		/** @return The amount of times a failed request was sent again. */
+		public synchronized long GetRetryCount() { return retries; }
+		/** @return The amount of requests that still failed after the last attempt. */
+		public synchronized long GetExhaustedCount() { return exhausted; }
+		/** @return The amount of reads that were sent a second time because the first one was slow. */
+		public synchronized long GetHedgeCount() { return hedges; }
+		/** @return The amount of hedged reads that answered before the read they hedged. */
+		public synchronized long GetHedgeWinCount() { return hedgeWins; }
+	}
+
+	public static final Policy DEFAULT_POLICY = new Policy(3, 250, 4000, 0);
+	public static final long DEFAULT_TIMEOUT = 15000;
+
+	private final Map<String, Policy> policies = new HashMap<>();
+	// The copies of the default policy of the endpoints without a policy of their own
+	private final Map<String, Policy> defaultPolicies = new HashMap<>();
+	private final Map<String, Long> timeouts = new HashMap<>();
+	private final Map<String, CircuitBreaker> breakers = new HashMap<>();
+	private final Random random = new Random();
+	private Policy defaultPolicy = DEFAULT_POLICY;
+	private long defaultTimeout = DEFAULT_TIMEOUT;
+	private int breakerThreshold = CircuitBreaker.DEFAULT_THRESHOLD;
+	private long breakerOpenTime = CircuitBreaker.DEFAULT_OPEN_TIME;
+
+	/**
+	 * Sets the policy of an endpoint, replacing the default policy for it. The endpoint counts in a copy, so that a
+	 * policy can be shared, see {@link #GetPolicy(String)}.
+	 */
+	public synchronized void SetPolicy(String link, Policy policy) {
+		policies.put(link, policy.Copy());
+		defaultPolicies.remove(link);
+	}
+
+	/**
+	 * Sets the policy of the endpoints that have no policy of their own, which starts their counts over.
+	 */
+	public synchronized void SetDefaultPolicy(Policy policy) {
+		defaultPolicy = policy;
+		defaultPolicies.clear();
+	}
+
+	/**
+	 * @return The policy of an endpoint with its counts, which are its own even if it uses the default policy.
+	 */
+	public synchronized Policy GetPolicy(String link) {
+		Policy policy = policies.get(link);
+		if (policy != null) return policy;
+		policy = defaultPolicies.get(link);
+		if (policy == null) {
+			policy = defaultPolicy.Copy();
+			defaultPolicies.put(link, policy);
+		}
+		return policy;
+	}
+
+	/**
+	 * Sets the time in milliseconds that a request to an endpoint may take, including its retries.
+	 */
+	public synchronized void SetTimeout(String link, long timeout) {
+		timeouts.put(link, timeout);
+	}
+
+	/**
+	 * Sets the time budget of the endpoints that have no budget of their own.
+	 */
+	public synchronized void SetDefaultTimeout(long timeout) {
+		defaultTimeout = timeout;
+	}
+
+	public synchronized long GetTimeout(String link) {
+		Long timeout = timeouts.get(link);
+		return timeout == null ? defaultTimeout : timeout;
+	}
+
+	/**
+	 * Sets the options of the breakers of hosts that weren't contacted yet.
+	 */
+	public synchronized void SetBreakerOptions(int threshold, long openTime) {
+		breakerThreshold = threshold;
+		breakerOpenTime = openTime;
+	}
+
+	/**
+	 * @return The circuit breaker of the host of a url.
+	 */
+	public synchronized CircuitBreaker GetBreaker(URL url) {
+		String host = GetHost(url);
+		CircuitBreaker breaker = breakers.get(host);
+		if (breaker == null) {
+			breaker = new CircuitBreaker(breakerThreshold, breakerOpenTime);
+			breakers.put(host, breaker);
+		}
+		return breaker;
+	}
+
+	/**
+	 * @return Every circuit breaker by host, e.g. to report how often they opened.
+	 */
+	public synchronized Map<String, CircuitBreaker> GetBreakers() {
+		return new HashMap<>(breakers);
+	}
+
+	/**
+	 * Forgets every circuit breaker, closing them all.
+	 */
+	public synchronized void ResetBreakers() {
+		breakers.clear();
+	}
+
+	/**
+	 * @param idempotent True if the request carries an idempotency key.
+	 * @return True if the request may be sent again after it failed with a status code, or -1 for no answer at all.
+	 */
+	public static boolean IsRetryable(String method, boolean idempotent, int statusCode) {
+		boolean safe = idempotent || method.equals("GET") || method.equals("HEAD") || method.equals("PUT") || method.equals("DELETE");
+		if (!safe) return false;
+		switch (statusCode) {
+			case -1:
+			case 408:
+			case 429:
+			case 502:
+			case 503:
+			case 504:
+				return true;
+			default:
+				return false;
+		}
+	}
+
+	/**
+	 * @return True if a status code counts as a failure of the host for its circuit breaker.
+	 */
+	public static boolean IsHostFailure(int statusCode) {
+		return statusCode == -1 || statusCode >= 500;
+	}
+
+	/**
+	 * @return The time to wait before a retry, which doubles with every retry and is randomized so that clients don't
+	 * all retry at the same moment.
+	 * @param retry The number of the retry, starting at 0.
+	 */
+	public long GetDelay(Policy policy, int retry) {
+		long delay = Math.min(policy.MaxDelay, policy.BaseDelay << Math.min(retry, 16));
+		double jitter;
+		synchronized (random) {
+			jitter = random.nextDouble();
+		}
+		return delay / 2 + (long) (jitter * (delay / 2));
+	}
+
+	private static String GetHost(URL url) {
+		int port = url.getPort() == -1 ? url.getDefaultPort() : url.getPort();
+		return url.getHost().toLowerCase(Locale.US) + ':' + port;
+	}
+}
@@ -0,0 +1,154 @@
+package com.example.alldone.net;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+/**
+ * A response body that was read in bulk into a buffer from a {@link BufferPool}.
+ * <p>
+ * The buffer may be modified in place, for example by a decryptor, and must be handed back with
+ * {@link #Release()} once the body has been consumed.
+ */
+public class ResponseBody {
+	public static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final int INITIAL_SIZE = 8192;
+
+	private final BufferPool pool;
+	private byte[] buffer;
+	private int length;
+
+	private ResponseBody(BufferPool pool, byte[] buffer, int length) {
+		this.pool = pool;
+		this.buffer = buffer;
+		this.length = length;
+	}
+
+	/**
+	 * Reads a stream until it ends.
+	 * @param in The stream to read.
+	 * @param contentLength The expected amount of bytes, or -1 if it is unknown. Used to size the buffer up front.
+	 * @param pool The pool to take buffers from.
+	 */
+	public static ResponseBody Read(InputStream in, long contentLength, BufferPool pool) throws IOException {
+		return Read(in, contentLength, Integer.MAX_VALUE, pool);
+	}
+
+	/**
+	 * Reads a stream until it ends, but no further than a maximum size.
+	 * @param maxLength The maximum amount of bytes.
+	 * @throws IOException If the stream has more bytes than the maximum.
+	 */
+	public static ResponseBody Read(InputStream in, long contentLength, int maxLength, BufferPool pool)
+			throws IOException {
+		if (contentLength > maxLength) throw new IOException("Response body is too large: " + contentLength);
+
+		// Size the buffer to fit the whole body when its length is known
+		byte[] buffer = pool.Acquire(contentLength >= 0 ? (int) contentLength : INITIAL_SIZE);
+		int length = 0;
+		try {
+			while (true) {
+				if (length == buffer.length || length == maxLength) {
+					// Stop if the body has no more bytes than announced or allowed
+					if (contentLength >= 0 || length == maxLength) {
+						if (in.read() == -1) break;
+						if (contentLength >= 0) throw new IOException("Response body is longer than its Content-Length.");
+						throw new IOException("Response body is larger than " + maxLength + " bytes.");
+					}
+					// Grow into a larger pooled buffer
+					byte[] larger = pool.Acquire(buffer.length * 2);
+					System.arraycopy(buffer, 0, larger, 0, length);
+					pool.Release(buffer);
+					buffer = larger;
+				}
+				int read = in.read(buffer, length, Math.min(buffer.length, maxLength) - length);
+				if (read == -1) break;
+				length += read;
+			}
+		} catch (IOException | RuntimeException e) {
+			pool.Release(buffer);
+			throw e;
+		}
+		if (contentLength >= 0 && length < contentLength)
+			throw new EOFException("Response body ended after " + length + " of " + contentLength + " bytes.");
+		return new ResponseBody(pool, buffer, length);
+	}
+
+	/**
+	 * @return The backing buffer. Only the first {@link #GetLength()} bytes belong to the body.
+	 */
+	public byte[] GetBuffer() {
+		return buffer;
+	}
+
+	public int GetLength() {
+		return length;
+	}
+
+	/**
+	 * Changes the amount of bytes that belong to the body, e.g. after the buffer was decrypted in place.
+	 */
+	public void SetLength(int length) {
+		if (length < 0 || length > buffer.length) throw new IndexOutOfBoundsException("Invalid length: " + length);
+		this.length = length;
+	}
+
+	/**
+	 * Removes the trailing zero bytes that are added by the zero padding of the AES envelope.
+	 */
+	public void StripZeroPadding() {
+		while (length > 0 && buffer[length - 1] == 0) length--;
+	}
+
+	/**
+	 * Replaces the body with its decoded form, e.g. after it was decrypted.
+	 * Anything after the end of the encoded data, such as zero padding, is dropped.
+	 * @param encoding The Content-Encoding of the body.
+	 * @throws IOException If the body can't be decoded or decodes to more than {@link Compression#MAX_DECODED_SIZE}
+	 * bytes.
+	 * @see Compression#Decode(String, InputStream)
+	 */
+	public void Decode(String encoding) throws IOException {
+		Decode(encoding, Compression.MAX_DECODED_SIZE);
+	}
+
+	/**
+	 * Replaces the body with its decoded form, which may be at most maxLength bytes.
+	 */
+	public void Decode(String encoding, int maxLength) throws IOException {
+		InputStream in = Compression.Decode(encoding, new ByteArrayInputStream(buffer, 0, length));
+		ResponseBody decoded = Read(in, -1, maxLength, pool);
+		pool.Release(buffer);
+		buffer = decoded.buffer;
+		length = decoded.length;
+	}
+
+	/**
+	 * @return A copy of the body that stays valid after the body was released.
+	 */
+	public byte[] ToByteArray() {
+		byte[] copy = new byte[length];
+		System.arraycopy(buffer, 0, copy, 0, length);
+		return copy;
+	}
+
+	/**
+	 * Decodes the body as UTF-8.
+	 */
+	public String DecodeUTF8() {
+		return new String(buffer, 0, length, UTF8);
+	}
+
+	/**
+	 * Hands the buffer back to the pool. The body may not be used afterwards.
+	 */
+	public void Release() {
+		if (buffer == null) return;
+		pool.Release(buffer);
+		buffer = null;
+		length = 0;
+	}
+}
@@ -0,0 +1,25 @@
+package com.example.alldone.net;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.Map;
+
+/**
+ * Sends a single HTTP request and exposes the response as an {@link Exchange}.
+ * <p>
+ * Implementations decide how the underlying connection is obtained and whether it is reused afterwards.
+ */
+public interface Transport {
+	/**
+	 * Sends a request and returns once the status line and headers of the response have been received.
+	 * @param method The HTTP method of the request.
+	 * @param url The full url to send the request to.
+	 * @param headers The request headers. May not contain framing headers such as Content-Length.
+	 * @param body The request body, or null if the request has no body.
+	 * @param deadline The deadline of the request, or null for none. Connecting and reading time out when it expires,
+	 * and the connection is closed when it ends before the exchange is closed, which unblocks any read of the body.
+	 * @return An {@link Exchange} whose body still has to be read. It must always be closed by the caller.
+	 * @throws IOException When the request could not be sent or the response could not be read.
+	 */
+	Exchange Execute(String method, URL url, Map<String, String> headers, byte[] body, Deadline deadline) throws IOException;
+}
@@ -0,0 +1,309 @@
+package com.example.alldone.loadgen;
+
+import com.example.alldone.Client;
+import com.example.alldone.Connection;
+import com.example.alldone.Response;
+import com.example.alldone.net.Compression;
+import com.example.alldone.net.ConnectionPool;
+import com.example.alldone.net.Histogram;
+import com.example.alldone.net.Metrics;
+import com.example.alldone.net.PooledTransport;
+import com.example.alldone.standin.DataSet;
+
+import java.security.InvalidParameterException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends the requests of technicians that go through scenarios, through the same {@link Client} as the app.
+ * <p>
+ * The load is an open model: technicians arrive at a rate of their own, whether or not the ones before them are done,
+ * like at a shift change. Every arrival gets a client and a session of its own, and runs its scenario on a thread of
+ * its own, a virtual one on Java 21 and later. Technicians are the users of a {@link DataSet}, in turn, so the load
+ * generator can run against a {@link com.example.alldone.standin.StandInApi} as well as a deployment with those users.
+ * <p>
+ * Latencies of scenarios are measured from the moment they should have arrived, so a server or load generator that
+ * falls behind shows up in them instead of silently sending less load.
+ */
+public final class LoadGenerator {
+	public static final int DEFAULT_CONNECTIONS = 256;
+	public static final int DEFAULT_MAX_RUNNING = 10000;
+	public static final long DEFAULT_DRAIN_TIME = 30000;
+
+	private final String url;
+	private final List<Scenario> scenarios;
+	private final int users;
+	private final String password;
+	private final int totalWeight;
+
+	private double rate = 10;
+	private boolean poisson = true;
+	private long thinkTime;
+	private boolean encrypted = true;
+	private int connections = DEFAULT_CONNECTIONS;
+	private int maxRunning = DEFAULT_MAX_RUNNING;
+	private long drainTime = DEFAULT_DRAIN_TIME;
+	private long seed = 42;
+
+	private final AtomicLong arrived = new AtomicLong();
+	private final AtomicLong completed = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+	private final AtomicInteger running = new AtomicInteger();
+
+	/**
+	 * @param url The url of the Web API, ending with a slash.
+	 * @param scenarios The scenarios that arrivals pick from.
+	 * @param users The amount of users to log in as, from {@link DataSet#GetUsername(int)} 1 up to and including this.
+	 * @param password The password of every user.
+	 */
+	public LoadGenerator(String url, List<Scenario> scenarios, int users, String password) {
+		if (scenarios.isEmpty()) throw new InvalidParameterException("There has to be at least one scenario.");
+		if (users < 1) throw new InvalidParameterException("users may not be less than 1.");
+		this.url = url;
+		this.scenarios = new ArrayList<>(scenarios);
+		this.users = users;
+		this.password = password;
+		int weight = 0;
+		for (Scenario scenario : scenarios) weight += scenario.Weight;
+		totalWeight = weight;
+	}
+
+	/**
+	 * @param rate The average amount of arrivals per second.
+	 * @param poisson Whether the time between arrivals is random, like people arriving on their own, or always the same.
+	 */
+	public void SetArrivals(double rate, boolean poisson) {
+		if (!(rate > 0)) throw new InvalidParameterException("rate must be more than 0.");
+		this.rate = rate;
+		this.poisson = poisson;
+	}
+
+	/**
+	 * @param thinkTime The average amount of milliseconds between the steps of a scenario, or 0 to not wait at all.
+	 */
+	public void SetThinkTime(long thinkTime) {
+		if (thinkTime < 0) throw new InvalidParameterException("thinkTime may not be less than 0.");
+		this.thinkTime = thinkTime;
+	}
+
+	/**
+	 * @param encrypted Whether technicians get a session with an AES key before logging in, so their requests are
+	 * encrypted, or log in like the app and send their requests unencrypted.
+	 */
+	public void SetEncrypted(boolean encrypted) {
+		this.encrypted = encrypted;
+	}
+
+	/**
+	 * @param connections The amount of connections that all technicians together may use at the same time.
+	 */
+	public void SetConnections(int connections) {
+		if (connections < 1) throw new InvalidParameterException("connections may not be less than 1.");
+		this.connections = connections;
+	}
+
+	/**
+	 * @param maxRunning The amount of scenarios that may run at the same time. Arrivals beyond it are dropped and
+	 * counted, so a server that stops answering doesn't make the load generator run out of memory.
+	 */
+	public void SetMaxRunning(int maxRunning) {
+		if (maxRunning < 1) throw new InvalidParameterException("maxRunning may not be less than 1.");
+		this.maxRunning = maxRunning;
+	}
+
+	/**
+	 * @param drainTime The amount of milliseconds that scenarios still running after the last arrival get to end.
+	 */
+	public void SetDrainTime(long drainTime) {
+		if (drainTime < 0) throw new InvalidParameterException("drainTime may not be less than 0.");
+		this.drainTime = drainTime;
+	}
+
+	/**
+	 * @param seed The seed of the arrivals, the scenarios they pick and what they pick in them.
+	 */
+	public void SetSeed(long seed) {
+		this.seed = seed;
+	}
+
+	public long GetArrivedCount() { return arrived.get(); }
+	public long GetCompletedCount() { return completed.get(); }
+	public long GetDroppedCount() { return dropped.get(); }
+	public int GetRunningCount() { return running.get(); }
+
+	/**
+	 * @return Whether scenarios run on virtual threads, which needs Java 21 or later.
+	 */
+	public static boolean IsVirtual() {
+		try {
+			Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return true;
+		} catch (NoSuchMethodException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * @return An executor that runs every task on a new virtual thread if the JVM has them, or on a daemon thread
+	 * otherwise.
+	 */
+	private static ExecutorService NewExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return Executors.newCachedThreadPool(new ThreadFactory() {
+				private final AtomicInteger count = new AtomicInteger();
+
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "LoadGenerator-" + count.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+	}
+
+	/**
+	 * Lets technicians arrive for a while, and waits for the scenarios that are still running afterwards for at most
+	 * the drain time.
+	 * @param duration The amount of milliseconds during which technicians arrive.
+	 */
+	public Report Run(long duration) throws InterruptedException {
+		arrived.set(0);
+		completed.set(0);
+		dropped.set(0);
+		Metrics metrics = new Metrics();
+		ConnectionPool pool = new ConnectionPool(connections, connections, ConnectionPool.DEFAULT_KEEP_ALIVE);
+		PooledTransport transport = new PooledTransport(pool);
+		Compression compression = new Compression();
+		Histogram lag = new Histogram();
+		Map<Scenario, Report.Stats> scenarioStats = new LinkedHashMap<>();
+		Map<Scenario, List<Report.Stats>> stepStats = new LinkedHashMap<>();
+		for (Scenario scenario : scenarios) {
+			scenarioStats.put(scenario, new Report.Stats(scenario.Name));
+			List<Report.Stats> steps = new ArrayList<>();
+			for (Step step : scenario.Steps) steps.add(new Report.Stats(step.Name));
+			stepStats.put(scenario, steps);
+		}
+
+		// Only used by this thread, which hands every technician a random of its own
+		Random random = new Random(seed);
+		ExecutorService executor = NewExecutor();
+		long start = System.nanoTime();
+		long end = start + TimeUnit.MILLISECONDS.toNanos(duration);
+		try {
+			for (long arrival = start; arrival < end; arrival += NextInterval(random)) {
+				long wait = arrival - System.nanoTime();
+				if (wait > 0) TimeUnit.NANOSECONDS.sleep(wait);
+
+				long number = arrived.getAndIncrement();
+				Scenario scenario = Pick(random);
+				if (running.get() >= maxRunning) {
+					dropped.incrementAndGet();
+					continue;
+				}
+				running.incrementAndGet();
+				// The resilience of the app, so retries and hedges add to the load like they would at a shift change
+				Client client = new Client(url, transport, compression, Connection.resilience, metrics);
+				VirtualUser user = new VirtualUser(client, DataSet.GetUsername((int) (number % users) + 1), password,
+						encrypted, new Random(random.nextLong()));
+				executor.execute(new ScenarioRun(scenario, user, arrival, lag, scenarioStats.get(scenario),
+						stepStats.get(scenario)));
+			}
+			executor.shutdown();
+			executor.awaitTermination(drainTime, TimeUnit.MILLISECONDS);
+		} finally {
+			executor.shutdownNow();
+		}
+		long elapsed = System.nanoTime() - start;
+		pool.Shutdown();
+		return new Report(url, arrived.get(), completed.get(), dropped.get(), elapsed, lag, metrics, scenarioStats,
+				stepStats);
+	}
+
+	/**
+	 * @return The amount of nanoseconds until the next arrival.
+	 */
+	private long NextInterval(Random random) {
+		double seconds = poisson ? -Math.log(1 - random.nextDouble()) / rate : 1 / rate;
+		return Math.max(1, (long) (seconds * 1e9));
+	}
+
+	private Scenario Pick(Random random) {
+		int weight = random.nextInt(totalWeight);
+		for (Scenario scenario : scenarios) {
+			weight -= scenario.Weight;
+			if (weight < 0) return scenario;
+		}
+		throw new IllegalStateException();
+	}
+
+	/**
+	 * A technician going through a scenario.
+	 */
+	private final class ScenarioRun implements Runnable {
+		private final Scenario scenario;
+		private final VirtualUser user;
+		private final long arrival;
+		private final Histogram lag;
+		private final Report.Stats stats;
+		private final List<Report.Stats> steps;
+
+		ScenarioRun(Scenario scenario, VirtualUser user, long arrival, Histogram lag, Report.Stats stats,
+				List<Report.Stats> steps) {
+			this.scenario = scenario;
+			this.user = user;
+			this.arrival = arrival;
+			this.lag = lag;
+			this.stats = stats;
+			this.steps = steps;
+		}
+
+		@Override
+		public void run() {
+			lag.Record((System.nanoTime() - arrival) / 1000);
+			boolean failed = false;
+			try {
+				for (int i = 0; i < scenario.Steps.size() && !failed; i++) {
+					if (i > 0 && thinkTime > 0)
+						Thread.sleep((long) (-Math.log(1 - user.Random.nextDouble()) * thinkTime));
+
+					long start = System.nanoTime();
+					Response response;
+					try {
+						response = scenario.Steps.get(i).Run(user);
+					} catch (RuntimeException e) {
+						// Like an answer that the app couldn't read. Only counted, since printing every one would
+						// slow down the run that is being measured.
+						steps.get(i).CountError(e);
+						response = new Response();
+					}
+					if (response == null) {
+						steps.get(i).CountSkipped();
+						continue;
+					}
+					steps.get(i).Count(response.StatusCode, (System.nanoTime() - start) / 1000);
+					// The app shows an error instead of going on
+					failed = Report.IsFailure(response.StatusCode);
+				}
+				stats.Count(failed, (System.nanoTime() - arrival) / 1000);
+				completed.incrementAndGet();
+			} catch (InterruptedException e) {
+				// Given up on after the drain time, so it stays unfinished
+				Thread.currentThread().interrupt();
+			} finally {
+				running.decrementAndGet();
+			}
+		}
+	}
+}
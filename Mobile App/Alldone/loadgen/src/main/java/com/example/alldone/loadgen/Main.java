@@ -0,0 +1,136 @@
+package com.example.alldone.loadgen;
+
+import com.example.alldone.standin.DataSet;
+import com.example.alldone.standin.StandInApi;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Timer;
+import java.util.TimerTask;
+
+/**
+ * Runs a {@link LoadGenerator} from the command line and prints its {@link Report}.
+ */
+public final class Main {
+	private static final String USAGE = "Usage: loadgen (--url http://host/ | --standin small|large) [--duration s] [--rate n/s]\n"
+			+ "               [--constant] [--scenario name[:weight]=step,step,...]... [--think ms] [--users n]\n"
+			+ "               [--password text] [--plain] [--connections n] [--max-running n] [--drain s] [--seed n]\n"
+			+ "               [--progress s] [--metrics file]\n"
+			+ "Steps: login, groups, tasks, enroll, finish. The default scenario is " + Scenario.SHIFT + ".";
+
+	private Main() { }
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		String url = null;
+		DataSet standIn = null;
+		long duration = 60;
+		double rate = 10;
+		boolean poisson = true;
+		List<Scenario> scenarios = new ArrayList<>();
+		long think = 0;
+		int users = -1;
+		String password = DataSet.PASSWORD;
+		boolean encrypted = true;
+		int connections = LoadGenerator.DEFAULT_CONNECTIONS;
+		int maxRunning = LoadGenerator.DEFAULT_MAX_RUNNING;
+		long drain = LoadGenerator.DEFAULT_DRAIN_TIME / 1000;
+		long seed = 42;
+		long progress = 5;
+		File metrics = null;
+
+		try {
+			for (int i = 0; i < args.length; i++) {
+				// Flags without a value
+				if (args[i].equals("--constant")) {
+					poisson = false;
+					continue;
+				}
+				if (args[i].equals("--plain")) {
+					encrypted = false;
+					continue;
+				}
+				if (i + 1 == args.length) throw new IllegalArgumentException("Missing value of " + args[i] + ".");
+				String value = args[++i];
+				switch (args[i - 1]) {
+					case "--url": url = value.endsWith("/") ? value : value + "/"; break;
+					case "--standin":
+						if (value.equals("small")) standIn = DataSet.SMALL;
+						else if (value.equals("large")) standIn = DataSet.LARGE;
+						else throw new IllegalArgumentException("Unknown preset " + value + ".");
+						break;
+					case "--duration": duration = Long.parseLong(value); break;
+					case "--rate": rate = Double.parseDouble(value); break;
+					case "--scenario": scenarios.add(Scenario.Parse(value)); break;
+					case "--think": think = Long.parseLong(value); break;
+					case "--users": users = Integer.parseInt(value); break;
+					case "--password": password = value; break;
+					case "--connections": connections = Integer.parseInt(value); break;
+					case "--max-running": maxRunning = Integer.parseInt(value); break;
+					case "--drain": drain = Long.parseLong(value); break;
+					case "--seed": seed = Long.parseLong(value); break;
+					case "--progress": progress = Long.parseLong(value); break;
+					case "--metrics": metrics = new File(value); break;
+					default: throw new IllegalArgumentException("Unknown option " + args[i - 1] + ".");
+				}
+			}
+			if ((url == null) == (standIn == null)) throw new IllegalArgumentException("Give either --url or --standin.");
+		} catch (IllegalArgumentException e) {
+			// NumberFormatException is one as well
+			System.err.println(e.getMessage());
+			System.err.println(USAGE);
+			System.exit(2);
+			return;
+		}
+		if (scenarios.isEmpty()) scenarios.add(Scenario.SHIFT);
+
+		StandInApi api = null;
+		if (standIn != null) {
+			api = new StandInApi(standIn);
+			url = api.GetUrl();
+			if (users == -1) users = standIn.Users;
+			System.out.println("Started a stand-in with " + standIn + " at " + url + ".");
+		}
+		// The users of the small data set, which a test deployment may have as well
+		if (users == -1) users = DataSet.SMALL.Users;
+
+		final LoadGenerator generator = new LoadGenerator(url, scenarios, users, password);
+		generator.SetArrivals(rate, poisson);
+		generator.SetThinkTime(think);
+		generator.SetEncrypted(encrypted);
+		generator.SetConnections(connections);
+		generator.SetMaxRunning(maxRunning);
+		generator.SetDrainTime(drain * 1000);
+		generator.SetSeed(seed);
+
+		System.out.println(String.format(Locale.US, "%.1f %s arrivals per second for %ds as %d users, on %s threads.",
+				rate, poisson ? "random" : "constant", duration, users,
+				LoadGenerator.IsVirtual() ? "virtual" : "platform"));
+		Timer timer = new Timer("LoadGenerator-progress", true);
+		if (progress > 0) {
+			final long start = System.currentTimeMillis();
+			timer.schedule(new TimerTask() {
+				@Override
+				public void run() {
+					System.out.println(String.format(Locale.US, "%4ds: %d arrived, %d running, %d completed, %d dropped",
+							(System.currentTimeMillis() - start) / 1000, generator.GetArrivedCount(),
+							generator.GetRunningCount(), generator.GetCompletedCount(), generator.GetDroppedCount()));
+				}
+			}, progress * 1000, progress * 1000);
+		}
+
+		Report report;
+		try {
+			report = generator.Run(duration * 1000);
+		} finally {
+			timer.cancel();
+			if (api != null) api.close();
+		}
+		System.out.println();
+		report.Print(new OutputStreamWriter(System.out));
+		if (metrics != null) report.Endpoints.Dump(metrics);
+	}
+}
@@ -0,0 +1,175 @@
+package com.example.alldone.loadgen;
+
+import com.example.alldone.net.Histogram;
+import com.example.alldone.net.Metrics;
+
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The throughput and latencies of a load test, per endpoint, per step of every scenario and per scenario.
+ * <p>
+ * Requests that got no answer or a 5xx count as failed, since those are what the server does when it can't keep up.
+ * Other statuses, like the 409 of enrolling in a task twice, are answers of the app's own rules and are only counted.
+ */
+public final class Report {
+	/**
+	 * The numbers of a step or a scenario. Times are in microseconds.
+	 */
+	public static final class Stats {
+		public final String Name;
+		/** For a step, the time from starting it until its last response was decoded. For a scenario, the time from
+		 * its arrival until its last step ended, including the time it waited to start and thought between steps. */
+		public final Histogram Latency = new Histogram();
+
+		// By the status code of the last request of a step, where -1 means no answer
+		private final Map<Integer, Long> statusCodes = new TreeMap<>();
+		// By the simple name of the exceptions that a step threw, which count as no answer as well
+		private final Map<String, Long> errors = new TreeMap<>();
+		private long skipped, failures;
+
+		Stats(String name) {
+			Name = name;
+		}
+
+		synchronized void Count(int statusCode, long latency) {
+			Latency.Record(latency);
+			Long count = statusCodes.get(statusCode);
+			statusCodes.put(statusCode, count == null ? 1 : count + 1);
+			if (IsFailure(statusCode)) failures++;
+		}
+
+		/**
+		 * Counts a run of a scenario, which failed if one of its steps did.
+		 */
+		synchronized void Count(boolean failed, long latency) {
+			Latency.Record(latency);
+			if (failed) failures++;
+		}
+
+		/**
+		 * Counts a step that threw, by the type of the exception. The step is counted with {@link #Count(int, long)}
+		 * as well.
+		 */
+		synchronized void CountError(Exception e) {
+			String name = e.getClass().getSimpleName();
+			Long count = errors.get(name);
+			errors.put(name, count == null ? 1 : count + 1);
+		}
+
+		/**
+		 * Counts a step that found nothing to work on, like opening tasks without groups.
+		 */
+		synchronized void CountSkipped() {
+			skipped++;
+		}
+
+		public synchronized Map<Integer, Long> GetStatusCounts() { return new TreeMap<>(statusCodes); }
+		public synchronized Map<String, Long> GetErrorCounts() { return new TreeMap<>(errors); }
+		public synchronized long GetSkippedCount() { return skipped; }
+		public synchronized long GetFailureCount() { return failures; }
+	}
+
+	public final String Url;
+	/** The scenarios that arrived, that ended before the report was made, and that were dropped because too many
+	 * were running already. */
+	public final long Arrived, Completed, Dropped;
+	/** The time in nanoseconds from the first arrival until the last scenario ended or was given up on. */
+	public final long Elapsed;
+	/** How late scenarios started after their arrival, in microseconds. Grows when the load generator can't keep up. */
+	public final Histogram Lag;
+	/** The numbers of every request on the network, by endpoint. Retries and hedges count as requests. */
+	public final Metrics Endpoints;
+	private final Map<Scenario, Stats> scenarios;
+	private final Map<Scenario, List<Stats>> steps;
+
+	Report(String url, long arrived, long completed, long dropped, long elapsed, Histogram lag, Metrics endpoints,
+			Map<Scenario, Stats> scenarios, Map<Scenario, List<Stats>> steps) {
+		Url = url;
+		Arrived = arrived;
+		Completed = completed;
+		Dropped = dropped;
+		Elapsed = elapsed;
+		Lag = lag;
+		Endpoints = endpoints;
+		this.scenarios = new LinkedHashMap<>(scenarios);
+		this.steps = new LinkedHashMap<>(steps);
+	}
+
+	public static boolean IsFailure(int statusCode) {
+		return statusCode == -1 || statusCode >= 500;
+	}
+
+	/**
+	 * @return The numbers of a scenario, or null if it wasn't part of the test.
+	 */
+	public Stats GetScenario(Scenario scenario) {
+		return scenarios.get(scenario);
+	}
+
+	/**
+	 * @return The numbers of every step of a scenario in order, or null if it wasn't part of the test.
+	 */
+	public List<Stats> GetSteps(Scenario scenario) {
+		return steps.get(scenario);
+	}
+
+	/**
+	 * Writes the report as text, with the throughput and the 50th, 95th and 99th percentile of the latencies.
+	 */
+	public void Print(Writer writer) {
+		PrintWriter out = new PrintWriter(writer);
+		double seconds = Elapsed / 1e9;
+		out.println(String.format(Locale.US, "Load test of %s for %.1fs: %d arrived, %d completed, %d dropped, %d unfinished",
+				Url, seconds, Arrived, Completed, Dropped, Arrived - Dropped - Completed));
+		out.println("  " + FormatTime("start lag", Lag.GetCount(), seconds, Lag));
+
+		out.println();
+		out.println("Endpoints");
+		for (Metrics.Endpoint endpoint : Endpoints.GetEndpoints()) {
+			Map<Integer, Long> statusCodes = endpoint.GetStatusCounts();
+			long failures = 0;
+			for (Map.Entry<Integer, Long> count : statusCodes.entrySet())
+				if (IsFailure(count.getKey())) failures += count.getValue();
+			out.println("  " + FormatTime(endpoint.Name, endpoint.Total.GetCount(), seconds, endpoint.Total)
+					+ " failed=" + failures + " status " + Join(statusCodes));
+		}
+
+		for (Map.Entry<Scenario, Stats> scenario : scenarios.entrySet()) {
+			Stats stats = scenario.getValue();
+			out.println();
+			out.println("Scenario " + scenario.getKey());
+			out.println("  " + FormatTime("total", stats.Latency.GetCount(), seconds, stats.Latency)
+					+ " failed=" + stats.GetFailureCount());
+			List<Stats> scenarioSteps = steps.get(scenario.getKey());
+			for (int i = 0; i < scenarioSteps.size(); i++) {
+				Stats step = scenarioSteps.get(i);
+				Map<String, Long> errors = step.GetErrorCounts();
+				out.println("  " + FormatTime((i + 1) + ". " + step.Name, step.Latency.GetCount(), seconds, step.Latency)
+						+ " failed=" + step.GetFailureCount() + " skipped=" + step.GetSkippedCount()
+						+ " status " + Join(step.GetStatusCounts()) + (errors.isEmpty() ? "" : " errors " + Join(errors)));
+			}
+		}
+		out.flush();
+	}
+
+	private static String FormatTime(String name, long count, double seconds, Histogram histogram) {
+		return String.format(Locale.US, "%-12s n=%d %.1f/s p50=%.1fms p95=%.1fms p99=%.1fms max=%.1fms", name, count,
+				seconds > 0 ? count / seconds : 0, histogram.GetPercentile(50) / 1000.0,
+				histogram.GetPercentile(95) / 1000.0, histogram.GetPercentile(99) / 1000.0, histogram.GetMax() / 1000.0);
+	}
+
+	private static String Join(Map<?, Long> counts) {
+		StringBuilder sb = new StringBuilder();
+		for (Map.Entry<?, Long> count : counts.entrySet()) {
+			if (sb.length() > 0) sb.append(' ');
+			sb.append(count.getKey()).append('=').append(count.getValue());
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,60 @@
+package com.example.alldone.loadgen;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The steps that a technician goes through after arriving, in order. Every arrival picks a scenario at random, in
+ * proportion to their weights.
+ */
+public final class Scenario {
+	/** A technician at the start of a shift: logs in, opens a group, enrolls in a task and finishes it. */
+	public static final Scenario SHIFT = new Scenario("shift", 1,
+			Arrays.asList(Step.LOGIN, Step.GROUPS, Step.TASKS, Step.ENROLL, Step.FINISH));
+
+	public final String Name;
+	public final int Weight;
+	public final List<Step> Steps;
+
+	public Scenario(String name, int weight, List<Step> steps) {
+		if (name.isEmpty()) throw new IllegalArgumentException("A scenario needs a name.");
+		if (weight < 1) throw new IllegalArgumentException("The weight of " + name + " may not be less than 1.");
+		if (steps.isEmpty()) throw new IllegalArgumentException(name + " needs at least one step.");
+		Name = name;
+		Weight = weight;
+		Steps = Collections.unmodifiableList(new ArrayList<>(steps));
+	}
+
+	/**
+	 * Reads a scenario like "browse:3=login,groups,tasks,tasks", where the weight is optional and 1 by default.
+	 * @throws IllegalArgumentException If the scenario can't be read.
+	 */
+	public static Scenario Parse(String text) {
+		int equals = text.indexOf('=');
+		if (equals == -1) throw new IllegalArgumentException("Scenario " + text + " has no steps.");
+		String name = text.substring(0, equals).trim();
+		int weight = 1;
+		int colon = name.indexOf(':');
+		if (colon != -1) {
+			weight = Integer.parseInt(name.substring(colon + 1).trim());
+			name = name.substring(0, colon).trim();
+		}
+
+		List<Step> steps = new ArrayList<>();
+		for (String step : text.substring(equals + 1).split(","))
+			if (!step.trim().isEmpty()) steps.add(Step.FromName(step.trim()));
+		return new Scenario(name, weight, steps);
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder(Name).append(':').append(Weight).append('=');
+		for (int i = 0; i < Steps.size(); i++) {
+			if (i > 0) sb.append(',');
+			sb.append(Steps.get(i).Name);
+		}
+		return sb.toString();
+	}
+}
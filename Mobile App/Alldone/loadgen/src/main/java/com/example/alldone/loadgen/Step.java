@@ -0,0 +1,102 @@
+package com.example.alldone.loadgen;
+
+import com.example.alldone.Response;
+import com.example.alldone.model.Group;
+import com.example.alldone.model.Task;
+import com.example.alldone.net.Base64;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Collections;
+
+/**
+ * The things a technician does in the app, each with the requests that the app sends for it.
+ */
+public enum Step {
+	/** Gets a session with an AES key if requests are encrypted, and logs in. */
+	LOGIN("login") {
+		@Override
+		Response Run(VirtualUser user) {
+			if (user.Encrypted) {
+				Response session = user.Client.Send("session", "GET");
+				if (!session.IsSuccessful()) return session;
+				user.Client.SetSession(session.GetString("Id"), Base64.Decode(session.GetString("Key")));
+			}
+			JSONObject login;
+			try {
+				login = new JSONObject().put("username", user.Username).put("password", user.Password);
+			} catch (JSONException e) {
+				throw new IllegalStateException(e);
+			}
+			Response response = user.Client.Send("login", "POST", login.toString());
+			// Like the app, which sends the following requests unencrypted with the session of the login
+			if (response.IsSuccessful() && !user.Encrypted)
+				user.Client.SetSession(response.GetString("sessionId"), null);
+			return response;
+		}
+	},
+	/** Lists the groups of the user. */
+	GROUPS("groups") {
+		@Override
+		Response Run(VirtualUser user) {
+			Response response = user.Client.Send("group", "GET");
+			user.Groups = response.IsSuccessful() ? response.GetGroups() : Collections.<Group>emptyList();
+			return response;
+		}
+	},
+	/** Opens the tasks of one of the listed groups. */
+	TASKS("tasks") {
+		@Override
+		Response Run(VirtualUser user) {
+			Group group = user.Pick(user.Groups);
+			if (group == null) return null;
+			Response response = user.Client.Send("task", "GET", "{\"group\":" + group.getId() + "}");
+			user.Tasks = response.IsSuccessful() ? response.GetTasks() : Collections.<Task>emptyList();
+			return response;
+		}
+	},
+	/** Enrolls in one of the opened tasks. Tasks the user is already enrolled in are answered with 409. */
+	ENROLL("enroll") {
+		@Override
+		Response Run(VirtualUser user) {
+			Task task = user.Pick(user.Tasks);
+			if (task == null) return null;
+			Response response = user.Client.Send("taskenroll", "POST", "{\"task\":" + task.getId() + "}");
+			if (response.IsSuccessful()) user.Enrolled = task.getId();
+			return response;
+		}
+	},
+	/** Finishes the task the user enrolled in last. */
+	FINISH("finish") {
+		@Override
+		Response Run(VirtualUser user) {
+			if (user.Enrolled == 0) return null;
+			Response response = user.Client.Send("taskenroll", "PATCH", "{\"task\":" + user.Enrolled + "}");
+			if (response.IsSuccessful()) user.Enrolled = 0;
+			return response;
+		}
+	};
+
+	public final String Name;
+
+	Step(String name) {
+		Name = name;
+	}
+
+	/**
+	 * Sends the requests of the step.
+	 * @return The response to the last request, or null if the step was skipped because an earlier step didn't find
+	 * anything to work on.
+	 */
+	abstract Response Run(VirtualUser user);
+
+	/**
+	 * @throws IllegalArgumentException If there is no step with the name.
+	 */
+	public static Step FromName(String name) {
+		for (Step step : values())
+			if (step.Name.equals(name)) return step;
+		throw new IllegalArgumentException("Unknown step " + name + ".");
+	}
+}
@@ -0,0 +1,41 @@
+package com.example.alldone.loadgen;
+
+import com.example.alldone.Client;
+import com.example.alldone.model.Group;
+import com.example.alldone.model.Task;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A technician that goes through one scenario, with a client of its own like the app on their phone, and what it has
+ * seen so far.
+ */
+final class VirtualUser {
+	final Client Client;
+	final String Username;
+	final String Password;
+	final boolean Encrypted;
+	final Random Random;
+
+	List<Group> Groups = Collections.emptyList();
+	List<Task> Tasks = Collections.emptyList();
+	// The task it enrolled in last, or 0
+	int Enrolled;
+
+	VirtualUser(Client client, String username, String password, boolean encrypted, Random random) {
+		Client = client;
+		Username = username;
+		Password = password;
+		Encrypted = encrypted;
+		Random = random;
+	}
+
+	/**
+	 * @return A random item of a list, or null if it is empty.
+	 */
+	<T> T Pick(List<T> list) {
+		return list.isEmpty() ? null : list.get(Random.nextInt(list.size()));
+	}
+}
@@ -0,0 +1,95 @@
+package com.example.alldone.loadgen;
+
+import com.example.alldone.net.Metrics;
+import com.example.alldone.standin.DataSet;
+import com.example.alldone.standin.StandInApi;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class LoadGeneratorTest {
+    private StandInApi api;
+
+    @Before
+    public void setUp() throws Exception {
+        api = new StandInApi(DataSet.SMALL);
+    }
+
+    @After
+    public void tearDown() {
+        api.close();
+    }
+
+    @Test
+    public void parse_readsNameWeightAndSteps() {
+        Scenario scenario = Scenario.Parse("browse:3=login, groups,tasks,tasks");
+        assertEquals("browse", scenario.Name);
+        assertEquals(3, scenario.Weight);
+        assertEquals(Arrays.asList(Step.LOGIN, Step.GROUPS, Step.TASKS, Step.TASKS), scenario.Steps);
+        assertEquals(1, Scenario.Parse("login=login").Weight);
+
+        try {
+            Scenario.Parse("broken=login,dance");
+            fail();
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void run_reportsEveryEndpointAndStep() throws Exception {
+        LoadGenerator generator = new LoadGenerator(api.GetUrl(), Collections.singletonList(Scenario.SHIFT),
+                DataSet.SMALL.Users, DataSet.PASSWORD);
+        generator.SetArrivals(50, false);
+        Report report = generator.Run(400);
+
+        assertEquals(20, report.Arrived);
+        assertEquals(20, report.Completed);
+        assertEquals(0, report.Dropped);
+        assertEquals(0, report.GetScenario(Scenario.SHIFT).GetFailureCount());
+        assertEquals(20, report.GetScenario(Scenario.SHIFT).Latency.GetCount());
+
+        List<Report.Stats> steps = report.GetSteps(Scenario.SHIFT);
+        assertEquals(5, steps.size());
+        assertEquals(Long.valueOf(20), steps.get(0).GetStatusCounts().get(200));
+        assertEquals(Long.valueOf(20), steps.get(1).GetStatusCounts().get(200));
+        assertEquals(Long.valueOf(20), steps.get(2).GetStatusCounts().get(200));
+        // Enrolling in a task twice is answered with 409, after which there is nothing to finish
+        Long enrolled = steps.get(3).GetStatusCounts().get(204);
+        assertNotNull(enrolled);
+        assertEquals(enrolled, steps.get(4).GetStatusCounts().get(204));
+        assertEquals(20 - enrolled, steps.get(4).GetSkippedCount());
+
+        Metrics.Endpoint session = report.Endpoints.Get("session");
+        assertEquals(Long.valueOf(20), session.GetStatusCounts().get(201));
+        assertEquals(20, report.Endpoints.Get("login").Total.GetCount());
+        assertEquals(20, report.Endpoints.Get("group").Total.GetCount());
+
+        StringWriter text = new StringWriter();
+        report.Print(text);
+        assertTrue(text.toString().contains("Scenario " + Scenario.SHIFT));
+        assertTrue(text.toString().contains("5. finish"));
+    }
+
+    @Test
+    public void run_dropsArrivalsBeyondMaxRunning() throws Exception {
+        api.SetLatency(300);
+        LoadGenerator generator = new LoadGenerator(api.GetUrl(), Collections.singletonList(Scenario.Parse("login=login")),
+                DataSet.SMALL.Users, DataSet.PASSWORD);
+        generator.SetArrivals(100, false);
+        generator.SetMaxRunning(2);
+        Report report = generator.Run(100);
+
+        assertEquals(10, report.Arrived);
+        assertEquals(8, report.Dropped);
+        assertEquals(2, report.Completed);
+    }
+}
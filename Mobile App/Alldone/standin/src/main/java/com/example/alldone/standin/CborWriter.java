@@ -0,0 +1,92 @@
+package com.example.alldone.standin;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.util.Iterator;
+
+/**
+ * Encodes JSON as CBOR the same way as Cbor.Encode of the Web API, so the stand-in can serve CBOR
+ * bodies and tests and benchmarks can decode them.
+ */
+public final class CborWriter {
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+	private CborWriter() { }
+
+	public static byte[] FromJson(String json) throws JSONException {
+		return Encode(new JSONObject(json));
+	}
+
+	/**
+	 * @param value A {@link JSONObject}, {@link JSONArray}, string, number, boolean or {@link JSONObject#NULL}.
+	 */
+	public static byte[] Encode(Object value) throws JSONException {
+		CborWriter writer = new CborWriter();
+		writer.Write(value);
+		return writer.out.toByteArray();
+	}
+
+	private void Write(Object value) throws JSONException {
+		if (value instanceof JSONObject) {
+			JSONObject object = (JSONObject) value;
+			WriteHeader(5, object.length());
+			Iterator<String> keys = object.keys();
+			while (keys.hasNext()) {
+				String key = keys.next();
+				WriteString(key);
+				Write(object.get(key));
+			}
+		} else if (value instanceof JSONArray) {
+			JSONArray array = (JSONArray) value;
+			WriteHeader(4, array.length());
+			for (int i = 0; i < array.length(); i++) Write(array.get(i));
+		} else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte
+				|| value instanceof BigInteger) {
+			long number = ((Number) value).longValue();
+			// Negative integers are stored as -1 - n, so they need no sign bit
+			if (number >= 0) WriteHeader(0, number);
+			else WriteHeader(1, -1 - number);
+		} else if (value instanceof Number) {
+			if (value instanceof BigDecimal && ((BigDecimal) value).scale() <= 0) {
+				Write(((BigDecimal) value).toBigInteger());
+				return;
+			}
+			long bits = Double.doubleToLongBits(((Number) value).doubleValue());
+			out.write(7 << 5 | 27);
+			for (int i = 7; i >= 0; i--) out.write((int) (bits >>> (i * 8)));
+		} else if (value instanceof Boolean) {
+			out.write(7 << 5 | ((Boolean) value ? 21 : 20));
+		} else if (value == null || value == JSONObject.NULL) {
+			out.write(7 << 5 | 22);
+		} else {
+			WriteString(value.toString());
+		}
+	}
+
+	private void WriteString(String value) {
+		byte[] bytes = value.getBytes(UTF8);
+		WriteHeader(3, bytes.length);
+		out.write(bytes, 0, bytes.length);
+	}
+
+	/**
+	 * Writes the initial byte of an item, followed by its argument in as few bytes as possible.
+	 */
+	private void WriteHeader(int majorType, long argument) {
+		if (argument < 24) {
+			out.write(majorType << 5 | (int) argument);
+			return;
+		}
+		int length = argument <= 0xff ? 1 : argument <= 0xffff ? 2 : argument <= 0xffffffffL ? 4 : 8;
+		out.write(majorType << 5 | (length == 1 ? 24 : length == 2 ? 25 : length == 4 ? 26 : 27));
+		for (int i = length - 1; i >= 0; i--) out.write((int) (argument >>> (i * 8)));
+	}
+}
@@ -0,0 +1,77 @@
+package com.example.alldone.standin;
+
+import java.security.InvalidParameterException;
+
+/**
+ * The sizes of the data that a {@link StandInApi} starts with.
+ * <p>
+ * Every user is called {@link #GetUsername(int)} and has {@link #PASSWORD} as password. Every user creates
+ * {@link #GroupsPerUser} groups, which the next {@link #MembersPerGroup} users have joined. The first
+ * {@link #EnrollmentsPerTask} members of a group are enrolled in every task, and half of those enrollments are
+ * finished. The same sizes and seed always give the same data.
+ */
+public final class DataSet {
+	public static final String PASSWORD = "wachtwoord";
+
+	/** A few users with short task lists, for integration tests. */
+	public static final DataSet SMALL = new DataSet(10, 1, 3, 20, 1, 40, 42);
+	/** Hundreds of users with the task lists of a busy department, for load tests. */
+	public static final DataSet LARGE = new DataSet(500, 2, 20, 200, 3, 120, 42);
+
+	public final int Users;
+	public final int GroupsPerUser;
+	public final int MembersPerGroup;
+	public final int TasksPerGroup;
+	public final int EnrollmentsPerTask;
+	public final int DescriptionLength;
+	public final long Seed;
+
+	/**
+	 * @param users The amount of users.
+	 * @param groupsPerUser The amount of groups every user created.
+	 * @param membersPerGroup The amount of users that joined every group, besides its creator.
+	 * @param tasksPerGroup The amount of tasks in every group.
+	 * @param enrollmentsPerTask The amount of members enrolled in every task.
+	 * @param descriptionLength The maximum amount of characters of a task description.
+	 * @param seed The seed of the titles, descriptions, priorities and creators of the tasks.
+	 */
+	public DataSet(int users, int groupsPerUser, int membersPerGroup, int tasksPerGroup, int enrollmentsPerTask,
+			int descriptionLength, long seed) {
+		if (users < 1) throw new InvalidParameterException("users may not be less than 1.");
+		if (groupsPerUser < 0) throw new InvalidParameterException("groupsPerUser may not be less than 0.");
+		if (membersPerGroup < 0 || membersPerGroup >= users)
+			throw new InvalidParameterException("membersPerGroup must be at least 0 and less than users.");
+		if (tasksPerGroup < 0) throw new InvalidParameterException("tasksPerGroup may not be less than 0.");
+		if (enrollmentsPerTask < 0 || enrollmentsPerTask > membersPerGroup + 1)
+			throw new InvalidParameterException("enrollmentsPerTask must be at least 0 and at most membersPerGroup + 1.");
+		if (descriptionLength < 0) throw new InvalidParameterException("descriptionLength may not be less than 0.");
+		Users = users;
+		GroupsPerUser = groupsPerUser;
+		MembersPerGroup = membersPerGroup;
+		TasksPerGroup = tasksPerGroup;
+		EnrollmentsPerTask = enrollmentsPerTask;
+		DescriptionLength = descriptionLength;
+		Seed = seed;
+	}
+
+	/**
+	 * @param user The number of the user, from 1 up to and including {@link #Users}.
+	 * @return The username of the user.
+	 */
+	public static String GetUsername(int user) {
+		return "user" + user;
+	}
+
+	/**
+	 * @return The amount of tasks of all groups together.
+	 */
+	public long GetTaskCount() {
+		return (long) Users * GroupsPerUser * TasksPerGroup;
+	}
+
+	@Override
+	public String toString() {
+		return Users + " users, " + GroupsPerUser + " groups per user, " + MembersPerGroup + " members per group, "
+				+ TasksPerGroup + " tasks per group, " + EnrollmentsPerTask + " enrollments per task";
+	}
+}
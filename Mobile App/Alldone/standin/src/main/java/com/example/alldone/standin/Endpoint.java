@@ -0,0 +1,96 @@
+package com.example.alldone.standin;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An endpoint of the stand-in, which answers like its counterpart in the Web API. Methods that an endpoint doesn't
+ * override are answered with 501.
+ */
+abstract class Endpoint {
+	static final int UNPROCESSABLE_ENTITY = 422;
+
+	protected final Store store;
+
+	Endpoint(Store store) {
+		this.store = store;
+	}
+
+	/**
+	 * @return Whether requests without a logged in session are answered with 401.
+	 */
+	boolean RequiresLogin() {
+		return true;
+	}
+
+	Reply Invoke(Request request) throws JSONException {
+		switch (request.Method) {
+			case "GET": return GET(request);
+			case "POST": return POST(request);
+			case "DELETE": return DELETE(request);
+			case "PATCH": return PATCH(request);
+			default: return Reply.Status(501);
+		}
+	}
+
+	Reply GET(Request request) throws JSONException { return Reply.Status(501); }
+	Reply POST(Request request) throws JSONException { return Reply.Status(501); }
+	Reply DELETE(Request request) throws JSONException { return Reply.Status(501); }
+	Reply PATCH(Request request) throws JSONException { return Reply.Status(501); }
+
+	/**
+	 * @return A 422 that lists the parameters that the JSON doesn't contain, or null if it contains all of them.
+	 */
+	static Reply Missing(JSONObject json, String... names) throws JSONException {
+		List<String> missing = new ArrayList<>();
+		for (String name : names) if (!json.has(name)) missing.add(name);
+		return missing.isEmpty() ? null : Reply.Json(new JSONObject().put("missing", new JSONArray(missing)), UNPROCESSABLE_ENTITY);
+	}
+
+	/**
+	 * @return A 422 that lists the given parameters as invalid.
+	 */
+	static Reply Invalid(String... names) throws JSONException {
+		JSONArray invalid = new JSONArray();
+		for (String name : names) invalid.put(name);
+		return Reply.Json(new JSONObject().put("invalid", invalid), UNPROCESSABLE_ENTITY);
+	}
+
+	/**
+	 * @return The parameter as a number of at least the minimum, or null if it is missing or isn't one.
+	 */
+	static Long GetLong(JSONObject json, String name, long min) {
+		Object value = json.opt(name);
+		long number;
+		if (value instanceof Number) number = ((Number) value).longValue();
+		else if (value instanceof String) {
+			try {
+				number = Long.parseLong((String) value);
+			} catch (NumberFormatException e) {
+				return null;
+			}
+		}
+		else return null;
+		return number < min ? null : number;
+	}
+
+	/**
+	 * @return The parameter as a number of at least the minimum that fits in an int, or null.
+	 */
+	static Integer GetInt(JSONObject json, String name, int min) {
+		Long value = GetLong(json, name, min);
+		return value == null || value > Integer.MAX_VALUE ? null : (int) (long) value;
+	}
+
+	/**
+	 * @return The parameter as a string that isn't empty, or null.
+	 */
+	static String GetText(JSONObject json, String name) {
+		Object value = json.opt(name);
+		return value instanceof String && !((String) value).isEmpty() ? (String) value : null;
+	}
+}
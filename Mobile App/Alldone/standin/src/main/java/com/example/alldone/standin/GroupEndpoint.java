@@ -0,0 +1,34 @@
+package com.example.alldone.standin;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Lists the groups that the user created or joined, and creates groups.
+ */
+final class GroupEndpoint extends Endpoint {
+	GroupEndpoint(Store store) {
+		super(store);
+	}
+
+	@Override
+	Reply GET(Request request) throws JSONException {
+		JSONArray results = new JSONArray();
+		for (Store.Group group : store.GetGroups(request.User.Id)) results.put(group.ToJSON());
+		return Reply.Json(new JSONObject().put("results", results));
+	}
+
+	@Override
+	Reply POST(Request request) throws JSONException {
+		Reply missing = Missing(request.Json, "name");
+		if (missing != null) return missing;
+		String name = GetText(request.Json, "name");
+		if (name == null) return Invalid("name");
+		Object description = request.Json.opt("description");
+		if (description != null && !(description instanceof String)) return Invalid("description");
+
+		Store.Group group = store.AddGroup(request.User.Id, name, (String) description);
+		return Reply.Json(new JSONObject().put("id", group.Id), 201);
+	}
+}
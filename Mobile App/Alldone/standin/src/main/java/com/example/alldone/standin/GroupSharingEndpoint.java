@@ -0,0 +1,49 @@
+package com.example.alldone.standin;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Hands out the share code of a group to its creator and admins, and lets users join a group with a share code.
+ */
+final class GroupSharingEndpoint extends Endpoint {
+	GroupSharingEndpoint(Store store) {
+		super(store);
+	}
+
+	@Override
+	Reply GET(Request request) throws JSONException {
+		Reply missing = Missing(request.Json, "group");
+		if (missing != null) return missing;
+		Integer id = GetInt(request.Json, "group", 0);
+		if (id == null) return Invalid("group");
+
+		Store.Group group = store.GetGroup(id);
+		if (group == null) return Reply.Status(400);
+		if (group.Creator != request.User.Id) {
+			Integer rank = store.GetRank(group.Id, request.User.Id);
+			if (rank == null || rank != Store.RANK_ADMIN) return Reply.Status(403);
+		}
+
+		boolean[] created = new boolean[1];
+		Store.ShareCode code = store.GetShareCode(group.Id, created);
+		return Reply.Json(new JSONObject().put("code", code.Code), created[0] ? 201 : 200);
+	}
+
+	@Override
+	Reply POST(Request request) throws JSONException {
+		Reply missing = Missing(request.Json, "code");
+		if (missing != null) return missing;
+		Object value = request.Json.opt("code");
+		if (!(value instanceof String) || ((String) value).length() != 8) return Invalid("code");
+
+		Store.ShareCode code = store.FindShareCode((String) value);
+		if (code == null) return Reply.Status(400);
+		if (code.IsExpired()) {
+			store.RemoveShareCode(code);
+			return Reply.Status(410);
+		}
+		// Creators and members can't join again
+		return Reply.Status(store.Join(code.Group, request.User.Id, Store.RANK_USER) ? 204 : 409);
+	}
+}
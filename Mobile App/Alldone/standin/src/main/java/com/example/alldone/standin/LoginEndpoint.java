@@ -0,0 +1,39 @@
+package com.example.alldone.standin;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Logs in with a username and password. A session without user from the session endpoint is logged in, otherwise
+ * a new session is created and set as cookie.
+ */
+final class LoginEndpoint extends Endpoint {
+	LoginEndpoint(Store store) {
+		super(store);
+	}
+
+	@Override
+	boolean RequiresLogin() {
+		return false;
+	}
+
+	@Override
+	Reply POST(Request request) throws JSONException {
+		String username = request.Json.optString("username", null);
+		String password = request.Json.optString("password", null);
+		if (username == null || password == null) return Reply.Status(400);
+
+		Store.User user = store.GetUser(username, password);
+		if (user == null) return Reply.Status(401);
+
+		Store.Session session = request.Session;
+		boolean created = session == null || session.GetUser() != null;
+		if (created) session = store.CreateSession(user.Id);
+		else session.SetUser(user.Id);
+
+		Reply reply = Reply.Json(new JSONObject()
+				.put("sessionId", session.Id)
+				.put("accesslevel", user.AccessLevel));
+		return created ? reply.WithSession(session.Id) : reply;
+	}
+}
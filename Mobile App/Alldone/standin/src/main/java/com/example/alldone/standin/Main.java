@@ -0,0 +1,74 @@
+package com.example.alldone.standin;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+
+/**
+ * Runs a {@link StandInApi} from the command line until the process is stopped.
+ */
+public final class Main {
+	private static final String USAGE = "Usage: standin [--host 127.0.0.1] [--port 8080] [--threads 64] [--latency ms]\n"
+			+ "               [--preset small|large] [--users n] [--groups-per-user n] [--members-per-group n]\n"
+			+ "               [--tasks-per-group n] [--enrollments-per-task n] [--description-length n] [--seed n]";
+
+	private Main() { }
+
+	public static void main(String[] args) throws IOException {
+		String host = "127.0.0.1";
+		int port = 8080;
+		int threads = StandInApi.DEFAULT_THREADS;
+		long latency = 0;
+		DataSet preset = DataSet.SMALL;
+		int users = -1, groups = -1, members = -1, tasks = -1, enrollments = -1, description = -1;
+		long seed = preset.Seed;
+
+		try {
+			for (int i = 0; i < args.length; i++) {
+				if (i + 1 == args.length) throw new IllegalArgumentException("Missing value of " + args[i] + ".");
+				String value = args[++i];
+				switch (args[i - 1]) {
+					case "--host": host = value; break;
+					case "--port": port = Integer.parseInt(value); break;
+					case "--threads": threads = Integer.parseInt(value); break;
+					case "--latency": latency = Long.parseLong(value); break;
+					case "--preset":
+						if (value.equals("small")) preset = DataSet.SMALL;
+						else if (value.equals("large")) preset = DataSet.LARGE;
+						else throw new IllegalArgumentException("Unknown preset " + value + ".");
+						break;
+					case "--users": users = Integer.parseInt(value); break;
+					case "--groups-per-user": groups = Integer.parseInt(value); break;
+					case "--members-per-group": members = Integer.parseInt(value); break;
+					case "--tasks-per-group": tasks = Integer.parseInt(value); break;
+					case "--enrollments-per-task": enrollments = Integer.parseInt(value); break;
+					case "--description-length": description = Integer.parseInt(value); break;
+					case "--seed": seed = Long.parseLong(value); break;
+					default: throw new IllegalArgumentException("Unknown option " + args[i - 1] + ".");
+				}
+			}
+		} catch (IllegalArgumentException e) {
+			// NumberFormatException is one as well
+			System.err.println(e.getMessage());
+			System.err.println(USAGE);
+			System.exit(2);
+			return;
+		}
+
+		// Sizes that weren't given come from the preset
+		DataSet dataSet = new DataSet(
+				users == -1 ? preset.Users : users,
+				groups == -1 ? preset.GroupsPerUser : groups,
+				members == -1 ? preset.MembersPerGroup : members,
+				tasks == -1 ? preset.TasksPerGroup : tasks,
+				enrollments == -1 ? preset.EnrollmentsPerTask : enrollments,
+				description == -1 ? preset.DescriptionLength : description,
+				seed);
+
+		long start = System.nanoTime();
+		StandInApi api = new StandInApi(dataSet, new InetSocketAddress(host, port), threads);
+		api.SetLatency(latency);
+		System.out.println("Generated " + dataSet + " in " + (System.nanoTime() - start) / 1000000 + " ms.");
+		System.out.println("Listening on " + api.GetUrl() + " as " + DataSet.GetUsername(1) + " to "
+				+ DataSet.GetUsername(dataSet.Users) + " with password " + DataSet.PASSWORD + ".");
+	}
+}
@@ -0,0 +1,30 @@
+package com.example.alldone.standin;
+
+import org.json.JSONException;
+
+/**
+ * Creates a user. Answers 201 when it was created and 409 when the username is taken.
+ */
+final class RegisterEndpoint extends Endpoint {
+	RegisterEndpoint(Store store) {
+		super(store);
+	}
+
+	@Override
+	boolean RequiresLogin() {
+		return false;
+	}
+
+	@Override
+	Reply POST(Request request) throws JSONException {
+		Reply missing = Missing(request.Json, "username", "password");
+		if (missing != null) return missing;
+		String username = GetText(request.Json, "username");
+		String password = GetText(request.Json, "password");
+		if (username == null && password == null) return Invalid("username", "password");
+		if (username == null) return Invalid("username");
+		if (password == null) return Invalid("password");
+
+		return Reply.Status(store.AddUser(username, password) == null ? 409 : 201);
+	}
+}
@@ -0,0 +1,54 @@
+package com.example.alldone.standin;
+
+import org.json.JSONObject;
+
+/**
+ * The status, body and session cookie that an endpoint answers with.
+ */
+final class Reply {
+	final int Status;
+	final JSONObject Json;
+	// The body as it is sent, for scripted replies that aren't JSON or whose key order matters, or null
+	final String Text;
+	// A session id to set as cookie, or null
+	final String Session;
+
+	private Reply(int status, JSONObject json, String text, String session) {
+		Status = status;
+		Json = json;
+		Text = text;
+		Session = session;
+	}
+
+	/**
+	 * @return A reply without body, like Server.SendError of the Web API.
+	 */
+	static Reply Status(int status) {
+		return new Reply(status, null, null, null);
+	}
+
+	static Reply Json(JSONObject json) {
+		return new Reply(200, json, null, null);
+	}
+	static Reply Json(JSONObject json, int status) {
+		return new Reply(status, json, null, null);
+	}
+
+	static Reply Text(String text, int status) {
+		return new Reply(status, null, text, null);
+	}
+
+	/**
+	 * @return A copy of this reply that also sets the session cookie.
+	 */
+	Reply WithSession(String session) {
+		return new Reply(Status, Json, Text, session);
+	}
+
+	/**
+	 * @return The body to send, or null if there is none.
+	 */
+	String GetBody() {
+		return Json != null ? Json.toString() : Text;
+	}
+}
@@ -0,0 +1,24 @@
+package com.example.alldone.standin;
+
+import org.json.JSONObject;
+
+/**
+ * A request to an endpoint, after its body was decrypted, decompressed and parsed.
+ */
+final class Request {
+	/** The HTTP method, which is GET for a POST with "method=GET" in its query. */
+	final String Method;
+	/** The body, or an empty object if the request had none. */
+	final JSONObject Json;
+	/** The session of the session cookie, or null. */
+	final Store.Session Session;
+	/** The user that logged in with the session, or null. */
+	final Store.User User;
+
+	Request(String method, JSONObject json, Store.Session session, Store.User user) {
+		Method = method;
+		Json = json;
+		Session = session;
+		User = user;
+	}
+}
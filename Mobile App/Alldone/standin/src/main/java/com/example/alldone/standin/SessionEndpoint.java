@@ -0,0 +1,30 @@
+package com.example.alldone.standin;
+
+import com.example.alldone.net.Base64;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Creates a session and sends it along with its AES key, so the client can encrypt requests once it logged in with it.
+ */
+final class SessionEndpoint extends Endpoint {
+	SessionEndpoint(Store store) {
+		super(store);
+	}
+
+	@Override
+	boolean RequiresLogin() {
+		return false;
+	}
+
+	@Override
+	Reply GET(Request request) throws JSONException {
+		Store.Session session = store.CreateSession(null);
+		return Reply.Json(new JSONObject()
+				.put("Id", session.Id)
+				.put("User", JSONObject.NULL)
+				.put("Key", Base64.Encode(session.Key))
+				.put("Expires", session.Expires), 201);
+	}
+}
@@ -0,0 +1,642 @@
+package com.example.alldone.standin;
+
+import com.example.alldone.Batch;
+import com.example.alldone.CborStreamReader;
+import com.example.alldone.CipherEngine;
+import com.example.alldone.Response;
+import com.example.alldone.net.Base64;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+import java.security.InvalidParameterException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * A stand-in for the JSON endpoints of the Web API that the app uses: session, login, register, group, task,
+ * taskenroll and groupsharing. It keeps its data in memory, starting with a {@link DataSet}, and runs in the same
+ * process as the client, so client features and performance can be tested without a network.
+ * <p>
+ * Requests go through the same steps as in the JsonServer of the Web API. The session comes from the session cookie.
+ * Bodies may be gzipped and encrypted with the AES key of the session, with the IV in the Content-IV header. Responses
+ * to encrypted requests are encrypted in turn. A POST with "method=GET" in its query is a read. Reads get an ETag and
+ * are answered with 304 when it matches, and changes with an Idempotency-Key are answered with the stored response
+ * when they are sent again. Responses are JSON, or CBOR for clients that accept it once that is enabled.
+ * <p>
+ * The batch endpoint answers every request of its envelope with the session of the batch, and the events endpoint
+ * keeps its responses open to push published events, replaying the ones after a Last-Event-ID. Tests can script an
+ * endpoint with a {@link Handler}, turn features off like an older server and record what was exchanged.
+ */
+public final class StandInApi implements Closeable {
+	public static final int DEFAULT_THREADS = 64;
+	// Matches Utils.CompressionThreshold of the Web API
+	public static final int COMPRESSION_THRESHOLD = 1024;
+	// Matches EventStream.LINK of the app
+	public static final String EVENTS = "events";
+	private static final Logger LOG = Logger.getLogger(StandInApi.class.getName());
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final String JSON = "application/json";
+	private static final String ENCRYPTED = "application/octet-stream";
+	// Answers changes that are sent again while the first attempt is still being processed
+	private static final Reply PENDING = Reply.Status(409);
+	// Makes event streams reconnect quickly, so tests don't wait for the default delay
+	private static final String EVENT_RETRY = "retry: 20\n\n";
+
+	/**
+	 * Answers the requests to an endpoint in place of the stand-in, without requiring a login.
+	 */
+	public interface Handler {
+		/**
+		 * @param method The method of the request, which is GET for reads.
+		 * @param body The decoded request body, or null if it had none.
+		 * @return The status and data to send. The data is sent as it is.
+		 */
+		Response Handle(String method, String body) throws Exception;
+	}
+
+	private final DataSet dataSet;
+	private final Store store;
+	private final HttpServer server;
+	private final ExecutorService executor;
+	private final Map<String, Endpoint> endpoints = new HashMap<>();
+	private final Map<String, Handler> handlers = new ConcurrentHashMap<>();
+	// The responses to changes by user and Idempotency-Key
+	private final Map<String, Reply> idempotentReplies = new ConcurrentHashMap<>();
+	private final AtomicLong requestCount = new AtomicLong();
+	private volatile long latency;
+	private volatile boolean batchEnabled = true;
+	private volatile boolean compressionEnabled = true;
+	private volatile boolean cborEnabled;
+	private volatile boolean eventsEnabled = true;
+
+	// The published events in server-sent event format, and the open event streams
+	private final List<String> events = new ArrayList<>();
+	private final List<HttpExchange> streams = new ArrayList<>();
+
+	// What was exchanged, which is only kept while recording so that long runs don't fill the memory
+	private volatile boolean recording;
+	private final List<String> requests = Collections.synchronizedList(new ArrayList<String>());
+	private final List<String> requestEncodings = Collections.synchronizedList(new ArrayList<String>());
+	private final List<String> responseEncodings = Collections.synchronizedList(new ArrayList<String>());
+	private final List<String> responseTypes = Collections.synchronizedList(new ArrayList<String>());
+	private final List<String> idempotencyKeys = Collections.synchronizedList(new ArrayList<String>());
+	private final List<String> lastEventIds = Collections.synchronizedList(new ArrayList<String>());
+
+	/**
+	 * Starts a stand-in on a free port of the loopback address.
+	 */
+	public StandInApi(DataSet dataSet) throws IOException {
+		this(dataSet, new InetSocketAddress("127.0.0.1", 0), DEFAULT_THREADS);
+	}
+
+	/**
+	 * @param address The address to listen on. Port 0 picks a free port.
+	 * @param threads The amount of requests that are handled at the same time.
+	 */
+	public StandInApi(DataSet dataSet, InetSocketAddress address, int threads) throws IOException {
+		if (threads < 1) throw new InvalidParameterException("threads may not be less than 1.");
+		this.dataSet = dataSet;
+
+		store = new Store(dataSet);
+		endpoints.put("session", new SessionEndpoint(store));
+		endpoints.put("login", new LoginEndpoint(store));
+		endpoints.put("register", new RegisterEndpoint(store));
+		endpoints.put("group", new GroupEndpoint(store));
+		endpoints.put("task", new TaskEndpoint(store));
+		endpoints.put("taskenroll", new TaskEnrollEndpoint(store));
+		endpoints.put("groupsharing", new GroupSharingEndpoint(store));
+
+		final AtomicInteger threadCount = new AtomicInteger();
+		executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "StandInApi-" + threadCount.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		server = HttpServer.create(address, 0);
+		server.createContext("/", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				boolean open = false;
+				try {
+					open = Serve(exchange);
+				} catch (InterruptedException e) {
+					// The stand-in was closed while the request was handled
+				} catch (Exception e) {
+					LOG.log(Level.WARNING, "Could not answer " + exchange.getRequestMethod() + " "
+							+ exchange.getRequestURI() + ".", e);
+					// Only if the response didn't start yet
+					if (exchange.getResponseCode() == -1) exchange.sendResponseHeaders(500, -1);
+				} finally {
+					if (!open) exchange.close();
+				}
+			}
+		});
+		server.setExecutor(executor);
+		server.start();
+	}
+
+	/**
+	 * @return The url to use as {@link com.example.alldone.Connection#DOMAIN}.
+	 */
+	public String GetUrl() {
+		InetSocketAddress address = server.getAddress();
+		return "http://" + address.getHostString() + ":" + address.getPort() + "/";
+	}
+
+	public DataSet GetDataSet() { return dataSet; }
+
+	/** @return The amount of requests received so far. */
+	public long GetRequestCount() { return requestCount.get(); }
+
+	/**
+	 * Makes every request take at least the given amount of milliseconds longer, like a database on another machine.
+	 */
+	public void SetLatency(long latency) {
+		if (latency < 0) throw new InvalidParameterException("latency may not be less than 0.");
+		this.latency = latency;
+	}
+
+	/**
+	 * Answers the requests to an endpoint with a handler, also inside batches. It replaces the endpoint of the
+	 * stand-in if there is one.
+	 */
+	public void Handle(String link, Handler handler) {
+		handlers.put(link.toLowerCase(), handler);
+	}
+
+	/**
+	 * Makes the batch endpoint answer 404 if false, like a server that doesn't have it.
+	 */
+	public void SetBatchEnabled(boolean enabled) { batchEnabled = enabled; }
+
+	/**
+	 * Makes the stand-in neither announce nor accept compressed request bodies and never compress responses if false.
+	 * Compressed request bodies are then answered with 415.
+	 */
+	public void SetCompressionEnabled(boolean enabled) { compressionEnabled = enabled; }
+
+	/**
+	 * Makes the stand-in answer with CBOR instead of JSON to clients that accept it if true, like the Web API.
+	 */
+	public void SetCborEnabled(boolean enabled) { cborEnabled = enabled; }
+
+	/**
+	 * Makes the events endpoint answer 404 if false, like a server without push support.
+	 */
+	public void SetEventsEnabled(boolean enabled) { eventsEnabled = enabled; }
+
+	/**
+	 * Starts or stops keeping what was exchanged, which the getters below return.
+	 */
+	public void SetRecording(boolean recording) { this.recording = recording; }
+
+	/** @return The endpoint of every request received while recording, in order. */
+	public List<String> GetRequests() { return Copy(requests); }
+
+	/** @return The Content-Encoding of every request received while recording, or "identity" if it had none. */
+	public List<String> GetRequestEncodings() { return Copy(requestEncodings); }
+
+	/** @return The Content-Encoding of every response sent while recording, or "identity" if it had none. */
+	public List<String> GetResponseEncodings() { return Copy(responseEncodings); }
+
+	/** @return The Content-Type of every response sent while recording, before encryption. */
+	public List<String> GetResponseTypes() { return Copy(responseTypes); }
+
+	/** @return The Idempotency-Key of every request to an endpoint while recording, or null if it had none. */
+	public List<String> GetIdempotencyKeys() { return Copy(idempotencyKeys); }
+
+	/** @return The Last-Event-ID of every event stream request while recording, or null if it had none. */
+	public List<String> GetLastEventIds() { return Copy(lastEventIds); }
+
+	/**
+	 * Sends an event to every open event stream, and keeps it to replay to streams that missed it.
+	 */
+	public void Publish(String name, String data) {
+		String event;
+		List<HttpExchange> open;
+		synchronized (events) {
+			event = "id: " + (events.size() + 1) + "\nevent: " + name + "\ndata: " + data + "\n\n";
+			events.add(event);
+			open = new ArrayList<>(streams);
+		}
+		for (HttpExchange stream : open) Write(stream, event);
+	}
+
+	/**
+	 * Closes every open event stream, like a dropped connection.
+	 */
+	public void DropStreams() {
+		List<HttpExchange> open;
+		synchronized (events) {
+			open = new ArrayList<>(streams);
+			streams.clear();
+		}
+		for (HttpExchange stream : open) stream.close();
+	}
+
+	/**
+	 * @return The amount of open event streams.
+	 */
+	public int GetStreamCount() {
+		synchronized (events) {
+			return streams.size();
+		}
+	}
+
+	@Override
+	public void close() {
+		DropStreams();
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	/**
+	 * @return True if the exchange was left open as an event stream.
+	 */
+	private boolean Serve(HttpExchange exchange) throws Exception {
+		requestCount.incrementAndGet();
+		byte[] body = Read(exchange.getRequestBody());
+		if (latency > 0) Thread.sleep(latency);
+
+		Headers headers = exchange.getRequestHeaders();
+		String link = exchange.getRequestURI().getPath().substring(1).toLowerCase();
+		String encoding = headers.getFirst("Content-Encoding");
+		Record(requests, link);
+		Record(requestEncodings, encoding == null ? "identity" : encoding);
+
+		if (link.equals(EVENTS) && eventsEnabled) {
+			Subscribe(exchange);
+			return true;
+		}
+		boolean batch = link.equals(Batch.LINK) && batchEnabled;
+		if (!batch && !handlers.containsKey(link) && !endpoints.containsKey(link)) {
+			Send(exchange, Reply.Status(404), null, false, false);
+			return false;
+		}
+
+		String sessionId = GetCookie(headers, "session");
+		Store.Session session = sessionId == null ? null : store.GetSession(sessionId);
+		String contentType = headers.getFirst("Content-Type");
+		String iv = headers.getFirst("Content-IV");
+		boolean encrypted = ENCRYPTED.equals(contentType) && sessionId != null && iv != null;
+		boolean read = exchange.getRequestMethod().equals("GET")
+				|| (exchange.getRequestMethod().equals("POST") && "GET".equalsIgnoreCase(GetQuery(exchange, "method")));
+
+		// Only gzip is supported for request bodies, which clients learn from our Accept-Encoding header
+		boolean compressed = "gzip".equalsIgnoreCase(encoding);
+		if (encoding != null && !(compressed && compressionEnabled) && !"identity".equalsIgnoreCase(encoding)) {
+			Send(exchange, Reply.Status(415), session, encrypted, read);
+			return false;
+		}
+
+		String text = null;
+		try {
+			if (body.length > 0) {
+				int length = body.length;
+				// If the data isn't JSON, expect it to be encrypted with the key of the session
+				if (contentType == null || !contentType.startsWith(JSON)) {
+					if (!encrypted || session == null) {
+						Send(exchange, Reply.Status(400), session, encrypted, read);
+						return false;
+					}
+					length = CipherEngine.Get().Decrypt(session.Key, Base64.Decode(iv), body, 0, length, body, 0);
+					// The cipher pads with zeros, which gzip stops before anyway
+					if (!compressed) while (length > 0 && body[length - 1] == 0) length--;
+				}
+				text = compressed
+						? new String(Read(new GZIPInputStream(new ByteArrayInputStream(body, 0, length))), UTF8)
+						: new String(body, 0, length, UTF8);
+			}
+		} catch (IOException | GeneralSecurityException | IllegalArgumentException e) {
+			// Bodies that don't decrypt or decompress
+			Send(exchange, Reply.Status(400), session, encrypted, read);
+			return false;
+		}
+
+		Integer userId = session == null ? null : session.GetUser();
+		Store.User user = userId == null ? null : store.GetUser(userId);
+		if (batch) {
+			// The envelope isn't tagged, because its parts are
+			Send(exchange, Batch(text, session, user), session, encrypted, false);
+			return false;
+		}
+
+		// Answer retried changes with the response to the first attempt instead of applying them twice. Scripted
+		// endpoints don't require a login, so they keep the responses of anonymous clients together.
+		String key = headers.getFirst("Idempotency-Key");
+		Record(idempotencyKeys, key);
+		String scope = user != null ? String.valueOf(user.Id) : handlers.containsKey(link) ? "-" : null;
+		String idempotencyKey = key != null && !read && scope != null ? scope + ":" + key : null;
+		if (idempotencyKey != null) {
+			Reply previous = idempotentReplies.putIfAbsent(idempotencyKey, PENDING);
+			if (previous != null) {
+				exchange.getResponseHeaders().set("Idempotent-Replayed", "true");
+				Send(exchange, previous, session, encrypted, read);
+				return false;
+			}
+		}
+
+		Reply reply = null;
+		try {
+			reply = Invoke(link, read ? "GET" : exchange.getRequestMethod(), text, session, user);
+		} finally {
+			// Server errors aren't stored, so that a retry gets another chance
+			if (idempotencyKey != null) {
+				if (reply == null || reply.Status >= 500) idempotentReplies.remove(idempotencyKey);
+				else idempotentReplies.put(idempotencyKey, reply);
+			}
+		}
+		Send(exchange, reply, session, encrypted, read);
+		return false;
+	}
+
+	/**
+	 * Answers a request to an endpoint with its decoded body, through the handler of the endpoint if it has one.
+	 */
+	private Reply Invoke(String link, String method, String text, Store.Session session, Store.User user)
+			throws Exception {
+		Handler handler = handlers.get(link);
+		if (handler != null) {
+			Response response = handler.Handle(method, text);
+			return Reply.Text(response.Data, response.StatusCode);
+		}
+
+		Endpoint endpoint = endpoints.get(link);
+		if (endpoint == null) return Reply.Status(404);
+		if (endpoint.RequiresLogin() && user == null) return Reply.Status(401);
+		JSONObject json;
+		try {
+			json = text == null ? new JSONObject() : new JSONObject(text);
+		} catch (JSONException e) {
+			return Reply.Status(400);
+		}
+		try {
+			return endpoint.Invoke(new Request(method, json, session, user));
+		} catch (JSONException e) {
+			return Reply.Status(500);
+		}
+	}
+
+	/**
+	 * Answers every request in a batch envelope, in the format that {@link Batch} reads. Like in a separate request,
+	 * successful reads are tagged.
+	 */
+	private Reply Batch(String text, Store.Session session, Store.User user) throws Exception {
+		JSONArray requests;
+		try {
+			requests = new JSONObject(text == null ? "" : text).getJSONArray("requests");
+		} catch (JSONException e) {
+			return Reply.Status(400);
+		}
+
+		JSONArray responses = new JSONArray();
+		for (int i = 0; i < requests.length(); i++) {
+			int id;
+			String link, method, body;
+			try {
+				JSONObject request = requests.getJSONObject(i);
+				id = request.getInt("id");
+				link = request.getString("link").toLowerCase();
+				method = request.getString("method").toUpperCase();
+				body = request.optString("body", null);
+			} catch (JSONException e) {
+				return Reply.Status(400);
+			}
+
+			Reply reply = Invoke(link, method, body, session, user);
+			JSONObject part = new JSONObject().put("id", id).put("status", reply.Status);
+			String data = reply.GetBody();
+			if (data != null) {
+				if (reply.Status == 200 && method.equals("GET")) part.put("etag", GetETag(session, data.getBytes(UTF8)));
+				part.put("body", reply.Json != null ? reply.Json : Parse(data));
+			}
+			responses.put(part);
+		}
+		return Reply.Json(new JSONObject().put("responses", responses));
+	}
+
+	/**
+	 * Opens an event stream and replays the events after its Last-Event-ID. The exchange is left open.
+	 */
+	private void Subscribe(HttpExchange exchange) throws IOException {
+		String lastEventId = exchange.getRequestHeaders().getFirst("Last-Event-ID");
+		Record(lastEventIds, lastEventId);
+		int after = 0;
+		try {
+			if (lastEventId != null) after = Integer.parseInt(lastEventId.trim());
+		} catch (NumberFormatException e) {
+			// Replay everything to streams with an id that we never sent
+		}
+
+		exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+		exchange.sendResponseHeaders(200, 0);
+		// Publish waits for the replay, so that the events on the stream stay in order
+		synchronized (exchange) {
+			StringBuilder replay = new StringBuilder(EVENT_RETRY);
+			synchronized (events) {
+				for (int i = Math.max(after, 0); i < events.size(); i++) replay.append(events.get(i));
+				streams.add(exchange);
+			}
+			Write(exchange, replay.toString());
+		}
+	}
+
+	/**
+	 * Writes to an event stream, and forgets the stream if it was closed.
+	 */
+	private void Write(HttpExchange stream, String text) {
+		synchronized (stream) {
+			try {
+				OutputStream out = stream.getResponseBody();
+				out.write(text.getBytes(UTF8));
+				out.flush();
+			} catch (IOException e) {
+				synchronized (events) {
+					streams.remove(stream);
+				}
+				stream.close();
+			}
+		}
+	}
+
+	/**
+	 * Sends a reply the way JsonServer.Send of the Web API does: tagged if it is a read, compressed if it is large
+	 * and encrypted if the request was.
+	 */
+	private void Send(HttpExchange exchange, Reply reply, Store.Session session, boolean encrypted, boolean read)
+			throws IOException, GeneralSecurityException {
+		Headers headers = exchange.getResponseHeaders();
+		if (reply.Session != null) headers.add("Set-Cookie", "session=" + reply.Session + "; Path=/");
+		int status = reply.Status;
+		String body = reply.GetBody();
+		byte[] data = body == null ? null : body.getBytes(UTF8);
+
+		// Tag successful reads and skip the body if the client already has it
+		if (data != null && status == 200 && read) {
+			String etag = GetETag(session, data);
+			headers.set("ETag", etag);
+			if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+				data = null;
+				status = 304;
+			}
+		}
+
+		// Like SendJSON of the Web API, only objects are sent as CBOR
+		String type = JSON;
+		String acceptType = exchange.getRequestHeaders().getFirst("Accept");
+		if (data != null && cborEnabled && acceptType != null && acceptType.contains(CborStreamReader.MIME_TYPE)) {
+			try {
+				data = CborWriter.Encode(reply.Json != null ? reply.Json : new JSONObject(body));
+				type = CborStreamReader.MIME_TYPE;
+			} catch (JSONException e) {
+				// Not an object, so it stays JSON
+			}
+		}
+		headers.set("Content-Type", type);
+		Record(responseTypes, type);
+
+		if (compressionEnabled) {
+			// Tell the client that it may compress its request bodies
+			headers.set("Accept-Encoding", "gzip");
+			// Compress large bodies before they are encrypted, because encrypted data doesn't compress
+			String accept = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+			if (data != null && data.length >= COMPRESSION_THRESHOLD && accept != null && accept.contains("gzip")) {
+				data = Gzip(data);
+				headers.set("Content-Encoding", "gzip");
+			}
+		}
+		String encoding = headers.getFirst("Content-Encoding");
+		Record(responseEncodings, encoding == null ? "identity" : encoding);
+
+		if (data != null && encrypted && session != null) {
+			// Keep the type of the plain data, because the client can't tell JSON and CBOR apart otherwise
+			headers.set("Content-Format", type);
+			headers.set("Content-Type", ENCRYPTED);
+			byte[] iv = new byte[CipherEngine.BLOCK_SIZE];
+			data = CipherEngine.Get().Encrypt(session.Key, data, 0, data.length, iv);
+			headers.set("Content-IV", Base64.Encode(iv));
+		}
+
+		// -1 sends no body, while 0 would mean a chunked body
+		exchange.sendResponseHeaders(status, data == null || data.length == 0 ? -1 : data.length);
+		if (data != null && data.length > 0) {
+			OutputStream out = exchange.getResponseBody();
+			out.write(data);
+			out.close();
+		}
+	}
+
+	private void Record(List<String> list, String value) {
+		if (recording) list.add(value);
+	}
+
+	private static List<String> Copy(List<String> list) {
+		synchronized (list) {
+			return new ArrayList<>(list);
+		}
+	}
+
+	/**
+	 * @return The data as JSON object if it is one, so that it isn't escaped inside the batch envelope.
+	 */
+	private static Object Parse(String data) {
+		try {
+			return new JSONObject(data);
+		} catch (JSONException e) {
+			return data;
+		}
+	}
+
+	/**
+	 * @return The ETag of a response, keyed with the session so that tags don't reveal data across sessions.
+	 */
+	private static String GetETag(Store.Session session, byte[] data) throws GeneralSecurityException {
+		byte[] hash;
+		if (session == null) hash = MessageDigest.getInstance("SHA-256").digest(data);
+		else {
+			Mac mac = Mac.getInstance("HmacSHA256");
+			mac.init(new SecretKeySpec(session.Key, "HmacSHA256"));
+			hash = mac.doFinal(data);
+		}
+		byte[] tag = new byte[16];
+		System.arraycopy(hash, 0, tag, 0, tag.length);
+		return '"' + Base64.Encode(tag) + '"';
+	}
+
+	/**
+	 * @return The value of a cookie in the Cookie header, or null.
+	 */
+	private static String GetCookie(Headers headers, String name) {
+		String cookies = headers.getFirst("Cookie");
+		if (cookies == null) return null;
+		for (String cookie : cookies.split(";")) {
+			int equals = cookie.indexOf('=');
+			if (equals != -1 && cookie.substring(0, equals).trim().equals(name)) return cookie.substring(equals + 1).trim();
+		}
+		return null;
+	}
+
+	/**
+	 * @return The value of a query parameter, or null.
+	 */
+	private static String GetQuery(HttpExchange exchange, String name) {
+		String query = exchange.getRequestURI().getQuery();
+		if (query == null) return null;
+		for (String parameter : query.split("&")) {
+			int equals = parameter.indexOf('=');
+			if (equals != -1 && parameter.substring(0, equals).equals(name)) return parameter.substring(equals + 1);
+		}
+		return null;
+	}
+
+	private static byte[] Gzip(byte[] data) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		GZIPOutputStream gzip = new GZIPOutputStream(out);
+		gzip.write(data);
+		gzip.close();
+		return out.toByteArray();
+	}
+
+	private static byte[] Read(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[4096];
+		int read;
+		while ((read = in.read(buffer)) != -1) out.write(buffer, 0, read);
+		return out.toByteArray();
+	}
+}
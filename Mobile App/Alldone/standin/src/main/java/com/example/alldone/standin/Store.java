@@ -0,0 +1,623 @@
+package com.example.alldone.standin;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * The tables of the Web API database, kept in memory. Reads run at the same time, while changes take turns.
+ */
+final class Store {
+	// The values of the Rank and AccessLevel enums of the Web API
+	static final int RANK_USER = 1;
+	static final int RANK_MODERATOR = 2;
+	static final int RANK_ADMIN = 3;
+	static final int ACCESS_USER = 1;
+
+	private static final long SESSION_LIFETIME = 2 * 60 * 60;
+	private static final long SHARE_CODE_LIFETIME = 7 * 24 * 60 * 60;
+	// The generated data was created in the weeks before this moment, so every run gets the same timestamps
+	private static final long SEED_EPOCH = 1571400000L;
+	private static final String[] WORDS = { "boodschappen", "afwas", "stofzuigen", "was", "ramen", "planten",
+			"vuilnis", "koken", "keuken", "badkamer", "zolder", "tuin", "fietsen", "post", "bestellen", "opruimen" };
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	static final class User {
+		final int Id;
+		final String Username;
+		final String Password;
+		final long Created;
+		final int AccessLevel = ACCESS_USER;
+
+		User(int id, String username, String password, long created) {
+			Id = id;
+			Username = username;
+			Password = password;
+			Created = created;
+		}
+	}
+
+	static final class Session {
+		final String Id;
+		final byte[] Key;
+		final long Expires;
+		private volatile Integer user;
+
+		Session(String id, byte[] key, Integer user, long expires) {
+			Id = id;
+			Key = key;
+			Expires = expires;
+			this.user = user;
+		}
+
+		/** @return The id of the user that logged in with this session, or null. */
+		Integer GetUser() { return user; }
+		void SetUser(int user) { this.user = user; }
+	}
+
+	static final class Group {
+		final int Id;
+		final int Creator;
+		final String Name;
+		final long Created;
+		final String Description;
+
+		Group(int id, int creator, String name, long created, String description) {
+			Id = id;
+			Creator = creator;
+			Name = name;
+			Created = created;
+			Description = description;
+		}
+
+		JSONObject ToJSON() throws JSONException {
+			JSONObject json = new JSONObject()
+					.put("Id", Id)
+					.put("Creator", Creator)
+					.put("Name", Name)
+					.put("Created", Created);
+			// Like the Web API, descriptions that are null are left out
+			if (Description != null) json.put("Description", Description);
+			return json;
+		}
+	}
+
+	static final class Task {
+		final int Id;
+		final int Group;
+		final int Creator;
+		final long Created;
+		final String Title;
+		final String Description;
+		final int Priority;
+
+		Task(int id, int group, int creator, long created, String title, String description, int priority) {
+			Id = id;
+			Group = group;
+			Creator = creator;
+			Created = created;
+			Title = title;
+			Description = description;
+			Priority = priority;
+		}
+
+		JSONObject ToJSON() throws JSONException {
+			JSONObject json = new JSONObject()
+					.put("Id", Id)
+					.put("Group", Group)
+					.put("Creator", Creator)
+					.put("Created", Created)
+					.put("Title", Title)
+					.put("Priority", Priority);
+			if (Description != null) json.put("Description", Description);
+			return json;
+		}
+	}
+
+	static final class ShareCode {
+		final int Group;
+		final String Code;
+		final long Created;
+
+		ShareCode(int group, String code, long created) {
+			Group = group;
+			Code = code;
+			Created = created;
+		}
+
+		boolean IsExpired() {
+			return Created + SHARE_CODE_LIFETIME < Now();
+		}
+	}
+
+	private static final class Enrollment {
+		final long Start;
+		long End;
+
+		Enrollment(long start, long end) {
+			Start = start;
+			End = end;
+		}
+	}
+
+	private static final class Change {
+		final long Id;
+		final int Task;
+		final boolean Deleted;
+
+		Change(long id, int task, boolean deleted) {
+			Id = id;
+			Task = task;
+			Deleted = deleted;
+		}
+	}
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	private final SecureRandom random = new SecureRandom();
+
+	private final Map<Integer, User> users = new HashMap<>();
+	private final Map<String, User> usersByName = new HashMap<>();
+	// Sessions are looked up on every request, so they don't wait for changes to the other tables
+	private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+	private final Map<Integer, Group> groups = new HashMap<>();
+	// The rank of every user that joined a group, by group. Creators aren't members of their own groups.
+	private final Map<Integer, Map<Integer, Integer>> members = new HashMap<>();
+	// The groups that every user created or joined
+	private final Map<Integer, Set<Integer>> groupsByUser = new HashMap<>();
+	private final Map<Integer, Task> tasks = new HashMap<>();
+	// The tasks of every group, ordered by id for paging
+	private final Map<Integer, TreeMap<Integer, Task>> tasksByGroup = new HashMap<>();
+	// The enrollments of every task by user, in the order they were made
+	private final Map<Integer, Map<Integer, Enrollment>> enrollments = new HashMap<>();
+	private final Map<String, ShareCode> shareCodes = new HashMap<>();
+	private final Map<Integer, ShareCode> shareCodesByGroup = new HashMap<>();
+	// The changes to the tasks of every group, ordered by id
+	private final Map<Integer, List<Change>> changes = new HashMap<>();
+	private long cursor;
+	private int nextUser = 1;
+	private int nextGroup = 1;
+	private int nextTask = 1;
+
+	Store(DataSet dataSet) {
+		Seed(dataSet);
+	}
+
+	/**
+	 * @return The current unix time in seconds.
+	 */
+	static long Now() {
+		return System.currentTimeMillis() / 1000;
+	}
+
+	private void Seed(DataSet dataSet) {
+		Random random = new Random(dataSet.Seed);
+		for (int i = 1; i <= dataSet.Users; i++)
+			AddUser(DataSet.GetUsername(i), DataSet.PASSWORD, SEED_EPOCH - 60 * 24 * 60 * 60 + i);
+
+		for (int creator = 1; creator <= dataSet.Users; creator++) {
+			for (int g = 0; g < dataSet.GroupsPerUser; g++) {
+				Group group = AddGroup(creator, WORDS[random.nextInt(WORDS.length)] + " " + creator + "-" + (g + 1),
+						g % 2 == 0 ? null : Words(random, dataSet.DescriptionLength),
+						SEED_EPOCH - 30 * 24 * 60 * 60 + random.nextInt(24 * 60 * 60));
+
+				// The creator and the members that joined, who may all create tasks and enroll in them
+				int[] people = new int[dataSet.MembersPerGroup + 1];
+				people[0] = creator;
+				for (int m = 1; m <= dataSet.MembersPerGroup; m++) {
+					people[m] = (creator - 1 + m) % dataSet.Users + 1;
+					Join(group.Id, people[m], m == 1 ? RANK_ADMIN : RANK_USER);
+				}
+
+				for (int t = 0; t < dataSet.TasksPerGroup; t++) {
+					long created = SEED_EPOCH - random.nextInt(28 * 24 * 60 * 60);
+					Task task = new Task(nextTask++, group.Id, people[random.nextInt(people.length)], created,
+							WORDS[random.nextInt(WORDS.length)] + " " + (t + 1),
+							random.nextInt(4) == 0 ? null : Words(random, dataSet.DescriptionLength), random.nextInt(4));
+					tasks.put(task.Id, task);
+					tasksByGroup.get(group.Id).put(task.Id, task);
+
+					Map<Integer, Enrollment> enrolled = new LinkedHashMap<>();
+					for (int e = 0; e < dataSet.EnrollmentsPerTask; e++) {
+						long start = created + random.nextInt(24 * 60 * 60);
+						enrolled.put(people[e], new Enrollment(start, e % 2 == 0 ? 0 : start + random.nextInt(4 * 60 * 60)));
+					}
+					if (!enrolled.isEmpty()) enrollments.put(task.Id, enrolled);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return Random words of at most the given amount of characters.
+	 */
+	private static String Words(Random random, int length) {
+		StringBuilder builder = new StringBuilder();
+		while (true) {
+			String word = WORDS[random.nextInt(WORDS.length)];
+			if (builder.length() + word.length() + 1 > length) break;
+			if (builder.length() > 0) builder.append(' ');
+			builder.append(word);
+		}
+		return builder.toString();
+	}
+
+	private String RandomHex(int bytes) {
+		byte[] data = new byte[bytes];
+		random.nextBytes(data);
+		char[] chars = new char[bytes * 2];
+		for (int i = 0; i < bytes; i++) {
+			chars[i * 2] = HEX[(data[i] & 0xFF) >>> 4];
+			chars[i * 2 + 1] = HEX[data[i] & 0x0F];
+		}
+		return new String(chars);
+	}
+
+	// ---- Users and sessions ----
+
+	/**
+	 * @return The new user, or null if the username is already taken.
+	 */
+	User AddUser(String username, String password) {
+		return AddUser(username, password, Now());
+	}
+	private User AddUser(String username, String password, long created) {
+		lock.writeLock().lock();
+		try {
+			if (usersByName.containsKey(username)) return null;
+			User user = new User(nextUser++, username, password, created);
+			users.put(user.Id, user);
+			usersByName.put(username, user);
+			groupsByUser.put(user.Id, new TreeSet<Integer>());
+			return user;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * @return The user with the given username and password, or null if there is none.
+	 */
+	User GetUser(String username, String password) {
+		lock.readLock().lock();
+		try {
+			User user = usersByName.get(username);
+			return user != null && user.Password.equals(password) ? user : null;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	User GetUser(int id) {
+		lock.readLock().lock();
+		try {
+			return users.get(id);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Creates a session with a new 256-bit AES key.
+	 * @param user The id of the user that logged in, or null for a session to log in with later.
+	 */
+	Session CreateSession(Integer user) {
+		byte[] key = new byte[32];
+		random.nextBytes(key);
+		Session session = new Session(RandomHex(16), key, user, Now() + SESSION_LIFETIME);
+		sessions.put(session.Id, session);
+		return session;
+	}
+
+	/**
+	 * @return The session with the given id, or null if there is none or it expired.
+	 */
+	Session GetSession(String id) {
+		Session session = sessions.get(id);
+		if (session == null || session.Expires >= Now()) return session;
+		sessions.remove(id);
+		return null;
+	}
+
+	// ---- Groups ----
+
+	/**
+	 * @return The groups that the user created or joined, ordered by id.
+	 */
+	List<Group> GetGroups(int user) {
+		lock.readLock().lock();
+		try {
+			List<Group> results = new ArrayList<>();
+			Set<Integer> ids = groupsByUser.get(user);
+			if (ids != null) for (int id : ids) results.add(groups.get(id));
+			return results;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	Group GetGroup(int id) {
+		lock.readLock().lock();
+		try {
+			return groups.get(id);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	Group AddGroup(int creator, String name, String description) {
+		return AddGroup(creator, name, description, Now());
+	}
+	private Group AddGroup(int creator, String name, String description, long created) {
+		lock.writeLock().lock();
+		try {
+			Group group = new Group(nextGroup++, creator, name, created, description);
+			groups.put(group.Id, group);
+			members.put(group.Id, new HashMap<Integer, Integer>());
+			tasksByGroup.put(group.Id, new TreeMap<Integer, Task>());
+			changes.put(group.Id, new ArrayList<Change>());
+			groupsByUser.get(creator).add(group.Id);
+			return group;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * @return The rank of the user in the group, or null if the user didn't join it.
+	 */
+	Integer GetRank(int group, int user) {
+		lock.readLock().lock();
+		try {
+			Map<Integer, Integer> ranks = members.get(group);
+			return ranks == null ? null : ranks.get(user);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return Whether the user joined the group, which is false if the user created or already joined it.
+	 */
+	boolean Join(int group, int user, int rank) {
+		lock.writeLock().lock();
+		try {
+			Map<Integer, Integer> ranks = members.get(group);
+			if (groups.get(group).Creator == user || ranks.containsKey(user)) return false;
+			ranks.put(user, rank);
+			groupsByUser.get(user).add(group);
+			return true;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * @return The share code of the group, after creating one if it had none or it expired.
+	 * @param created Set to whether the code was created.
+	 */
+	ShareCode GetShareCode(int group, boolean[] created) {
+		lock.writeLock().lock();
+		try {
+			ShareCode code = shareCodesByGroup.get(group);
+			if (code != null && !code.IsExpired()) {
+				created[0] = false;
+				return code;
+			}
+			if (code != null) shareCodes.remove(code.Code);
+
+			// Unique codes of 8 characters, like the start of a GUID in Base64
+			do code = new ShareCode(group, RandomHex(4), Now());
+			while (shareCodes.containsKey(code.Code));
+			shareCodes.put(code.Code, code);
+			shareCodesByGroup.put(group, code);
+			created[0] = true;
+			return code;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * @return The share code, expired or not, or null if it doesn't exist.
+	 */
+	ShareCode FindShareCode(String code) {
+		lock.readLock().lock();
+		try {
+			return shareCodes.get(code);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	void RemoveShareCode(ShareCode code) {
+		lock.writeLock().lock();
+		try {
+			shareCodes.remove(code.Code);
+			if (shareCodesByGroup.get(code.Group) == code) shareCodesByGroup.remove(code.Group);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	// ---- Tasks ----
+
+	Task GetTask(int id) {
+		lock.readLock().lock();
+		try {
+			return tasks.get(id);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return The id of the latest change to any task, to pass as "since" later.
+	 */
+	long GetCursor() {
+		lock.readLock().lock();
+		try {
+			return cursor;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @param after Only tasks with an id greater than this one are returned.
+	 * @param offset The amount of tasks to skip.
+	 * @param limit The maximum amount of tasks to return.
+	 * @return A page of the tasks of the group, ordered by id.
+	 */
+	List<Task> GetTasks(int group, int after, int offset, int limit) {
+		lock.readLock().lock();
+		try {
+			List<Task> results = new ArrayList<>();
+			TreeMap<Integer, Task> all = tasksByGroup.get(group);
+			if (all == null) return results;
+			for (Task task : all.tailMap(after, false).values()) {
+				if (offset > 0) offset--;
+				else if (results.size() < limit) results.add(task);
+				else break;
+			}
+			return results;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @param since The cursor that the client got earlier.
+	 * @param until The cursor that the response contains.
+	 * @param deleted Receives the ids of the tasks that were deleted in between.
+	 * @return The tasks of the group that were created or changed in between, ordered by id.
+	 */
+	List<Task> GetChangedTasks(int group, long since, long until, List<Integer> deleted) {
+		lock.readLock().lock();
+		try {
+			List<Task> results = new ArrayList<>();
+			List<Change> log = changes.get(group);
+			if (log == null) return results;
+			// Only the latest change of every task matters
+			TreeMap<Integer, Change> latest = new TreeMap<>();
+			for (Change change : log)
+				if (change.Id > since && change.Id <= until) latest.put(change.Task, change);
+			for (Change change : latest.values()) {
+				Task task = change.Deleted ? null : tasks.get(change.Task);
+				if (task == null) deleted.add(change.Task);
+				else results.add(task);
+			}
+			return results;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	Task AddTask(int group, int creator, String title, String description, int priority) {
+		lock.writeLock().lock();
+		try {
+			Task task = new Task(nextTask++, group, creator, Now(), title, description, priority);
+			tasks.put(task.Id, task);
+			tasksByGroup.get(group).put(task.Id, task);
+			changes.get(group).add(new Change(++cursor, task.Id, false));
+			return task;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	void DeleteTask(Task task) {
+		lock.writeLock().lock();
+		try {
+			if (tasks.remove(task.Id) == null) return;
+			tasksByGroup.get(task.Group).remove(task.Id);
+			enrollments.remove(task.Id);
+			changes.get(task.Group).add(new Change(++cursor, task.Id, true));
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	// ---- Enrollments ----
+
+	/**
+	 * @return The username, start and end of every enrollment in the task, like the taskenroll endpoint sends them.
+	 */
+	JSONArray GetEnrollments(int task) throws JSONException {
+		lock.readLock().lock();
+		try {
+			JSONArray results = new JSONArray();
+			Map<Integer, Enrollment> enrolled = enrollments.get(task);
+			if (enrolled == null) return results;
+			for (Map.Entry<Integer, Enrollment> entry : enrolled.entrySet()) {
+				JSONObject json = new JSONObject()
+						.put("Username", users.get(entry.getKey()).Username)
+						.put("Start", entry.getValue().Start);
+				if (entry.getValue().End != 0) json.put("End", entry.getValue().End);
+				results.put(json);
+			}
+			return results;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * @return Whether the user was enrolled, which is false if the task doesn't exist or the user already enrolled.
+	 */
+	boolean Enroll(int task, int user) {
+		lock.writeLock().lock();
+		try {
+			if (!tasks.containsKey(task)) return false;
+			Map<Integer, Enrollment> enrolled = enrollments.get(task);
+			if (enrolled == null) enrollments.put(task, enrolled = new LinkedHashMap<>());
+			if (enrolled.containsKey(user)) return false;
+			enrolled.put(user, new Enrollment(Now(), 0));
+			return true;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * @return Whether the enrollment of the user existed and was deleted.
+	 */
+	boolean Unenroll(int task, int user) {
+		lock.writeLock().lock();
+		try {
+			Map<Integer, Enrollment> enrolled = enrollments.get(task);
+			return enrolled != null && enrolled.remove(user) != null;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * @return Whether the enrollment of the user existed and was finished, which is false if it already was.
+	 */
+	boolean FinishEnrollment(int task, int user) {
+		lock.writeLock().lock();
+		try {
+			Map<Integer, Enrollment> enrolled = enrollments.get(task);
+			Enrollment enrollment = enrolled == null ? null : enrolled.get(user);
+			if (enrollment == null || enrollment.End != 0) return false;
+			enrollment.End = Now();
+			return true;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+}
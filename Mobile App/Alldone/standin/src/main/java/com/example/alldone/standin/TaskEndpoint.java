@@ -0,0 +1,102 @@
+package com.example.alldone.standin;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lists the tasks of a group by page or as the changes since a cursor, and creates and deletes tasks.
+ */
+final class TaskEndpoint extends Endpoint {
+	TaskEndpoint(Store store) {
+		super(store);
+	}
+
+	@Override
+	Reply GET(Request request) throws JSONException {
+		JSONObject json = request.Json;
+		Reply missing = Missing(json, "group");
+		if (missing != null) return missing;
+		Integer group = GetInt(json, "group", 0);
+		if (group == null) return Invalid("group");
+
+		List<String> invalid = new ArrayList<>();
+		Integer offset = GetInt(json, "offset", 0);
+		Integer limit = GetInt(json, "limit", 1);
+		Integer after = GetInt(json, "after", 0);
+		Long since = GetLong(json, "since", 0);
+		if (json.has("offset") && offset == null) invalid.add("offset");
+		if (json.has("limit") && limit == null) invalid.add("limit");
+		if (json.has("after") && after == null) invalid.add("after");
+		if (json.has("since") && since == null) invalid.add("since");
+		if (!invalid.isEmpty()) return Invalid(invalid.toArray(new String[0]));
+
+		// Get the cursor before the tasks, so that changes made in between are sent again instead of missed
+		long cursor = store.GetCursor();
+		if (since != null) {
+			// A cursor from the future was handed out by a different server
+			if (since > cursor) return Reply.Status(410);
+			List<Integer> deleted = new ArrayList<>();
+			List<Store.Task> changed = store.GetChangedTasks(group, since, cursor, deleted);
+			return Reply.Json(new JSONObject()
+					.put("results", ToJSON(changed))
+					.put("deleted", new JSONArray(deleted))
+					.put("cursor", cursor));
+		}
+
+		List<Store.Task> tasks = store.GetTasks(group, after == null ? -1 : after, offset == null ? 0 : offset,
+				limit == null ? Integer.MAX_VALUE : limit);
+		return Reply.Json(new JSONObject()
+				.put("results", ToJSON(tasks))
+				.put("cursor", cursor));
+	}
+
+	private static JSONArray ToJSON(List<Store.Task> tasks) throws JSONException {
+		JSONArray results = new JSONArray();
+		for (Store.Task task : tasks) results.put(task.ToJSON());
+		return results;
+	}
+
+	@Override
+	Reply POST(Request request) throws JSONException {
+		JSONObject json = request.Json;
+		Reply missing = Missing(json, "group", "title");
+		if (missing != null) return missing;
+
+		List<String> invalid = new ArrayList<>();
+		Integer group = GetInt(json, "group", 0);
+		if (group == null || store.GetGroup(group) == null) invalid.add("group");
+		String title = GetText(json, "title");
+		if (title == null) invalid.add("title");
+		Object description = json.opt("description");
+		if (description != null && !(description instanceof String)) invalid.add("description");
+		Integer priority = json.has("priority") ? GetInt(json, "priority", 0) : Integer.valueOf(0);
+		if (priority == null || priority > 3) invalid.add("priority");
+		if (!invalid.isEmpty()) return Invalid(invalid.toArray(new String[0]));
+
+		Store.Task task = store.AddTask(group, request.User.Id, title, (String) description, priority);
+		return Reply.Json(new JSONObject().put("id", task.Id), 201);
+	}
+
+	@Override
+	Reply DELETE(Request request) throws JSONException {
+		Reply missing = Missing(request.Json, "task");
+		if (missing != null) return missing;
+		Integer id = GetInt(request.Json, "task", 0);
+		if (id == null) return Invalid("task");
+
+		Store.Task task = store.GetTask(id);
+		if (task == null) return Reply.Status(400);
+		// Only the creator of the task and moderators and admins of its group may delete it
+		if (task.Creator != request.User.Id) {
+			Integer rank = store.GetRank(task.Group, request.User.Id);
+			if (rank == null || rank == Store.RANK_USER) return Reply.Status(401);
+		}
+
+		store.DeleteTask(task);
+		return Reply.Status(204);
+	}
+}
@@ -0,0 +1,62 @@
+package com.example.alldone.standin;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Lists the enrollments in a task, and enrolls the user in a task, deletes the enrollment or finishes it.
+ */
+final class TaskEnrollEndpoint extends Endpoint {
+	TaskEnrollEndpoint(Store store) {
+		super(store);
+	}
+
+	/**
+	 * @return A 422 if the request doesn't contain a valid task id, or null if it does.
+	 */
+	private static Reply Validate(Request request) throws JSONException {
+		Reply missing = Missing(request.Json, "task");
+		if (missing != null) return missing;
+		return GetInt(request.Json, "task", 0) == null ? Invalid("task") : null;
+	}
+
+	@Override
+	Reply GET(Request request) throws JSONException {
+		Reply invalid = Validate(request);
+		if (invalid != null) return invalid;
+		int task = GetInt(request.Json, "task", 0);
+
+		JSONArray results = store.GetEnrollments(task);
+		if (results.length() == 0) return Reply.Status(204);
+		return Reply.Json(new JSONObject().put("results", results));
+	}
+
+	@Override
+	Reply POST(Request request) throws JSONException {
+		Reply invalid = Validate(request);
+		if (invalid != null) return invalid;
+		int task = GetInt(request.Json, "task", 0);
+		if (store.GetTask(task) == null) return Invalid("task");
+
+		return Reply.Status(store.Enroll(task, request.User.Id) ? 204 : 409);
+	}
+
+	@Override
+	Reply DELETE(Request request) throws JSONException {
+		Reply invalid = Validate(request);
+		if (invalid != null) return invalid;
+		int task = GetInt(request.Json, "task", 0);
+
+		return Reply.Status(store.Unenroll(task, request.User.Id) ? 204 : 304);
+	}
+
+	@Override
+	Reply PATCH(Request request) throws JSONException {
+		Reply invalid = Validate(request);
+		if (invalid != null) return invalid;
+		int task = GetInt(request.Json, "task", 0);
+
+		return Reply.Status(store.FinishEnrollment(task, request.User.Id) ? 204 : 400);
+	}
+}
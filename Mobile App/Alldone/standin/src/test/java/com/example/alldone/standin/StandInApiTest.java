@@ -0,0 +1,120 @@
+package com.example.alldone.standin;
+
+import com.example.alldone.Batch;
+import com.example.alldone.Client;
+import com.example.alldone.Response;
+import com.example.alldone.model.Enrollment;
+import com.example.alldone.model.Group;
+import com.example.alldone.model.Task;
+import com.example.alldone.net.Base64;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class StandInApiTest {
+    private StandInApi api;
+    private Client client;
+
+    @Before
+    public void setUp() throws Exception {
+        api = new StandInApi(DataSet.SMALL);
+        client = new Client(api.GetUrl());
+    }
+
+    @After
+    public void tearDown() {
+        api.close();
+    }
+
+    /**
+     * Logs in with a session from the session endpoint, so that requests with a body are encrypted.
+     */
+    private void login(int user) {
+        Response session = client.Send("session", "GET");
+        assertEquals(201, session.StatusCode);
+        client.SetSession(session.GetString("Id"), Base64.Decode(session.GetString("Key")));
+
+        Response login = client.Send("login", "POST",
+                "{\"username\":\"" + DataSet.GetUsername(user) + "\",\"password\":\"" + DataSet.PASSWORD + "\"}");
+        assertEquals(200, login.StatusCode);
+        assertEquals(client.GetSession(), login.GetString("sessionId"));
+    }
+
+    @Test
+    public void encryptedReads_returnTheDataSet() {
+        login(1);
+
+        List<Group> groups = client.Send("group", "GET").GetGroups();
+        // Its own group, and the groups of the users before it that it joined
+        assertEquals(1 + DataSet.SMALL.MembersPerGroup, groups.size());
+
+        Response tasks = client.Send("task", "GET", "{\"group\":" + groups.get(0).getId() + "}");
+        assertEquals(200, tasks.StatusCode);
+        assertEquals(DataSet.SMALL.TasksPerGroup, tasks.GetTasks().size());
+
+        Response page = client.Send("task", "GET", "{\"group\":" + groups.get(0).getId() + ",\"limit\":5,\"after\":3}");
+        List<Task> paged = page.GetTasks();
+        assertEquals(5, paged.size());
+        assertEquals(4, paged.get(0).getId());
+    }
+
+    @Test
+    public void enrollAndFinish_showUpInTheEnrollments() {
+        login(2);
+        int task = client.Send("task", "POST", "{\"group\":1,\"title\":\"Afwas\",\"priority\":2}").GetJSON().optInt("id");
+        assertTrue(task > 0);
+
+        assertEquals(204, client.Send("taskenroll", "POST", "{\"task\":" + task + "}").StatusCode);
+        assertEquals(409, client.Send("taskenroll", "POST", "{\"task\":" + task + "}").StatusCode);
+        assertEquals(204, client.Send("taskenroll", "PATCH", "{\"task\":" + task + "}").StatusCode);
+
+        List<Enrollment> enrollments = client.Send("taskenroll", "GET", "{\"task\":" + task + "}").GetEnrollments();
+        assertEquals(1, enrollments.size());
+        assertEquals(DataSet.GetUsername(2), enrollments.get(0).getUsername());
+    }
+
+    @Test
+    public void shareCode_letsOtherUsersJoin() {
+        login(1);
+        Response code = client.Send("groupsharing", "GET", "{\"group\":1}");
+        assertEquals(201, code.StatusCode);
+        assertEquals(200, client.Send("groupsharing", "GET", "{\"group\":1}").StatusCode);
+
+        login(DataSet.SMALL.Users);
+        String join = "{\"code\":\"" + code.GetString("code") + "\"}";
+        assertEquals(204, client.Send("groupsharing", "POST", join).StatusCode);
+        assertEquals(409, client.Send("groupsharing", "POST", join).StatusCode);
+    }
+
+    @Test
+    public void requests_needALoginAndAValidBody() {
+        assertEquals(401, client.Send("group", "GET").StatusCode);
+        assertEquals(201, client.Send("register", "POST", "{\"username\":\"nieuw\",\"password\":\"geheim\"}").StatusCode);
+        assertEquals(409, client.Send("register", "POST", "{\"username\":\"nieuw\",\"password\":\"geheim\"}").StatusCode);
+        assertEquals(422, client.Send("register", "POST", "{\"username\":\"\"}").StatusCode);
+        assertEquals(401, client.Send("login", "POST", "{\"username\":\"nieuw\",\"password\":\"fout\"}").StatusCode);
+        assertEquals(404, client.Send("missing", "GET").StatusCode);
+    }
+
+    @Test
+    public void batch_answersEveryRequestWithTheSessionOfTheBatch() {
+        login(1);
+        Batch batch = new Batch(client);
+        batch.Add("group", "GET");
+        batch.Add("task", "GET", "{\"group\":1}");
+        batch.Add("missing", "GET");
+        List<Response> responses = batch.Send();
+
+        assertEquals(1 + DataSet.SMALL.MembersPerGroup, responses.get(0).GetGroups().size());
+        assertEquals(DataSet.SMALL.TasksPerGroup, responses.get(1).GetTasks().size());
+        assertEquals(404, responses.get(2).StatusCode);
+        assertTrue(client.IsBatchSupported());
+        // The three requests went as one, after the two to log in
+        assertEquals(3, api.GetRequestCount());
+    }
+}
@@ -0,0 +1,20 @@
+﻿using MySQL.Modeling;
+using System;
+
+namespace API.Database
+{
+	/// <summary>
+	/// An entry in the change log of the tasks of a group. Clients that keep a copy of a group's tasks use the id of the
+	/// last entry they have seen as a cursor, and only download the tasks that changed after it.
+	/// </summary>
+	[Table("task_changes")]
+	public sealed class TaskChange : ItemAdapter
+	{
+		[AutoIncrement]
+		public long? Id { get; set; }
+		public int Group { get; set; }
+		public int Task { get; set; }
+		public bool Deleted { get; set; } = false;
+		public long Time { get; set; } = DateTimeOffset.Now.ToUnixTimeSeconds();
+	}
+}
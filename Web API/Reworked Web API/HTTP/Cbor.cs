@@ -0,0 +1,124 @@
+﻿using Newtonsoft.Json.Linq;
+using System;
+using System.IO;
+using System.Text;
+
+namespace API.HTTP
+{
+	/// <summary>
+	/// A static class that encodes JSON values as CBOR (RFC 7049), a binary format with the same data model as JSON.
+	/// </summary>
+	/// <remarks>
+	/// CBOR skips the text parsing of numbers and escaped strings, and every string and container is prefixed with its
+	/// length, which makes it both smaller and faster to decode on the client. Only definite lengths are written.
+	/// </remarks>
+	public static class Cbor
+	{
+		/// <summary>
+		/// The MIME type of CBOR data.
+		/// </summary>
+		public const string MimeType = "application/cbor";
+
+		// Major types of the initial byte of every item
+		private const byte UnsignedInteger = 0 << 5;
+		private const byte NegativeInteger = 1 << 5;
+		private const byte ByteString = 2 << 5;
+		private const byte TextString = 3 << 5;
+		private const byte Array = 4 << 5;
+		private const byte Map = 5 << 5;
+		private const byte Simple = 7 << 5;
+
+		/// <summary>
+		/// Encodes a JSON value as CBOR.
+		/// </summary>
+		/// <param name="token">The value to encode.</param>
+		/// <returns>The encoded value.</returns>
+		public static byte[] Encode(JToken token)
+		{
+			if (token is null) throw new ArgumentNullException(nameof(token));
+
+			using var mem = new MemoryStream();
+			Write(mem, token);
+			return mem.ToArray();
+		}
+
+		private static void Write(Stream stream, JToken token)
+		{
+			switch (token.Type)
+			{
+				case JTokenType.Object:
+					var obj = (JObject)token;
+					WriteHeader(stream, Map, (ulong)obj.Count);
+					foreach (var property in obj.Properties())
+					{
+						WriteString(stream, property.Name);
+						Write(stream, property.Value);
+					}
+					break;
+				case JTokenType.Array:
+					var array = (JArray)token;
+					WriteHeader(stream, Array, (ulong)array.Count);
+					foreach (var item in array) Write(stream, item);
+					break;
+				case JTokenType.Integer:
+					var value = token.Value<long>();
+					// Negative integers are stored as -1 - n, so they need no sign bit
+					if (value >= 0) WriteHeader(stream, UnsignedInteger, (ulong)value);
+					else WriteHeader(stream, NegativeInteger, (ulong)(-1 - value));
+					break;
+				case JTokenType.Float:
+					var bytes = BitConverter.GetBytes(token.Value<double>());
+					if (BitConverter.IsLittleEndian) System.Array.Reverse(bytes);
+					stream.WriteByte(Simple | 27);
+					stream.Write(bytes);
+					break;
+				case JTokenType.Boolean:
+					stream.WriteByte((byte)(Simple | (token.Value<bool>() ? 21 : 20)));
+					break;
+				case JTokenType.Null:
+				case JTokenType.Undefined:
+					stream.WriteByte(Simple | 22);
+					break;
+				case JTokenType.Bytes:
+					var data = token.Value<byte[]>();
+					WriteHeader(stream, ByteString, (ulong)data.Length);
+					stream.Write(data);
+					break;
+				case JTokenType.String:
+					WriteString(stream, token.Value<string>());
+					break;
+				case JTokenType.Date:
+					// Use the same ISO 8601 text that the JSON writer uses, which never needs escaping
+					WriteString(stream, token.ToString(Newtonsoft.Json.Formatting.None).Trim('"'));
+					break;
+				default:
+					// Other values that JSON writes as strings, such as guids, uris and time spans
+					WriteString(stream, token.ToString());
+					break;
+			}
+		}
+
+		private static void WriteString(Stream stream, string value)
+		{
+			var bytes = Encoding.UTF8.GetBytes(value);
+			WriteHeader(stream, TextString, (ulong)bytes.Length);
+			stream.Write(bytes);
+		}
+
+		/// <summary>
+		/// Writes the initial byte of an item, followed by its argument in as few bytes as possible.
+		/// </summary>
+		private static void WriteHeader(Stream stream, byte majorType, ulong argument)
+		{
+			if (argument < 24)
+			{
+				stream.WriteByte((byte)(majorType | argument));
+				return;
+			}
+
+			int length = argument <= byte.MaxValue ? 1 : argument <= ushort.MaxValue ? 2 : argument <= uint.MaxValue ? 4 : 8;
+			stream.WriteByte((byte)(majorType | (length == 1 ? 24 : length == 2 ? 25 : length == 4 ? 26 : 27)));
+			for (int i = length - 1; i >= 0; i--) stream.WriteByte((byte)(argument >> (i * 8)));
+		}
+	}
+}
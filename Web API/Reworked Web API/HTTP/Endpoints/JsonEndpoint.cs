@@ -55,6 +55,15 @@ namespace API.HTTP.Endpoints
 				if (Request.ContentLength64 == 0) content = new JObject();
 				else
 				{
+					// Only gzip is supported for request bodies, which clients learn from our Accept-Encoding header
+					var contentEncoding = Request.Headers["Content-Encoding"];
+					var compressed = "gzip".Equals(contentEncoding, StringComparison.OrdinalIgnoreCase);
+					if (contentEncoding != null && !compressed && !"identity".Equals(contentEncoding, StringComparison.OrdinalIgnoreCase))
+					{
+						Server.SendError(HttpStatusCode.UnsupportedMediaType);
+						return;
+					}
+
 					string body;
 					// If the data isn't a json, expect encoded data
 					if (Request.ContentType != "application/json")
@@ -74,8 +83,17 @@ namespace API.HTTP.Endpoints
 						Request.InputStream.CopyTo(mem);
 						mem.Close();
 
-						// Decrypt the body
-						body = Encoding.UTF8.GetString(Utils.AESDecrypt(CurrentSession, mem.ToArray(), iv));
+						// Decrypt the body, and decompress it if it was compressed before it was encrypted
+						var data = Utils.AESDecrypt(CurrentSession, mem.ToArray(), iv);
+						if (compressed) data = Utils.GzipDecompress(data);
+						body = Encoding.UTF8.GetString(data);
+					}
+					else if (compressed)
+					{
+						// Decompress all bytes from the inputstream
+						using var mem = new MemoryStream();
+						Request.InputStream.CopyTo(mem);
+						body = Request.ContentEncoding.GetString(Utils.GzipDecompress(mem.ToArray()));
 					}
 					else
 					{
@@ -92,6 +110,18 @@ namespace API.HTTP.Endpoints
 				Server.SendError(HttpStatusCode.BadRequest);
 				return;
 			}
+			catch (Utils.DataTooLargeException)
+			{
+				// Send RequestEntityTooLarge if the body inflates to more than any request needs
+				Server.SendError(HttpStatusCode.RequestEntityTooLarge);
+				return;
+			}
+			catch (InvalidDataException)
+			{
+				// Send BadRequest if the body claims to be compressed but isn't
+				Server.SendError(HttpStatusCode.BadRequest);
+				return;
+			}
 			var parameters = SplitQuery(Request);
 
 			// Get the right method from the endpoint using Reflection
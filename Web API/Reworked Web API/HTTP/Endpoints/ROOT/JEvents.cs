@@ -0,0 +1,35 @@
+﻿using API.Attributes;
+using Newtonsoft.Json.Linq;
+using System.Collections.Generic;
+
+namespace API.HTTP.Endpoints.ROOT
+{
+	[RequiresLogin]
+	[EndpointUrl("/events")]
+	public sealed class JEvents : JsonEndpoint
+	{
+		/// <summary>
+		/// Opens a server-sent event stream with the changes to the groups of the current user. The response stays open
+		/// until the client closes it.
+		/// 
+		/// Optional headers:
+		///		- Last-Event-ID : The id of the last event the client received. Missed events are sent first.
+		///	
+		/// Sends the events:
+		///		- task       : {"group", "task": {...}} when a task was created, or {"group", "deleted": id} when it was deleted.
+		///		- enrollment : {"group", "task", "results": [...]} with every enrollment of a task after it changed.
+		///		- reset      : Sent when missed events could not be replayed. The client should reload its data.
+		/// </summary>
+		public override void GET(JObject json, Dictionary<string, string> parameters)
+		{
+			long? lastEventId = long.TryParse(Request.Headers["Last-Event-ID"], out var id) ? id : (long?)null;
+
+			Response.StatusCode = 200;
+			Response.ContentType = "text/event-stream";
+			Response.SendChunked = true;
+			Response.AddHeader("Cache-Control", "no-cache");
+
+			EventHub.Subscribe(Server.Detach(), CurrentUser.Id.Value, lastEventId);
+		}
+	}
+}
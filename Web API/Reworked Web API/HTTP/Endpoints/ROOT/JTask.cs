@@ -24,10 +24,20 @@ namespace API.HTTP.Endpoints
 		/// Optional JSON arguments are:
 		///		- offset [int] : The amount of tasks to skip before returning the tasklist. May not be less than 0.
 		///		- limit [int]  : The maximum amount of tasks to return. May not be less than 1.
+		///		- after [int]  : Only return tasks with an id greater than this one. Used as a paging cursor instead of
+		///						 offset, because it doesn't shift when tasks are added or removed between pages.
+		///		- since [long] : A change cursor from an earlier response. Only the tasks that were created or changed
+		///						 since then are returned, along with the ids of the deleted ones. Overrides the other
+		///						 optional arguments.
+		///		
+		/// Every response contains a "cursor" to pass as "since" in the next request. A client that pages through the
+		/// whole list should keep the cursor of its first page, so changes made while paging are sent again.
 		///		
 		/// Responds with:
-		///		- 200 "OK"					 : Sent along with a JSON containing an array of tasks.
+		///		- 200 "OK"					 : Sent along with a JSON containing an array of tasks, ordered by id, and the
+		///									   cursor. Responses to "since" also contain a "deleted" array of task ids.
 		///		- 409 "Conflict"			 : Sent when the username is already taken.
+		///		- 410 "Gone"				 : Sent when the "since" cursor is unknown, so the whole list must be loaded again.
 		///		- 422 "Unprocessable Entity" : Sent when the arguments failed validation. A JSON with extra info is also sent.
 		/// </summary>
 		public override void GET(JObject json, Dictionary<string, string> parameters)
@@ -40,20 +50,81 @@ namespace API.HTTP.Endpoints
 			// Validate optional parameters
 			if (!ValidateParams(json, ValidationMode.Optional,
 				("offset", x => x.Value<int>() >= 0), // Must be int and not less than 0
-				("limit", x => x.Value<int>() >= 1))) // Must be int and not less than 1
+				("limit", x => x.Value<int>() >= 1), // Must be int and not less than 1
+				("after", x => x.Value<int>() >= 0), // Must be int and not less than 0
+				("since", x => x.Value<long>() >= 0))) // Must be long and not less than 0
 				return;
 
 			// Get parameters
 			var group_id = json["group"].Value<int>();
 			var offset = json?["offset"]?.Value<int>();
 			var limit = json?["limit"]?.Value<int>();
+			var after = json?["after"]?.Value<int>();
+			var since = json?["since"]?.Value<long>();
+
+			// Get the cursor before the tasks, so that changes made in between are sent again instead of missed
+			var cursor = Database.Select<TaskChange>("1 ORDER BY `id` DESC LIMIT 1").FirstOrDefault()?.Id ?? 0;
+
+			if (since.HasValue)
+			{
+				SendChanges(group_id, since.Value, cursor);
+				return;
+			}
+
+			// Get tasks belonging to the specified group with a certain limit, in a stable order so pages don't overlap
+			var results = Database.Select<Task>($"`group` = {group_id} AND `id` > {after ?? -1} ORDER BY `id` LIMIT {offset ?? 0},{limit ?? long.MaxValue}");
+
+			// Send json containing the results
+			Server.SendJSON(new JObject() {
+				{"results", ToJArray(results) },
+				{"cursor", cursor }
+			});
+		}
+
+		/// <summary>
+		/// Sends the tasks of a group that were created or changed after a change cursor, and the ids of the deleted ones.
+		/// </summary>
+		/// <param name="group">The id of the group.</param>
+		/// <param name="since">The cursor sent by the client.</param>
+		/// <param name="cursor">The id of the latest change.</param>
+		private void SendChanges(int group, long since, long cursor)
+		{
+			// A cursor from the future was handed out by a different database
+			if (since > cursor)
+			{
+				Server.SendError(HttpStatusCode.Gone);
+				return;
+			}
+
+			// Only the latest change of every task matters
+			var changes = new Dictionary<int, TaskChange>();
+			foreach (var change in Database.Select<TaskChange>($"`group` = {group} AND `id` > {since} AND `id` <= {cursor} ORDER BY `id`"))
+				changes[change.Task] = change;
+
+			var changed = changes.Values.Where(x => !x.Deleted).Select(x => x.Task).ToList();
+			var tasks = changed.Any()
+				? Database.Select<Task>($"`group` = {group} AND `id` IN ({string.Join(",", changed)}) ORDER BY `id`").ToList()
+				: new List<Task>();
 
-			// Get tasks belonging to the specified group with a certain limit
-			var results = Database.Select<Task>($"`group` = {group_id} LIMIT {offset ?? 0},{limit ?? long.MaxValue}");
+			// Tasks that no longer exist were deleted, even if their deletion wasn't logged
+			var deleted = new JArray();
+			foreach (var task in changes.Keys.Except(tasks.Select(x => x.Id.Value)).OrderBy(x => x))
+				deleted.Add(task);
 
-			// Create and fill a result JArray
+			Server.SendJSON(new JObject() {
+				{"results", ToJArray(tasks) },
+				{"deleted", deleted },
+				{"cursor", cursor }
+			});
+		}
+
+		/// <summary>
+		/// Converts tasks to a JArray, leaving out descriptions that are null.
+		/// </summary>
+		private static JArray ToJArray(IEnumerable<Task> tasks)
+		{
 			var resultArray = new JArray();
-			foreach (var task in results)
+			foreach (var task in tasks)
 			{
 				var entry = (JObject)task;
 				// remove the description if it is null
@@ -61,11 +132,7 @@ namespace API.HTTP.Endpoints
 					entry.Remove("Description");
 				resultArray.Add(entry);
 			}
-
-			// Send json containing the results
-			Server.SendJSON(new JObject() {
-				{"results", resultArray }
-			});
+			return resultArray;
 		}
 
 		/// <summary>
@@ -122,6 +189,14 @@ namespace API.HTTP.Endpoints
 
 			// Insert the task (and update it's id)
 			Database.Insert(task);
+			Database.Insert(new TaskChange() { Group = group, Task = task.Id.Value });
+
+			// Tell the other members about the new task
+			var entry = (JObject)task;
+			if (task.Description == null) entry.Remove("Description");
+			EventHub.Publish(group, "task", new JObject() {
+				{"task", entry }
+			});
 
 			// Send the new id with a 201 "Created"
 			Server.SendJSON(new JObject() {
@@ -177,6 +252,12 @@ namespace API.HTTP.Endpoints
 
 			// Delete the task
 			Database.Delete(task);
+			Database.Insert(new TaskChange() { Group = task.Group, Task = task_id, Deleted = true });
+
+			// Tell the members that the task is gone
+			EventHub.Publish(task.Group, "task", new JObject() {
+				{"deleted", task_id }
+			});
 
 			// Send 204 "No Content" to indicate success with no response body.
 			Server.SendError(HttpStatusCode.NoContent);
@@ -34,22 +34,35 @@ namespace API.HTTP.Endpoints.ROOT
 			// Get params
 			var task = json["task"].Value<int>();
 
-			// Get all task-user links to the specified task
-			var taskUser_links = Database.Select<TaskUser_Link>($"`task` = {task}").ToList();
+			var results = GetEnrollments(task);
 
 			// Send 204 "No Content" if no users are enrolled
-			if (!taskUser_links.Any())
+			if (!results.Any())
 			{
 				Server.SendError(HttpStatusCode.NoContent);
 				return;
 			}
 
-			// Get all enrolled users
-			var users = Database.Select<User>(string.Join(" OR ", taskUser_links.Select(x => $"`id` = {x.User}")));
+			// Send the outJson with all the results
+			Server.SendJSON(new JObject() {
+				{"results", results }
+			});
+		}
 
-			var outJson = new JObject();
+		/// <summary>
+		/// Returns the users who are enrolled in a task and their enrollment period.
+		/// </summary>
+		/// <param name="task">The id of the task.</param>
+		private JArray GetEnrollments(int task)
+		{
 			var results = new JArray();
-			outJson.Add("results", results);
+
+			// Get all task-user links to the specified task
+			var taskUser_links = Database.Select<TaskUser_Link>($"`task` = {task}").ToList();
+			if (!taskUser_links.Any()) return results;
+
+			// Get all enrolled users
+			var users = Database.Select<User>(string.Join(" OR ", taskUser_links.Select(x => $"`id` = {x.User}")));
 
 			// Fill the results array with data
 			foreach (var user in users)
@@ -67,9 +80,22 @@ namespace API.HTTP.Endpoints.ROOT
 
 				results.Add(entry);
 			}
+			return results;
+		}
 
-			// Send the outJson with all the results
-			Server.SendJSON(outJson);
+		/// <summary>
+		/// Sends the enrollments of a task to the members of its group after they changed.
+		/// </summary>
+		/// <param name="task">The id of the task.</param>
+		private void PublishEnrollments(int task)
+		{
+			var group = Database.Select<Task>($"`id` = {task}").FirstOrDefault()?.Group;
+			if (!group.HasValue) return;
+
+			EventHub.Publish(group.Value, "enrollment", new JObject() {
+				{"task", task },
+				{"results", GetEnrollments(task) }
+			});
 		}
 
 		/// <summary>
@@ -117,6 +143,7 @@ namespace API.HTTP.Endpoints.ROOT
 
 			// Insert the task-user link
 			Database.Insert(taskUser_link);
+			PublishEnrollments(task);
 
 			// Send 204 "No Content" to indicate success without response body
 			Server.SendError(HttpStatusCode.NoContent);
@@ -152,6 +179,7 @@ namespace API.HTTP.Endpoints.ROOT
 				Server.SendError(HttpStatusCode.NotModified);
 				return;
 			}
+			PublishEnrollments(task);
 
 			// Send 204 "No Content" to indicate success without response body
 			Server.SendError(HttpStatusCode.NoContent);
@@ -193,6 +221,7 @@ namespace API.HTTP.Endpoints.ROOT
 
 			// Update the task-user link object in the database
 			Database.Update(enrollment);
+			PublishEnrollments(task);
 
 			// Send 204 "No Content" to indicate success without response body
 			Server.SendError(HttpStatusCode.NoContent);
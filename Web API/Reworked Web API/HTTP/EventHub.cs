@@ -0,0 +1,213 @@
+﻿using API.Database;
+using Newtonsoft.Json;
+using Newtonsoft.Json.Linq;
+using System;
+using System.Collections.Generic;
+using System.Linq;
+using System.Net;
+using System.Text;
+using System.Threading;
+
+namespace API.HTTP
+{
+	/// <summary>
+	/// A static class that pushes change events to clients over server-sent event streams.
+	/// </summary>
+	/// <remarks>
+	/// Every event belongs to a group and is only sent to the members of that group. A bounded history of recent events
+	/// is kept so that a client that reconnects with a Last-Event-ID header receives the events it missed. If the history
+	/// no longer reaches back that far, the client receives a "reset" event and should reload its data instead.
+	/// <para/>
+	/// Events are queued per stream and written by a writer of that stream, so a client that stops reading never holds up
+	/// the requests that publish events. A stream whose queue runs over <see cref="QueueSize"/> is closed, and its
+	/// client catches up with Last-Event-ID once it reconnects.
+	/// </remarks>
+	public static class EventHub
+	{
+		/// <summary>
+		/// The amount of recent events that are kept for clients that reconnect.
+		/// </summary>
+		public const int HistorySize = 256;
+		/// <summary>
+		/// The time in milliseconds that clients should wait before reconnecting.
+		/// </summary>
+		public const int RetryDelay = 3000;
+		/// <summary>
+		/// The interval at which a comment is sent to keep idle streams open through proxies and to detect closed ones.
+		/// </summary>
+		public static readonly TimeSpan HeartbeatInterval = TimeSpan.FromSeconds(15);
+		/// <summary>
+		/// The amount of writes that may wait for a stream before it is closed.
+		/// </summary>
+		public const int QueueSize = 64;
+
+		private sealed class Subscriber
+		{
+			public HttpListenerResponse Response { get; set; }
+			public int User { get; set; }
+			// The data waiting to be written, guarded by the subscriber itself
+			public Queue<byte[]> Pending { get; } = new Queue<byte[]>();
+			public bool Writing { get; set; }
+			public bool Closed { get; set; }
+		}
+
+		private sealed class Event
+		{
+			public long Id { get; set; }
+			public HashSet<int> Recipients { get; set; }
+			public byte[] Data { get; set; }
+		}
+
+		private static readonly object Lock = new object();
+		private static readonly List<Subscriber> Subscribers = new List<Subscriber>();
+		private static readonly LinkedList<Event> History = new LinkedList<Event>();
+		private static long lastId;
+		private static readonly Timer Heartbeat = new Timer(_ => Broadcast(Encoding.UTF8.GetBytes(":\n\n")), null, HeartbeatInterval, HeartbeatInterval);
+
+		/// <summary>
+		/// Gets the amount of open event streams.
+		/// </summary>
+		public static int SubscriberCount { get { lock (Lock) return Subscribers.Count; } }
+
+		/// <summary>
+		/// Starts sending events to an open response. The response is closed once writing to it fails or falls behind.
+		/// </summary>
+		/// <param name="response">The response to write the event stream to. Its headers must already be set.</param>
+		/// <param name="user">The id of the user whose groups' events to send.</param>
+		/// <param name="lastEventId">The id of the last event that the client received before it reconnected, or null.</param>
+		public static void Subscribe(HttpListenerResponse response, int user, long? lastEventId)
+		{
+			if (response is null) throw new ArgumentNullException(nameof(response));
+			var subscriber = new Subscriber() { Response = response, User = user };
+
+			lock (Lock)
+			{
+				// Replay the missed events, or make the client reload if some of them were already forgotten or if the
+				// ids were restarted by a server restart
+				var missed = lastEventId.HasValue && lastEventId != lastId;
+				var replay = missed && lastEventId < lastId && History.Count > 0 && History.First.Value.Id <= lastEventId + 1;
+
+				var start = new StringBuilder($"retry: {RetryDelay}\n\n");
+				if (missed && !replay) start.Append($"id: {lastId}\nevent: reset\ndata: {{}}\n\n");
+				if (replay)
+					foreach (var e in History.Where(x => x.Id > lastEventId && x.Recipients.Contains(user)))
+						start.Append(Encoding.UTF8.GetString(e.Data));
+
+				// Queued under the lock, so no event that is published in the meantime comes before the replayed ones
+				Subscribers.Add(subscriber);
+				Enqueue(subscriber, Encoding.UTF8.GetBytes(start.ToString()));
+			}
+			Program.Log.Fine($"Opened event stream for user {user}");
+		}
+
+		/// <summary>
+		/// Sends an event to every member of a group that has an open event stream.
+		/// </summary>
+		/// <param name="group">The id of the group that the event belongs to.</param>
+		/// <param name="name">The type of the event, such as "task" or "enrollment".</param>
+		/// <param name="data">The data of the event. A "group" property is added to it.</param>
+		public static void Publish(int group, string name, JObject data)
+		{
+			if (name is null) throw new ArgumentNullException(nameof(name));
+			if (data is null) throw new ArgumentNullException(nameof(data));
+
+			// Look up the members before taking the lock, so the database isn't queried while streams wait
+			var recipients = Utils.GetDatabase().Select<GroupUser_Link>($"`group` = {group}").Select(x => x.User).ToHashSet();
+			data["group"] = group;
+
+			lock (Lock)
+			{
+				var e = new Event() { Id = ++lastId, Recipients = recipients };
+				e.Data = Encoding.UTF8.GetBytes($"id: {e.Id}\nevent: {name}\ndata: {data.ToString(Formatting.None)}\n\n");
+
+				History.AddLast(e);
+				if (History.Count > HistorySize) History.RemoveFirst();
+
+				// Queuing never blocks, so the lock is only held for as long as it takes to hand the event over
+				foreach (var subscriber in Subscribers.Where(x => recipients.Contains(x.User)).ToList())
+					Enqueue(subscriber, e.Data);
+			}
+		}
+
+		/// <summary>
+		/// Queues data for every open event stream.
+		/// </summary>
+		private static void Broadcast(byte[] data)
+		{
+			lock (Lock)
+				foreach (var subscriber in Subscribers.ToList())
+					Enqueue(subscriber, data);
+		}
+
+		/// <summary>
+		/// Queues data for an event stream and starts its writer if it isn't running. Closes the stream instead if its
+		/// queue is full.
+		/// </summary>
+		private static void Enqueue(Subscriber subscriber, byte[] data)
+		{
+			lock (subscriber)
+			{
+				if (subscriber.Closed) return;
+				if (subscriber.Pending.Count < QueueSize)
+				{
+					subscriber.Pending.Enqueue(data);
+					if (subscriber.Writing) return;
+					subscriber.Writing = true;
+					ThreadPool.QueueUserWorkItem(_ => Drain(subscriber));
+					return;
+				}
+			}
+			Program.Log.Fine($"Event stream for user {subscriber.User} fell behind");
+			Close(subscriber);
+		}
+
+		/// <summary>
+		/// Writes the queued data of an event stream until its queue is empty, and closes the stream if that fails.
+		/// </summary>
+		private static void Drain(Subscriber subscriber)
+		{
+			while (true)
+			{
+				byte[] data;
+				lock (subscriber)
+				{
+					if (subscriber.Closed || subscriber.Pending.Count == 0)
+					{
+						subscriber.Writing = false;
+						return;
+					}
+					data = subscriber.Pending.Dequeue();
+				}
+
+				try
+				{
+					subscriber.Response.OutputStream.Write(data, 0, data.Length);
+					subscriber.Response.OutputStream.Flush();
+				}
+				catch (Exception e) when (e is HttpListenerException || e is ObjectDisposedException || e is InvalidOperationException)
+				{
+					Close(subscriber);
+					return;
+				}
+			}
+		}
+
+		/// <summary>
+		/// Stops sending events to a stream and closes it. Aborting the response also ends a write that is stuck on it.
+		/// </summary>
+		private static void Close(Subscriber subscriber)
+		{
+			lock (subscriber)
+			{
+				if (subscriber.Closed) return;
+				subscriber.Closed = true;
+				subscriber.Pending.Clear();
+			}
+			lock (Lock) Subscribers.Remove(subscriber);
+
+			Program.Log.Fine($"Closed event stream for user {subscriber.User}");
+			try { subscriber.Response.Abort(); }
+			catch (ObjectDisposedException) { }
+		}
+	}
+}
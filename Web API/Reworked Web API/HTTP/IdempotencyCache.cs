@@ -0,0 +1,113 @@
+﻿using System;
+using System.Collections.Generic;
+using System.Linq;
+using System.Net;
+
+namespace API.HTTP
+{
+	/// <summary>
+	/// A static class that remembers the responses to requests that carried an Idempotency-Key header.
+	/// </summary>
+	/// <remarks>
+	/// Clients that send changes from an outbox retry them until they get a response, so the same request may arrive
+	/// more than once when a response was lost. A retried request is answered with the stored response instead of being
+	/// applied again. Keys are scoped to the user that sent them and are only kept in memory for <see cref="Lifetime"/>,
+	/// so a server restart forgets them.
+	/// </remarks>
+	public static class IdempotencyCache
+	{
+		/// <summary>
+		/// The time that a response is kept for retries.
+		/// </summary>
+		public static readonly TimeSpan Lifetime = TimeSpan.FromHours(24);
+		/// <summary>
+		/// The maximum length of an idempotency key.
+		/// </summary>
+		public const int MaxKeyLength = 64;
+
+		/// <summary>
+		/// A response to a request with an idempotency key.
+		/// </summary>
+		public sealed class Entry
+		{
+			/// <summary>
+			/// Gets whether the first request with the key is still being processed.
+			/// </summary>
+			public bool Pending => !Status.HasValue;
+			public HttpStatusCode? Status { get; set; }
+			public string ContentType { get; set; }
+			public byte[] Data { get; set; }
+			public DateTime Created { get; } = DateTime.UtcNow;
+		}
+
+		private static readonly object Lock = new object();
+		private static readonly Dictionary<string, Entry> Entries = new Dictionary<string, Entry>();
+		private static DateTime Cleanup = DateTime.UtcNow;
+
+		/// <summary>
+		/// Claims an idempotency key for a new request, or returns the entry of the request that claimed it before.
+		/// </summary>
+		/// <param name="user">The id of the user that sent the request.</param>
+		/// <param name="key">The idempotency key of the request.</param>
+		/// <returns>Null if the key is new and the request should be processed, or the earlier entry otherwise.</returns>
+		public static Entry Claim(int user, string key)
+		{
+			lock (Lock)
+			{
+				RemoveExpired();
+				var id = $"{user}:{key}";
+				if (Entries.TryGetValue(id, out Entry entry)) return entry;
+				Entries[id] = new Entry();
+				return null;
+			}
+		}
+
+		/// <summary>
+		/// Stores the response of a request whose key was claimed with <see cref="Claim(int, string)"/>.
+		/// </summary>
+		/// <param name="user">The id of the user that sent the request.</param>
+		/// <param name="key">The idempotency key of the request.</param>
+		/// <param name="status">The status code of the response.</param>
+		/// <param name="contentType">The content type of the response.</param>
+		/// <param name="data">The unencrypted body of the response, or null.</param>
+		public static void Complete(int user, string key, HttpStatusCode status, string contentType, byte[] data)
+		{
+			lock (Lock)
+			{
+				var id = $"{user}:{key}";
+				// Server errors are not stored, so that a retry gets another chance
+				if ((int)status >= 500) Entries.Remove(id);
+				else if (Entries.TryGetValue(id, out Entry entry) && entry.Pending)
+				{
+					entry.Status = status;
+					entry.ContentType = contentType;
+					entry.Data = data;
+				}
+			}
+		}
+
+		/// <summary>
+		/// Forgets a claimed key whose request ended without a response.
+		/// </summary>
+		/// <param name="user">The id of the user that sent the request.</param>
+		/// <param name="key">The idempotency key of the request.</param>
+		public static void Release(int user, string key)
+		{
+			lock (Lock)
+			{
+				var id = $"{user}:{key}";
+				if (Entries.TryGetValue(id, out Entry entry) && entry.Pending) Entries.Remove(id);
+			}
+		}
+
+		private static void RemoveExpired()
+		{
+			// Only look for expired entries once a minute
+			var now = DateTime.UtcNow;
+			if (now - Cleanup < TimeSpan.FromMinutes(1)) return;
+			Cleanup = now;
+			foreach (var id in Entries.Where(x => now - x.Value.Created > Lifetime).Select(x => x.Key).ToList())
+				Entries.Remove(id);
+		}
+	}
+}
@@ -43,6 +43,17 @@ namespace API.HTTP
 		/// </summary>
 		private AppDatabase Database => Utils.GetDatabase();
 
+		/// <summary>
+		/// Gets whether the current request only reads data, either as a GET or as a POST with a "method=GET" url parameter.
+		/// </summary>
+		private bool IsReadRequest => Request.HttpMethod == "GET"
+			|| (Request.HttpMethod == "POST" && Request.QueryString["method"]?.ToUpper() == "GET");
+
+		/// <summary>
+		/// Gets the idempotency key of the current request if its response should be stored for retries, or null.
+		/// </summary>
+		private string IdempotencyKey { get; set; }
+
 		/// <summary>
 		/// Diagnostics timer for detailed log messages.
 		/// </summary>
@@ -58,6 +69,7 @@ namespace API.HTTP
 		{
             // Reset cached user
             _CurrentUser = null;
+			IdempotencyKey = null;
 
             // Print log and start diagnostics timer
             Program.Log.Fine($"Processing {Request.HttpMethod} request for '{Request.Url.AbsolutePath}'...");
@@ -116,13 +128,44 @@ namespace API.HTTP
 					return;
 				}
 
+				// Answer retried changes with the response to the first attempt instead of applying them twice
+				var key = Request.Headers["Idempotency-Key"];
+				if (key != null && !IsReadRequest && CurrentSession?.User != null)
+				{
+					if (key.Length > IdempotencyCache.MaxKeyLength)
+					{
+						SendError(HttpStatusCode.BadRequest);
+						return;
+					}
+					var previous = IdempotencyCache.Claim(CurrentSession.User.Value, key);
+					if (previous != null)
+					{
+						Response.AddHeader("Idempotent-Replayed", "true");
+						// Send 409 Conflict while the first attempt is still being processed
+						if (previous.Pending) SendError(HttpStatusCode.Conflict);
+						else
+						{
+							Response.ContentType = previous.ContentType;
+							Send(previous.Data, previous.Status.Value);
+						}
+						return;
+					}
+					IdempotencyKey = key;
+				}
+
 				// Create an instance of the endpoint
 				var endpointInstance = (Activator.CreateInstance(endpoint) as JsonEndpoint);
 				endpointInstance.CurrentSession = CurrentSession;
 				endpointInstance.CurrentUser = CurrentUser;
-				endpointInstance.Invoke(Request, Response, this);
+				try { endpointInstance.Invoke(Request, Response, this); }
+				finally
+				{
+					// Let a retry through if the endpoint failed without sending a response
+					if (IdempotencyKey != null) IdempotencyCache.Release(CurrentSession.User.Value, IdempotencyKey);
+				}
 
-				// Close the response if the endpoint didn't close it
+				// Close the response if the endpoint didn't close it or hand it over
+				if (IsDetached) return;
 				try { Response.Close(); }
 				catch (ObjectDisposedException) { }
 				return;
@@ -142,9 +185,39 @@ namespace API.HTTP
 		/// </remarks>
 		public override void Send(byte[] data, HttpStatusCode statusCode = HttpStatusCode.OK)
 		{
+			// Store the plain response for retries of the same change
+			if (IdempotencyKey != null)
+			{
+				IdempotencyCache.Complete(CurrentSession.User.Value, IdempotencyKey, statusCode, Response.ContentType, data);
+				IdempotencyKey = null;
+			}
+
+			// Tag successful reads and skip the body if the client already has it
+			if (data != null && statusCode == HttpStatusCode.OK && IsReadRequest)
+			{
+				var etag = Utils.GetETag(CurrentSession, data);
+				Response.AddHeader("ETag", etag);
+				if (Request.Headers["If-None-Match"] == etag)
+				{
+					data = null;
+					statusCode = HttpStatusCode.NotModified;
+				}
+			}
+
+			// Tell the client that it may compress its request bodies
+			Response.AddHeader("Accept-Encoding", "gzip");
+			// Compress large bodies before they are encrypted, because encrypted data doesn't compress
+			if (data != null && data.Length >= Utils.CompressionThreshold && Utils.AcceptsGzip(Request))
+			{
+				data = Utils.GzipCompress(data);
+				Response.AddHeader("Content-Encoding", "gzip");
+			}
+
 			if (data != null && Utils.IsRequestEncrypted(Request))
 			{
 				Response.StatusCode = (int)statusCode;
+				// Keep the type of the plain data, because the client can't tell JSON and CBOR apart otherwise
+				Response.AddHeader("Content-Format", Response.ContentType);
 				Response.ContentType = "application/octet-stream";
 
 				// Encode data and add IV header
@@ -160,5 +233,23 @@ namespace API.HTTP
 			if (((int)statusCode).ToString().StartsWith("2")) Program.Log.Trace(logMessage);
 			else Program.Log.Info(logMessage);
 		}
+
+		/// <summary>
+		/// Writes a <see cref="JObject"/> to the specified <see cref="HttpListenerResponse"/>, encoded as CBOR if the
+		/// client accepts it and as JSON otherwise.
+		/// </summary>
+		/// <param name="json">The <see cref="JObject"/> to send to the client.</param>
+		/// <param name="statusCode">The <see cref="HttpStatusCode"/> to send to the client.</param>
+		public override void SendJSON(JObject json, HttpStatusCode statusCode = HttpStatusCode.OK)
+		{
+			if (json == null || !Utils.AcceptsCbor(Request))
+			{
+				base.SendJSON(json, statusCode);
+				return;
+			}
+
+			Response.ContentType = Cbor.MimeType;
+			Send(Cbor.Encode(json), statusCode);
+		}
 	}
 }
@@ -37,6 +37,10 @@ namespace API.HTTP
 		/// Gets the <see cref="HttpListenerResponse"/> directed to a client.
 		/// </summary>
 		protected HttpListenerResponse Response { get; private set; }
+		/// <summary>
+		/// Gets whether <see cref="Response"/> was handed over with <see cref="Detach"/> and must be left open.
+		/// </summary>
+		protected bool IsDetached { get; private set; }
 
 		/// <summary>
 		/// Creates a new instance of <see cref="Server"/>.
@@ -64,6 +68,7 @@ namespace API.HTTP
 					var context = queue.Take();
 					Request = context.Request;
 					Response = context.Response;
+					IsDetached = false;
 
 					// Always deny requests with invalid urls
 					if (Request.Url.AbsolutePath.Contains(".."))
@@ -87,9 +92,12 @@ namespace API.HTTP
 						Program.Log.Error($"{e.GetType().Name} in {GetType().Name}.Main(): {e.Message}", e, true);
 					}
 					// If it isn't already closed, send an internal server error
-					try { SendError(HttpStatusCode.InternalServerError); }
-					catch (HttpListenerException) { } // connection was closed
-					catch (ObjectDisposedException) { } // connection is already closed
+					if (!IsDetached)
+					{
+						try { SendError(HttpStatusCode.InternalServerError); }
+						catch (HttpListenerException) { } // connection was closed
+						catch (ObjectDisposedException) { } // connection is already closed
+					}
 
 					Request = null;
 					Response = null;
@@ -98,6 +106,17 @@ namespace API.HTTP
 			catch (ThreadInterruptedException) { }
 		}
 
+		/// <summary>
+		/// Hands the current response over to the caller, so that this <see cref="Server"/> can take the next request
+		/// without closing it. The caller becomes responsible for closing the response.
+		/// </summary>
+		/// <returns>The current response.</returns>
+		public HttpListenerResponse Detach()
+		{
+			IsDetached = true;
+			return Response;
+		}
+
 		/// <summary>
 		/// The function that is called when this <see cref="Server"/> instance received a request.
 		/// </summary>
@@ -5,6 +5,7 @@ using System.Collections.Generic;
 using System.Collections.ObjectModel;
 using System.Diagnostics;
 using System.IO;
+using System.IO.Compression;
 using System.Linq;
 using System.Net;
 using System.Reflection;
@@ -199,6 +200,21 @@ namespace API
 				&& request.Headers.AllKeys.Contains("Content-IV");
 		}
 
+		/// <summary>
+		/// Computes an entity tag for a response body so that clients can revalidate it with If-None-Match.
+		/// </summary>
+		/// <param name="session">The session that requested the data. Its key is mixed into the tag so that the tag
+		/// reveals nothing about an encrypted body. May be null.</param>
+		/// <param name="data">The unencrypted response body.</param>
+		/// <returns>A quoted entity tag.</returns>
+		public static string GetETag(Session? session, byte[] data)
+		{
+			if (data is null) throw new ArgumentNullException(nameof(data));
+
+			using HashAlgorithm hash = session?.Key == null ? (HashAlgorithm)SHA256.Create() : new HMACSHA256(session!.Key);
+			return '"' + Convert.ToBase64String(hash.ComputeHash(data), 0, 16) + '"';
+		}
+
 		/// <summary>
 		/// Uses the <see cref="Aes"/> cipher and decrypts an encoded message from a session
 		/// using the specified initialization vector.
@@ -275,6 +291,106 @@ namespace API
 
 			return mem.ToArray();
 		}
+
+		/// <summary>
+		/// The minimum size of a response body before it is compressed. Smaller bodies would barely shrink, or even grow.
+		/// </summary>
+		public const int CompressionThreshold = 1024;
+
+		/// <summary>
+		/// The maximum size of a request body after it is decompressed. Far more than any request of the app needs, so
+		/// a small gzip body can't inflate until the server runs out of memory.
+		/// </summary>
+		public const int MaxDecompressedSize = 1024 * 1024;
+
+		/// <summary>
+		/// Thrown when compressed data inflates to more than is allowed.
+		/// </summary>
+		public sealed class DataTooLargeException : InvalidDataException
+		{
+			public DataTooLargeException(string message) : base(message) { }
+		}
+
+		/// <summary>
+		/// Returns whether the client accepts gzip compressed response bodies.
+		/// </summary>
+		/// <param name="request">The request to check.</param>
+		public static bool AcceptsGzip(HttpListenerRequest request)
+		{
+			if (request is null) throw new ArgumentNullException(nameof(request));
+			var header = request.Headers["Accept-Encoding"];
+			return header != null && header.Split(',').Any(x => x.Split(';')[0].Trim().Equals("gzip", StringComparison.OrdinalIgnoreCase));
+		}
+
+		/// <summary>
+		/// Returns whether the client accepts response bodies encoded as CBOR instead of JSON.
+		/// </summary>
+		/// <param name="request">The request to check.</param>
+		public static bool AcceptsCbor(HttpListenerRequest request)
+		{
+			if (request is null) throw new ArgumentNullException(nameof(request));
+			return request.AcceptTypes != null && request.AcceptTypes.Any(x => x.Split(';')[0].Trim().Equals(HTTP.Cbor.MimeType, StringComparison.OrdinalIgnoreCase));
+		}
+
+		/// <summary>
+		/// Compresses data with gzip.
+		/// </summary>
+		/// <param name="data">The data to compress.</param>
+		/// <returns>The compressed data.</returns>
+		public static byte[] GzipCompress(byte[] data)
+		{
+			if (data is null) throw new ArgumentNullException(nameof(data));
+
+			using var mem = new MemoryStream();
+			using (var gzip = new GZipStream(mem, CompressionLevel.Fastest, true))
+				gzip.Write(data);
+			return mem.ToArray();
+		}
+
+		/// <summary>
+		/// Decompresses gzip data that may be followed by the zero padding of an AES envelope.
+		/// </summary>
+		/// <param name="data">The compressed data.</param>
+		/// <param name="maxLength">The maximum length of the decompressed data.</param>
+		/// <returns>The decompressed data.</returns>
+		/// <exception cref="InvalidDataException">Thrown if the data isn't valid gzip data.</exception>
+		/// <exception cref="DataTooLargeException">Thrown if the data decompresses to more than <paramref name="maxLength"/> bytes.</exception>
+		public static byte[] GzipDecompress(byte[] data, int maxLength = MaxDecompressedSize)
+		{
+			if (data is null) throw new ArgumentNullException(nameof(data));
+
+			// Skip the gzip header and inflate the raw deflate stream behind it, which ignores whatever follows the
+			// stream, such as the gzip trailer and the padding
+			if (data.Length < 10 || data[0] != 0x1f || data[1] != 0x8b || data[2] != 8)
+				throw new InvalidDataException("The data is not in the gzip format.");
+			var flags = data[3];
+			var offset = 10;
+			try
+			{
+				if ((flags & 4) != 0) offset += 2 + (data[offset] | data[offset + 1] << 8); // FEXTRA
+				if ((flags & 8) != 0) while (data[offset++] != 0) ; // FNAME
+				if ((flags & 16) != 0) while (data[offset++] != 0) ; // FCOMMENT
+				if ((flags & 2) != 0) offset += 2; // FHCRC
+			}
+			catch (IndexOutOfRangeException)
+			{
+				throw new InvalidDataException("The gzip header is truncated.");
+			}
+			if (offset > data.Length) throw new InvalidDataException("The gzip header is truncated.");
+
+			using var input = new DeflateStream(new MemoryStream(data, offset, data.Length - offset), CompressionMode.Decompress);
+			using var output = new MemoryStream();
+			var buffer = new byte[8192];
+			int read;
+			while ((read = input.Read(buffer, 0, buffer.Length)) > 0)
+			{
+				// Stop inflating as soon as the limit is passed, instead of after the whole body is in memory
+				if (output.Length + read > maxLength)
+					throw new DataTooLargeException($"The data decompresses to more than {maxLength} bytes.");
+				output.Write(buffer, 0, read);
+			}
+			return output.ToArray();
+		}
 #nullable disable
 
 		/// <summary>
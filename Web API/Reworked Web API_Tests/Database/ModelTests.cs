@@ -195,6 +195,21 @@ namespace API.Database.Tests
 						x.Task = ForeignTaskId;
 						return x;
 					}).ToArray();
+				case nameof(TaskChange):
+					// Create a new user, group and task to satisfy foreign key constraints
+					if (ForeignUserId == -1) ForeignUserId = (int)Database.Insert(new User() { Username = "UnitTest_TaskChangeCreator" });
+					if (ForeignGroupId == -1) ForeignGroupId = (int)Database.Insert(new Group() { Creator = ForeignUserId, Name = "UnitTest_TaskChangeGroup" });
+					if (ForeignTaskId == -1) ForeignTaskId = (int)Database.Insert(new Task() { Creator = ForeignUserId, Group = ForeignGroupId, Title = "UnitTest_ChangedTask" });
+					return new[] {
+						new TaskChange(),
+						new TaskChange() { Deleted = true },
+						new TaskChange() { Time = DateTimeOffset.Now.ToUnixTimeSeconds() + 3600 },
+					}.Select(x =>
+					{ // Set foreign keys
+						x.Group = ForeignGroupId;
+						x.Task = ForeignTaskId;
+						return x;
+					}).ToArray();
 				case nameof(Session):
 					// Create a new user to satisfy the foreign key constraint
 					if (ForeignUserId == -1) ForeignUserId = (int)Database.Insert(new User() { Username = "UnitTest_SessionOwner" });
@@ -227,6 +242,7 @@ namespace API.Database.Tests
 		[DataRow(typeof(User), DisplayName = nameof(User))]
 		[DataRow(typeof(Group), DisplayName = nameof(Group))]
 		[DataRow(typeof(Task), DisplayName = nameof(Task))]
+		[DataRow(typeof(TaskChange), DisplayName = nameof(TaskChange))]
 		[DataRow(typeof(Comment), DisplayName = nameof(Comment))]
 		[DataRow(typeof(Session), DisplayName = nameof(Session))]
 		[DataRow(typeof(Resource), DisplayName = nameof(Resource))]
@@ -260,6 +276,10 @@ namespace API.Database.Tests
 					x.Created = y.Created;
 					x.Edited = y.Edited;
 				},
+				nameof(TaskChange) => (x, y) => {
+					x.Deleted = y.Deleted;
+					x.Time = y.Time;
+				},
 				nameof(Session) => (x, y) => {
 					x.User = y.User;
 				},
@@ -300,6 +320,7 @@ namespace API.Database.Tests
 		[DataRow(typeof(User), DisplayName = nameof(User))]
 		[DataRow(typeof(Group), DisplayName = nameof(Group))]
 		[DataRow(typeof(Task), DisplayName = nameof(Task))]
+		[DataRow(typeof(TaskChange), DisplayName = nameof(TaskChange))]
 		[DataRow(typeof(Comment), DisplayName = nameof(Comment))]
 		[DataRow(typeof(Session), DisplayName = nameof(Session))]
 		[DataRow(typeof(Resource), DisplayName = nameof(Resource))]
@@ -319,6 +340,7 @@ namespace API.Database.Tests
 		[DataRow(typeof(User), DisplayName = nameof(User))]
 		[DataRow(typeof(Group), DisplayName = nameof(Group))]
 		[DataRow(typeof(Task), DisplayName = nameof(Task))]
+		[DataRow(typeof(TaskChange), DisplayName = nameof(TaskChange))]
 		[DataRow(typeof(Comment), DisplayName = nameof(Comment))]
 		[DataRow(typeof(Session), DisplayName = nameof(Session))]
 		[DataRow(typeof(Resource), DisplayName = nameof(Resource))]
@@ -332,6 +354,7 @@ namespace API.Database.Tests
 				var t when t == nameof(User)
 						|| t == nameof(Group)
 						|| t == nameof(Task)
+						|| t == nameof(TaskChange)
 						|| t == nameof(Comment)
 						|| t == nameof(Resource)
 					=> x => $"`id` = {x.Id}",
@@ -362,6 +385,7 @@ namespace API.Database.Tests
 		[DataRow(typeof(User), DisplayName = nameof(User))]
 		[DataRow(typeof(Group), DisplayName = nameof(Group))]
 		[DataRow(typeof(Task), DisplayName = nameof(Task))]
+		[DataRow(typeof(TaskChange), DisplayName = nameof(TaskChange))]
 		[DataRow(typeof(Comment), DisplayName = nameof(Comment))]
 		[DataRow(typeof(Session), DisplayName = nameof(Session))]
 		[DataRow(typeof(Resource), DisplayName = nameof(Resource))]